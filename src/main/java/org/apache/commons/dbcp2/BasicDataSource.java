@@ -16,6 +16,7 @@
  */
 package org.apache.commons.dbcp2;
 
+import java.io.File;
 import java.io.OutputStreamWriter;
 import java.io.PrintWriter;
 import java.lang.management.ManagementFactory;
@@ -33,8 +34,12 @@ import java.util.Collection;
 import java.util.Collections;
 import java.util.HashSet;
 import java.util.List;
+import java.util.Map;
 import java.util.Properties;
 import java.util.Set;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.ReentrantLock;
 import java.util.logging.Logger;
 
 import javax.management.InstanceAlreadyExistsException;
@@ -49,6 +54,7 @@ import javax.sql.DataSource;
 
 import org.apache.commons.logging.Log;
 import org.apache.commons.logging.LogFactory;
+import org.apache.commons.pool2.ObjectPool;
 import org.apache.commons.pool2.PooledObject;
 import org.apache.commons.pool2.impl.AbandonedConfig;
 import org.apache.commons.pool2.impl.BaseObjectPoolConfig;
@@ -221,6 +227,431 @@ public class BasicDataSource implements DataSource, BasicDataSourceMXBean, MBean
     }
 
 
+    private volatile Integer defaultFetchSize = null;
+
+    /**
+     * Obtain the default fetch size that will be used for {@link java.sql.Statement Statement}s
+     * created from this connection. <code>null</code> means that the driver
+     * default will be used.
+     * @since 2.2
+     */
+    public Integer getDefaultFetchSize() {
+        return defaultFetchSize;
+    }
+
+
+    /**
+     * Set the default fetch size that will be used for {@link java.sql.Statement Statement}s
+     * created from this connection. <code>null</code> means that the driver
+     * default will be used.
+     * <p>
+     * Note: this method currently has no effect once the pool has been
+     * initialized.  The pool is initialized the first time one of the
+     * following methods is invoked: <code>getConnection, setLogwriter,
+     * setLoginTimeout, getLoginTimeout, getLogWriter.</code></p>
+     * @since 2.2
+     */
+    public void setDefaultFetchSize(final Integer defaultFetchSize) {
+        this.defaultFetchSize = defaultFetchSize;
+    }
+
+
+    private volatile boolean adaptiveFetchSize = false;
+
+    /**
+     * Returns whether the fetch size of statements is adapted to the number
+     * of rows typically read from the results of their SQL.
+     * @return true if adaptive fetch sizing is enabled
+     * @since 2.2
+     */
+    public boolean getAdaptiveFetchSize() {
+        return adaptiveFetchSize;
+    }
+
+
+    /**
+     * Enables or disables adaptive fetch sizing. When enabled, the pool
+     * records how many rows are read from the results of each SQL statement
+     * and sets the fetch size of the next statement created or executed with
+     * that SQL accordingly, up to {@link #getAdaptiveFetchSizeMax()}. Until
+     * a SQL statement has been seen, and for statements whose fetch size is
+     * set by the application, the default fetch size applies.
+     * <p>
+     * Note: this method currently has no effect once the pool has been
+     * initialized.  The pool is initialized the first time one of the
+     * following methods is invoked: <code>getConnection, setLogwriter,
+     * setLoginTimeout, getLoginTimeout, getLogWriter.</code></p>
+     * @param adaptiveFetchSize true to enable adaptive fetch sizing
+     * @since 2.2
+     */
+    public void setAdaptiveFetchSize(final boolean adaptiveFetchSize) {
+        this.adaptiveFetchSize = adaptiveFetchSize;
+    }
+
+
+    private volatile int adaptiveFetchSizeMax = FetchSizeAdvisor.DEFAULT_MAX_FETCH_SIZE;
+
+    /**
+     * Returns the largest fetch size set by adaptive fetch sizing.
+     * @return the largest adaptive fetch size
+     * @since 2.2
+     */
+    public int getAdaptiveFetchSizeMax() {
+        return adaptiveFetchSizeMax;
+    }
+
+
+    /**
+     * Sets the largest fetch size set by adaptive fetch sizing, which bounds
+     * the number of rows a driver buffers for statements with large results.
+     * <p>
+     * Note: this method currently has no effect once the pool has been
+     * initialized.  The pool is initialized the first time one of the
+     * following methods is invoked: <code>getConnection, setLogwriter,
+     * setLoginTimeout, getLoginTimeout, getLogWriter.</code></p>
+     * @param adaptiveFetchSizeMax the largest adaptive fetch size
+     * @since 2.2
+     */
+    public void setAdaptiveFetchSizeMax(final int adaptiveFetchSizeMax) {
+        this.adaptiveFetchSizeMax = adaptiveFetchSizeMax;
+    }
+
+
+    private volatile boolean cacheDatabaseMetaData = false;
+
+    /**
+     * Returns whether {@link java.sql.DatabaseMetaData} answers are cached
+     * and shared by all connections of the pool.
+     * @return true if metadata is cached
+     * @since 2.2
+     */
+    @Override
+    public boolean getCacheDatabaseMetaData() {
+        return cacheDatabaseMetaData;
+    }
+
+
+    /**
+     * Enables or disables caching of {@link java.sql.DatabaseMetaData}
+     * answers. When enabled, answers to scalar methods such as
+     * <code>supportsBatchUpdates()</code> are obtained from the database
+     * once and shared by all connections of the pool until
+     * {@link #invalidateDatabaseMetaDataCache()} is called. Result sets
+     * returned by methods such as <code>getTables(...)</code> are cached for
+     * {@link #getDatabaseMetaDataCacheTtlMillis()} and served as disconnected
+     * copies.
+     * <p>
+     * Note: this method currently has no effect once the pool has been
+     * initialized.  The pool is initialized the first time one of the
+     * following methods is invoked: <code>getConnection, setLogwriter,
+     * setLoginTimeout, getLoginTimeout, getLogWriter.</code></p>
+     * @param cacheDatabaseMetaData true to cache metadata
+     * @since 2.2
+     */
+    public void setCacheDatabaseMetaData(final boolean cacheDatabaseMetaData) {
+        this.cacheDatabaseMetaData = cacheDatabaseMetaData;
+    }
+
+
+    private volatile long databaseMetaDataCacheTtlMillis = 5 * 60 * 1000L;
+
+    /**
+     * Returns the time for which metadata result sets are cached.
+     * @return the time to live of cached metadata result sets
+     * @since 2.2
+     */
+    @Override
+    public long getDatabaseMetaDataCacheTtlMillis() {
+        return databaseMetaDataCacheTtlMillis;
+    }
+
+
+    /**
+     * Sets the time for which metadata result sets such as those returned by
+     * <code>getTables(...)</code> are cached when
+     * {@link #getCacheDatabaseMetaData()} is true. A value of zero or less
+     * caches only scalar answers.
+     * <p>
+     * Note: this method currently has no effect once the pool has been
+     * initialized.  The pool is initialized the first time one of the
+     * following methods is invoked: <code>getConnection, setLogwriter,
+     * setLoginTimeout, getLoginTimeout, getLogWriter.</code></p>
+     * @param databaseMetaDataCacheTtlMillis the time to live of cached
+     *        metadata result sets
+     * @since 2.2
+     */
+    public void setDatabaseMetaDataCacheTtlMillis(final long databaseMetaDataCacheTtlMillis) {
+        this.databaseMetaDataCacheTtlMillis = databaseMetaDataCacheTtlMillis;
+    }
+
+
+    private volatile long keepAliveMillis = 0;
+
+    /**
+     * Returns the idle time after which idle connections are pinged to keep
+     * network equipment from dropping them. A value of zero or less (the
+     * default) disables pings.
+     *
+     * @return the keep-alive idle time in milliseconds
+     * @since 2.2
+     */
+    @Override
+    public long getKeepAliveMillis() {
+        return keepAliveMillis;
+    }
+
+    /**
+     * <p>Sets the idle time after which idle connections are pinged with the
+     * validation query, or <code>Connection.isValid</code> if there is none,
+     * so that firewalls and NAT devices that drop inactive sessions do not
+     * drop them. Pings are spread out over time and run on a background
+     * thread of their own; unlike eviction, they never remove connections
+     * from the pool. A connection that fails its ping is replaced the next
+     * time it is borrowed.</p>
+     * <p>
+     * A connection may wait up to a further <code>keepAliveMillis</code>
+     * for its ping when many connections are due at once, so the value should
+     * be at most half the idle timeout of the network.</p>
+     * <p>
+     * Note: this method currently has no effect once the pool has been
+     * initialized.  The pool is initialized the first time one of the
+     * following methods is invoked: <code>getConnection, setLogwriter,
+     * setLoginTimeout, getLoginTimeout, getLogWriter.</code></p>
+     *
+     * @param keepAliveMillis the keep-alive idle time in milliseconds
+     * @since 2.2
+     */
+    public void setKeepAliveMillis(final long keepAliveMillis) {
+        this.keepAliveMillis = keepAliveMillis;
+    }
+
+    private volatile boolean canonicalizeSql = false;
+
+    /**
+     * Returns whether SQL is canonicalized before it is used as a prepared
+     * statement pool key.
+     *
+     * @return true if whitespace in SQL is collapsed for statement pooling
+     * @since 2.2
+     */
+    @Override
+    public boolean getCanonicalizeSql() {
+        return canonicalizeSql;
+    }
+
+    /**
+     * <p>Sets whether SQL is canonicalized with a
+     * {@link DefaultSqlCanonicalizer} before it is used as a prepared
+     * statement pool key. Statements whose SQL differs only in whitespace, or
+     * in comments if {@link #getStripSqlComments()} is true, then share
+     * pooled statements. Has no effect unless
+     * {@link #isPoolPreparedStatements()} is true.</p>
+     * <p>
+     * Note: this method currently has no effect once the pool has been
+     * initialized.  The pool is initialized the first time one of the
+     * following methods is invoked: <code>getConnection, setLogwriter,
+     * setLoginTimeout, getLoginTimeout, getLogWriter.</code></p>
+     *
+     * @param canonicalizeSql true to canonicalize SQL
+     * @since 2.2
+     */
+    public void setCanonicalizeSql(final boolean canonicalizeSql) {
+        this.canonicalizeSql = canonicalizeSql;
+    }
+
+    private volatile boolean stripSqlComments = false;
+
+    /**
+     * Returns whether comments are removed from SQL when it is canonicalized.
+     *
+     * @return true if comments other than optimizer hints are removed
+     * @since 2.2
+     */
+    @Override
+    public boolean getStripSqlComments() {
+        return stripSqlComments;
+    }
+
+    /**
+     * <p>Sets whether comments other than optimizer hints are removed from
+     * SQL when {@link #getCanonicalizeSql()} is true.</p>
+     * <p>
+     * Note: this method currently has no effect once the pool has been
+     * initialized.  The pool is initialized the first time one of the
+     * following methods is invoked: <code>getConnection, setLogwriter,
+     * setLoginTimeout, getLoginTimeout, getLogWriter.</code></p>
+     *
+     * @param stripSqlComments true to remove comments
+     * @since 2.2
+     */
+    public void setStripSqlComments(final boolean stripSqlComments) {
+        this.stripSqlComments = stripSqlComments;
+    }
+
+    private volatile SqlCanonicalizer sqlCanonicalizer = null;
+
+    /**
+     * Returns the custom SQL canonicalizer, if any.
+     *
+     * @return the canonicalizer set with
+     *         {@link #setSqlCanonicalizer(SqlCanonicalizer)}, or null
+     * @since 2.2
+     */
+    public SqlCanonicalizer getSqlCanonicalizer() {
+        return sqlCanonicalizer;
+    }
+
+    /**
+     * <p>Sets a custom canonicalizer applied to SQL before it is used as a
+     * prepared statement pool key. It is used in place of the one configured
+     * by {@link #setCanonicalizeSql(boolean)}.</p>
+     * <p>
+     * Note: this method currently has no effect once the pool has been
+     * initialized.  The pool is initialized the first time one of the
+     * following methods is invoked: <code>getConnection, setLogwriter,
+     * setLoginTimeout, getLoginTimeout, getLogWriter.</code></p>
+     *
+     * @param sqlCanonicalizer the canonicalizer, or null
+     * @since 2.2
+     */
+    public void setSqlCanonicalizer(final SqlCanonicalizer sqlCanonicalizer) {
+        this.sqlCanonicalizer = sqlCanonicalizer;
+    }
+
+    /**
+     * Returns the canonicalizer for a new pool: the custom one if set, else
+     * the default one if canonicalization is enabled.
+     *
+     * @return the SQL canonicalizer, or null if SQL is only trimmed
+     * @since 2.2
+     */
+    protected SqlCanonicalizer createSqlCanonicalizer() {
+        if (sqlCanonicalizer != null) {
+            return sqlCanonicalizer;
+        }
+        if (canonicalizeSql) {
+            return new DefaultSqlCanonicalizer(stripSqlComments,
+                    DefaultSqlCanonicalizer.DEFAULT_MAX_CACHED_STATEMENTS);
+        }
+        return null;
+    }
+
+    private volatile int prewarmStatementCount = 0;
+
+    /**
+     * Returns the number of most used prepared statements that are prepared
+     * on each new connection.
+     *
+     * @return the number of statements pre-warmed, zero if disabled
+     * @since 2.2
+     */
+    @Override
+    public int getPrewarmStatementCount() {
+        return prewarmStatementCount;
+    }
+
+    /**
+     * <p>Sets the number of prepared statements prepared on each new
+     * connection before it is added to the pool. The pool counts how often
+     * each pooled statement is used across all its connections, and new
+     * connections, for example those replacing connections lost in a
+     * reconnect storm, prepare the most used ones so that their first
+     * executions do not pay for a parse on the server. Has no effect unless
+     * {@link #isPoolPreparedStatements()} is true. The count should not
+     * exceed {@link #getMaxOpenPreparedStatements()}.</p>
+     * <p>
+     * The statements are prepared while the connection is created, so a
+     * {@link #getConnection()} call that has to create a connection waits
+     * for them too. Set {@link #getMinIdle() minIdle} (with the evictor
+     * running) or {@link #getInitialSize() initialSize} to have connections
+     * created, and warmed, ahead of the borrowers that need them.</p>
+     * <p>
+     * Note: this method currently has no effect once the pool has been
+     * initialized.  The pool is initialized the first time one of the
+     * following methods is invoked: <code>getConnection, setLogwriter,
+     * setLoginTimeout, getLoginTimeout, getLogWriter.</code></p>
+     *
+     * @param prewarmStatementCount the number of statements to pre-warm,
+     *        zero to disable
+     * @since 2.2
+     */
+    public void setPrewarmStatementCount(final int prewarmStatementCount) {
+        this.prewarmStatementCount = prewarmStatementCount;
+    }
+
+    private volatile String warmupSnapshotFile = null;
+
+    /**
+     * Returns the path of the file the pool saves its demand to.
+     *
+     * @return the warm-up snapshot file, null if disabled
+     * @since 2.2
+     */
+    @Override
+    public String getWarmupSnapshotFile() {
+        return warmupSnapshotFile;
+    }
+
+    /**
+     * <p>Sets the path of a local file the pool periodically saves its
+     * demand to: the peak number of active connections and, if
+     * {@link #getPrewarmStatementCount()} is positive, the most used prepared
+     * statements. When the pool is initialized it reads the file, opens at
+     * least as many connections as the saved peak, up to
+     * {@link #getMaxTotal()}, instead of only {@link #getInitialSize()}, and
+     * prepares the saved statements on new connections, so that a restarted
+     * application does not begin with a cold pool. Files written in an older
+     * format, for another URL or user name, or more than a week ago are
+     * ignored.</p>
+     * <p>
+     * Note: this method currently has no effect once the pool has been
+     * initialized.  The pool is initialized the first time one of the
+     * following methods is invoked: <code>getConnection, setLogwriter,
+     * setLoginTimeout, getLoginTimeout, getLogWriter.</code></p>
+     *
+     * @param warmupSnapshotFile the path of the snapshot file, null to
+     *        disable
+     * @since 2.2
+     */
+    public void setWarmupSnapshotFile(final String warmupSnapshotFile) {
+        if (warmupSnapshotFile == null || warmupSnapshotFile.trim().isEmpty()) {
+            this.warmupSnapshotFile = null;
+        } else {
+            this.warmupSnapshotFile = warmupSnapshotFile;
+        }
+    }
+
+    private volatile long warmupSnapshotIntervalMillis = 5 * 60 * 1000L;
+
+    /**
+     * Returns the time between writes of the warm-up snapshot.
+     *
+     * @return the interval in milliseconds
+     * @since 2.2
+     */
+    @Override
+    public long getWarmupSnapshotIntervalMillis() {
+        return warmupSnapshotIntervalMillis;
+    }
+
+    /**
+     * <p>Sets the time between writes of the warm-up snapshot, five minutes
+     * by default. The snapshot is also written when the pool is closed. A
+     * value that is not positive disables the periodic writes.</p>
+     * <p>
+     * Note: this method currently has no effect once the pool has been
+     * initialized.  The pool is initialized the first time one of the
+     * following methods is invoked: <code>getConnection, setLogwriter,
+     * setLoginTimeout, getLoginTimeout, getLogWriter.</code></p>
+     *
+     * @param warmupSnapshotIntervalMillis the interval in milliseconds
+     * @see #setWarmupSnapshotFile(String)
+     * @since 2.2
+     */
+    public void setWarmupSnapshotIntervalMillis(final long warmupSnapshotIntervalMillis) {
+        this.warmupSnapshotIntervalMillis = warmupSnapshotIntervalMillis;
+    }
+
     /**
      * The default "catalog" of connections created by this pool.
      */
@@ -283,7 +714,7 @@ public class BasicDataSource implements DataSource, BasicDataSourceMXBean, MBean
     /**
      * The instance of the JDBC Driver to use.
      */
-    private Driver driver = null;
+    private volatile Driver driver = null;
 
     /**
      * Returns the JDBC Driver that has been configured for use by this pool.
@@ -295,7 +726,7 @@ public class BasicDataSource implements DataSource, BasicDataSourceMXBean, MBean
      *
      * @return the JDBC Driver that has been configured for use by this pool
      */
-    public synchronized Driver getDriver() {
+    public Driver getDriver() {
         return driver;
     }
 
@@ -309,14 +740,14 @@ public class BasicDataSource implements DataSource, BasicDataSourceMXBean, MBean
      *
      * @param driver
      */
-    public synchronized void setDriver(final Driver driver) {
+    public void setDriver(final Driver driver) {
         this.driver = driver;
     }
 
     /**
      * The fully qualified Java class name of the JDBC driver to be used.
      */
-    private String driverClassName = null;
+    private volatile String driverClassName = null;
 
     /**
      * Returns the JDBC driver class name.
@@ -328,7 +759,7 @@ public class BasicDataSource implements DataSource, BasicDataSourceMXBean, MBean
      * @return the JDBC driver class name
      */
     @Override
-    public synchronized String getDriverClassName() {
+    public String getDriverClassName() {
         return this.driverClassName;
     }
 
@@ -342,7 +773,7 @@ public class BasicDataSource implements DataSource, BasicDataSourceMXBean, MBean
      *
      * @param driverClassName the class name of the JDBC driver
      */
-    public synchronized void setDriverClassName(final String driverClassName) {
+    public void setDriverClassName(final String driverClassName) {
         if (driverClassName != null && driverClassName.trim().length() > 0) {
             this.driverClassName = driverClassName;
         }
@@ -357,7 +788,7 @@ public class BasicDataSource implements DataSource, BasicDataSourceMXBean, MBean
      * If specified, {@link Class#forName(String, boolean, ClassLoader)} is
      * used.
      */
-    private ClassLoader driverClassLoader = null;
+    private volatile ClassLoader driverClassLoader = null;
 
     /**
      * Returns the class loader specified for loading the JDBC driver. Returns
@@ -368,7 +799,7 @@ public class BasicDataSource implements DataSource, BasicDataSourceMXBean, MBean
      * loader of any driver that may have been set via
      * {@link #setDriver(Driver)}.
      */
-    public synchronized ClassLoader getDriverClassLoader() {
+    public ClassLoader getDriverClassLoader() {
         return this.driverClassLoader;
     }
 
@@ -383,7 +814,7 @@ public class BasicDataSource implements DataSource, BasicDataSourceMXBean, MBean
      * @param driverClassLoader the class loader with which to load the JDBC
      *                          driver
      */
-    public synchronized void setDriverClassLoader(
+    public void setDriverClassLoader(
             final ClassLoader driverClassLoader) {
         this.driverClassLoader = driverClassLoader;
     }
@@ -394,7 +825,7 @@ public class BasicDataSource implements DataSource, BasicDataSourceMXBean, MBean
      * means that the pool behaves as a FIFO queue - connections are taken from
      * the idle instance pool in the order that they are returned to the pool.
      */
-    private boolean lifo = BaseObjectPoolConfig.DEFAULT_LIFO;
+    private volatile boolean lifo = BaseObjectPoolConfig.DEFAULT_LIFO;
 
     /**
      * Returns the LIFO property.
@@ -402,7 +833,7 @@ public class BasicDataSource implements DataSource, BasicDataSourceMXBean, MBean
      * @return true if connection pool behaves as a LIFO queue.
      */
     @Override
-    public synchronized boolean getLifo() {
+    public boolean getLifo() {
         return this.lifo;
     }
 
@@ -413,10 +844,15 @@ public class BasicDataSource implements DataSource, BasicDataSourceMXBean, MBean
      * @param lifo the new value for the LIFO property
      *
      */
-    public synchronized void setLifo(final boolean lifo) {
-        this.lifo = lifo;
-        if (connectionPool != null) {
-            connectionPool.setLifo(lifo);
+    public void setLifo(final boolean lifo) {
+        lock.lock();
+        try {
+            this.lifo = lifo;
+            for (final GenericObjectPool<PoolableConnection> pool : getPartitions()) {
+                pool.setLifo(lifo);
+            }
+        } finally {
+            lock.unlock();
         }
     }
 
@@ -424,7 +860,7 @@ public class BasicDataSource implements DataSource, BasicDataSourceMXBean, MBean
      * The maximum number of active connections that can be allocated from
      * this pool at the same time, or negative for no limit.
      */
-    private int maxTotal = GenericObjectPoolConfig.DEFAULT_MAX_TOTAL;
+    private volatile int maxTotal = GenericObjectPoolConfig.DEFAULT_MAX_TOTAL;
 
     /**
      * <p>Returns the maximum number of active connections that can be
@@ -435,7 +871,7 @@ public class BasicDataSource implements DataSource, BasicDataSourceMXBean, MBean
      * @return the maximum number of active connections
      */
     @Override
-    public synchronized int getMaxTotal() {
+    public int getMaxTotal() {
         return this.maxTotal;
     }
 
@@ -446,10 +882,16 @@ public class BasicDataSource implements DataSource, BasicDataSourceMXBean, MBean
      * @param maxTotal the new value for maxTotal
      * @see #getMaxTotal()
      */
-    public synchronized void setMaxTotal(final int maxTotal) {
-        this.maxTotal = maxTotal;
-        if (connectionPool != null) {
-            connectionPool.setMaxTotal(maxTotal);
+    public void setMaxTotal(final int maxTotal) {
+        lock.lock();
+        try {
+            this.maxTotal = maxTotal;
+            final List<GenericObjectPool<PoolableConnection>> partitions = getPartitions();
+            for (int i = 0; i < partitions.size(); i++) {
+                partitions.get(i).setMaxTotal(PartitionedObjectPool.share(maxTotal, i, partitions.size()));
+            }
+        } finally {
+            lock.unlock();
         }
     }
 
@@ -463,7 +905,7 @@ public class BasicDataSource implements DataSource, BasicDataSourceMXBean, MBean
      * connections to rise above maxIdle. The best value for maxIdle for heavily
      * loaded system will vary but the default is a good starting point.
      */
-    private int maxIdle = GenericObjectPoolConfig.DEFAULT_MAX_IDLE;
+    private volatile int maxIdle = GenericObjectPoolConfig.DEFAULT_MAX_IDLE;
 
     /**
      * <p>Returns the maximum number of connections that can remain idle in the
@@ -474,7 +916,7 @@ public class BasicDataSource implements DataSource, BasicDataSourceMXBean, MBean
      * @return the maximum number of idle connections
      */
     @Override
-    public synchronized int getMaxIdle() {
+    public int getMaxIdle() {
         return this.maxIdle;
     }
 
@@ -485,10 +927,16 @@ public class BasicDataSource implements DataSource, BasicDataSourceMXBean, MBean
      * @see #getMaxIdle()
      * @param maxIdle the new value for maxIdle
      */
-    public synchronized void setMaxIdle(final int maxIdle) {
-        this.maxIdle = maxIdle;
-        if (connectionPool != null) {
-            connectionPool.setMaxIdle(maxIdle);
+    public void setMaxIdle(final int maxIdle) {
+        lock.lock();
+        try {
+            this.maxIdle = maxIdle;
+            final List<GenericObjectPool<PoolableConnection>> partitions = getPartitions();
+            for (int i = 0; i < partitions.size(); i++) {
+                partitions.get(i).setMaxIdle(PartitionedObjectPool.share(maxIdle, i, partitions.size()));
+            }
+        } finally {
+            lock.unlock();
         }
     }
 
@@ -499,7 +947,7 @@ public class BasicDataSource implements DataSource, BasicDataSourceMXBean, MBean
      * runs. The value of this property has no effect unless {@link #timeBetweenEvictionRunsMillis}
      * has a positive value.
      */
-    private int minIdle = GenericObjectPoolConfig.DEFAULT_MIN_IDLE;
+    private volatile int minIdle = GenericObjectPoolConfig.DEFAULT_MIN_IDLE;
 
     /**
      * Returns the minimum number of idle connections in the pool. The pool attempts
@@ -511,7 +959,7 @@ public class BasicDataSource implements DataSource, BasicDataSourceMXBean, MBean
      * @see GenericObjectPool#getMinIdle()
      */
     @Override
-    public synchronized int getMinIdle() {
+    public int getMinIdle() {
         return this.minIdle;
     }
 
@@ -524,18 +972,24 @@ public class BasicDataSource implements DataSource, BasicDataSourceMXBean, MBean
      * @param minIdle the new value for minIdle
      * @see GenericObjectPool#setMinIdle(int)
      */
-    public synchronized void setMinIdle(final int minIdle) {
-       this.minIdle = minIdle;
-       if (connectionPool != null) {
-           connectionPool.setMinIdle(minIdle);
-       }
+    public void setMinIdle(final int minIdle) {
+        lock.lock();
+        try {
+            this.minIdle = minIdle;
+            final List<GenericObjectPool<PoolableConnection>> partitions = getPartitions();
+            for (int i = 0; i < partitions.size(); i++) {
+                partitions.get(i).setMinIdle(PartitionedObjectPool.share(minIdle, i, partitions.size()));
+            }
+        } finally {
+            lock.unlock();
+        }
     }
 
     /**
      * The initial number of connections that are created when the pool
      * is started.
      */
-    private int initialSize = 0;
+    private volatile int initialSize = 0;
 
     /**
      * Returns the initial size of the connection pool.
@@ -543,7 +997,7 @@ public class BasicDataSource implements DataSource, BasicDataSourceMXBean, MBean
      * @return the number of connections created when the pool is initialized
      */
     @Override
-    public synchronized int getInitialSize() {
+    public int getInitialSize() {
         return this.initialSize;
     }
 
@@ -558,7 +1012,7 @@ public class BasicDataSource implements DataSource, BasicDataSourceMXBean, MBean
      * @param initialSize the number of connections created when the pool
      * is initialized
      */
-    public synchronized void setInitialSize(final int initialSize) {
+    public void setInitialSize(final int initialSize) {
         this.initialSize = initialSize;
     }
 
@@ -567,7 +1021,7 @@ public class BasicDataSource implements DataSource, BasicDataSourceMXBean, MBean
      * are no available connections) for a connection to be returned before
      * throwing an exception, or <= 0 to wait indefinitely.
      */
-    private long maxWaitMillis =
+    private volatile long maxWaitMillis =
             BaseObjectPoolConfig.DEFAULT_MAX_WAIT_MILLIS;
 
     /**
@@ -578,7 +1032,7 @@ public class BasicDataSource implements DataSource, BasicDataSourceMXBean, MBean
      * @return the maxWaitMillis property value
      */
     @Override
-    public synchronized long getMaxWaitMillis() {
+    public long getMaxWaitMillis() {
         return this.maxWaitMillis;
     }
 
@@ -589,10 +1043,15 @@ public class BasicDataSource implements DataSource, BasicDataSourceMXBean, MBean
      * @param maxWaitMillis the new value for MaxWaitMillis
      * @see #getMaxWaitMillis()
      */
-    public synchronized void setMaxWaitMillis(final long maxWaitMillis) {
-        this.maxWaitMillis = maxWaitMillis;
-        if (connectionPool != null) {
-            connectionPool.setMaxWaitMillis(maxWaitMillis);
+    public void setMaxWaitMillis(final long maxWaitMillis) {
+        lock.lock();
+        try {
+            this.maxWaitMillis = maxWaitMillis;
+            for (final GenericObjectPool<PoolableConnection> pool : getPartitions()) {
+                pool.setMaxWaitMillis(maxWaitMillis);
+            }
+        } finally {
+            lock.unlock();
         }
     }
 
@@ -600,7 +1059,7 @@ public class BasicDataSource implements DataSource, BasicDataSourceMXBean, MBean
      * Prepared statement pooling for this pool. When this property is set to <code>true</code>
      * both PreparedStatements and CallableStatements are pooled.
      */
-    private boolean poolPreparedStatements = false;
+    private volatile boolean poolPreparedStatements = false;
 
     /**
      * Returns true if we are pooling statements.
@@ -608,7 +1067,7 @@ public class BasicDataSource implements DataSource, BasicDataSourceMXBean, MBean
      * @return true if prepared and callable statements are pooled
      */
     @Override
-    public synchronized boolean isPoolPreparedStatements() {
+    public boolean isPoolPreparedStatements() {
         return this.poolPreparedStatements;
     }
 
@@ -622,7 +1081,7 @@ public class BasicDataSource implements DataSource, BasicDataSourceMXBean, MBean
      *
      * @param poolingStatements pooling on or off
      */
-    public synchronized void setPoolPreparedStatements(final boolean poolingStatements) {
+    public void setPoolPreparedStatements(final boolean poolingStatements) {
         this.poolPreparedStatements = poolingStatements;
     }
 
@@ -637,7 +1096,7 @@ public class BasicDataSource implements DataSource, BasicDataSourceMXBean, MBean
      * and <code>maxOpenPreparedStatements</code> limits the total number of prepared or callable statements
      * that may be in use at a given time.</p>
      */
-    private int maxOpenPreparedStatements =
+    private volatile int maxOpenPreparedStatements =
         GenericKeyedObjectPoolConfig.DEFAULT_MAX_TOTAL;
 
     /**
@@ -646,7 +1105,7 @@ public class BasicDataSource implements DataSource, BasicDataSourceMXBean, MBean
      * @return the maximum number of open statements
      */
     @Override
-    public synchronized int getMaxOpenPreparedStatements() {
+    public int getMaxOpenPreparedStatements() {
         return this.maxOpenPreparedStatements;
     }
 
@@ -661,7 +1120,7 @@ public class BasicDataSource implements DataSource, BasicDataSourceMXBean, MBean
      *
      * @param maxOpenStatements the new maximum number of prepared statements
      */
-    public synchronized void setMaxOpenPreparedStatements(final int maxOpenStatements) {
+    public void setMaxOpenPreparedStatements(final int maxOpenStatements) {
         this.maxOpenPreparedStatements = maxOpenStatements;
     }
 
@@ -670,7 +1129,7 @@ public class BasicDataSource implements DataSource, BasicDataSourceMXBean, MBean
      * been created by the pool. If the object fails to validate, the borrow
      * operation that triggered the creation will fail.
      */
-    private boolean testOnCreate = false;
+    private volatile boolean testOnCreate = false;
 
     /**
      * Returns the {@link #testOnCreate} property.
@@ -681,7 +1140,7 @@ public class BasicDataSource implements DataSource, BasicDataSourceMXBean, MBean
      * @see #testOnCreate
      */
     @Override
-    public synchronized boolean getTestOnCreate() {
+    public boolean getTestOnCreate() {
         return this.testOnCreate;
     }
 
@@ -692,10 +1151,15 @@ public class BasicDataSource implements DataSource, BasicDataSourceMXBean, MBean
      *
      * @param testOnCreate new value for testOnCreate property
      */
-    public synchronized void setTestOnCreate(final boolean testOnCreate) {
-        this.testOnCreate = testOnCreate;
-        if (connectionPool != null) {
-            connectionPool.setTestOnCreate(testOnCreate);
+    public void setTestOnCreate(final boolean testOnCreate) {
+        lock.lock();
+        try {
+            this.testOnCreate = testOnCreate;
+            for (final GenericObjectPool<PoolableConnection> pool : getPartitions()) {
+                pool.setTestOnCreate(testOnCreate);
+            }
+        } finally {
+            lock.unlock();
         }
     }
 
@@ -704,7 +1168,7 @@ public class BasicDataSource implements DataSource, BasicDataSourceMXBean, MBean
      * borrowed from the pool.  If the object fails to validate, it will be
      * dropped from the pool, and we will attempt to borrow another.
      */
-    private boolean testOnBorrow = true;
+    private volatile boolean testOnBorrow = true;
 
     /**
      * Returns the {@link #testOnBorrow} property.
@@ -715,7 +1179,7 @@ public class BasicDataSource implements DataSource, BasicDataSourceMXBean, MBean
      * @see #testOnBorrow
      */
     @Override
-    public synchronized boolean getTestOnBorrow() {
+    public boolean getTestOnBorrow() {
         return this.testOnBorrow;
     }
 
@@ -726,10 +1190,15 @@ public class BasicDataSource implements DataSource, BasicDataSourceMXBean, MBean
      *
      * @param testOnBorrow new value for testOnBorrow property
      */
-    public synchronized void setTestOnBorrow(final boolean testOnBorrow) {
-        this.testOnBorrow = testOnBorrow;
-        if (connectionPool != null) {
-            connectionPool.setTestOnBorrow(testOnBorrow);
+    public void setTestOnBorrow(final boolean testOnBorrow) {
+        lock.lock();
+        try {
+            this.testOnBorrow = testOnBorrow;
+            for (final GenericObjectPool<PoolableConnection> pool : getPartitions()) {
+                pool.setTestOnBorrow(testOnBorrow);
+            }
+        } finally {
+            lock.unlock();
         }
     }
 
@@ -737,7 +1206,7 @@ public class BasicDataSource implements DataSource, BasicDataSourceMXBean, MBean
      * The indication of whether objects will be validated before being
      * returned to the pool.
      */
-    private boolean testOnReturn = false;
+    private volatile boolean testOnReturn = false;
 
     /**
      * Returns the value of the {@link #testOnReturn} property.
@@ -746,7 +1215,7 @@ public class BasicDataSource implements DataSource, BasicDataSourceMXBean, MBean
      * pool
      * @see #testOnReturn
      */
-    public synchronized boolean getTestOnReturn() {
+    public boolean getTestOnReturn() {
         return this.testOnReturn;
     }
 
@@ -757,10 +1226,15 @@ public class BasicDataSource implements DataSource, BasicDataSourceMXBean, MBean
      *
      * @param testOnReturn new value for testOnReturn property
      */
-    public synchronized void setTestOnReturn(final boolean testOnReturn) {
-        this.testOnReturn = testOnReturn;
-        if (connectionPool != null) {
-            connectionPool.setTestOnReturn(testOnReturn);
+    public void setTestOnReturn(final boolean testOnReturn) {
+        lock.lock();
+        try {
+            this.testOnReturn = testOnReturn;
+            for (final GenericObjectPool<PoolableConnection> pool : getPartitions()) {
+                pool.setTestOnReturn(testOnReturn);
+            }
+        } finally {
+            lock.unlock();
         }
     }
 
@@ -769,7 +1243,7 @@ public class BasicDataSource implements DataSource, BasicDataSourceMXBean, MBean
      * evictor thread.  When non-positive, no idle object evictor thread will
      * be run.
      */
-    private long timeBetweenEvictionRunsMillis =
+    private volatile long timeBetweenEvictionRunsMillis =
         BaseObjectPoolConfig.DEFAULT_TIME_BETWEEN_EVICTION_RUNS_MILLIS;
 
     /**
@@ -780,7 +1254,7 @@ public class BasicDataSource implements DataSource, BasicDataSourceMXBean, MBean
      * @see #timeBetweenEvictionRunsMillis
      */
     @Override
-    public synchronized long getTimeBetweenEvictionRunsMillis() {
+    public long getTimeBetweenEvictionRunsMillis() {
         return this.timeBetweenEvictionRunsMillis;
     }
 
@@ -790,10 +1264,15 @@ public class BasicDataSource implements DataSource, BasicDataSourceMXBean, MBean
      * @param timeBetweenEvictionRunsMillis the new time between evictor runs
      * @see #timeBetweenEvictionRunsMillis
      */
-    public synchronized void setTimeBetweenEvictionRunsMillis(final long timeBetweenEvictionRunsMillis) {
-        this.timeBetweenEvictionRunsMillis = timeBetweenEvictionRunsMillis;
-        if (connectionPool != null) {
-            connectionPool.setTimeBetweenEvictionRunsMillis(timeBetweenEvictionRunsMillis);
+    public void setTimeBetweenEvictionRunsMillis(final long timeBetweenEvictionRunsMillis) {
+        lock.lock();
+        try {
+            this.timeBetweenEvictionRunsMillis = timeBetweenEvictionRunsMillis;
+            for (final GenericObjectPool<PoolableConnection> pool : getPartitions()) {
+                pool.setTimeBetweenEvictionRunsMillis(timeBetweenEvictionRunsMillis);
+            }
+        } finally {
+            lock.unlock();
         }
     }
 
@@ -801,7 +1280,7 @@ public class BasicDataSource implements DataSource, BasicDataSourceMXBean, MBean
      * The number of objects to examine during each run of the idle object
      * evictor thread (if any).
      */
-    private int numTestsPerEvictionRun =
+    private volatile int numTestsPerEvictionRun =
         BaseObjectPoolConfig.DEFAULT_NUM_TESTS_PER_EVICTION_RUN;
 
     /**
@@ -812,7 +1291,7 @@ public class BasicDataSource implements DataSource, BasicDataSourceMXBean, MBean
      * @see #numTestsPerEvictionRun
      */
     @Override
-    public synchronized int getNumTestsPerEvictionRun() {
+    public int getNumTestsPerEvictionRun() {
         return this.numTestsPerEvictionRun;
     }
 
@@ -823,10 +1302,15 @@ public class BasicDataSource implements DataSource, BasicDataSourceMXBean, MBean
      * value
      * @see #numTestsPerEvictionRun
      */
-    public synchronized void setNumTestsPerEvictionRun(final int numTestsPerEvictionRun) {
-        this.numTestsPerEvictionRun = numTestsPerEvictionRun;
-        if (connectionPool != null) {
-            connectionPool.setNumTestsPerEvictionRun(numTestsPerEvictionRun);
+    public void setNumTestsPerEvictionRun(final int numTestsPerEvictionRun) {
+        lock.lock();
+        try {
+            this.numTestsPerEvictionRun = numTestsPerEvictionRun;
+            for (final GenericObjectPool<PoolableConnection> pool : getPartitions()) {
+                pool.setNumTestsPerEvictionRun(numTestsPerEvictionRun);
+            }
+        } finally {
+            lock.unlock();
         }
     }
 
@@ -834,7 +1318,7 @@ public class BasicDataSource implements DataSource, BasicDataSourceMXBean, MBean
      * The minimum amount of time an object may sit idle in the pool before it
      * is eligible for eviction by the idle object evictor (if any).
      */
-    private long minEvictableIdleTimeMillis =
+    private volatile long minEvictableIdleTimeMillis =
         BaseObjectPoolConfig.DEFAULT_MIN_EVICTABLE_IDLE_TIME_MILLIS;
 
     /**
@@ -844,7 +1328,7 @@ public class BasicDataSource implements DataSource, BasicDataSourceMXBean, MBean
      * @see #minEvictableIdleTimeMillis
      */
     @Override
-    public synchronized long getMinEvictableIdleTimeMillis() {
+    public long getMinEvictableIdleTimeMillis() {
         return this.minEvictableIdleTimeMillis;
     }
 
@@ -855,10 +1339,15 @@ public class BasicDataSource implements DataSource, BasicDataSourceMXBean, MBean
      * may sit idle in the pool
      * @see #minEvictableIdleTimeMillis
      */
-    public synchronized void setMinEvictableIdleTimeMillis(final long minEvictableIdleTimeMillis) {
-        this.minEvictableIdleTimeMillis = minEvictableIdleTimeMillis;
-        if (connectionPool != null) {
-            connectionPool.setMinEvictableIdleTimeMillis(minEvictableIdleTimeMillis);
+    public void setMinEvictableIdleTimeMillis(final long minEvictableIdleTimeMillis) {
+        lock.lock();
+        try {
+            this.minEvictableIdleTimeMillis = minEvictableIdleTimeMillis;
+            for (final GenericObjectPool<PoolableConnection> pool : getPartitions()) {
+                pool.setMinEvictableIdleTimeMillis(minEvictableIdleTimeMillis);
+            }
+        } finally {
+            lock.unlock();
         }
     }
 
@@ -869,7 +1358,7 @@ public class BasicDataSource implements DataSource, BasicDataSourceMXBean, MBean
      * Note that {@code minEvictableIdleTimeMillis} takes precedence over this
      * parameter.  See {@link #getSoftMinEvictableIdleTimeMillis()}.
      */
-    private long softMinEvictableIdleTimeMillis =
+    private volatile long softMinEvictableIdleTimeMillis =
         BaseObjectPoolConfig.DEFAULT_SOFT_MIN_EVICTABLE_IDLE_TIME_MILLIS;
 
     /**
@@ -882,10 +1371,15 @@ public class BasicDataSource implements DataSource, BasicDataSourceMXBean, MBean
      * assuming there are minIdle idle connections in the pool.
      * @see #getSoftMinEvictableIdleTimeMillis
      */
-    public synchronized void setSoftMinEvictableIdleTimeMillis(final long softMinEvictableIdleTimeMillis) {
-        this.softMinEvictableIdleTimeMillis = softMinEvictableIdleTimeMillis;
-        if (connectionPool != null) {
-            connectionPool.setSoftMinEvictableIdleTimeMillis(softMinEvictableIdleTimeMillis);
+    public void setSoftMinEvictableIdleTimeMillis(final long softMinEvictableIdleTimeMillis) {
+        lock.lock();
+        try {
+            this.softMinEvictableIdleTimeMillis = softMinEvictableIdleTimeMillis;
+            for (final GenericObjectPool<PoolableConnection> pool : getPartitions()) {
+                pool.setSoftMinEvictableIdleTimeMillis(softMinEvictableIdleTimeMillis);
+            }
+        } finally {
+            lock.unlock();
         }
     }
 
@@ -909,17 +1403,17 @@ public class BasicDataSource implements DataSource, BasicDataSourceMXBean, MBean
      * in the pool
      */
     @Override
-    public synchronized long getSoftMinEvictableIdleTimeMillis() {
+    public long getSoftMinEvictableIdleTimeMillis() {
         return softMinEvictableIdleTimeMillis;
     }
 
-    private String evictionPolicyClassName =
+    private volatile String evictionPolicyClassName =
             BaseObjectPoolConfig.DEFAULT_EVICTION_POLICY_CLASS_NAME;
 
     /**
      * Gets the EvictionPolicy implementation in use with this connection pool.
      */
-    public synchronized String getEvictionPolicyClassName() {
+    public String getEvictionPolicyClassName() {
         return evictionPolicyClassName;
     }
 
@@ -929,12 +1423,17 @@ public class BasicDataSource implements DataSource, BasicDataSourceMXBean, MBean
      * @param evictionPolicyClassName   The fully qualified class name of the
      *                                  EvictionPolicy implementation
      */
-    public synchronized void setEvictionPolicyClassName(
+    public void setEvictionPolicyClassName(
             final String evictionPolicyClassName) {
-        if (connectionPool != null) {
-            connectionPool.setEvictionPolicyClassName(evictionPolicyClassName);
+        lock.lock();
+        try {
+            for (final GenericObjectPool<PoolableConnection> pool : getPartitions()) {
+                pool.setEvictionPolicyClassName(evictionPolicyClassName);
+            }
+            this.evictionPolicyClassName = evictionPolicyClassName;
+        } finally {
+            lock.unlock();
         }
-        this.evictionPolicyClassName = evictionPolicyClassName;
     }
 
     /**
@@ -942,7 +1441,7 @@ public class BasicDataSource implements DataSource, BasicDataSourceMXBean, MBean
      * evictor (if any).  If an object fails to validate, it will be dropped
      * from the pool.
      */
-    private boolean testWhileIdle = false;
+    private volatile boolean testWhileIdle = false;
 
     /**
      * Returns the value of the {@link #testWhileIdle} property.
@@ -952,7 +1451,7 @@ public class BasicDataSource implements DataSource, BasicDataSourceMXBean, MBean
      * @see #testWhileIdle
      */
     @Override
-    public synchronized boolean getTestWhileIdle() {
+    public boolean getTestWhileIdle() {
         return this.testWhileIdle;
     }
 
@@ -962,10 +1461,15 @@ public class BasicDataSource implements DataSource, BasicDataSourceMXBean, MBean
      *
      * @param testWhileIdle new value for testWhileIdle property
      */
-    public synchronized void setTestWhileIdle(final boolean testWhileIdle) {
-        this.testWhileIdle = testWhileIdle;
-        if (connectionPool != null) {
-            connectionPool.setTestWhileIdle(testWhileIdle);
+    public void setTestWhileIdle(final boolean testWhileIdle) {
+        lock.lock();
+        try {
+            this.testWhileIdle = testWhileIdle;
+            for (final GenericObjectPool<PoolableConnection> pool : getPartitions()) {
+                pool.setTestWhileIdle(testWhileIdle);
+            }
+        } finally {
+            lock.unlock();
         }
     }
 
@@ -977,12 +1481,11 @@ public class BasicDataSource implements DataSource, BasicDataSourceMXBean, MBean
      */
     @Override
     public int getNumActive() {
-        // Copy reference to avoid NPE if close happens after null check
-        final GenericObjectPool<PoolableConnection> pool = connectionPool;
-        if (pool != null) {
-            return pool.getNumActive();
+        int count = 0;
+        for (final GenericObjectPool<PoolableConnection> pool : getPartitions()) {
+            count += pool.getNumActive();
         }
-        return 0;
+        return count;
     }
 
 
@@ -994,12 +1497,11 @@ public class BasicDataSource implements DataSource, BasicDataSourceMXBean, MBean
      */
     @Override
     public int getNumIdle() {
-        // Copy reference to avoid NPE if close happens after null check
-        final GenericObjectPool<PoolableConnection> pool = connectionPool;
-        if (pool != null) {
-            return pool.getNumIdle();
+        int count = 0;
+        for (final GenericObjectPool<PoolableConnection> pool : getPartitions()) {
+            count += pool.getNumIdle();
         }
-        return 0;
+        return count;
     }
 
     /**
@@ -1036,7 +1538,7 @@ public class BasicDataSource implements DataSource, BasicDataSourceMXBean, MBean
      * The connection URL to be passed to our JDBC driver to establish
      * a connection.
      */
-    private String url = null;
+    private volatile String url = null;
 
     /**
      * Returns the JDBC connection {@link #url} property.
@@ -1045,7 +1547,7 @@ public class BasicDataSource implements DataSource, BasicDataSourceMXBean, MBean
      * connections
      */
     @Override
-    public synchronized String getUrl() {
+    public String getUrl() {
         return this.url;
     }
 
@@ -1059,7 +1561,7 @@ public class BasicDataSource implements DataSource, BasicDataSourceMXBean, MBean
      *
      * @param url the new value for the JDBC connection url
      */
-    public synchronized void setUrl(final String url) {
+    public void setUrl(final String url) {
         this.url = url;
     }
 
@@ -1233,7 +1735,7 @@ public class BasicDataSource implements DataSource, BasicDataSourceMXBean, MBean
     /**
      * Controls access to the underlying connection.
      */
-    private boolean accessToUnderlyingConnectionAllowed = false;
+    private volatile boolean accessToUnderlyingConnectionAllowed = false;
 
     /**
      * Returns the value of the accessToUnderlyingConnectionAllowed property.
@@ -1242,7 +1744,7 @@ public class BasicDataSource implements DataSource, BasicDataSourceMXBean, MBean
      * otherwise.
      */
     @Override
-    public synchronized boolean isAccessToUnderlyingConnectionAllowed() {
+    public boolean isAccessToUnderlyingConnectionAllowed() {
         return this.accessToUnderlyingConnectionAllowed;
     }
 
@@ -1258,7 +1760,7 @@ public class BasicDataSource implements DataSource, BasicDataSourceMXBean, MBean
      *
      * @param allow Access to the underlying connection is granted when true.
      */
-    public synchronized void setAccessToUnderlyingConnectionAllowed(final boolean allow) {
+    public void setAccessToUnderlyingConnectionAllowed(final boolean allow) {
         this.accessToUnderlyingConnectionAllowed = allow;
     }
 
@@ -1311,19 +1813,94 @@ public class BasicDataSource implements DataSource, BasicDataSourceMXBean, MBean
         this.logExpiredConnections = logExpiredConnections;
     }
 
-    private String jmxName = null;
+    private volatile long maxConnLifetimeJitterMillis = 0;
 
     /**
-     * Returns the JMX name that has been requested for this DataSource. If the
-     * requested name is not valid, an alternative may be chosen.
+     * Returns the upper bound of the random amount by which the maximum
+     * lifetime of each connection is shortened.
+     *
+     * @return the maximum lifetime jitter in milliseconds
+     * @since 2.2
      */
-    public String getJmxName() {
-        return jmxName;
+    @Override
+    public long getMaxConnLifetimeJitterMillis() {
+        return maxConnLifetimeJitterMillis;
     }
 
     /**
-     * Sets the JMX name that has been requested for this DataSource. If the
-     * requested name is not valid, an alternative may be chosen. This
+     * <p>Sets the upper bound of the random amount by which the maximum
+     * lifetime of each connection is shortened. Connections created at the
+     * same time, for example when the pool is warmed up, then expire at
+     * different times instead of all at once. Has no effect unless
+     * {@link #getMaxConnLifetimeMillis()} is positive.</p>
+     * <p>
+     * Note: this method currently has no effect once the pool has been
+     * initialized.  The pool is initialized the first time one of the
+     * following methods is invoked: <code>getConnection, setLogwriter,
+     * setLoginTimeout, getLoginTimeout, getLogWriter.</code></p>
+     *
+     * @param maxConnLifetimeJitterMillis the maximum lifetime jitter in
+     *        milliseconds
+     * @since 2.2
+     */
+    public void setMaxConnLifetimeJitterMillis(final long maxConnLifetimeJitterMillis) {
+        this.maxConnLifetimeJitterMillis = maxConnLifetimeJitterMillis;
+    }
+
+    private volatile long maxConnLifetimeRenewalMillis = 0;
+
+    /**
+     * Returns how long before the end of its lifetime an idle connection is
+     * replaced by a new one. A value of zero or less (the default) disables
+     * renewal.
+     *
+     * @return the renewal lead time in milliseconds
+     * @since 2.2
+     */
+    @Override
+    public long getMaxConnLifetimeRenewalMillis() {
+        return maxConnLifetimeRenewalMillis;
+    }
+
+    /**
+     * <p>Sets how long before the end of its lifetime an idle connection is
+     * replaced by a new one. The replacement is created by the evictor
+     * thread, so borrowers do not pay for closing and reopening expired
+     * connections. Has no effect unless {@link #getMaxConnLifetimeMillis()}
+     * and {@link #getTimeBetweenEvictionRunsMillis()} are positive. The
+     * lead time should be longer than the time between eviction runs.</p>
+     * <p>
+     * Renewal is implemented by {@link LifetimeRenewalEvictionPolicy}, which
+     * is used in place of the default eviction policy. If a different
+     * {@link #setEvictionPolicyClassName(String) eviction policy} has been
+     * configured it is left in place and connections are not renewed.</p>
+     * <p>
+     * Note: this method currently has no effect once the pool has been
+     * initialized.  The pool is initialized the first time one of the
+     * following methods is invoked: <code>getConnection, setLogwriter,
+     * setLoginTimeout, getLoginTimeout, getLogWriter.</code></p>
+     *
+     * @param maxConnLifetimeRenewalMillis the renewal lead time in
+     *        milliseconds
+     * @since 2.2
+     */
+    public void setMaxConnLifetimeRenewalMillis(final long maxConnLifetimeRenewalMillis) {
+        this.maxConnLifetimeRenewalMillis = maxConnLifetimeRenewalMillis;
+    }
+
+    private String jmxName = null;
+
+    /**
+     * Returns the JMX name that has been requested for this DataSource. If the
+     * requested name is not valid, an alternative may be chosen.
+     */
+    public String getJmxName() {
+        return jmxName;
+    }
+
+    /**
+     * Sets the JMX name that has been requested for this DataSource. If the
+     * requested name is not valid, an alternative may be chosen. This
      * DataSource will attempt to register itself using this name. If another
      * component registers this DataSource with JMX and this name is valid this
      * name will be used in preference to any specified by the other component.
@@ -1469,6 +2046,394 @@ public class BasicDataSource implements DataSource, BasicDataSourceMXBean, MBean
         this.fastFailValidation = fastFailValidation;
     }
 
+    /**
+     * The number of consecutive connection creation failures after which
+     * further attempts fail immediately, or zero or less to disable the
+     * circuit breaker.
+     */
+    private volatile int circuitBreakerFailureThreshold = 0;
+
+    /**
+     * Returns the number of consecutive physical connection failures after
+     * which new connection attempts fail immediately rather than waiting for
+     * the driver to time out. A value of zero or less (the default) disables
+     * the circuit breaker.
+     *
+     * @return the circuit breaker failure threshold
+     * @see CircuitBreakerConnectionFactory
+     * @since 2.2
+     */
+    @Override
+    public int getCircuitBreakerFailureThreshold() {
+        return circuitBreakerFailureThreshold;
+    }
+
+    /**
+     * <p>Sets the number of consecutive physical connection failures after
+     * which new connection attempts fail immediately. While the breaker is
+     * open a single attempt is allowed through after each back-off period
+     * to check whether the database is reachable again.</p>
+     * <p>
+     * Note: this method currently has no effect once the pool has been
+     * initialized.  The pool is initialized the first time one of the
+     * following methods is invoked: <code>getConnection, setLogwriter,
+     * setLoginTimeout, getLoginTimeout, getLogWriter.</code></p>
+     *
+     * @param circuitBreakerFailureThreshold the failure threshold, zero or
+     *        less to disable the circuit breaker
+     * @since 2.2
+     */
+    public void setCircuitBreakerFailureThreshold(final int circuitBreakerFailureThreshold) {
+        this.circuitBreakerFailureThreshold = circuitBreakerFailureThreshold;
+    }
+
+    private volatile long circuitBreakerInitialBackoffMillis = 1000;
+
+    /**
+     * Returns the time in milliseconds the circuit breaker waits after opening
+     * before allowing the first probe connection attempt.
+     *
+     * @return the initial back-off in milliseconds
+     * @since 2.2
+     */
+    @Override
+    public long getCircuitBreakerInitialBackoffMillis() {
+        return circuitBreakerInitialBackoffMillis;
+    }
+
+    /**
+     * <p>Sets the time in milliseconds the circuit breaker waits after opening
+     * before allowing the first probe connection attempt. The back-off doubles
+     * after each failed probe.</p>
+     * <p>
+     * Note: this method currently has no effect once the pool has been
+     * initialized.  The pool is initialized the first time one of the
+     * following methods is invoked: <code>getConnection, setLogwriter,
+     * setLoginTimeout, getLoginTimeout, getLogWriter.</code></p>
+     *
+     * @param circuitBreakerInitialBackoffMillis the initial back-off
+     * @since 2.2
+     */
+    public void setCircuitBreakerInitialBackoffMillis(final long circuitBreakerInitialBackoffMillis) {
+        this.circuitBreakerInitialBackoffMillis = circuitBreakerInitialBackoffMillis;
+    }
+
+    private volatile long circuitBreakerMaxBackoffMillis = 60000;
+
+    /**
+     * Returns the maximum time in milliseconds between probe connection
+     * attempts while the circuit breaker is open.
+     *
+     * @return the maximum back-off in milliseconds
+     * @since 2.2
+     */
+    @Override
+    public long getCircuitBreakerMaxBackoffMillis() {
+        return circuitBreakerMaxBackoffMillis;
+    }
+
+    /**
+     * <p>Sets the maximum time in milliseconds between probe connection
+     * attempts while the circuit breaker is open.</p>
+     * <p>
+     * Note: this method currently has no effect once the pool has been
+     * initialized.  The pool is initialized the first time one of the
+     * following methods is invoked: <code>getConnection, setLogwriter,
+     * setLoginTimeout, getLoginTimeout, getLogWriter.</code></p>
+     *
+     * @param circuitBreakerMaxBackoffMillis the maximum back-off
+     * @since 2.2
+     */
+    public void setCircuitBreakerMaxBackoffMillis(final long circuitBreakerMaxBackoffMillis) {
+        this.circuitBreakerMaxBackoffMillis = circuitBreakerMaxBackoffMillis;
+    }
+
+    /**
+     * [Read Only] Returns whether the circuit breaker around physical
+     * connection creation is currently open. Always false if the circuit
+     * breaker is disabled or the pool has not been initialized.
+     *
+     * @return true if new physical connections are currently being refused
+     * @since 2.2
+     */
+    @Override
+    public boolean isCircuitBreakerOpen() {
+        final CircuitBreakerConnectionFactory breaker = circuitBreaker;
+        return breaker != null && breaker.isOpen();
+    }
+
+    /**
+     * The maximum number of physical connections created per second, or zero
+     * or less for no limit.
+     */
+    private volatile int connectionCreationRate = 0;
+
+    /**
+     * Returns the maximum number of physical connections this pool creates
+     * per second. A value of zero or less (the default) means connection
+     * creation is not rate limited.
+     *
+     * @return the connection creation rate limit
+     * @see ConnectionCreationRateLimiter
+     * @since 2.2
+     */
+    @Override
+    public int getConnectionCreationRate() {
+        return connectionCreationRate;
+    }
+
+    /**
+     * <p>Sets the maximum number of physical connections this pool creates
+     * per second. Threads that need a new connection while the limit is
+     * exceeded wait for a permit, for at most {@link #getMaxWaitMillis()},
+     * instead of each opening a connection to the database.</p>
+     * <p>
+     * Note: this method currently has no effect once the pool has been
+     * initialized.  The pool is initialized the first time one of the
+     * following methods is invoked: <code>getConnection, setLogwriter,
+     * setLoginTimeout, getLoginTimeout, getLogWriter.</code></p>
+     *
+     * @param connectionCreationRate the connection creation rate limit, zero
+     *        or less for no limit
+     * @since 2.2
+     */
+    public void setConnectionCreationRate(final int connectionCreationRate) {
+        this.connectionCreationRate = connectionCreationRate;
+    }
+
+    private volatile int connectionCreationBurst = 0;
+
+    /**
+     * Returns the number of physical connections that may be created at once
+     * before {@link #getConnectionCreationRate()} applies. A value of zero or
+     * less (the default) means the same as the rate.
+     *
+     * @return the connection creation burst size
+     * @since 2.2
+     */
+    @Override
+    public int getConnectionCreationBurst() {
+        return connectionCreationBurst;
+    }
+
+    /**
+     * <p>Sets the number of physical connections that may be created at once
+     * before {@link #getConnectionCreationRate()} applies.</p>
+     * <p>
+     * Note: this method currently has no effect once the pool has been
+     * initialized.  The pool is initialized the first time one of the
+     * following methods is invoked: <code>getConnection, setLogwriter,
+     * setLoginTimeout, getLoginTimeout, getLogWriter.</code></p>
+     *
+     * @param connectionCreationBurst the connection creation burst size, zero
+     *        or less to use the rate
+     * @since 2.2
+     */
+    public void setConnectionCreationBurst(final int connectionCreationBurst) {
+        this.connectionCreationBurst = connectionCreationBurst;
+    }
+
+    private volatile boolean connectionCreationRateShared = false;
+
+    /**
+     * Returns whether the connection creation rate limit is shared with all
+     * other data sources in this class loader that use the same URL and
+     * have this property set.
+     *
+     * @return true if the rate limit is shared per URL
+     * @since 2.2
+     */
+    @Override
+    public boolean getConnectionCreationRateShared() {
+        return connectionCreationRateShared;
+    }
+
+    /**
+     * <p>Sets whether the connection creation rate limit is shared with all
+     * other data sources in this class loader that use the same URL and
+     * have this property set. They must all use the same rate and burst;
+     * one whose settings differ from those of the data sources already
+     * sharing the limit fails to initialize with an SQLException. The shared
+     * limit is discarded once all of them are closed.</p>
+     * <p>
+     * Note: this method currently has no effect once the pool has been
+     * initialized.  The pool is initialized the first time one of the
+     * following methods is invoked: <code>getConnection, setLogwriter,
+     * setLoginTimeout, getLoginTimeout, getLogWriter.</code></p>
+     *
+     * @param connectionCreationRateShared true to share the rate limit per URL
+     * @since 2.2
+     */
+    public void setConnectionCreationRateShared(final boolean connectionCreationRateShared) {
+        this.connectionCreationRateShared = connectionCreationRateShared;
+    }
+
+    private volatile int poolPartitions = 1;
+
+    /**
+     * Returns the number of partitions the connection pool is split into.
+     *
+     * @return the number of partitions
+     * @see #setPoolPartitions(int)
+     * @since 2.2
+     */
+    @Override
+    public int getPoolPartitions() {
+        return poolPartitions;
+    }
+
+    /**
+     * <p>Sets the number of partitions the connection pool is split into, so
+     * that threads borrowing at the same time on many cores mostly contend on
+     * different pools. maxTotal, maxIdle and minIdle are shared between the
+     * partitions, and there are never more partitions than maxTotal.</p>
+     * <p>
+     * Each thread borrows from its own partition first and takes idle
+     * connections of the other partitions when its own is exhausted. The
+     * properties and statistics of this data source cover all partitions.
+     * The default, one partition, is a single pool.</p>
+     * <p>
+     * Note: this method currently has no effect once the pool has been
+     * initialized.  The pool is initialized the first time one of the
+     * following methods is invoked: <code>getConnection, setLogwriter,
+     * setLoginTimeout, getLoginTimeout, getLogWriter.</code></p>
+     *
+     * @param poolPartitions the number of partitions
+     * @since 2.2
+     */
+    public void setPoolPartitions(final int poolPartitions) {
+        this.poolPartitions = poolPartitions;
+    }
+
+    private volatile boolean prioritizedBorrowing = false;
+
+    /**
+     * Returns whether {@link #getConnection()} waits for an exhausted pool
+     * with the priority bound to the current thread.
+     *
+     * @return true if borrowers are served by priority
+     * @see PoolingDataSource#setPrioritizedBorrowing(boolean)
+     * @since 2.2
+     */
+    @Override
+    public boolean getPrioritizedBorrowing() {
+        return prioritizedBorrowing;
+    }
+
+    /**
+     * <p>Sets whether {@link #getConnection()} waits for an exhausted pool
+     * with the priority bound to the current thread, see
+     * {@link ConnectionPriority#setCurrent(ConnectionPriority)}, rather than
+     * in the order borrowers arrive.</p>
+     * <p>
+     * Note: this method currently has no effect once the pool has been
+     * initialized.  The pool is initialized the first time one of the
+     * following methods is invoked: <code>getConnection, setLogwriter,
+     * setLoginTimeout, getLoginTimeout, getLogWriter.</code></p>
+     *
+     * @param prioritizedBorrowing true to serve borrowers by priority
+     * @since 2.2
+     */
+    public void setPrioritizedBorrowing(final boolean prioritizedBorrowing) {
+        this.prioritizedBorrowing = prioritizedBorrowing;
+    }
+
+    private volatile long priorityAgingMillis = PoolingDataSource.DEFAULT_PRIORITY_AGING_MILLIS;
+
+    /**
+     * Returns how long a borrower waits before it is served as if it had the
+     * next higher priority.
+     *
+     * @return the aging interval in milliseconds
+     * @see PoolingDataSource#setPriorityAgingMillis(long)
+     * @since 2.2
+     */
+    @Override
+    public long getPriorityAgingMillis() {
+        return priorityAgingMillis;
+    }
+
+    /**
+     * <p>Sets how long a borrower waits before it is served as if it had the
+     * next higher priority, so that low priority borrowers are not starved.</p>
+     * <p>
+     * Note: this method currently has no effect once the pool has been
+     * initialized.  The pool is initialized the first time one of the
+     * following methods is invoked: <code>getConnection, setLogwriter,
+     * setLoginTimeout, getLoginTimeout, getLogWriter.</code></p>
+     *
+     * @param priorityAgingMillis the aging interval in milliseconds
+     * @since 2.2
+     */
+    public void setPriorityAgingMillis(final long priorityAgingMillis) {
+        this.priorityAgingMillis = priorityAgingMillis;
+    }
+
+    /**
+     * The listeners to register with the poolable connection factory when
+     * the pool is created. Guarded by {@link #lock}.
+     */
+    private final List<PoolEventListener> poolEventListeners = new ArrayList<>();
+
+    /**
+     * Registers a listener for the events of the pooled connections and of
+     * their statements. Listeners may be added and removed before or after
+     * the pool has been initialized.
+     *
+     * @param listener the listener
+     * @see PoolableConnectionFactory#addPoolEventListener(PoolEventListener)
+     * @since 2.2
+     */
+    public void addPoolEventListener(final PoolEventListener listener) {
+        if (listener == null) {
+            throw new NullPointerException("listener");
+        }
+        lock.lock();
+        try {
+            poolEventListeners.add(listener);
+            final GenericObjectPool<PoolableConnection> pool = connectionPool;
+            if (pool != null) {
+                ((PoolableConnectionFactory) pool.getFactory()).addPoolEventListener(listener);
+            }
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Unregisters a listener added with
+     * {@link #addPoolEventListener(PoolEventListener)}.
+     *
+     * @param listener the listener
+     * @return <code>true</code> if the listener was registered
+     * @since 2.2
+     */
+    public boolean removePoolEventListener(final PoolEventListener listener) {
+        lock.lock();
+        try {
+            final GenericObjectPool<PoolableConnection> pool = connectionPool;
+            if (pool != null) {
+                ((PoolableConnectionFactory) pool.getFactory()).removePoolEventListener(listener);
+            }
+            return poolEventListeners.remove(listener);
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * @return the registered pool event listeners, in registration order
+     * @since 2.2
+     */
+    public List<PoolEventListener> getPoolEventListeners() {
+        lock.lock();
+        try {
+            return Collections.unmodifiableList(new ArrayList<>(poolEventListeners));
+        } finally {
+            lock.unlock();
+        }
+    }
+
     // ----------------------------------------------------- Instance Variables
 
     /**
@@ -1476,10 +2441,58 @@ public class BasicDataSource implements DataSource, BasicDataSourceMXBean, MBean
      */
     private volatile GenericObjectPool<PoolableConnection> connectionPool = null;
 
+    /**
+     * Saves the demand of the pool, if a warm-up snapshot file is set.
+     */
+    private volatile WarmupSnapshot warmupSnapshot = null;
+
+    /**
+     * The pool spanning the partitions of the connection pool, if it has
+     * more than one.
+     */
+    private volatile PartitionedObjectPool<PoolableConnection> partitionedPool = null;
+
+    /**
+     * Returns the connection pool, or its first partition if it is
+     * partitioned.
+     *
+     * @return the connection pool, null if it has not been created
+     * @see #getObjectPool()
+     */
     protected GenericObjectPool<PoolableConnection> getConnectionPool() {
         return connectionPool;
     }
 
+    /**
+     * Returns the pool connections are borrowed from and returned to: the
+     * connection pool, or the pool spanning its partitions if it has more
+     * than one.
+     *
+     * @return the pool, null if it has not been created
+     * @see #setPoolPartitions(int)
+     * @since 2.2
+     */
+    protected ObjectPool<PoolableConnection> getObjectPool() {
+        final PartitionedObjectPool<PoolableConnection> partitioned = partitionedPool;
+        return partitioned != null ? partitioned : connectionPool;
+    }
+
+    /**
+     * Returns the partitions of the connection pool, which is a single one
+     * unless the pool is partitioned.
+     */
+    private List<GenericObjectPool<PoolableConnection>> getPartitions() {
+        final PartitionedObjectPool<PoolableConnection> partitioned = partitionedPool;
+        if (partitioned != null) {
+            return partitioned.getPartitions();
+        }
+        final GenericObjectPool<PoolableConnection> pool = connectionPool;
+        if (pool == null) {
+            return Collections.emptyList();
+        }
+        return Collections.singletonList(pool);
+    }
+
     /**
      * The connection properties that will be sent to our JDBC driver when
      * establishing new connections.  <strong>NOTE</strong> - The "user" and
@@ -1500,6 +2513,29 @@ public class BasicDataSource implements DataSource, BasicDataSourceMXBean, MBean
      */
     private volatile DataSource dataSource = null;
 
+    /**
+     * Guards creation and closing of the connection pool, and the setters
+     * that pass their value on to it, so that a value set while the pool is
+     * being created is not lost.
+     */
+    private final ReentrantLock lock = new ReentrantLock();
+
+    /**
+     * The circuit breaker wrapping the physical connection factory, if the
+     * circuit breaker is enabled.
+     */
+    private volatile CircuitBreakerConnectionFactory circuitBreaker = null;
+
+    /**
+     * The rate limiter shared with other data sources for the same URL, if
+     * {@link #getConnectionCreationRateShared()} is true. Guarded by
+     * {@link #lock}, and handed back when this data source is closed.
+     */
+    private ConnectionCreationRateLimiter sharedRateLimiter = null;
+
+    /** The key {@link #sharedRateLimiter} was obtained for. */
+    private String sharedRateLimiterKey = null;
+
     /**
      * The PrintWriter to which log messages should be directed.
      */
@@ -1518,8 +2554,54 @@ public class BasicDataSource implements DataSource, BasicDataSourceMXBean, MBean
      */
     @Override
     public Connection getConnection() throws SQLException {
+        return getConnection(new PaGetConnection(-1, null));
+    }
+
+
+    /**
+     * Create (if necessary) and return a connection to the database, waiting
+     * at most <code>timeout</code> for a connection to be returned while the
+     * pool is exhausted. The timeout replaces {@link #getMaxWaitMillis()} for
+     * this call only; a timeout of zero or less fails straight away if no
+     * connection is available. See
+     * {@link PoolingDataSource#getConnection(long, TimeUnit)}.
+     *
+     * @param timeout the maximum time to wait
+     * @param unit the unit of <code>timeout</code>
+     * @return a database connection
+     * @throws SQLException if a database access error occurs or no connection
+     *         could be borrowed in time
+     * @throws UnsupportedOperationException if the data source created by
+     *         {@link #createDataSourceInstance()} does not support a per-call
+     *         wait
+     * @since 2.2
+     */
+    public Connection getConnection(final long timeout, final TimeUnit unit) throws SQLException {
+        return getConnection(new PaGetConnection(Math.max(0, unit.toMillis(timeout)), null));
+    }
+
+
+    /**
+     * Create (if necessary) and return a connection to the database, waiting
+     * with the given priority while the pool is exhausted. Waiting borrowers
+     * are served by priority, see
+     * {@link PoolingDataSource#getConnection(ConnectionPriority)}.
+     *
+     * @param priority the priority of the borrower
+     * @return a database connection
+     * @throws SQLException if a database access error occurs or no connection
+     *         could be borrowed in time
+     * @throws UnsupportedOperationException if the data source created by
+     *         {@link #createDataSourceInstance()} does not support priorities
+     * @see #setPrioritizedBorrowing(boolean)
+     * @since 2.2
+     */
+    public Connection getConnection(final ConnectionPriority priority) throws SQLException {
+        return getConnection(new PaGetConnection(-1, priority));
+    }
+
+    private Connection getConnection(final PaGetConnection action) throws SQLException {
         if (Utils.IS_SECURITY_ENABLED) {
-            final PrivilegedExceptionAction<Connection> action = new PaGetConnection();
             try {
                 return AccessController.doPrivileged(action);
             } catch (final PrivilegedActionException e) {
@@ -1530,7 +2612,77 @@ public class BasicDataSource implements DataSource, BasicDataSourceMXBean, MBean
                 throw new SQLException(e);
             }
         }
-        return createDataSource().getConnection();
+        return action.run();
+    }
+
+    /**
+     * @param maxWaitMillis the maximum wait for this borrow, or a negative
+     *        value to use the pool's
+     * @param priority the priority of the borrower, or null to borrow as
+     *        {@link #getConnection()} does
+     */
+    private Connection getPooledConnection(final long maxWaitMillis,
+            final ConnectionPriority priority) throws SQLException {
+        final Object borrow = FlightRecorderEvents.INSTANCE.beginConnectionBorrow();
+        final DataSource ds = createDataSource();
+        final Connection conn;
+        if (maxWaitMillis < 0 && priority == null) {
+            conn = ds.getConnection();
+        } else if (ds instanceof PoolingDataSource<?>) {
+            final PoolingDataSource<?> pds = (PoolingDataSource<?>) ds;
+            conn = priority == null ? pds.getConnection(maxWaitMillis, TimeUnit.MILLISECONDS) :
+                    pds.getConnection(priority);
+        } else {
+            throw new UnsupportedOperationException("Not supported by " + ds.getClass().getName());
+        }
+        FlightRecorderEvents.INSTANCE.connectionBorrowed(borrow);
+        final WarmupSnapshot snapshot = warmupSnapshot;
+        if (snapshot != null) {
+            snapshot.recordActive(getNumActive());
+        }
+        return conn;
+    }
+
+
+    /**
+     * Requests a connection without blocking while the pool is exhausted.
+     *
+     * @param timeoutMillis the maximum time to wait for a connection to be
+     *        returned to the pool, or a negative value to wait indefinitely
+     * @return a future that completes with the connection
+     * @throws SQLException if the connection pool cannot be initialized
+     * @see #getConnectionAsync(long, ConnectionCallback)
+     * @since 2.2
+     */
+    public Future<Connection> getConnectionAsync(final long timeoutMillis) throws SQLException {
+        return getConnectionAsync(timeoutMillis, null);
+    }
+
+
+    /**
+     * Requests a connection without blocking while the pool is exhausted.
+     * Queued requests are completed by the threads that close connections,
+     * see {@link PoolingDataSource#getConnectionAsync(long, ConnectionCallback)}.
+     * <p>Calls {@link #createDataSource()}, so has the side effect
+     * of initializing the connection pool, which may block.</p>
+     *
+     * @param timeoutMillis the maximum time to wait for a connection to be
+     *        returned to the pool, or a negative value to wait indefinitely
+     * @param callback notified when the request completes, may be null
+     * @return a future that completes with the connection
+     * @throws SQLException if the connection pool cannot be initialized
+     * @throws UnsupportedOperationException if the data source created by
+     *         {@link #createDataSourceInstance()} does not support
+     *         asynchronous requests
+     * @since 2.2
+     */
+    public Future<Connection> getConnectionAsync(final long timeoutMillis,
+            final ConnectionCallback callback) throws SQLException {
+        final DataSource ds = createDataSource();
+        if (ds instanceof PoolingDataSource<?>) {
+            return ((PoolingDataSource<?>) ds).getConnectionAsync(timeoutMillis, callback);
+        }
+        throw new UnsupportedOperationException("Not supported by " + ds.getClass().getName());
     }
 
 
@@ -1891,7 +3043,7 @@ public class BasicDataSource implements DataSource, BasicDataSourceMXBean, MBean
         this.connectionProperties = properties;
     }
 
-    private boolean closed;
+    private volatile boolean closed;
 
     /**
      * <p>Closes and releases all idle connections that are currently stored in the connection pool
@@ -1910,29 +3062,46 @@ public class BasicDataSource implements DataSource, BasicDataSourceMXBean, MBean
      * @throws SQLException if an error occurs closing idle connections
      */
     @Override
-    public synchronized void close() throws SQLException {
-        if (registeredJmxName != null) {
-            final MBeanServer mbs = ManagementFactory.getPlatformMBeanServer();
+    public void close() throws SQLException {
+        lock.lock();
+        try {
+            if (registeredJmxName != null) {
+                final MBeanServer mbs = ManagementFactory.getPlatformMBeanServer();
+                try {
+                    mbs.unregisterMBean(registeredJmxName);
+                } catch (final JMException e) {
+                    log.warn("Failed to unregister the JMX name: " + registeredJmxName, e);
+                } finally {
+                    registeredJmxName = null;
+                }
+            }
+            closed = true;
+            releaseSharedRateLimiter();
+            final WarmupSnapshot snapshot = warmupSnapshot;
+            warmupSnapshot = null;
+            if (snapshot != null) {
+                snapshot.stop();
+            }
+            final ObjectPool<?> oldpool = getObjectPool();
+            final DataSource oldDataSource = dataSource;
+            partitionedPool = null;
+            connectionPool = null;
+            dataSource = null;
             try {
-                mbs.unregisterMBean(registeredJmxName);
-            } catch (final JMException e) {
-                log.warn("Failed to unregister the JMX name: " + registeredJmxName, e);
+                if (oldpool != null) {
+                    oldpool.close();
+                }
+            } catch(final RuntimeException e) {
+                throw e;
+            } catch(final Exception e) {
+                throw new SQLException(Utils.getMessage("pool.close.fail"), e);
             } finally {
-                registeredJmxName = null;
+                if (oldDataSource instanceof PoolingDataSource<?>) {
+                    ((PoolingDataSource<?>) oldDataSource).failPendingRequests();
+                }
             }
-        }
-        closed = true;
-        final GenericObjectPool<?> oldpool = connectionPool;
-        connectionPool = null;
-        dataSource = null;
-        try {
-            if (oldpool != null) {
-                oldpool.close();
-            }
-        } catch(final RuntimeException e) {
-            throw e;
-        } catch(final Exception e) {
-            throw new SQLException(Utils.getMessage("pool.close.fail"), e);
+        } finally {
+            lock.unlock();
         }
     }
 
@@ -1941,7 +3110,7 @@ public class BasicDataSource implements DataSource, BasicDataSourceMXBean, MBean
      * @return true, if the data source is closed; false otherwise
      */
     @Override
-    public synchronized boolean isClosed() {
+    public boolean isClosed() {
         return closed;
     }
 
@@ -1988,12 +3157,74 @@ public class BasicDataSource implements DataSource, BasicDataSourceMXBean, MBean
         }
 
         try {
-            connectionPool.invalidateObject(poolableConnection);
+            getObjectPool().invalidateObject(poolableConnection);
         } catch (final Exception e) {
             throw new IllegalStateException("Invalidating connection threw unexpected exception", e);
         }
     }
 
+    /**
+     * Returns the current connection generation of the pool. Every physical
+     * connection is stamped with the generation that was current when it was
+     * created.
+     *
+     * @return the current generation, or zero if the pool has not been
+     *         initialized
+     * @see #incrementGeneration()
+     * @since 2.2
+     */
+    @Override
+    public long getGeneration() {
+        final PoolableConnectionFactory factory = getPoolableConnectionFactory();
+        return factory == null ? 0 : factory.getGeneration();
+    }
+
+    /**
+     * Retires every connection created so far, for example after a database
+     * failover. Idle connections are closed immediately and connections that
+     * are checked out are closed, rather than returned to the pool, when the
+     * application closes them. The pool keeps serving requests with newly
+     * created connections while this happens.
+     *
+     * @return the new generation, or zero if the pool has not been
+     *         initialized
+     * @since 2.2
+     */
+    @Override
+    public long incrementGeneration() {
+        final PoolableConnectionFactory factory = getPoolableConnectionFactory();
+        if (factory == null) {
+            return 0;
+        }
+        final long gen = factory.incrementGeneration();
+        for (final GenericObjectPool<PoolableConnection> pool : getPartitions()) {
+            pool.clear();
+        }
+        return gen;
+    }
+
+    /**
+     * Discards all cached {@link java.sql.DatabaseMetaData} answers, for
+     * example after a schema change. Does nothing if metadata is not cached
+     * or the pool has not been initialized.
+     * @since 2.2
+     */
+    @Override
+    public void invalidateDatabaseMetaDataCache() {
+        final PoolableConnectionFactory factory = getPoolableConnectionFactory();
+        if (factory != null && factory.getDatabaseMetaDataCache() != null) {
+            factory.getDatabaseMetaDataCache().invalidate();
+        }
+    }
+
+    private PoolableConnectionFactory getPoolableConnectionFactory() {
+        final GenericObjectPool<PoolableConnection> pool = connectionPool;
+        if (pool != null && pool.getFactory() instanceof PoolableConnectionFactory) {
+            return (PoolableConnectionFactory) pool.getFactory();
+        }
+        return null;
+    }
+
     // ------------------------------------------------------ Protected Methods
 
 
@@ -2011,19 +3242,64 @@ public class BasicDataSource implements DataSource, BasicDataSourceMXBean, MBean
 
         // Return the pool if we have already created it
         // This is double-checked locking. This is safe since dataSource is
-        // volatile and the code is targeted at Java 5 onwards.
+        // volatile and the code is targeted at Java 5 onwards. A Lock rather
+        // than a monitor is used since connections are opened while it is
+        // held, and a virtual thread blocked in a monitor pins its carrier.
         if (dataSource != null) {
             return dataSource;
         }
-        synchronized (this) {
+        lock.lock();
+        try {
             if (dataSource != null) {
                 return dataSource;
             }
 
             jmxRegister();
 
+            // Read the demand saved by a previous run
+            String warmupIdentity = null;
+            WarmupSnapshot.Contents warmup = null;
+            if (warmupSnapshotFile != null) {
+                warmupIdentity = WarmupSnapshot.identity(url, username);
+                warmup = WarmupSnapshot.read(new File(warmupSnapshotFile), warmupIdentity);
+            }
+
             // create factory which returns raw physical connections
-            final ConnectionFactory driverConnectionFactory = createConnectionFactory();
+            ConnectionFactory driverConnectionFactory = createConnectionFactory();
+
+            // Fail fast rather than piling up in the driver while the
+            // database is unreachable
+            if (circuitBreakerFailureThreshold > 0) {
+                circuitBreaker = new CircuitBreakerConnectionFactory(driverConnectionFactory,
+                        circuitBreakerFailureThreshold, circuitBreakerInitialBackoffMillis,
+                        circuitBreakerMaxBackoffMillis);
+                driverConnectionFactory = circuitBreaker;
+            }
+
+            // Spread out reconnection storms, e.g. after a failover or a
+            // pool clear, instead of every borrower dialing the database.
+            // This wraps the circuit breaker so that running out of permits
+            // is not counted as a database failure.
+            if (connectionCreationRate > 0) {
+                final int burst = connectionCreationBurst > 0 ? connectionCreationBurst :
+                        connectionCreationRate;
+                final ConnectionCreationRateLimiter rateLimiter;
+                if (connectionCreationRateShared) {
+                    final String key = String.valueOf(url);
+                    try {
+                        rateLimiter = ConnectionCreationRateLimiter.getSharedInstance(key,
+                                connectionCreationRate, burst);
+                    } catch (final IllegalArgumentException e) {
+                        throw new SQLException(e.getMessage(), e);
+                    }
+                    sharedRateLimiter = rateLimiter;
+                    sharedRateLimiterKey = key;
+                } else {
+                    rateLimiter = new ConnectionCreationRateLimiter(connectionCreationRate, burst);
+                }
+                driverConnectionFactory = new RateLimitedConnectionFactory(
+                        driverConnectionFactory, rateLimiter, maxWaitMillis);
+            }
 
             // Set up the poolable connection factory
             boolean success = false;
@@ -2035,6 +3311,16 @@ public class BasicDataSource implements DataSource, BasicDataSourceMXBean, MBean
                         poolPreparedStatements);
                 poolableConnectionFactory.setMaxOpenPrepatedStatements(
                         maxOpenPreparedStatements);
+                for (final PoolEventListener listener : poolEventListeners) {
+                    poolableConnectionFactory.addPoolEventListener(listener);
+                }
+                final StatementUsageTracker tracker =
+                        poolableConnectionFactory.getStatementUsageTracker();
+                if (warmup != null && tracker != null) {
+                    for (final Map.Entry<PStmtKey, Long> e : warmup.getStatements().entrySet()) {
+                        tracker.recordUses(e.getKey(), e.getValue().longValue());
+                    }
+                }
                 success = true;
             } catch (final SQLException se) {
                 throw se;
@@ -2068,10 +3354,17 @@ public class BasicDataSource implements DataSource, BasicDataSourceMXBean, MBean
                 }
             }
 
-            // If initialSize > 0, preload the pool
+            // If initialSize > 0, preload the pool, with at least as many
+            // connections as were active at the peak of the previous run
+            int preloadSize = initialSize;
+            if (warmup != null) {
+                final int peak = maxTotal < 0 ? warmup.getPeakActive() :
+                        Math.min(warmup.getPeakActive(), maxTotal);
+                preloadSize = Math.max(preloadSize, peak);
+            }
             try {
-                for (int i = 0 ; i < initialSize ; i++) {
-                    connectionPool.addObject();
+                for (int i = 0 ; i < preloadSize ; i++) {
+                    getObjectPool().addObject();
                 }
             } catch (final Exception e) {
                 closeConnectionPool();
@@ -2081,8 +3374,32 @@ public class BasicDataSource implements DataSource, BasicDataSourceMXBean, MBean
             // If timeBetweenEvictionRunsMillis > 0, start the pool's evictor task
             startPoolMaintenance();
 
+            if (warmupSnapshotFile != null) {
+                warmupSnapshot = new WarmupSnapshot(new File(warmupSnapshotFile), warmupIdentity,
+                        warmup == null ? 0 : warmup.getPeakActive(),
+                        poolableConnectionFactory.getStatementUsageTracker(), prewarmStatementCount);
+                warmupSnapshot.start(warmupSnapshotIntervalMillis);
+            }
+
             dataSource = newDataSource;
             return dataSource;
+        } finally {
+            if (dataSource == null) {
+                releaseSharedRateLimiter();
+            }
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Hands back the shared connection creation rate limiter, if any. Must
+     * be called holding {@link #lock}.
+     */
+    private void releaseSharedRateLimiter() {
+        if (sharedRateLimiter != null) {
+            ConnectionCreationRateLimiter.releaseSharedInstance(sharedRateLimiterKey, sharedRateLimiter);
+            sharedRateLimiter = null;
+            sharedRateLimiterKey = null;
         }
     }
 
@@ -2184,43 +3501,71 @@ public class BasicDataSource implements DataSource, BasicDataSourceMXBean, MBean
      * {@link #startPoolMaintenance()}, since setting timeBetweenEvictionRunsMillis
      * to a positive value causes {@link GenericObjectPool}'s eviction timer
      * to be started.
+     *
+     * If {@link #getPoolPartitions()} is more than one, the pool is made of
+     * that many partitions, which share maxTotal, maxIdle and minIdle.
      */
     protected void createConnectionPool(final PoolableConnectionFactory factory) {
-        // Create an object pool to contain our active connections
-        final GenericObjectPoolConfig config = new GenericObjectPoolConfig();
-        updateJmxName(config);
-        config.setJmxEnabled(registeredJmxName != null);  // Disable JMX on the underlying pool if the DS is not registered.
-        GenericObjectPool<PoolableConnection> gop;
-        if (abandonedConfig != null &&
-                (abandonedConfig.getRemoveAbandonedOnBorrow() ||
-                 abandonedConfig.getRemoveAbandonedOnMaintenance())) {
-            gop = new GenericObjectPool<>(factory, config, abandonedConfig);
+        // Each partition needs at least one connection
+        final int partitionCount = maxTotal > 0 ? Math.min(poolPartitions, maxTotal) :
+                Math.max(poolPartitions, 1);
+        final List<GenericObjectPool<PoolableConnection>> partitions = new ArrayList<>(partitionCount);
+        final List<EventReportingObjectPool> reporting = new ArrayList<>(partitionCount);
+        for (int i = 0; i < partitionCount; i++) {
+            // Create an object pool to contain our active connections
+            final GenericObjectPoolConfig config = new GenericObjectPoolConfig();
+            updateJmxName(config);
+            config.setJmxEnabled(registeredJmxName != null);  // Disable JMX on the underlying pool if the DS is not registered.
+            EventReportingObjectPool gop;
+            if (abandonedConfig != null &&
+                    (abandonedConfig.getRemoveAbandonedOnBorrow() ||
+                     abandonedConfig.getRemoveAbandonedOnMaintenance())) {
+                gop = new EventReportingObjectPool(factory, config, abandonedConfig);
+            }
+            else {
+                gop = new EventReportingObjectPool(factory, config);
+            }
+            gop.setMaxTotal(PartitionedObjectPool.share(maxTotal, i, partitionCount));
+            gop.setMaxIdle(PartitionedObjectPool.share(maxIdle, i, partitionCount));
+            gop.setMinIdle(PartitionedObjectPool.share(minIdle, i, partitionCount));
+            gop.setMaxWaitMillis(maxWaitMillis);
+            gop.setTestOnCreate(testOnCreate);
+            gop.setTestOnBorrow(testOnBorrow);
+            gop.setTestOnReturn(testOnReturn);
+            gop.setNumTestsPerEvictionRun(numTestsPerEvictionRun);
+            gop.setMinEvictableIdleTimeMillis(minEvictableIdleTimeMillis);
+            gop.setTestWhileIdle(testWhileIdle);
+            gop.setLifo(lifo);
+            gop.setSwallowedExceptionListener(new SwallowedExceptionLogger(log, logExpiredConnections));
+            if (maxConnLifetimeMillis > 0 && maxConnLifetimeRenewalMillis > 0 &&
+                    BaseObjectPoolConfig.DEFAULT_EVICTION_POLICY_CLASS_NAME.equals(evictionPolicyClassName)) {
+                gop.setEvictionPolicyClassName(LifetimeRenewalEvictionPolicy.class.getName());
+            } else {
+                gop.setEvictionPolicyClassName(evictionPolicyClassName);
+            }
+            partitions.add(gop);
+            reporting.add(gop);
+        }
+        if (partitionCount > 1) {
+            final PartitionedObjectPool<PoolableConnection> partitioned =
+                    new PartitionedObjectPool<>(partitions);
+            for (final EventReportingObjectPool partition : reporting) {
+                partition.setPartitionedPool(partitioned);
+            }
+            factory.setPool(partitioned);
+            partitionedPool = partitioned;
+        } else {
+            factory.setPool(partitions.get(0));
         }
-        else {
-            gop = new GenericObjectPool<>(factory, config);
-        }
-        gop.setMaxTotal(maxTotal);
-        gop.setMaxIdle(maxIdle);
-        gop.setMinIdle(minIdle);
-        gop.setMaxWaitMillis(maxWaitMillis);
-        gop.setTestOnCreate(testOnCreate);
-        gop.setTestOnBorrow(testOnBorrow);
-        gop.setTestOnReturn(testOnReturn);
-        gop.setNumTestsPerEvictionRun(numTestsPerEvictionRun);
-        gop.setMinEvictableIdleTimeMillis(minEvictableIdleTimeMillis);
-        gop.setTestWhileIdle(testWhileIdle);
-        gop.setLifo(lifo);
-        gop.setSwallowedExceptionListener(new SwallowedExceptionLogger(log, logExpiredConnections));
-        gop.setEvictionPolicyClassName(evictionPolicyClassName);
-        factory.setPool(gop);
-        connectionPool = gop;
+        connectionPool = partitions.get(0);
     }
 
     /**
      * Closes the connection pool, silently swallowing any exception that occurs.
      */
     private void closeConnectionPool() {
-        final GenericObjectPool<?> oldpool = connectionPool;
+        final ObjectPool<?> oldpool = getObjectPool();
+        partitionedPool = null;
         connectionPool = null;
         try {
             if (oldpool != null) {
@@ -2235,8 +3580,10 @@ public class BasicDataSource implements DataSource, BasicDataSourceMXBean, MBean
      * Starts the connection pool maintenance task, if configured.
      */
     protected void startPoolMaintenance() {
-        if (connectionPool != null && timeBetweenEvictionRunsMillis > 0) {
-            connectionPool.setTimeBetweenEvictionRunsMillis(timeBetweenEvictionRunsMillis);
+        if (timeBetweenEvictionRunsMillis > 0) {
+            for (final GenericObjectPool<PoolableConnection> pool : getPartitions()) {
+                pool.setTimeBetweenEvictionRunsMillis(timeBetweenEvictionRunsMillis);
+            }
         }
     }
 
@@ -2247,8 +3594,10 @@ public class BasicDataSource implements DataSource, BasicDataSourceMXBean, MBean
      * @throws SQLException if unable to create a datasource instance
      */
     protected DataSource createDataSourceInstance() throws SQLException {
-        final PoolingDataSource<PoolableConnection> pds = new PoolingDataSource<>(connectionPool);
+        final PoolingDataSource<PoolableConnection> pds = new PoolingDataSource<>(getObjectPool());
         pds.setAccessToUnderlyingConnectionAllowed(isAccessToUnderlyingConnectionAllowed());
+        pds.setPrioritizedBorrowing(prioritizedBorrowing);
+        pds.setPriorityAgingMillis(priorityAgingMillis);
         return pds;
     }
 
@@ -2275,9 +3624,26 @@ public class BasicDataSource implements DataSource, BasicDataSourceMXBean, MBean
             connectionFactory.setPoolStatements(poolPreparedStatements);
             connectionFactory.setMaxOpenPrepatedStatements(maxOpenPreparedStatements);
             connectionFactory.setMaxConnLifetimeMillis(maxConnLifetimeMillis);
+            connectionFactory.setMaxConnLifetimeJitterMillis(maxConnLifetimeJitterMillis);
+            connectionFactory.setMaxConnLifetimeRenewalMillis(maxConnLifetimeRenewalMillis);
             connectionFactory.setRollbackOnReturn(getRollbackOnReturn());
             connectionFactory.setEnableAutoCommitOnReturn(getEnableAutoCommitOnReturn());
             connectionFactory.setDefaultQueryTimeout(getDefaultQueryTimeout());
+            connectionFactory.setDefaultFetchSize(getDefaultFetchSize());
+            if (getAdaptiveFetchSize()) {
+                connectionFactory.setFetchSizeAdvisor(new FetchSizeAdvisor(
+                        getAdaptiveFetchSizeMax(), FetchSizeAdvisor.DEFAULT_MAX_STATEMENTS));
+            }
+            if (getCacheDatabaseMetaData()) {
+                connectionFactory.setDatabaseMetaDataCache(
+                        new DatabaseMetaDataCache(getDatabaseMetaDataCacheTtlMillis()));
+            }
+            connectionFactory.setKeepAliveMillis(keepAliveMillis);
+            connectionFactory.setSqlCanonicalizer(createSqlCanonicalizer());
+            if (poolPreparedStatements && prewarmStatementCount > 0) {
+                connectionFactory.setStatementUsageTracker(new StatementUsageTracker());
+                connectionFactory.setPrewarmStatementCount(prewarmStatementCount);
+            }
             connectionFactory.setFastFailValidation(fastFailValidation);
             connectionFactory.setDisconnectionSqlCodes(disconnectionSqlCodes);
             validateConnectionFactory(connectionFactory);
@@ -2397,9 +3763,104 @@ public class BasicDataSource implements DataSource, BasicDataSourceMXBean, MBean
      */
     private class PaGetConnection implements PrivilegedExceptionAction<Connection> {
 
+        private final long maxWaitMillis;
+        private final ConnectionPriority priority;
+
+        PaGetConnection(final long maxWaitMillis, final ConnectionPriority priority) {
+            this.maxWaitMillis = maxWaitMillis;
+            this.priority = priority;
+        }
+
         @Override
         public Connection run() throws SQLException {
-            return createDataSource().getConnection();
+            return getPooledConnection(maxWaitMillis, priority);
+        }
+    }
+
+    /**
+     * A connection pool that reports each run of its evictor to Java Flight
+     * Recorder, and abandoned connections to the pool event listeners.
+     */
+    private static class EventReportingObjectPool extends GenericObjectPool<PoolableConnection> {
+
+        private final PoolEventSupport poolEventSupport;
+
+        /** Set while this thread is in borrowObject or evict */
+        private final ThreadLocal<Boolean> maintaining = new ThreadLocal<>();
+
+        /** The pool this one is a partition of, if any */
+        private volatile PartitionedObjectPool<PoolableConnection> partitionedPool;
+
+        EventReportingObjectPool(final PoolableConnectionFactory factory,
+                final GenericObjectPoolConfig config) {
+            super(factory, config);
+            poolEventSupport = factory.getPoolEventSupport();
+            factory.setBorrowsReportedByPool();
+        }
+
+        EventReportingObjectPool(final PoolableConnectionFactory factory,
+                final GenericObjectPoolConfig config, final AbandonedConfig abandonedConfig) {
+            super(factory, config, abandonedConfig);
+            poolEventSupport = factory.getPoolEventSupport();
+            factory.setBorrowsReportedByPool();
+        }
+
+        @Override
+        public PoolableConnection borrowObject(final long borrowMaxWaitMillis) throws Exception {
+            final PoolableConnection conn;
+            // May remove abandoned connections
+            maintaining.set(Boolean.TRUE);
+            try {
+                conn = super.borrowObject(borrowMaxWaitMillis);
+            } finally {
+                maintaining.remove();
+            }
+            // Reported here rather than on activation, which precedes
+            // validation on borrow
+            poolEventSupport.connectionBorrowed(conn);
+            return conn;
+        }
+
+        /**
+         * {@link GenericObjectPool} itself invalidates connections only to
+         * remove abandoned ones, which it does from
+         * {@link #borrowObject(long)} and {@link #evict()}. Connections
+         * invalidated by those are reported as abandoned, those invalidated
+         * by their users are not.
+         */
+        @Override
+        public void invalidateObject(final PoolableConnection obj) throws Exception {
+            if (maintaining.get() != null) {
+                poolEventSupport.connectionAbandoned(obj);
+            }
+            try {
+                super.invalidateObject(obj);
+            } finally {
+                final PartitionedObjectPool<PoolableConnection> partitioned = partitionedPool;
+                if (partitioned != null) {
+                    // Abandoned connections are invalidated here, bypassing the partitioned pool
+                    partitioned.invalidated(obj);
+                }
+            }
+        }
+
+        void setPartitionedPool(final PartitionedObjectPool<PoolableConnection> partitionedPool) {
+            this.partitionedPool = partitionedPool;
+        }
+
+        @Override
+        public void evict() throws Exception {
+            final Object run = FlightRecorderEvents.INSTANCE.beginEvictionRun();
+            final long destroyed = getDestroyedByEvictorCount();
+            // May remove abandoned connections
+            maintaining.set(Boolean.TRUE);
+            try {
+                super.evict();
+            } finally {
+                maintaining.remove();
+                FlightRecorderEvents.INSTANCE.evictionRun(run,
+                        getDestroyedByEvictorCount() - destroyed);
+            }
         }
     }
 }
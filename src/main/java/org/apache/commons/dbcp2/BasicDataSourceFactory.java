@@ -111,6 +111,28 @@ public class BasicDataSourceFactory implements ObjectFactory {
     private static final String PROP_ENABLE_AUTOCOMMIT_ON_RETURN = "enableAutoCommitOnReturn";
     private static final String PROP_DEFAULT_QUERYTIMEOUT = "defaultQueryTimeout";
     private static final String PROP_FASTFAIL_VALIDATION = "fastFailValidation";
+    private static final String PROP_CIRCUIT_BREAKER_FAILURE_THRESHOLD = "circuitBreakerFailureThreshold";
+    private static final String PROP_CIRCUIT_BREAKER_INITIAL_BACKOFF_MILLIS = "circuitBreakerInitialBackoffMillis";
+    private static final String PROP_CIRCUIT_BREAKER_MAX_BACKOFF_MILLIS = "circuitBreakerMaxBackoffMillis";
+    private static final String PROP_CONNECTION_CREATION_RATE = "connectionCreationRate";
+    private static final String PROP_CONNECTION_CREATION_BURST = "connectionCreationBurst";
+    private static final String PROP_CONNECTION_CREATION_RATE_SHARED = "connectionCreationRateShared";
+    private static final String PROP_MAX_CONN_LIFETIME_JITTER_MILLIS = "maxConnLifetimeJitterMillis";
+    private static final String PROP_MAX_CONN_LIFETIME_RENEWAL_MILLIS = "maxConnLifetimeRenewalMillis";
+    private static final String PROP_DEFAULT_FETCH_SIZE = "defaultFetchSize";
+    private static final String PROP_ADAPTIVE_FETCH_SIZE = "adaptiveFetchSize";
+    private static final String PROP_ADAPTIVE_FETCH_SIZE_MAX = "adaptiveFetchSizeMax";
+    private static final String PROP_CACHE_DATABASE_META_DATA = "cacheDatabaseMetaData";
+    private static final String PROP_DATABASE_META_DATA_CACHE_TTL_MILLIS = "databaseMetaDataCacheTtlMillis";
+    private static final String PROP_KEEP_ALIVE_MILLIS = "keepAliveMillis";
+    private static final String PROP_CANONICALIZE_SQL = "canonicalizeSql";
+    private static final String PROP_STRIP_SQL_COMMENTS = "stripSqlComments";
+    private static final String PROP_PREWARM_STATEMENT_COUNT = "prewarmStatementCount";
+    private static final String PROP_WARMUP_SNAPSHOT_FILE = "warmupSnapshotFile";
+    private static final String PROP_WARMUP_SNAPSHOT_INTERVAL_MILLIS = "warmupSnapshotIntervalMillis";
+    private static final String PROP_PRIORITIZED_BORROWING = "prioritizedBorrowing";
+    private static final String PROP_PRIORITY_AGING_MILLIS = "priorityAgingMillis";
+    private static final String PROP_POOL_PARTITIONS = "poolPartitions";
 
     /**
      * Value string must be of the form [STATE_CODE,]*
@@ -179,7 +201,29 @@ public class BasicDataSourceFactory implements ObjectFactory {
         PROP_DEFAULT_QUERYTIMEOUT,
         PROP_FASTFAIL_VALIDATION,
         PROP_DISCONNECTION_SQL_CODES,
-        PROP_JMX_NAME
+        PROP_JMX_NAME,
+        PROP_CIRCUIT_BREAKER_FAILURE_THRESHOLD,
+        PROP_CIRCUIT_BREAKER_INITIAL_BACKOFF_MILLIS,
+        PROP_CIRCUIT_BREAKER_MAX_BACKOFF_MILLIS,
+        PROP_CONNECTION_CREATION_RATE,
+        PROP_CONNECTION_CREATION_BURST,
+        PROP_CONNECTION_CREATION_RATE_SHARED,
+        PROP_MAX_CONN_LIFETIME_JITTER_MILLIS,
+        PROP_MAX_CONN_LIFETIME_RENEWAL_MILLIS,
+        PROP_DEFAULT_FETCH_SIZE,
+        PROP_ADAPTIVE_FETCH_SIZE,
+        PROP_ADAPTIVE_FETCH_SIZE_MAX,
+        PROP_CACHE_DATABASE_META_DATA,
+        PROP_DATABASE_META_DATA_CACHE_TTL_MILLIS,
+        PROP_KEEP_ALIVE_MILLIS,
+        PROP_CANONICALIZE_SQL,
+        PROP_STRIP_SQL_COMMENTS,
+        PROP_PREWARM_STATEMENT_COUNT,
+        PROP_WARMUP_SNAPSHOT_FILE,
+        PROP_WARMUP_SNAPSHOT_INTERVAL_MILLIS,
+        PROP_PRIORITIZED_BORROWING,
+        PROP_PRIORITY_AGING_MILLIS,
+        PROP_POOL_PARTITIONS
     };
 
     /**
@@ -590,6 +634,116 @@ public class BasicDataSourceFactory implements ObjectFactory {
             dataSource.setDisconnectionSqlCodes(parseList(value, ','));
         }
 
+        value = properties.getProperty(PROP_CIRCUIT_BREAKER_FAILURE_THRESHOLD);
+        if (value != null) {
+            dataSource.setCircuitBreakerFailureThreshold(Integer.parseInt(value));
+        }
+
+        value = properties.getProperty(PROP_CIRCUIT_BREAKER_INITIAL_BACKOFF_MILLIS);
+        if (value != null) {
+            dataSource.setCircuitBreakerInitialBackoffMillis(Long.parseLong(value));
+        }
+
+        value = properties.getProperty(PROP_CIRCUIT_BREAKER_MAX_BACKOFF_MILLIS);
+        if (value != null) {
+            dataSource.setCircuitBreakerMaxBackoffMillis(Long.parseLong(value));
+        }
+
+        value = properties.getProperty(PROP_CONNECTION_CREATION_RATE);
+        if (value != null) {
+            dataSource.setConnectionCreationRate(Integer.parseInt(value));
+        }
+
+        value = properties.getProperty(PROP_CONNECTION_CREATION_BURST);
+        if (value != null) {
+            dataSource.setConnectionCreationBurst(Integer.parseInt(value));
+        }
+
+        value = properties.getProperty(PROP_CONNECTION_CREATION_RATE_SHARED);
+        if (value != null) {
+            dataSource.setConnectionCreationRateShared(Boolean.valueOf(value).booleanValue());
+        }
+
+        value = properties.getProperty(PROP_MAX_CONN_LIFETIME_JITTER_MILLIS);
+        if (value != null) {
+            dataSource.setMaxConnLifetimeJitterMillis(Long.parseLong(value));
+        }
+
+        value = properties.getProperty(PROP_MAX_CONN_LIFETIME_RENEWAL_MILLIS);
+        if (value != null) {
+            dataSource.setMaxConnLifetimeRenewalMillis(Long.parseLong(value));
+        }
+
+        value = properties.getProperty(PROP_DEFAULT_FETCH_SIZE);
+        if (value != null) {
+            dataSource.setDefaultFetchSize(Integer.valueOf(value));
+        }
+
+        value = properties.getProperty(PROP_ADAPTIVE_FETCH_SIZE);
+        if (value != null) {
+            dataSource.setAdaptiveFetchSize(Boolean.valueOf(value).booleanValue());
+        }
+
+        value = properties.getProperty(PROP_ADAPTIVE_FETCH_SIZE_MAX);
+        if (value != null) {
+            dataSource.setAdaptiveFetchSizeMax(Integer.parseInt(value));
+        }
+
+        value = properties.getProperty(PROP_CACHE_DATABASE_META_DATA);
+        if (value != null) {
+            dataSource.setCacheDatabaseMetaData(Boolean.valueOf(value).booleanValue());
+        }
+
+        value = properties.getProperty(PROP_DATABASE_META_DATA_CACHE_TTL_MILLIS);
+        if (value != null) {
+            dataSource.setDatabaseMetaDataCacheTtlMillis(Long.parseLong(value));
+        }
+
+        value = properties.getProperty(PROP_KEEP_ALIVE_MILLIS);
+        if (value != null) {
+            dataSource.setKeepAliveMillis(Long.parseLong(value));
+        }
+
+        value = properties.getProperty(PROP_CANONICALIZE_SQL);
+        if (value != null) {
+            dataSource.setCanonicalizeSql(Boolean.valueOf(value).booleanValue());
+        }
+
+        value = properties.getProperty(PROP_STRIP_SQL_COMMENTS);
+        if (value != null) {
+            dataSource.setStripSqlComments(Boolean.valueOf(value).booleanValue());
+        }
+
+        value = properties.getProperty(PROP_PREWARM_STATEMENT_COUNT);
+        if (value != null) {
+            dataSource.setPrewarmStatementCount(Integer.parseInt(value));
+        }
+
+        value = properties.getProperty(PROP_WARMUP_SNAPSHOT_FILE);
+        if (value != null) {
+            dataSource.setWarmupSnapshotFile(value);
+        }
+
+        value = properties.getProperty(PROP_WARMUP_SNAPSHOT_INTERVAL_MILLIS);
+        if (value != null) {
+            dataSource.setWarmupSnapshotIntervalMillis(Long.parseLong(value));
+        }
+
+        value = properties.getProperty(PROP_PRIORITIZED_BORROWING);
+        if (value != null) {
+            dataSource.setPrioritizedBorrowing(Boolean.valueOf(value).booleanValue());
+        }
+
+        value = properties.getProperty(PROP_PRIORITY_AGING_MILLIS);
+        if (value != null) {
+            dataSource.setPriorityAgingMillis(Long.parseLong(value));
+        }
+
+        value = properties.getProperty(PROP_POOL_PARTITIONS);
+        if (value != null) {
+            dataSource.setPoolPartitions(Integer.parseInt(value));
+        }
+
         // DBCP-215
         // Trick to make sure that initialSize connections are created
         if (dataSource.getInitialSize() > 0) {
@@ -266,4 +266,164 @@ public interface BasicDataSourceMXBean {
      * @since 2.1
      */
     String[] getDisconnectionSqlCodesAsArray();
+
+    /**
+     * See {@link BasicDataSource#getCircuitBreakerFailureThreshold()}
+     * @return {@link BasicDataSource#getCircuitBreakerFailureThreshold()}
+     * @since 2.2
+     */
+    int getCircuitBreakerFailureThreshold();
+
+    /**
+     * See {@link BasicDataSource#getCircuitBreakerInitialBackoffMillis()}
+     * @return {@link BasicDataSource#getCircuitBreakerInitialBackoffMillis()}
+     * @since 2.2
+     */
+    long getCircuitBreakerInitialBackoffMillis();
+
+    /**
+     * See {@link BasicDataSource#getCircuitBreakerMaxBackoffMillis()}
+     * @return {@link BasicDataSource#getCircuitBreakerMaxBackoffMillis()}
+     * @since 2.2
+     */
+    long getCircuitBreakerMaxBackoffMillis();
+
+    /**
+     * See {@link BasicDataSource#isCircuitBreakerOpen()}
+     * @return {@link BasicDataSource#isCircuitBreakerOpen()}
+     * @since 2.2
+     */
+    boolean isCircuitBreakerOpen();
+
+    /**
+     * See {@link BasicDataSource#getConnectionCreationRate()}
+     * @return {@link BasicDataSource#getConnectionCreationRate()}
+     * @since 2.2
+     */
+    int getConnectionCreationRate();
+
+    /**
+     * See {@link BasicDataSource#getConnectionCreationBurst()}
+     * @return {@link BasicDataSource#getConnectionCreationBurst()}
+     * @since 2.2
+     */
+    int getConnectionCreationBurst();
+
+    /**
+     * See {@link BasicDataSource#getConnectionCreationRateShared()}
+     * @return {@link BasicDataSource#getConnectionCreationRateShared()}
+     * @since 2.2
+     */
+    boolean getConnectionCreationRateShared();
+
+    /**
+     * See {@link BasicDataSource#getGeneration()}
+     * @return {@link BasicDataSource#getGeneration()}
+     * @since 2.2
+     */
+    long getGeneration();
+
+    /**
+     * See {@link BasicDataSource#incrementGeneration()}
+     * @return {@link BasicDataSource#incrementGeneration()}
+     * @since 2.2
+     */
+    long incrementGeneration();
+
+    /**
+     * See {@link BasicDataSource#getMaxConnLifetimeJitterMillis()}
+     * @return {@link BasicDataSource#getMaxConnLifetimeJitterMillis()}
+     * @since 2.2
+     */
+    long getMaxConnLifetimeJitterMillis();
+
+    /**
+     * See {@link BasicDataSource#getMaxConnLifetimeRenewalMillis()}
+     * @return {@link BasicDataSource#getMaxConnLifetimeRenewalMillis()}
+     * @since 2.2
+     */
+    long getMaxConnLifetimeRenewalMillis();
+
+    /**
+     * See {@link BasicDataSource#getCacheDatabaseMetaData()}
+     * @return {@link BasicDataSource#getCacheDatabaseMetaData()}
+     * @since 2.2
+     */
+    boolean getCacheDatabaseMetaData();
+
+    /**
+     * See {@link BasicDataSource#getDatabaseMetaDataCacheTtlMillis()}
+     * @return {@link BasicDataSource#getDatabaseMetaDataCacheTtlMillis()}
+     * @since 2.2
+     */
+    long getDatabaseMetaDataCacheTtlMillis();
+
+    /**
+     * See {@link BasicDataSource#invalidateDatabaseMetaDataCache()}
+     * @since 2.2
+     */
+    void invalidateDatabaseMetaDataCache();
+
+    /**
+     * See {@link BasicDataSource#getKeepAliveMillis()}
+     * @return {@link BasicDataSource#getKeepAliveMillis()}
+     * @since 2.2
+     */
+    long getKeepAliveMillis();
+
+    /**
+     * See {@link BasicDataSource#getCanonicalizeSql()}
+     * @return {@link BasicDataSource#getCanonicalizeSql()}
+     * @since 2.2
+     */
+    boolean getCanonicalizeSql();
+
+    /**
+     * See {@link BasicDataSource#getStripSqlComments()}
+     * @return {@link BasicDataSource#getStripSqlComments()}
+     * @since 2.2
+     */
+    boolean getStripSqlComments();
+
+    /**
+     * See {@link BasicDataSource#getPrewarmStatementCount()}
+     * @return {@link BasicDataSource#getPrewarmStatementCount()}
+     * @since 2.2
+     */
+    int getPrewarmStatementCount();
+
+    /**
+     * See {@link BasicDataSource#getWarmupSnapshotFile()}
+     * @return {@link BasicDataSource#getWarmupSnapshotFile()}
+     * @since 2.2
+     */
+    String getWarmupSnapshotFile();
+
+    /**
+     * See {@link BasicDataSource#getWarmupSnapshotIntervalMillis()}
+     * @return {@link BasicDataSource#getWarmupSnapshotIntervalMillis()}
+     * @since 2.2
+     */
+    long getWarmupSnapshotIntervalMillis();
+
+    /**
+     * See {@link BasicDataSource#getPrioritizedBorrowing()}
+     * @return {@link BasicDataSource#getPrioritizedBorrowing()}
+     * @since 2.2
+     */
+    boolean getPrioritizedBorrowing();
+
+    /**
+     * See {@link BasicDataSource#getPriorityAgingMillis()}
+     * @return {@link BasicDataSource#getPriorityAgingMillis()}
+     * @since 2.2
+     */
+    long getPriorityAgingMillis();
+
+    /**
+     * See {@link BasicDataSource#getPoolPartitions()}
+     * @return {@link BasicDataSource#getPoolPartitions()}
+     * @since 2.2
+     */
+    int getPoolPartitions();
 }
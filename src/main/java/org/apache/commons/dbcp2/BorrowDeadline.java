@@ -0,0 +1,77 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.commons.dbcp2;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * The deadline of the borrow in progress on the current thread, set by
+ * {@link PoolingDataSource#getConnection(long, TimeUnit)} so that a
+ * connection created for that borrow, for example one waiting for a
+ * {@link ConnectionCreationRateLimiter} permit, does not wait past it.
+ *
+ * @since 2.2
+ */
+final class BorrowDeadline {
+
+    /** The deadline in {@link System#nanoTime()} terms, null if none */
+    private static final ThreadLocal<Long> DEADLINE = new ThreadLocal<>();
+
+    private BorrowDeadline() {
+    }
+
+    /**
+     * Sets the deadline of the borrow on the current thread.
+     *
+     * @param maxWaitMillis the time the borrow may take
+     * @return the deadline replaced, to pass to {@link #restore(Long)}
+     */
+    static Long set(final long maxWaitMillis) {
+        final Long previous = DEADLINE.get();
+        DEADLINE.set(Long.valueOf(System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(maxWaitMillis)));
+        return previous;
+    }
+
+    /**
+     * Restores the deadline replaced by {@link #set(long)}.
+     *
+     * @param previous the value returned by {@link #set(long)}
+     */
+    static void restore(final Long previous) {
+        if (previous == null) {
+            DEADLINE.remove();
+        } else {
+            DEADLINE.set(previous);
+        }
+    }
+
+    /**
+     * Returns how long the current thread may still wait.
+     *
+     * @param maxWaitMillis the wait to use if no deadline is set, negative
+     *        to wait as long as necessary
+     * @return the time left until the deadline, at least zero, or
+     *         <code>maxWaitMillis</code> if no deadline is set
+     */
+    static long remainingMillis(final long maxWaitMillis) {
+        final Long deadline = DEADLINE.get();
+        if (deadline == null) {
+            return maxWaitMillis;
+        }
+        return Math.max(0, TimeUnit.NANOSECONDS.toMillis(deadline.longValue() - System.nanoTime()));
+    }
+}
@@ -0,0 +1,1981 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.commons.dbcp2;
+
+import java.sql.DatabaseMetaData;
+import java.sql.ResultSet;
+import java.sql.RowIdLifetime;
+import java.sql.SQLException;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.Callable;
+
+/**
+ * A {@link DelegatingDatabaseMetaData} that answers from a
+ * {@link DatabaseMetaDataCache} shared by all connections of a pool.
+ * <p>
+ * Scalar methods are answered from the cache once they have been called on
+ * any connection, except {@link #isReadOnly()}, which depends on the state
+ * of the connection. Methods returning a {@link ResultSet} return
+ * disconnected copies of cached results while they have not expired. Like
+ * {@link DelegatingDatabaseMetaData}, cached answers are only given while the
+ * connection is open.
+ *
+ * @since 2.2
+ */
+public class CachingDatabaseMetaData extends DelegatingDatabaseMetaData {
+
+    private final DatabaseMetaDataCache cache;
+
+    /** The connection that created me. **/
+    private final DelegatingConnection<?> conn;
+
+    public CachingDatabaseMetaData(final DelegatingConnection<?> c,
+            final DatabaseMetaData m, final DatabaseMetaDataCache cache) {
+        super(c, m);
+        this.conn = c;
+        this.cache = cache;
+    }
+
+    public DatabaseMetaDataCache getCache() {
+        return cache;
+    }
+
+    private static List<?> toList(final Object[] array) {
+        return array == null ? null : Arrays.asList(array);
+    }
+
+    private static List<?> toList(final int[] array) {
+        if (array == null) {
+            return null;
+        }
+        final Integer[] boxed = new Integer[array.length];
+        for (int i = 0; i < array.length; i++) {
+            boxed[i] = Integer.valueOf(array[i]);
+        }
+        return Arrays.asList(boxed);
+    }
+
+    /**
+     * Answers a scalar method from the cache, calling <code>loader</code> and
+     * caching its answer if there is none.
+     *
+     * @param key the cache key, the method name followed by its arguments
+     * @param loader calls the method on the delegate
+     * @return the cached or loaded answer
+     * @throws SQLException if the connection is closed or the delegate fails
+     */
+    @SuppressWarnings("unchecked")
+    private <T> T cached(final String key, final Callable<T> loader) throws SQLException {
+        conn.checkOpen();
+        final Object cached = cache.getScalar(key);
+        if (cached != null) {
+            return cached == DatabaseMetaDataCache.NULL_VALUE ? null : (T) cached;
+        }
+        final T value = load(loader);
+        cache.putScalar(key, value);
+        return value;
+    }
+
+    /**
+     * Answers a method returning a result set from the cache, calling
+     * <code>loader</code> and caching a copy of its result if there is none.
+     *
+     * @param key the cache key, the method name followed by its arguments
+     * @param loader calls the method on the delegate
+     * @return a copy of the cached or loaded result set
+     * @throws SQLException if the connection is closed or the delegate fails
+     */
+    private ResultSet cached(final List<Object> key, final Callable<ResultSet> loader)
+            throws SQLException {
+        final ResultSet cached = getCachedCatalog(key);
+        if (cached != null) {
+            return cached;
+        }
+        return cacheCatalog(key, load(loader));
+    }
+
+    private static <T> T load(final Callable<T> loader) throws SQLException {
+        try {
+            return loader.call();
+        } catch (final SQLException | RuntimeException e) {
+            throw e;
+        } catch (final Exception e) {
+            // Not thrown by the DatabaseMetaData methods loaders call
+            throw new SQLException(e);
+        }
+    }
+
+    private ResultSet getCachedCatalog(final List<Object> key) throws SQLException {
+        conn.checkOpen();
+        try {
+            return DelegatingResultSet.wrapResultSet(conn, cache.getCatalog(key));
+        }
+        catch (final SQLException e) {
+            handleException(e);
+            throw new AssertionError();
+        }
+    }
+
+    private ResultSet cacheCatalog(final List<Object> key, final ResultSet rs) throws SQLException {
+        try {
+            final ResultSet copy = cache.putCatalog(key, rs);
+            return copy == rs ? rs : DelegatingResultSet.wrapResultSet(conn, copy);
+        }
+        catch (final SQLException e) {
+            handleException(e);
+            throw new AssertionError();
+        }
+    }
+
+    @Override
+    public boolean allProceduresAreCallable() throws SQLException {
+        return cached("allProceduresAreCallable", new Callable<Boolean>() {
+            @Override
+            public Boolean call() throws SQLException {
+                return Boolean.valueOf(CachingDatabaseMetaData.super.allProceduresAreCallable());
+            }
+        }).booleanValue();
+    }
+
+    @Override
+    public boolean allTablesAreSelectable() throws SQLException {
+        return cached("allTablesAreSelectable", new Callable<Boolean>() {
+            @Override
+            public Boolean call() throws SQLException {
+                return Boolean.valueOf(CachingDatabaseMetaData.super.allTablesAreSelectable());
+            }
+        }).booleanValue();
+    }
+
+    @Override
+    public boolean dataDefinitionCausesTransactionCommit() throws SQLException {
+        return cached("dataDefinitionCausesTransactionCommit", new Callable<Boolean>() {
+            @Override
+            public Boolean call() throws SQLException {
+                return Boolean.valueOf(CachingDatabaseMetaData.super.dataDefinitionCausesTransactionCommit());
+            }
+        }).booleanValue();
+    }
+
+    @Override
+    public boolean dataDefinitionIgnoredInTransactions() throws SQLException {
+        return cached("dataDefinitionIgnoredInTransactions", new Callable<Boolean>() {
+            @Override
+            public Boolean call() throws SQLException {
+                return Boolean.valueOf(CachingDatabaseMetaData.super.dataDefinitionIgnoredInTransactions());
+            }
+        }).booleanValue();
+    }
+
+    @Override
+    public boolean deletesAreDetected(final int type) throws SQLException {
+        final String key = "deletesAreDetected(" + type + ")";
+        return cached(key, new Callable<Boolean>() {
+            @Override
+            public Boolean call() throws SQLException {
+                return Boolean.valueOf(CachingDatabaseMetaData.super.deletesAreDetected(type));
+            }
+        }).booleanValue();
+    }
+
+    @Override
+    public boolean doesMaxRowSizeIncludeBlobs() throws SQLException {
+        return cached("doesMaxRowSizeIncludeBlobs", new Callable<Boolean>() {
+            @Override
+            public Boolean call() throws SQLException {
+                return Boolean.valueOf(CachingDatabaseMetaData.super.doesMaxRowSizeIncludeBlobs());
+            }
+        }).booleanValue();
+    }
+
+    @Override
+    public ResultSet getAttributes(final String catalog, final String schemaPattern,
+            final String typeNamePattern, final String attributeNamePattern)
+            throws SQLException {
+        final List<Object> key = Arrays.<Object>asList("getAttributes", catalog, schemaPattern,
+                typeNamePattern, attributeNamePattern);
+        return cached(key, new Callable<ResultSet>() {
+            @Override
+            public ResultSet call() throws SQLException {
+                return CachingDatabaseMetaData.super.getAttributes(catalog, schemaPattern,
+                        typeNamePattern, attributeNamePattern);
+            }
+        });
+    }
+
+    @Override
+    public ResultSet getBestRowIdentifier(final String catalog, final String schema,
+            final String table, final int scope, final boolean nullable) throws SQLException {
+        final List<Object> key = Arrays.<Object>asList("getBestRowIdentifier", catalog, schema,
+                table, Integer.valueOf(scope), Boolean.valueOf(nullable));
+        return cached(key, new Callable<ResultSet>() {
+            @Override
+            public ResultSet call() throws SQLException {
+                return CachingDatabaseMetaData.super.getBestRowIdentifier(catalog, schema, table,
+                        scope, nullable);
+            }
+        });
+    }
+
+    @Override
+    public String getCatalogSeparator() throws SQLException {
+        return cached("getCatalogSeparator", new Callable<String>() {
+            @Override
+            public String call() throws SQLException {
+                return CachingDatabaseMetaData.super.getCatalogSeparator();
+            }
+        });
+    }
+
+    @Override
+    public String getCatalogTerm() throws SQLException {
+        return cached("getCatalogTerm", new Callable<String>() {
+            @Override
+            public String call() throws SQLException {
+                return CachingDatabaseMetaData.super.getCatalogTerm();
+            }
+        });
+    }
+
+    @Override
+    public ResultSet getCatalogs() throws SQLException {
+        final List<Object> key = Arrays.<Object>asList("getCatalogs");
+        return cached(key, new Callable<ResultSet>() {
+            @Override
+            public ResultSet call() throws SQLException {
+                return CachingDatabaseMetaData.super.getCatalogs();
+            }
+        });
+    }
+
+    @Override
+    public ResultSet getColumnPrivileges(final String catalog, final String schema,
+            final String table, final String columnNamePattern) throws SQLException {
+        final List<Object> key = Arrays.<Object>asList("getColumnPrivileges", catalog, schema,
+                table, columnNamePattern);
+        return cached(key, new Callable<ResultSet>() {
+            @Override
+            public ResultSet call() throws SQLException {
+                return CachingDatabaseMetaData.super.getColumnPrivileges(catalog, schema, table,
+                        columnNamePattern);
+            }
+        });
+    }
+
+    @Override
+    public ResultSet getColumns(final String catalog, final String schemaPattern,
+            final String tableNamePattern, final String columnNamePattern)
+            throws SQLException {
+        final List<Object> key = Arrays.<Object>asList("getColumns", catalog, schemaPattern,
+                tableNamePattern, columnNamePattern);
+        return cached(key, new Callable<ResultSet>() {
+            @Override
+            public ResultSet call() throws SQLException {
+                return CachingDatabaseMetaData.super.getColumns(catalog, schemaPattern,
+                        tableNamePattern, columnNamePattern);
+            }
+        });
+    }
+
+    @Override
+    public ResultSet getCrossReference(final String parentCatalog,
+            final String parentSchema, final String parentTable, final String foreignCatalog,
+            final String foreignSchema, final String foreignTable) throws SQLException {
+        final List<Object> key = Arrays.<Object>asList("getCrossReference", parentCatalog,
+                parentSchema, parentTable, foreignCatalog, foreignSchema, foreignTable);
+        return cached(key, new Callable<ResultSet>() {
+            @Override
+            public ResultSet call() throws SQLException {
+                return CachingDatabaseMetaData.super.getCrossReference(parentCatalog, parentSchema,
+                        parentTable, foreignCatalog, foreignSchema, foreignTable);
+            }
+        });
+    }
+
+    @Override
+    public int getDatabaseMajorVersion() throws SQLException {
+        return cached("getDatabaseMajorVersion", new Callable<Integer>() {
+            @Override
+            public Integer call() throws SQLException {
+                return Integer.valueOf(CachingDatabaseMetaData.super.getDatabaseMajorVersion());
+            }
+        }).intValue();
+    }
+
+    @Override
+    public int getDatabaseMinorVersion() throws SQLException {
+        return cached("getDatabaseMinorVersion", new Callable<Integer>() {
+            @Override
+            public Integer call() throws SQLException {
+                return Integer.valueOf(CachingDatabaseMetaData.super.getDatabaseMinorVersion());
+            }
+        }).intValue();
+    }
+
+    @Override
+    public String getDatabaseProductName() throws SQLException {
+        return cached("getDatabaseProductName", new Callable<String>() {
+            @Override
+            public String call() throws SQLException {
+                return CachingDatabaseMetaData.super.getDatabaseProductName();
+            }
+        });
+    }
+
+    @Override
+    public String getDatabaseProductVersion() throws SQLException {
+        return cached("getDatabaseProductVersion", new Callable<String>() {
+            @Override
+            public String call() throws SQLException {
+                return CachingDatabaseMetaData.super.getDatabaseProductVersion();
+            }
+        });
+    }
+
+    @Override
+    public int getDefaultTransactionIsolation() throws SQLException {
+        return cached("getDefaultTransactionIsolation", new Callable<Integer>() {
+            @Override
+            public Integer call() throws SQLException {
+                return Integer.valueOf(CachingDatabaseMetaData.super.getDefaultTransactionIsolation());
+            }
+        }).intValue();
+    }
+
+    // Cannot check the connection without throwing SQLException, the
+    // driver version does not depend on it anyway.
+    @Override
+    public int getDriverMajorVersion() {
+        final Object cached = cache.getScalar("getDriverMajorVersion");
+        if (cached != null) {
+            return ((Integer) cached).intValue();
+        }
+        final int value = super.getDriverMajorVersion();
+        cache.putScalar("getDriverMajorVersion", Integer.valueOf(value));
+        return value;
+    }
+
+    @Override
+    public int getDriverMinorVersion() {
+        final Object cached = cache.getScalar("getDriverMinorVersion");
+        if (cached != null) {
+            return ((Integer) cached).intValue();
+        }
+        final int value = super.getDriverMinorVersion();
+        cache.putScalar("getDriverMinorVersion", Integer.valueOf(value));
+        return value;
+    }
+
+    @Override
+    public String getDriverName() throws SQLException {
+        return cached("getDriverName", new Callable<String>() {
+            @Override
+            public String call() throws SQLException {
+                return CachingDatabaseMetaData.super.getDriverName();
+            }
+        });
+    }
+
+    @Override
+    public String getDriverVersion() throws SQLException {
+        return cached("getDriverVersion", new Callable<String>() {
+            @Override
+            public String call() throws SQLException {
+                return CachingDatabaseMetaData.super.getDriverVersion();
+            }
+        });
+    }
+
+    @Override
+    public ResultSet getExportedKeys(final String catalog, final String schema, final String table)
+            throws SQLException {
+        final List<Object> key = Arrays.<Object>asList("getExportedKeys", catalog, schema,
+                table);
+        return cached(key, new Callable<ResultSet>() {
+            @Override
+            public ResultSet call() throws SQLException {
+                return CachingDatabaseMetaData.super.getExportedKeys(catalog, schema, table);
+            }
+        });
+    }
+
+    @Override
+    public String getExtraNameCharacters() throws SQLException {
+        return cached("getExtraNameCharacters", new Callable<String>() {
+            @Override
+            public String call() throws SQLException {
+                return CachingDatabaseMetaData.super.getExtraNameCharacters();
+            }
+        });
+    }
+
+    @Override
+    public String getIdentifierQuoteString() throws SQLException {
+        return cached("getIdentifierQuoteString", new Callable<String>() {
+            @Override
+            public String call() throws SQLException {
+                return CachingDatabaseMetaData.super.getIdentifierQuoteString();
+            }
+        });
+    }
+
+    @Override
+    public ResultSet getImportedKeys(final String catalog, final String schema, final String table)
+            throws SQLException {
+        final List<Object> key = Arrays.<Object>asList("getImportedKeys", catalog, schema,
+                table);
+        return cached(key, new Callable<ResultSet>() {
+            @Override
+            public ResultSet call() throws SQLException {
+                return CachingDatabaseMetaData.super.getImportedKeys(catalog, schema, table);
+            }
+        });
+    }
+
+    @Override
+    public ResultSet getIndexInfo(final String catalog, final String schema, final String table,
+            final boolean unique, final boolean approximate) throws SQLException {
+        final List<Object> key = Arrays.<Object>asList("getIndexInfo", catalog, schema, table,
+                Boolean.valueOf(unique), Boolean.valueOf(approximate));
+        return cached(key, new Callable<ResultSet>() {
+            @Override
+            public ResultSet call() throws SQLException {
+                return CachingDatabaseMetaData.super.getIndexInfo(catalog, schema, table, unique,
+                        approximate);
+            }
+        });
+    }
+
+    @Override
+    public int getJDBCMajorVersion() throws SQLException {
+        return cached("getJDBCMajorVersion", new Callable<Integer>() {
+            @Override
+            public Integer call() throws SQLException {
+                return Integer.valueOf(CachingDatabaseMetaData.super.getJDBCMajorVersion());
+            }
+        }).intValue();
+    }
+
+    @Override
+    public int getJDBCMinorVersion() throws SQLException {
+        return cached("getJDBCMinorVersion", new Callable<Integer>() {
+            @Override
+            public Integer call() throws SQLException {
+                return Integer.valueOf(CachingDatabaseMetaData.super.getJDBCMinorVersion());
+            }
+        }).intValue();
+    }
+
+    @Override
+    public int getMaxBinaryLiteralLength() throws SQLException {
+        return cached("getMaxBinaryLiteralLength", new Callable<Integer>() {
+            @Override
+            public Integer call() throws SQLException {
+                return Integer.valueOf(CachingDatabaseMetaData.super.getMaxBinaryLiteralLength());
+            }
+        }).intValue();
+    }
+
+    @Override
+    public int getMaxCatalogNameLength() throws SQLException {
+        return cached("getMaxCatalogNameLength", new Callable<Integer>() {
+            @Override
+            public Integer call() throws SQLException {
+                return Integer.valueOf(CachingDatabaseMetaData.super.getMaxCatalogNameLength());
+            }
+        }).intValue();
+    }
+
+    @Override
+    public int getMaxCharLiteralLength() throws SQLException {
+        return cached("getMaxCharLiteralLength", new Callable<Integer>() {
+            @Override
+            public Integer call() throws SQLException {
+                return Integer.valueOf(CachingDatabaseMetaData.super.getMaxCharLiteralLength());
+            }
+        }).intValue();
+    }
+
+    @Override
+    public int getMaxColumnNameLength() throws SQLException {
+        return cached("getMaxColumnNameLength", new Callable<Integer>() {
+            @Override
+            public Integer call() throws SQLException {
+                return Integer.valueOf(CachingDatabaseMetaData.super.getMaxColumnNameLength());
+            }
+        }).intValue();
+    }
+
+    @Override
+    public int getMaxColumnsInGroupBy() throws SQLException {
+        return cached("getMaxColumnsInGroupBy", new Callable<Integer>() {
+            @Override
+            public Integer call() throws SQLException {
+                return Integer.valueOf(CachingDatabaseMetaData.super.getMaxColumnsInGroupBy());
+            }
+        }).intValue();
+    }
+
+    @Override
+    public int getMaxColumnsInIndex() throws SQLException {
+        return cached("getMaxColumnsInIndex", new Callable<Integer>() {
+            @Override
+            public Integer call() throws SQLException {
+                return Integer.valueOf(CachingDatabaseMetaData.super.getMaxColumnsInIndex());
+            }
+        }).intValue();
+    }
+
+    @Override
+    public int getMaxColumnsInOrderBy() throws SQLException {
+        return cached("getMaxColumnsInOrderBy", new Callable<Integer>() {
+            @Override
+            public Integer call() throws SQLException {
+                return Integer.valueOf(CachingDatabaseMetaData.super.getMaxColumnsInOrderBy());
+            }
+        }).intValue();
+    }
+
+    @Override
+    public int getMaxColumnsInSelect() throws SQLException {
+        return cached("getMaxColumnsInSelect", new Callable<Integer>() {
+            @Override
+            public Integer call() throws SQLException {
+                return Integer.valueOf(CachingDatabaseMetaData.super.getMaxColumnsInSelect());
+            }
+        }).intValue();
+    }
+
+    @Override
+    public int getMaxColumnsInTable() throws SQLException {
+        return cached("getMaxColumnsInTable", new Callable<Integer>() {
+            @Override
+            public Integer call() throws SQLException {
+                return Integer.valueOf(CachingDatabaseMetaData.super.getMaxColumnsInTable());
+            }
+        }).intValue();
+    }
+
+    @Override
+    public int getMaxConnections() throws SQLException {
+        return cached("getMaxConnections", new Callable<Integer>() {
+            @Override
+            public Integer call() throws SQLException {
+                return Integer.valueOf(CachingDatabaseMetaData.super.getMaxConnections());
+            }
+        }).intValue();
+    }
+
+    @Override
+    public int getMaxCursorNameLength() throws SQLException {
+        return cached("getMaxCursorNameLength", new Callable<Integer>() {
+            @Override
+            public Integer call() throws SQLException {
+                return Integer.valueOf(CachingDatabaseMetaData.super.getMaxCursorNameLength());
+            }
+        }).intValue();
+    }
+
+    @Override
+    public int getMaxIndexLength() throws SQLException {
+        return cached("getMaxIndexLength", new Callable<Integer>() {
+            @Override
+            public Integer call() throws SQLException {
+                return Integer.valueOf(CachingDatabaseMetaData.super.getMaxIndexLength());
+            }
+        }).intValue();
+    }
+
+    @Override
+    public int getMaxProcedureNameLength() throws SQLException {
+        return cached("getMaxProcedureNameLength", new Callable<Integer>() {
+            @Override
+            public Integer call() throws SQLException {
+                return Integer.valueOf(CachingDatabaseMetaData.super.getMaxProcedureNameLength());
+            }
+        }).intValue();
+    }
+
+    @Override
+    public int getMaxRowSize() throws SQLException {
+        return cached("getMaxRowSize", new Callable<Integer>() {
+            @Override
+            public Integer call() throws SQLException {
+                return Integer.valueOf(CachingDatabaseMetaData.super.getMaxRowSize());
+            }
+        }).intValue();
+    }
+
+    @Override
+    public int getMaxSchemaNameLength() throws SQLException {
+        return cached("getMaxSchemaNameLength", new Callable<Integer>() {
+            @Override
+            public Integer call() throws SQLException {
+                return Integer.valueOf(CachingDatabaseMetaData.super.getMaxSchemaNameLength());
+            }
+        }).intValue();
+    }
+
+    @Override
+    public int getMaxStatementLength() throws SQLException {
+        return cached("getMaxStatementLength", new Callable<Integer>() {
+            @Override
+            public Integer call() throws SQLException {
+                return Integer.valueOf(CachingDatabaseMetaData.super.getMaxStatementLength());
+            }
+        }).intValue();
+    }
+
+    @Override
+    public int getMaxStatements() throws SQLException {
+        return cached("getMaxStatements", new Callable<Integer>() {
+            @Override
+            public Integer call() throws SQLException {
+                return Integer.valueOf(CachingDatabaseMetaData.super.getMaxStatements());
+            }
+        }).intValue();
+    }
+
+    @Override
+    public int getMaxTableNameLength() throws SQLException {
+        return cached("getMaxTableNameLength", new Callable<Integer>() {
+            @Override
+            public Integer call() throws SQLException {
+                return Integer.valueOf(CachingDatabaseMetaData.super.getMaxTableNameLength());
+            }
+        }).intValue();
+    }
+
+    @Override
+    public int getMaxTablesInSelect() throws SQLException {
+        return cached("getMaxTablesInSelect", new Callable<Integer>() {
+            @Override
+            public Integer call() throws SQLException {
+                return Integer.valueOf(CachingDatabaseMetaData.super.getMaxTablesInSelect());
+            }
+        }).intValue();
+    }
+
+    @Override
+    public int getMaxUserNameLength() throws SQLException {
+        return cached("getMaxUserNameLength", new Callable<Integer>() {
+            @Override
+            public Integer call() throws SQLException {
+                return Integer.valueOf(CachingDatabaseMetaData.super.getMaxUserNameLength());
+            }
+        }).intValue();
+    }
+
+    @Override
+    public String getNumericFunctions() throws SQLException {
+        return cached("getNumericFunctions", new Callable<String>() {
+            @Override
+            public String call() throws SQLException {
+                return CachingDatabaseMetaData.super.getNumericFunctions();
+            }
+        });
+    }
+
+    @Override
+    public ResultSet getPrimaryKeys(final String catalog, final String schema, final String table)
+            throws SQLException {
+        final List<Object> key = Arrays.<Object>asList("getPrimaryKeys", catalog, schema,
+                table);
+        return cached(key, new Callable<ResultSet>() {
+            @Override
+            public ResultSet call() throws SQLException {
+                return CachingDatabaseMetaData.super.getPrimaryKeys(catalog, schema, table);
+            }
+        });
+    }
+
+    @Override
+    public ResultSet getProcedureColumns(final String catalog, final String schemaPattern,
+            final String procedureNamePattern, final String columnNamePattern)
+            throws SQLException {
+        final List<Object> key = Arrays.<Object>asList("getProcedureColumns", catalog,
+                schemaPattern, procedureNamePattern, columnNamePattern);
+        return cached(key, new Callable<ResultSet>() {
+            @Override
+            public ResultSet call() throws SQLException {
+                return CachingDatabaseMetaData.super.getProcedureColumns(catalog, schemaPattern,
+                        procedureNamePattern, columnNamePattern);
+            }
+        });
+    }
+
+    @Override
+    public String getProcedureTerm() throws SQLException {
+        return cached("getProcedureTerm", new Callable<String>() {
+            @Override
+            public String call() throws SQLException {
+                return CachingDatabaseMetaData.super.getProcedureTerm();
+            }
+        });
+    }
+
+    @Override
+    public ResultSet getProcedures(final String catalog, final String schemaPattern,
+            final String procedureNamePattern) throws SQLException {
+        final List<Object> key = Arrays.<Object>asList("getProcedures", catalog, schemaPattern,
+                procedureNamePattern);
+        return cached(key, new Callable<ResultSet>() {
+            @Override
+            public ResultSet call() throws SQLException {
+                return CachingDatabaseMetaData.super.getProcedures(catalog, schemaPattern,
+                        procedureNamePattern);
+            }
+        });
+    }
+
+    @Override
+    public int getResultSetHoldability() throws SQLException {
+        return cached("getResultSetHoldability", new Callable<Integer>() {
+            @Override
+            public Integer call() throws SQLException {
+                return Integer.valueOf(CachingDatabaseMetaData.super.getResultSetHoldability());
+            }
+        }).intValue();
+    }
+
+    @Override
+    public String getSQLKeywords() throws SQLException {
+        return cached("getSQLKeywords", new Callable<String>() {
+            @Override
+            public String call() throws SQLException {
+                return CachingDatabaseMetaData.super.getSQLKeywords();
+            }
+        });
+    }
+
+    @Override
+    public int getSQLStateType() throws SQLException {
+        return cached("getSQLStateType", new Callable<Integer>() {
+            @Override
+            public Integer call() throws SQLException {
+                return Integer.valueOf(CachingDatabaseMetaData.super.getSQLStateType());
+            }
+        }).intValue();
+    }
+
+    @Override
+    public String getSchemaTerm() throws SQLException {
+        return cached("getSchemaTerm", new Callable<String>() {
+            @Override
+            public String call() throws SQLException {
+                return CachingDatabaseMetaData.super.getSchemaTerm();
+            }
+        });
+    }
+
+    @Override
+    public ResultSet getSchemas() throws SQLException {
+        final List<Object> key = Arrays.<Object>asList("getSchemas");
+        return cached(key, new Callable<ResultSet>() {
+            @Override
+            public ResultSet call() throws SQLException {
+                return CachingDatabaseMetaData.super.getSchemas();
+            }
+        });
+    }
+
+    @Override
+    public String getSearchStringEscape() throws SQLException {
+        return cached("getSearchStringEscape", new Callable<String>() {
+            @Override
+            public String call() throws SQLException {
+                return CachingDatabaseMetaData.super.getSearchStringEscape();
+            }
+        });
+    }
+
+    @Override
+    public String getStringFunctions() throws SQLException {
+        return cached("getStringFunctions", new Callable<String>() {
+            @Override
+            public String call() throws SQLException {
+                return CachingDatabaseMetaData.super.getStringFunctions();
+            }
+        });
+    }
+
+    @Override
+    public ResultSet getSuperTables(final String catalog, final String schemaPattern,
+            final String tableNamePattern) throws SQLException {
+        final List<Object> key = Arrays.<Object>asList("getSuperTables", catalog,
+                schemaPattern, tableNamePattern);
+        return cached(key, new Callable<ResultSet>() {
+            @Override
+            public ResultSet call() throws SQLException {
+                return CachingDatabaseMetaData.super.getSuperTables(catalog, schemaPattern,
+                        tableNamePattern);
+            }
+        });
+    }
+
+    @Override
+    public ResultSet getSuperTypes(final String catalog, final String schemaPattern,
+            final String typeNamePattern) throws SQLException {
+        final List<Object> key = Arrays.<Object>asList("getSuperTypes", catalog, schemaPattern,
+                typeNamePattern);
+        return cached(key, new Callable<ResultSet>() {
+            @Override
+            public ResultSet call() throws SQLException {
+                return CachingDatabaseMetaData.super.getSuperTypes(catalog, schemaPattern,
+                        typeNamePattern);
+            }
+        });
+    }
+
+    @Override
+    public String getSystemFunctions() throws SQLException {
+        return cached("getSystemFunctions", new Callable<String>() {
+            @Override
+            public String call() throws SQLException {
+                return CachingDatabaseMetaData.super.getSystemFunctions();
+            }
+        });
+    }
+
+    @Override
+    public ResultSet getTablePrivileges(final String catalog, final String schemaPattern,
+            final String tableNamePattern) throws SQLException {
+        final List<Object> key = Arrays.<Object>asList("getTablePrivileges", catalog,
+                schemaPattern, tableNamePattern);
+        return cached(key, new Callable<ResultSet>() {
+            @Override
+            public ResultSet call() throws SQLException {
+                return CachingDatabaseMetaData.super.getTablePrivileges(catalog, schemaPattern,
+                        tableNamePattern);
+            }
+        });
+    }
+
+    @Override
+    public ResultSet getTableTypes() throws SQLException {
+        final List<Object> key = Arrays.<Object>asList("getTableTypes");
+        return cached(key, new Callable<ResultSet>() {
+            @Override
+            public ResultSet call() throws SQLException {
+                return CachingDatabaseMetaData.super.getTableTypes();
+            }
+        });
+    }
+
+    @Override
+    public ResultSet getTables(final String catalog, final String schemaPattern,
+            final String tableNamePattern, final String[] types) throws SQLException {
+        final List<Object> key = Arrays.<Object>asList("getTables", catalog, schemaPattern,
+                tableNamePattern, toList(types));
+        return cached(key, new Callable<ResultSet>() {
+            @Override
+            public ResultSet call() throws SQLException {
+                return CachingDatabaseMetaData.super.getTables(catalog, schemaPattern,
+                        tableNamePattern, types);
+            }
+        });
+    }
+
+    @Override
+    public String getTimeDateFunctions() throws SQLException {
+        return cached("getTimeDateFunctions", new Callable<String>() {
+            @Override
+            public String call() throws SQLException {
+                return CachingDatabaseMetaData.super.getTimeDateFunctions();
+            }
+        });
+    }
+
+    @Override
+    public ResultSet getTypeInfo() throws SQLException {
+        final List<Object> key = Arrays.<Object>asList("getTypeInfo");
+        return cached(key, new Callable<ResultSet>() {
+            @Override
+            public ResultSet call() throws SQLException {
+                return CachingDatabaseMetaData.super.getTypeInfo();
+            }
+        });
+    }
+
+    @Override
+    public ResultSet getUDTs(final String catalog, final String schemaPattern,
+            final String typeNamePattern, final int[] types) throws SQLException {
+        final List<Object> key = Arrays.<Object>asList("getUDTs", catalog, schemaPattern,
+                typeNamePattern, toList(types));
+        return cached(key, new Callable<ResultSet>() {
+            @Override
+            public ResultSet call() throws SQLException {
+                return CachingDatabaseMetaData.super.getUDTs(catalog, schemaPattern, typeNamePattern,
+                        types);
+            }
+        });
+    }
+
+    @Override
+    public String getURL() throws SQLException {
+        return cached("getURL", new Callable<String>() {
+            @Override
+            public String call() throws SQLException {
+                return CachingDatabaseMetaData.super.getURL();
+            }
+        });
+    }
+
+    @Override
+    public String getUserName() throws SQLException {
+        return cached("getUserName", new Callable<String>() {
+            @Override
+            public String call() throws SQLException {
+                return CachingDatabaseMetaData.super.getUserName();
+            }
+        });
+    }
+
+    @Override
+    public ResultSet getVersionColumns(final String catalog, final String schema,
+            final String table) throws SQLException {
+        final List<Object> key = Arrays.<Object>asList("getVersionColumns", catalog, schema,
+                table);
+        return cached(key, new Callable<ResultSet>() {
+            @Override
+            public ResultSet call() throws SQLException {
+                return CachingDatabaseMetaData.super.getVersionColumns(catalog, schema, table);
+            }
+        });
+    }
+
+    @Override
+    public boolean insertsAreDetected(final int type) throws SQLException {
+        final String key = "insertsAreDetected(" + type + ")";
+        return cached(key, new Callable<Boolean>() {
+            @Override
+            public Boolean call() throws SQLException {
+                return Boolean.valueOf(CachingDatabaseMetaData.super.insertsAreDetected(type));
+            }
+        }).booleanValue();
+    }
+
+    @Override
+    public boolean isCatalogAtStart() throws SQLException {
+        return cached("isCatalogAtStart", new Callable<Boolean>() {
+            @Override
+            public Boolean call() throws SQLException {
+                return Boolean.valueOf(CachingDatabaseMetaData.super.isCatalogAtStart());
+            }
+        }).booleanValue();
+    }
+
+    @Override
+    public boolean locatorsUpdateCopy() throws SQLException {
+        return cached("locatorsUpdateCopy", new Callable<Boolean>() {
+            @Override
+            public Boolean call() throws SQLException {
+                return Boolean.valueOf(CachingDatabaseMetaData.super.locatorsUpdateCopy());
+            }
+        }).booleanValue();
+    }
+
+    @Override
+    public boolean nullPlusNonNullIsNull() throws SQLException {
+        return cached("nullPlusNonNullIsNull", new Callable<Boolean>() {
+            @Override
+            public Boolean call() throws SQLException {
+                return Boolean.valueOf(CachingDatabaseMetaData.super.nullPlusNonNullIsNull());
+            }
+        }).booleanValue();
+    }
+
+    @Override
+    public boolean nullsAreSortedAtEnd() throws SQLException {
+        return cached("nullsAreSortedAtEnd", new Callable<Boolean>() {
+            @Override
+            public Boolean call() throws SQLException {
+                return Boolean.valueOf(CachingDatabaseMetaData.super.nullsAreSortedAtEnd());
+            }
+        }).booleanValue();
+    }
+
+    @Override
+    public boolean nullsAreSortedAtStart() throws SQLException {
+        return cached("nullsAreSortedAtStart", new Callable<Boolean>() {
+            @Override
+            public Boolean call() throws SQLException {
+                return Boolean.valueOf(CachingDatabaseMetaData.super.nullsAreSortedAtStart());
+            }
+        }).booleanValue();
+    }
+
+    @Override
+    public boolean nullsAreSortedHigh() throws SQLException {
+        return cached("nullsAreSortedHigh", new Callable<Boolean>() {
+            @Override
+            public Boolean call() throws SQLException {
+                return Boolean.valueOf(CachingDatabaseMetaData.super.nullsAreSortedHigh());
+            }
+        }).booleanValue();
+    }
+
+    @Override
+    public boolean nullsAreSortedLow() throws SQLException {
+        return cached("nullsAreSortedLow", new Callable<Boolean>() {
+            @Override
+            public Boolean call() throws SQLException {
+                return Boolean.valueOf(CachingDatabaseMetaData.super.nullsAreSortedLow());
+            }
+        }).booleanValue();
+    }
+
+    @Override
+    public boolean othersDeletesAreVisible(final int type) throws SQLException {
+        final String key = "othersDeletesAreVisible(" + type + ")";
+        return cached(key, new Callable<Boolean>() {
+            @Override
+            public Boolean call() throws SQLException {
+                return Boolean.valueOf(CachingDatabaseMetaData.super.othersDeletesAreVisible(type));
+            }
+        }).booleanValue();
+    }
+
+    @Override
+    public boolean othersInsertsAreVisible(final int type) throws SQLException {
+        final String key = "othersInsertsAreVisible(" + type + ")";
+        return cached(key, new Callable<Boolean>() {
+            @Override
+            public Boolean call() throws SQLException {
+                return Boolean.valueOf(CachingDatabaseMetaData.super.othersInsertsAreVisible(type));
+            }
+        }).booleanValue();
+    }
+
+    @Override
+    public boolean othersUpdatesAreVisible(final int type) throws SQLException {
+        final String key = "othersUpdatesAreVisible(" + type + ")";
+        return cached(key, new Callable<Boolean>() {
+            @Override
+            public Boolean call() throws SQLException {
+                return Boolean.valueOf(CachingDatabaseMetaData.super.othersUpdatesAreVisible(type));
+            }
+        }).booleanValue();
+    }
+
+    @Override
+    public boolean ownDeletesAreVisible(final int type) throws SQLException {
+        final String key = "ownDeletesAreVisible(" + type + ")";
+        return cached(key, new Callable<Boolean>() {
+            @Override
+            public Boolean call() throws SQLException {
+                return Boolean.valueOf(CachingDatabaseMetaData.super.ownDeletesAreVisible(type));
+            }
+        }).booleanValue();
+    }
+
+    @Override
+    public boolean ownInsertsAreVisible(final int type) throws SQLException {
+        final String key = "ownInsertsAreVisible(" + type + ")";
+        return cached(key, new Callable<Boolean>() {
+            @Override
+            public Boolean call() throws SQLException {
+                return Boolean.valueOf(CachingDatabaseMetaData.super.ownInsertsAreVisible(type));
+            }
+        }).booleanValue();
+    }
+
+    @Override
+    public boolean ownUpdatesAreVisible(final int type) throws SQLException {
+        final String key = "ownUpdatesAreVisible(" + type + ")";
+        return cached(key, new Callable<Boolean>() {
+            @Override
+            public Boolean call() throws SQLException {
+                return Boolean.valueOf(CachingDatabaseMetaData.super.ownUpdatesAreVisible(type));
+            }
+        }).booleanValue();
+    }
+
+    @Override
+    public boolean storesLowerCaseIdentifiers() throws SQLException {
+        return cached("storesLowerCaseIdentifiers", new Callable<Boolean>() {
+            @Override
+            public Boolean call() throws SQLException {
+                return Boolean.valueOf(CachingDatabaseMetaData.super.storesLowerCaseIdentifiers());
+            }
+        }).booleanValue();
+    }
+
+    @Override
+    public boolean storesLowerCaseQuotedIdentifiers() throws SQLException {
+        return cached("storesLowerCaseQuotedIdentifiers", new Callable<Boolean>() {
+            @Override
+            public Boolean call() throws SQLException {
+                return Boolean.valueOf(CachingDatabaseMetaData.super.storesLowerCaseQuotedIdentifiers());
+            }
+        }).booleanValue();
+    }
+
+    @Override
+    public boolean storesMixedCaseIdentifiers() throws SQLException {
+        return cached("storesMixedCaseIdentifiers", new Callable<Boolean>() {
+            @Override
+            public Boolean call() throws SQLException {
+                return Boolean.valueOf(CachingDatabaseMetaData.super.storesMixedCaseIdentifiers());
+            }
+        }).booleanValue();
+    }
+
+    @Override
+    public boolean storesMixedCaseQuotedIdentifiers() throws SQLException {
+        return cached("storesMixedCaseQuotedIdentifiers", new Callable<Boolean>() {
+            @Override
+            public Boolean call() throws SQLException {
+                return Boolean.valueOf(CachingDatabaseMetaData.super.storesMixedCaseQuotedIdentifiers());
+            }
+        }).booleanValue();
+    }
+
+    @Override
+    public boolean storesUpperCaseIdentifiers() throws SQLException {
+        return cached("storesUpperCaseIdentifiers", new Callable<Boolean>() {
+            @Override
+            public Boolean call() throws SQLException {
+                return Boolean.valueOf(CachingDatabaseMetaData.super.storesUpperCaseIdentifiers());
+            }
+        }).booleanValue();
+    }
+
+    @Override
+    public boolean storesUpperCaseQuotedIdentifiers() throws SQLException {
+        return cached("storesUpperCaseQuotedIdentifiers", new Callable<Boolean>() {
+            @Override
+            public Boolean call() throws SQLException {
+                return Boolean.valueOf(CachingDatabaseMetaData.super.storesUpperCaseQuotedIdentifiers());
+            }
+        }).booleanValue();
+    }
+
+    @Override
+    public boolean supportsANSI92EntryLevelSQL() throws SQLException {
+        return cached("supportsANSI92EntryLevelSQL", new Callable<Boolean>() {
+            @Override
+            public Boolean call() throws SQLException {
+                return Boolean.valueOf(CachingDatabaseMetaData.super.supportsANSI92EntryLevelSQL());
+            }
+        }).booleanValue();
+    }
+
+    @Override
+    public boolean supportsANSI92FullSQL() throws SQLException {
+        return cached("supportsANSI92FullSQL", new Callable<Boolean>() {
+            @Override
+            public Boolean call() throws SQLException {
+                return Boolean.valueOf(CachingDatabaseMetaData.super.supportsANSI92FullSQL());
+            }
+        }).booleanValue();
+    }
+
+    @Override
+    public boolean supportsANSI92IntermediateSQL() throws SQLException {
+        return cached("supportsANSI92IntermediateSQL", new Callable<Boolean>() {
+            @Override
+            public Boolean call() throws SQLException {
+                return Boolean.valueOf(CachingDatabaseMetaData.super.supportsANSI92IntermediateSQL());
+            }
+        }).booleanValue();
+    }
+
+    @Override
+    public boolean supportsAlterTableWithAddColumn() throws SQLException {
+        return cached("supportsAlterTableWithAddColumn", new Callable<Boolean>() {
+            @Override
+            public Boolean call() throws SQLException {
+                return Boolean.valueOf(CachingDatabaseMetaData.super.supportsAlterTableWithAddColumn());
+            }
+        }).booleanValue();
+    }
+
+    @Override
+    public boolean supportsAlterTableWithDropColumn() throws SQLException {
+        return cached("supportsAlterTableWithDropColumn", new Callable<Boolean>() {
+            @Override
+            public Boolean call() throws SQLException {
+                return Boolean.valueOf(CachingDatabaseMetaData.super.supportsAlterTableWithDropColumn());
+            }
+        }).booleanValue();
+    }
+
+    @Override
+    public boolean supportsBatchUpdates() throws SQLException {
+        return cached("supportsBatchUpdates", new Callable<Boolean>() {
+            @Override
+            public Boolean call() throws SQLException {
+                return Boolean.valueOf(CachingDatabaseMetaData.super.supportsBatchUpdates());
+            }
+        }).booleanValue();
+    }
+
+    @Override
+    public boolean supportsCatalogsInDataManipulation() throws SQLException {
+        return cached("supportsCatalogsInDataManipulation", new Callable<Boolean>() {
+            @Override
+            public Boolean call() throws SQLException {
+                return Boolean.valueOf(CachingDatabaseMetaData.super.supportsCatalogsInDataManipulation());
+            }
+        }).booleanValue();
+    }
+
+    @Override
+    public boolean supportsCatalogsInIndexDefinitions() throws SQLException {
+        return cached("supportsCatalogsInIndexDefinitions", new Callable<Boolean>() {
+            @Override
+            public Boolean call() throws SQLException {
+                return Boolean.valueOf(CachingDatabaseMetaData.super.supportsCatalogsInIndexDefinitions());
+            }
+        }).booleanValue();
+    }
+
+    @Override
+    public boolean supportsCatalogsInPrivilegeDefinitions() throws SQLException {
+        return cached("supportsCatalogsInPrivilegeDefinitions", new Callable<Boolean>() {
+            @Override
+            public Boolean call() throws SQLException {
+                return Boolean.valueOf(CachingDatabaseMetaData.super.supportsCatalogsInPrivilegeDefinitions());
+            }
+        }).booleanValue();
+    }
+
+    @Override
+    public boolean supportsCatalogsInProcedureCalls() throws SQLException {
+        return cached("supportsCatalogsInProcedureCalls", new Callable<Boolean>() {
+            @Override
+            public Boolean call() throws SQLException {
+                return Boolean.valueOf(CachingDatabaseMetaData.super.supportsCatalogsInProcedureCalls());
+            }
+        }).booleanValue();
+    }
+
+    @Override
+    public boolean supportsCatalogsInTableDefinitions() throws SQLException {
+        return cached("supportsCatalogsInTableDefinitions", new Callable<Boolean>() {
+            @Override
+            public Boolean call() throws SQLException {
+                return Boolean.valueOf(CachingDatabaseMetaData.super.supportsCatalogsInTableDefinitions());
+            }
+        }).booleanValue();
+    }
+
+    @Override
+    public boolean supportsColumnAliasing() throws SQLException {
+        return cached("supportsColumnAliasing", new Callable<Boolean>() {
+            @Override
+            public Boolean call() throws SQLException {
+                return Boolean.valueOf(CachingDatabaseMetaData.super.supportsColumnAliasing());
+            }
+        }).booleanValue();
+    }
+
+    @Override
+    public boolean supportsConvert() throws SQLException {
+        return cached("supportsConvert", new Callable<Boolean>() {
+            @Override
+            public Boolean call() throws SQLException {
+                return Boolean.valueOf(CachingDatabaseMetaData.super.supportsConvert());
+            }
+        }).booleanValue();
+    }
+
+    @Override
+    public boolean supportsConvert(final int fromType, final int toType)
+            throws SQLException {
+        final String key = "supportsConvert(" + fromType + "," + toType + ")";
+        return cached(key, new Callable<Boolean>() {
+            @Override
+            public Boolean call() throws SQLException {
+                return Boolean.valueOf(CachingDatabaseMetaData.super.supportsConvert(fromType,
+                        toType));
+            }
+        }).booleanValue();
+    }
+
+    @Override
+    public boolean supportsCoreSQLGrammar() throws SQLException {
+        return cached("supportsCoreSQLGrammar", new Callable<Boolean>() {
+            @Override
+            public Boolean call() throws SQLException {
+                return Boolean.valueOf(CachingDatabaseMetaData.super.supportsCoreSQLGrammar());
+            }
+        }).booleanValue();
+    }
+
+    @Override
+    public boolean supportsCorrelatedSubqueries() throws SQLException {
+        return cached("supportsCorrelatedSubqueries", new Callable<Boolean>() {
+            @Override
+            public Boolean call() throws SQLException {
+                return Boolean.valueOf(CachingDatabaseMetaData.super.supportsCorrelatedSubqueries());
+            }
+        }).booleanValue();
+    }
+
+    @Override
+    public boolean supportsDataDefinitionAndDataManipulationTransactions()
+            throws SQLException {
+        return cached("supportsDataDefinitionAndDataManipulationTransactions", new Callable<Boolean>() {
+            @Override
+            public Boolean call() throws SQLException {
+                return Boolean.valueOf(
+                        CachingDatabaseMetaData.super.supportsDataDefinitionAndDataManipulationTransactions());
+            }
+        }).booleanValue();
+    }
+
+    @Override
+    public boolean supportsDataManipulationTransactionsOnly()
+            throws SQLException {
+        return cached("supportsDataManipulationTransactionsOnly", new Callable<Boolean>() {
+            @Override
+            public Boolean call() throws SQLException {
+                return Boolean.valueOf(
+                        CachingDatabaseMetaData.super.supportsDataManipulationTransactionsOnly());
+            }
+        }).booleanValue();
+    }
+
+    @Override
+    public boolean supportsDifferentTableCorrelationNames() throws SQLException {
+        return cached("supportsDifferentTableCorrelationNames", new Callable<Boolean>() {
+            @Override
+            public Boolean call() throws SQLException {
+                return Boolean.valueOf(CachingDatabaseMetaData.super.supportsDifferentTableCorrelationNames());
+            }
+        }).booleanValue();
+    }
+
+    @Override
+    public boolean supportsExpressionsInOrderBy() throws SQLException {
+        return cached("supportsExpressionsInOrderBy", new Callable<Boolean>() {
+            @Override
+            public Boolean call() throws SQLException {
+                return Boolean.valueOf(CachingDatabaseMetaData.super.supportsExpressionsInOrderBy());
+            }
+        }).booleanValue();
+    }
+
+    @Override
+    public boolean supportsExtendedSQLGrammar() throws SQLException {
+        return cached("supportsExtendedSQLGrammar", new Callable<Boolean>() {
+            @Override
+            public Boolean call() throws SQLException {
+                return Boolean.valueOf(CachingDatabaseMetaData.super.supportsExtendedSQLGrammar());
+            }
+        }).booleanValue();
+    }
+
+    @Override
+    public boolean supportsFullOuterJoins() throws SQLException {
+        return cached("supportsFullOuterJoins", new Callable<Boolean>() {
+            @Override
+            public Boolean call() throws SQLException {
+                return Boolean.valueOf(CachingDatabaseMetaData.super.supportsFullOuterJoins());
+            }
+        }).booleanValue();
+    }
+
+    @Override
+    public boolean supportsGetGeneratedKeys() throws SQLException {
+        return cached("supportsGetGeneratedKeys", new Callable<Boolean>() {
+            @Override
+            public Boolean call() throws SQLException {
+                return Boolean.valueOf(CachingDatabaseMetaData.super.supportsGetGeneratedKeys());
+            }
+        }).booleanValue();
+    }
+
+    @Override
+    public boolean supportsGroupBy() throws SQLException {
+        return cached("supportsGroupBy", new Callable<Boolean>() {
+            @Override
+            public Boolean call() throws SQLException {
+                return Boolean.valueOf(CachingDatabaseMetaData.super.supportsGroupBy());
+            }
+        }).booleanValue();
+    }
+
+    @Override
+    public boolean supportsGroupByBeyondSelect() throws SQLException {
+        return cached("supportsGroupByBeyondSelect", new Callable<Boolean>() {
+            @Override
+            public Boolean call() throws SQLException {
+                return Boolean.valueOf(CachingDatabaseMetaData.super.supportsGroupByBeyondSelect());
+            }
+        }).booleanValue();
+    }
+
+    @Override
+    public boolean supportsGroupByUnrelated() throws SQLException {
+        return cached("supportsGroupByUnrelated", new Callable<Boolean>() {
+            @Override
+            public Boolean call() throws SQLException {
+                return Boolean.valueOf(CachingDatabaseMetaData.super.supportsGroupByUnrelated());
+            }
+        }).booleanValue();
+    }
+
+    @Override
+    public boolean supportsIntegrityEnhancementFacility() throws SQLException {
+        return cached("supportsIntegrityEnhancementFacility", new Callable<Boolean>() {
+            @Override
+            public Boolean call() throws SQLException {
+                return Boolean.valueOf(CachingDatabaseMetaData.super.supportsIntegrityEnhancementFacility());
+            }
+        }).booleanValue();
+    }
+
+    @Override
+    public boolean supportsLikeEscapeClause() throws SQLException {
+        return cached("supportsLikeEscapeClause", new Callable<Boolean>() {
+            @Override
+            public Boolean call() throws SQLException {
+                return Boolean.valueOf(CachingDatabaseMetaData.super.supportsLikeEscapeClause());
+            }
+        }).booleanValue();
+    }
+
+    @Override
+    public boolean supportsLimitedOuterJoins() throws SQLException {
+        return cached("supportsLimitedOuterJoins", new Callable<Boolean>() {
+            @Override
+            public Boolean call() throws SQLException {
+                return Boolean.valueOf(CachingDatabaseMetaData.super.supportsLimitedOuterJoins());
+            }
+        }).booleanValue();
+    }
+
+    @Override
+    public boolean supportsMinimumSQLGrammar() throws SQLException {
+        return cached("supportsMinimumSQLGrammar", new Callable<Boolean>() {
+            @Override
+            public Boolean call() throws SQLException {
+                return Boolean.valueOf(CachingDatabaseMetaData.super.supportsMinimumSQLGrammar());
+            }
+        }).booleanValue();
+    }
+
+    @Override
+    public boolean supportsMixedCaseIdentifiers() throws SQLException {
+        return cached("supportsMixedCaseIdentifiers", new Callable<Boolean>() {
+            @Override
+            public Boolean call() throws SQLException {
+                return Boolean.valueOf(CachingDatabaseMetaData.super.supportsMixedCaseIdentifiers());
+            }
+        }).booleanValue();
+    }
+
+    @Override
+    public boolean supportsMixedCaseQuotedIdentifiers() throws SQLException {
+        return cached("supportsMixedCaseQuotedIdentifiers", new Callable<Boolean>() {
+            @Override
+            public Boolean call() throws SQLException {
+                return Boolean.valueOf(CachingDatabaseMetaData.super.supportsMixedCaseQuotedIdentifiers());
+            }
+        }).booleanValue();
+    }
+
+    @Override
+    public boolean supportsMultipleOpenResults() throws SQLException {
+        return cached("supportsMultipleOpenResults", new Callable<Boolean>() {
+            @Override
+            public Boolean call() throws SQLException {
+                return Boolean.valueOf(CachingDatabaseMetaData.super.supportsMultipleOpenResults());
+            }
+        }).booleanValue();
+    }
+
+    @Override
+    public boolean supportsMultipleResultSets() throws SQLException {
+        return cached("supportsMultipleResultSets", new Callable<Boolean>() {
+            @Override
+            public Boolean call() throws SQLException {
+                return Boolean.valueOf(CachingDatabaseMetaData.super.supportsMultipleResultSets());
+            }
+        }).booleanValue();
+    }
+
+    @Override
+    public boolean supportsMultipleTransactions() throws SQLException {
+        return cached("supportsMultipleTransactions", new Callable<Boolean>() {
+            @Override
+            public Boolean call() throws SQLException {
+                return Boolean.valueOf(CachingDatabaseMetaData.super.supportsMultipleTransactions());
+            }
+        }).booleanValue();
+    }
+
+    @Override
+    public boolean supportsNamedParameters() throws SQLException {
+        return cached("supportsNamedParameters", new Callable<Boolean>() {
+            @Override
+            public Boolean call() throws SQLException {
+                return Boolean.valueOf(CachingDatabaseMetaData.super.supportsNamedParameters());
+            }
+        }).booleanValue();
+    }
+
+    @Override
+    public boolean supportsNonNullableColumns() throws SQLException {
+        return cached("supportsNonNullableColumns", new Callable<Boolean>() {
+            @Override
+            public Boolean call() throws SQLException {
+                return Boolean.valueOf(CachingDatabaseMetaData.super.supportsNonNullableColumns());
+            }
+        }).booleanValue();
+    }
+
+    @Override
+    public boolean supportsOpenCursorsAcrossCommit() throws SQLException {
+        return cached("supportsOpenCursorsAcrossCommit", new Callable<Boolean>() {
+            @Override
+            public Boolean call() throws SQLException {
+                return Boolean.valueOf(CachingDatabaseMetaData.super.supportsOpenCursorsAcrossCommit());
+            }
+        }).booleanValue();
+    }
+
+    @Override
+    public boolean supportsOpenCursorsAcrossRollback() throws SQLException {
+        return cached("supportsOpenCursorsAcrossRollback", new Callable<Boolean>() {
+            @Override
+            public Boolean call() throws SQLException {
+                return Boolean.valueOf(CachingDatabaseMetaData.super.supportsOpenCursorsAcrossRollback());
+            }
+        }).booleanValue();
+    }
+
+    @Override
+    public boolean supportsOpenStatementsAcrossCommit() throws SQLException {
+        return cached("supportsOpenStatementsAcrossCommit", new Callable<Boolean>() {
+            @Override
+            public Boolean call() throws SQLException {
+                return Boolean.valueOf(CachingDatabaseMetaData.super.supportsOpenStatementsAcrossCommit());
+            }
+        }).booleanValue();
+    }
+
+    @Override
+    public boolean supportsOpenStatementsAcrossRollback() throws SQLException {
+        return cached("supportsOpenStatementsAcrossRollback", new Callable<Boolean>() {
+            @Override
+            public Boolean call() throws SQLException {
+                return Boolean.valueOf(CachingDatabaseMetaData.super.supportsOpenStatementsAcrossRollback());
+            }
+        }).booleanValue();
+    }
+
+    @Override
+    public boolean supportsOrderByUnrelated() throws SQLException {
+        return cached("supportsOrderByUnrelated", new Callable<Boolean>() {
+            @Override
+            public Boolean call() throws SQLException {
+                return Boolean.valueOf(CachingDatabaseMetaData.super.supportsOrderByUnrelated());
+            }
+        }).booleanValue();
+    }
+
+    @Override
+    public boolean supportsOuterJoins() throws SQLException {
+        return cached("supportsOuterJoins", new Callable<Boolean>() {
+            @Override
+            public Boolean call() throws SQLException {
+                return Boolean.valueOf(CachingDatabaseMetaData.super.supportsOuterJoins());
+            }
+        }).booleanValue();
+    }
+
+    @Override
+    public boolean supportsPositionedDelete() throws SQLException {
+        return cached("supportsPositionedDelete", new Callable<Boolean>() {
+            @Override
+            public Boolean call() throws SQLException {
+                return Boolean.valueOf(CachingDatabaseMetaData.super.supportsPositionedDelete());
+            }
+        }).booleanValue();
+    }
+
+    @Override
+    public boolean supportsPositionedUpdate() throws SQLException {
+        return cached("supportsPositionedUpdate", new Callable<Boolean>() {
+            @Override
+            public Boolean call() throws SQLException {
+                return Boolean.valueOf(CachingDatabaseMetaData.super.supportsPositionedUpdate());
+            }
+        }).booleanValue();
+    }
+
+    @Override
+    public boolean supportsResultSetConcurrency(final int type, final int concurrency)
+            throws SQLException {
+        final String key = "supportsResultSetConcurrency(" + type + "," + concurrency + ")";
+        return cached(key, new Callable<Boolean>() {
+            @Override
+            public Boolean call() throws SQLException {
+                return Boolean.valueOf(CachingDatabaseMetaData.super.supportsResultSetConcurrency(type,
+                        concurrency));
+            }
+        }).booleanValue();
+    }
+
+    @Override
+    public boolean supportsResultSetHoldability(final int holdability)
+            throws SQLException {
+        final String key = "supportsResultSetHoldability(" + holdability + ")";
+        return cached(key, new Callable<Boolean>() {
+            @Override
+            public Boolean call() throws SQLException {
+                return Boolean.valueOf(CachingDatabaseMetaData.super.supportsResultSetHoldability(holdability));
+            }
+        }).booleanValue();
+    }
+
+    @Override
+    public boolean supportsResultSetType(final int type) throws SQLException {
+        final String key = "supportsResultSetType(" + type + ")";
+        return cached(key, new Callable<Boolean>() {
+            @Override
+            public Boolean call() throws SQLException {
+                return Boolean.valueOf(CachingDatabaseMetaData.super.supportsResultSetType(type));
+            }
+        }).booleanValue();
+    }
+
+    @Override
+    public boolean supportsSavepoints() throws SQLException {
+        return cached("supportsSavepoints", new Callable<Boolean>() {
+            @Override
+            public Boolean call() throws SQLException {
+                return Boolean.valueOf(CachingDatabaseMetaData.super.supportsSavepoints());
+            }
+        }).booleanValue();
+    }
+
+    @Override
+    public boolean supportsSchemasInDataManipulation() throws SQLException {
+        return cached("supportsSchemasInDataManipulation", new Callable<Boolean>() {
+            @Override
+            public Boolean call() throws SQLException {
+                return Boolean.valueOf(CachingDatabaseMetaData.super.supportsSchemasInDataManipulation());
+            }
+        }).booleanValue();
+    }
+
+    @Override
+    public boolean supportsSchemasInIndexDefinitions() throws SQLException {
+        return cached("supportsSchemasInIndexDefinitions", new Callable<Boolean>() {
+            @Override
+            public Boolean call() throws SQLException {
+                return Boolean.valueOf(CachingDatabaseMetaData.super.supportsSchemasInIndexDefinitions());
+            }
+        }).booleanValue();
+    }
+
+    @Override
+    public boolean supportsSchemasInPrivilegeDefinitions() throws SQLException {
+        return cached("supportsSchemasInPrivilegeDefinitions", new Callable<Boolean>() {
+            @Override
+            public Boolean call() throws SQLException {
+                return Boolean.valueOf(CachingDatabaseMetaData.super.supportsSchemasInPrivilegeDefinitions());
+            }
+        }).booleanValue();
+    }
+
+    @Override
+    public boolean supportsSchemasInProcedureCalls() throws SQLException {
+        return cached("supportsSchemasInProcedureCalls", new Callable<Boolean>() {
+            @Override
+            public Boolean call() throws SQLException {
+                return Boolean.valueOf(CachingDatabaseMetaData.super.supportsSchemasInProcedureCalls());
+            }
+        }).booleanValue();
+    }
+
+    @Override
+    public boolean supportsSchemasInTableDefinitions() throws SQLException {
+        return cached("supportsSchemasInTableDefinitions", new Callable<Boolean>() {
+            @Override
+            public Boolean call() throws SQLException {
+                return Boolean.valueOf(CachingDatabaseMetaData.super.supportsSchemasInTableDefinitions());
+            }
+        }).booleanValue();
+    }
+
+    @Override
+    public boolean supportsSelectForUpdate() throws SQLException {
+        return cached("supportsSelectForUpdate", new Callable<Boolean>() {
+            @Override
+            public Boolean call() throws SQLException {
+                return Boolean.valueOf(CachingDatabaseMetaData.super.supportsSelectForUpdate());
+            }
+        }).booleanValue();
+    }
+
+    @Override
+    public boolean supportsStatementPooling() throws SQLException {
+        return cached("supportsStatementPooling", new Callable<Boolean>() {
+            @Override
+            public Boolean call() throws SQLException {
+                return Boolean.valueOf(CachingDatabaseMetaData.super.supportsStatementPooling());
+            }
+        }).booleanValue();
+    }
+
+    @Override
+    public boolean supportsStoredProcedures() throws SQLException {
+        return cached("supportsStoredProcedures", new Callable<Boolean>() {
+            @Override
+            public Boolean call() throws SQLException {
+                return Boolean.valueOf(CachingDatabaseMetaData.super.supportsStoredProcedures());
+            }
+        }).booleanValue();
+    }
+
+    @Override
+    public boolean supportsSubqueriesInComparisons() throws SQLException {
+        return cached("supportsSubqueriesInComparisons", new Callable<Boolean>() {
+            @Override
+            public Boolean call() throws SQLException {
+                return Boolean.valueOf(CachingDatabaseMetaData.super.supportsSubqueriesInComparisons());
+            }
+        }).booleanValue();
+    }
+
+    @Override
+    public boolean supportsSubqueriesInExists() throws SQLException {
+        return cached("supportsSubqueriesInExists", new Callable<Boolean>() {
+            @Override
+            public Boolean call() throws SQLException {
+                return Boolean.valueOf(CachingDatabaseMetaData.super.supportsSubqueriesInExists());
+            }
+        }).booleanValue();
+    }
+
+    @Override
+    public boolean supportsSubqueriesInIns() throws SQLException {
+        return cached("supportsSubqueriesInIns", new Callable<Boolean>() {
+            @Override
+            public Boolean call() throws SQLException {
+                return Boolean.valueOf(CachingDatabaseMetaData.super.supportsSubqueriesInIns());
+            }
+        }).booleanValue();
+    }
+
+    @Override
+    public boolean supportsSubqueriesInQuantifieds() throws SQLException {
+        return cached("supportsSubqueriesInQuantifieds", new Callable<Boolean>() {
+            @Override
+            public Boolean call() throws SQLException {
+                return Boolean.valueOf(CachingDatabaseMetaData.super.supportsSubqueriesInQuantifieds());
+            }
+        }).booleanValue();
+    }
+
+    @Override
+    public boolean supportsTableCorrelationNames() throws SQLException {
+        return cached("supportsTableCorrelationNames", new Callable<Boolean>() {
+            @Override
+            public Boolean call() throws SQLException {
+                return Boolean.valueOf(CachingDatabaseMetaData.super.supportsTableCorrelationNames());
+            }
+        }).booleanValue();
+    }
+
+    @Override
+    public boolean supportsTransactionIsolationLevel(final int level)
+            throws SQLException {
+        final String key = "supportsTransactionIsolationLevel(" + level + ")";
+        return cached(key, new Callable<Boolean>() {
+            @Override
+            public Boolean call() throws SQLException {
+                return Boolean.valueOf(CachingDatabaseMetaData.super.supportsTransactionIsolationLevel(level));
+            }
+        }).booleanValue();
+    }
+
+    @Override
+    public boolean supportsTransactions() throws SQLException {
+        return cached("supportsTransactions", new Callable<Boolean>() {
+            @Override
+            public Boolean call() throws SQLException {
+                return Boolean.valueOf(CachingDatabaseMetaData.super.supportsTransactions());
+            }
+        }).booleanValue();
+    }
+
+    @Override
+    public boolean supportsUnion() throws SQLException {
+        return cached("supportsUnion", new Callable<Boolean>() {
+            @Override
+            public Boolean call() throws SQLException {
+                return Boolean.valueOf(CachingDatabaseMetaData.super.supportsUnion());
+            }
+        }).booleanValue();
+    }
+
+    @Override
+    public boolean supportsUnionAll() throws SQLException {
+        return cached("supportsUnionAll", new Callable<Boolean>() {
+            @Override
+            public Boolean call() throws SQLException {
+                return Boolean.valueOf(CachingDatabaseMetaData.super.supportsUnionAll());
+            }
+        }).booleanValue();
+    }
+
+    @Override
+    public boolean updatesAreDetected(final int type) throws SQLException {
+        final String key = "updatesAreDetected(" + type + ")";
+        return cached(key, new Callable<Boolean>() {
+            @Override
+            public Boolean call() throws SQLException {
+                return Boolean.valueOf(CachingDatabaseMetaData.super.updatesAreDetected(type));
+            }
+        }).booleanValue();
+    }
+
+    @Override
+    public boolean usesLocalFilePerTable() throws SQLException {
+        return cached("usesLocalFilePerTable", new Callable<Boolean>() {
+            @Override
+            public Boolean call() throws SQLException {
+                return Boolean.valueOf(CachingDatabaseMetaData.super.usesLocalFilePerTable());
+            }
+        }).booleanValue();
+    }
+
+    @Override
+    public boolean usesLocalFiles() throws SQLException {
+        return cached("usesLocalFiles", new Callable<Boolean>() {
+            @Override
+            public Boolean call() throws SQLException {
+                return Boolean.valueOf(CachingDatabaseMetaData.super.usesLocalFiles());
+            }
+        }).booleanValue();
+    }
+
+    @Override
+    public RowIdLifetime getRowIdLifetime() throws SQLException {
+        return cached("getRowIdLifetime", new Callable<RowIdLifetime>() {
+            @Override
+            public RowIdLifetime call() throws SQLException {
+                return CachingDatabaseMetaData.super.getRowIdLifetime();
+            }
+        });
+    }
+
+    @Override
+    public ResultSet getSchemas(final String catalog, final String schemaPattern)
+    throws SQLException {
+        final List<Object> key = Arrays.<Object>asList("getSchemas", catalog, schemaPattern);
+        return cached(key, new Callable<ResultSet>() {
+            @Override
+            public ResultSet call() throws SQLException {
+                return CachingDatabaseMetaData.super.getSchemas(catalog, schemaPattern);
+            }
+        });
+    }
+
+    @Override
+    public boolean autoCommitFailureClosesAllResultSets() throws SQLException {
+        return cached("autoCommitFailureClosesAllResultSets", new Callable<Boolean>() {
+            @Override
+            public Boolean call() throws SQLException {
+                return Boolean.valueOf(CachingDatabaseMetaData.super.autoCommitFailureClosesAllResultSets());
+            }
+        }).booleanValue();
+    }
+
+    @Override
+    public boolean supportsStoredFunctionsUsingCallSyntax() throws SQLException {
+        return cached("supportsStoredFunctionsUsingCallSyntax", new Callable<Boolean>() {
+            @Override
+            public Boolean call() throws SQLException {
+                return Boolean.valueOf(CachingDatabaseMetaData.super.supportsStoredFunctionsUsingCallSyntax());
+            }
+        }).booleanValue();
+    }
+
+    @Override
+    public ResultSet getClientInfoProperties() throws SQLException {
+        final List<Object> key = Arrays.<Object>asList("getClientInfoProperties");
+        return cached(key, new Callable<ResultSet>() {
+            @Override
+            public ResultSet call() throws SQLException {
+                return CachingDatabaseMetaData.super.getClientInfoProperties();
+            }
+        });
+    }
+
+    @Override
+    public ResultSet getFunctions(final String catalog, final String schemaPattern,
+            final String functionNamePattern) throws SQLException {
+        final List<Object> key = Arrays.<Object>asList("getFunctions", catalog, schemaPattern,
+                functionNamePattern);
+        return cached(key, new Callable<ResultSet>() {
+            @Override
+            public ResultSet call() throws SQLException {
+                return CachingDatabaseMetaData.super.getFunctions(catalog, schemaPattern,
+                        functionNamePattern);
+            }
+        });
+    }
+
+    @Override
+    public ResultSet getFunctionColumns(final String catalog, final String schemaPattern,
+            final String functionNamePattern, final String columnNamePattern)
+            throws SQLException {
+        final List<Object> key = Arrays.<Object>asList("getFunctionColumns", catalog,
+                schemaPattern, functionNamePattern, columnNamePattern);
+        return cached(key, new Callable<ResultSet>() {
+            @Override
+            public ResultSet call() throws SQLException {
+                return CachingDatabaseMetaData.super.getFunctionColumns(catalog, schemaPattern,
+                        functionNamePattern, columnNamePattern);
+            }
+        });
+    }
+
+    @Override
+    public ResultSet getPseudoColumns(final String catalog, final String schemaPattern,
+            final String tableNamePattern, final String columnNamePattern)
+            throws SQLException {
+        final List<Object> key = Arrays.<Object>asList("getPseudoColumns", catalog,
+                schemaPattern, tableNamePattern, columnNamePattern);
+        return cached(key, new Callable<ResultSet>() {
+            @Override
+            public ResultSet call() throws SQLException {
+                return CachingDatabaseMetaData.super.getPseudoColumns(catalog, schemaPattern,
+                        tableNamePattern, columnNamePattern);
+            }
+        });
+    }
+
+    @Override
+    public boolean generatedKeyAlwaysReturned() throws SQLException {
+        return cached("generatedKeyAlwaysReturned", new Callable<Boolean>() {
+            @Override
+            public Boolean call() throws SQLException {
+                return Boolean.valueOf(CachingDatabaseMetaData.super.generatedKeyAlwaysReturned());
+            }
+        }).booleanValue();
+    }
+}
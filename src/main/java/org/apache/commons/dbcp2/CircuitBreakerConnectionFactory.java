@@ -0,0 +1,234 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.commons.dbcp2;
+
+import java.sql.Connection;
+import java.sql.SQLException;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.locks.Lock;
+import java.util.concurrent.locks.ReentrantLock;
+
+import org.apache.commons.logging.Log;
+import org.apache.commons.logging.LogFactory;
+
+/**
+ * A {@link ConnectionFactory} that stops calling the wrapped factory after a
+ * number of consecutive connection failures.
+ * <p>
+ * While the database is unreachable every call to
+ * {@link ConnectionFactory#createConnection()} would otherwise block for the
+ * full connect or socket timeout. Once <code>failureThreshold</code>
+ * consecutive attempts have failed the breaker opens and callers fail
+ * immediately with an {@link SQLException} (SQL_STATE 08001) that has the
+ * last connection failure as its cause. After a back-off period a single
+ * caller is allowed through to probe the database. If the probe succeeds the
+ * breaker closes; if it fails the back-off is doubled, up to
+ * <code>maxBackoffMillis</code>.
+ *
+ * @since 2.2
+ */
+public class CircuitBreakerConnectionFactory implements ConnectionFactory {
+
+    private static final Log log = LogFactory.getLog(CircuitBreakerConnectionFactory.class);
+
+    private static final String SQL_STATE_UNABLE_TO_CONNECT = "08001";
+
+    private final ConnectionFactory connectionFactory;
+    private final int failureThreshold;
+    private final long initialBackoffMillis;
+    private final long maxBackoffMillis;
+
+    /** Ensures only one caller probes the database while the breaker is open */
+    private final AtomicBoolean probing = new AtomicBoolean(false);
+
+    /**
+     * Guards updates of the failure state. A Lock is used rather than a
+     * monitor since it is taken by threads creating connections, which may
+     * be virtual threads.
+     */
+    private final Lock stateLock = new ReentrantLock();
+
+    private volatile int consecutiveFailures = 0;
+    private volatile long backoffMillis;
+    private volatile long nextProbeTimeMillis = 0;
+    private volatile Exception lastFailure = null;
+
+    /**
+     * Creates a circuit breaker around the given connection factory.
+     *
+     * @param connectionFactory the factory that creates physical connections
+     * @param failureThreshold the number of consecutive failures that opens
+     *        the breaker, must be positive
+     * @param initialBackoffMillis the time to wait after the breaker opens
+     *        before the first probe
+     * @param maxBackoffMillis the upper limit for the time between probes
+     */
+    public CircuitBreakerConnectionFactory(final ConnectionFactory connectionFactory,
+            final int failureThreshold, final long initialBackoffMillis, final long maxBackoffMillis) {
+        if (connectionFactory == null) {
+            throw new NullPointerException("connectionFactory is null");
+        }
+        if (failureThreshold < 1) {
+            throw new IllegalArgumentException("failureThreshold must be positive");
+        }
+        this.connectionFactory = connectionFactory;
+        this.failureThreshold = failureThreshold;
+        this.initialBackoffMillis = Math.max(0, initialBackoffMillis);
+        this.maxBackoffMillis = Math.max(this.initialBackoffMillis, maxBackoffMillis);
+        this.backoffMillis = this.initialBackoffMillis;
+    }
+
+    @Override
+    public Connection createConnection() throws SQLException {
+        boolean probe = false;
+        if (isOpen()) {
+            final long now = System.currentTimeMillis();
+            if (now < nextProbeTimeMillis || !probing.compareAndSet(false, true)) {
+                throw new SQLException(Utils.getMessage("circuitBreakerConnectionFactory.open",
+                        Integer.valueOf(consecutiveFailures),
+                        Long.valueOf(Math.max(0, nextProbeTimeMillis - now))),
+                        SQL_STATE_UNABLE_TO_CONNECT, lastFailure);
+            }
+            probe = true;
+        }
+        try {
+            final Connection conn = connectionFactory.createConnection();
+            onSuccess();
+            return conn;
+        } catch (final SQLException e) {
+            onFailure(e, probe);
+            throw e;
+        } catch (final RuntimeException e) {
+            onFailure(e, probe);
+            throw e;
+        } finally {
+            if (probe) {
+                probing.set(false);
+            }
+        }
+    }
+
+    private void onSuccess() {
+        // Volatile read keeps the hot path free of locking
+        if (consecutiveFailures != 0) {
+            stateLock.lock();
+            try {
+                if (consecutiveFailures >= failureThreshold) {
+                    log.info(Utils.getMessage("circuitBreakerConnectionFactory.closed"));
+                }
+                consecutiveFailures = 0;
+                backoffMillis = initialBackoffMillis;
+                lastFailure = null;
+            } finally {
+                stateLock.unlock();
+            }
+        }
+    }
+
+    private void onFailure(final Exception e, final boolean probe) {
+        stateLock.lock();
+        try {
+            lastFailure = e;
+            final int failures = consecutiveFailures + 1;
+            consecutiveFailures = failures;
+            if (probe) {
+                backoffMillis = Math.min(maxBackoffMillis, Math.max(1, backoffMillis * 2));
+                nextProbeTimeMillis = System.currentTimeMillis() + backoffMillis;
+            } else if (failures == failureThreshold) {
+                backoffMillis = initialBackoffMillis;
+                nextProbeTimeMillis = System.currentTimeMillis() + backoffMillis;
+                log.warn(Utils.getMessage("circuitBreakerConnectionFactory.opened",
+                        Integer.valueOf(failures), Long.valueOf(backoffMillis)), e);
+            }
+        } finally {
+            stateLock.unlock();
+        }
+    }
+
+    /**
+     * Returns whether the breaker is open, i.e. connection attempts are
+     * currently being rejected except for periodic probes.
+     *
+     * @return true if the breaker is open
+     */
+    public boolean isOpen() {
+        return consecutiveFailures >= failureThreshold;
+    }
+
+    /**
+     * Returns the number of connection attempts that have failed since the
+     * last successful attempt.
+     *
+     * @return the number of consecutive failures
+     */
+    public int getConsecutiveFailures() {
+        return consecutiveFailures;
+    }
+
+    /**
+     * Returns the time to wait between the current and the next probe.
+     *
+     * @return the current back-off in milliseconds
+     */
+    public long getBackoffMillis() {
+        return backoffMillis;
+    }
+
+    /**
+     * Returns the number of consecutive failures that opens the breaker.
+     *
+     * @return the failure threshold
+     */
+    public int getFailureThreshold() {
+        return failureThreshold;
+    }
+
+    /**
+     * Returns the time to wait after the breaker opens before the first
+     * probe.
+     *
+     * @return the initial back-off in milliseconds
+     */
+    public long getInitialBackoffMillis() {
+        return initialBackoffMillis;
+    }
+
+    /**
+     * Returns the upper limit for the time between probes, which doubles
+     * after each failed probe until it reaches this limit.
+     *
+     * @return the maximum back-off in milliseconds
+     */
+    public long getMaxBackoffMillis() {
+        return maxBackoffMillis;
+    }
+
+    /**
+     * Returns the wrapped connection factory.
+     *
+     * @return the factory that creates physical connections
+     */
+    public ConnectionFactory getConnectionFactory() {
+        return connectionFactory;
+    }
+
+    @Override
+    public String toString() {
+        return this.getClass().getName() + " [" + String.valueOf(connectionFactory) +
+                ";open=" + isOpen() + "]";
+    }
+}
@@ -0,0 +1,50 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.commons.dbcp2;
+
+import java.sql.Connection;
+import java.sql.SQLException;
+
+/**
+ * Receives the outcome of an asynchronous connection request made with
+ * {@link PoolingDataSource#getConnectionAsync(long, ConnectionCallback)}.
+ * <p>
+ * Exactly one of the methods is called for each request that is not
+ * cancelled. Callbacks run on whichever thread completes the request,
+ * typically a thread that has just closed another connection or the timeout
+ * thread, so they should hand the work off rather than block.
+ *
+ * @since 2.2
+ */
+public interface ConnectionCallback {
+
+    /**
+     * Called when a connection has been obtained for the request. The
+     * receiver is responsible for closing the connection.
+     *
+     * @param connection the connection
+     */
+    void connectionAvailable(Connection connection);
+
+    /**
+     * Called when no connection could be obtained for the request, for
+     * example because the request timed out or the pool has been closed.
+     *
+     * @param cause the reason the request failed
+     */
+    void connectionFailed(SQLException cause);
+}
@@ -0,0 +1,223 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.commons.dbcp2;
+
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.Lock;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * A token bucket that limits how often new physical connections may be
+ * created.
+ * <p>
+ * The bucket holds up to <code>burst</code> permits and is refilled at
+ * <code>permitsPerSecond</code>. A caller that finds the bucket empty
+ * reserves the next permit and sleeps until it becomes available, so waiting
+ * callers are served in the order they arrived.
+ * <p>
+ * Instances may be shared between several connection factories, for example
+ * all pools that connect to the same database URL, using
+ * {@link #getSharedInstance(String, int, int)}. Each user of a shared
+ * instance must hand it back with
+ * {@link #releaseSharedInstance(String, ConnectionCreationRateLimiter)} when
+ * it is done, so that the instance is forgotten once nobody uses it.
+ *
+ * @since 2.2
+ */
+public class ConnectionCreationRateLimiter {
+
+    /** Guarded by {@link #sharedInstancesLock}, as is {@link #sharedReferences}. */
+    private static final Map<String, ConnectionCreationRateLimiter> sharedInstances =
+            new HashMap<>();
+
+    private static final Lock sharedInstancesLock = new ReentrantLock();
+
+    /**
+     * Returns the rate limiter registered under the given key, creating it
+     * with the given settings if there is none yet. Every call must be
+     * matched by a call to
+     * {@link #releaseSharedInstance(String, ConnectionCreationRateLimiter)}.
+     *
+     * @param key the key, typically the JDBC URL
+     * @param permitsPerSecond the rate at which permits are added
+     * @param burst the maximum number of permits that can accumulate
+     * @return the shared rate limiter for <code>key</code>
+     * @throws IllegalArgumentException if a limiter with different settings
+     *         is already registered under <code>key</code>
+     */
+    public static ConnectionCreationRateLimiter getSharedInstance(final String key,
+            final int permitsPerSecond, final int burst) {
+        sharedInstancesLock.lock();
+        try {
+            ConnectionCreationRateLimiter limiter = sharedInstances.get(key);
+            if (limiter == null) {
+                limiter = new ConnectionCreationRateLimiter(permitsPerSecond, burst);
+                sharedInstances.put(key, limiter);
+            } else if (limiter.permitsPerSecond != permitsPerSecond ||
+                    limiter.burst != Math.max(1, burst)) {
+                throw new IllegalArgumentException("The connection creation rate limiter shared for " +
+                        key + " allows " + limiter.permitsPerSecond + " per second with a burst of " +
+                        limiter.burst + ", not " + permitsPerSecond + " with a burst of " + burst);
+            }
+            limiter.sharedReferences++;
+            return limiter;
+        } finally {
+            sharedInstancesLock.unlock();
+        }
+    }
+
+    /**
+     * Hands back a rate limiter obtained from
+     * {@link #getSharedInstance(String, int, int)}. The limiter is forgotten
+     * once every user has handed it back, and later users of the key get a
+     * new limiter, with their own settings.
+     *
+     * @param key the key the limiter was obtained for
+     * @param limiter the limiter
+     */
+    public static void releaseSharedInstance(final String key,
+            final ConnectionCreationRateLimiter limiter) {
+        sharedInstancesLock.lock();
+        try {
+            if (sharedInstances.get(key) == limiter && --limiter.sharedReferences <= 0) {
+                sharedInstances.remove(key);
+            }
+        } finally {
+            sharedInstancesLock.unlock();
+        }
+    }
+
+    private final int permitsPerSecond;
+    private final int burst;
+    private final long nanosPerPermit;
+
+    /**
+     * Guards {@link #permits} and {@link #lastRefillNanos}. A Lock is used
+     * rather than a monitor since it is taken by threads creating
+     * connections, which may be virtual threads.
+     */
+    private final Lock permitsLock = new ReentrantLock();
+
+    /** Available permits. Negative when callers have reserved future permits. */
+    private double permits;
+    private long lastRefillNanos;
+
+    /** The number of users of a shared instance that have not released it. */
+    private int sharedReferences;
+
+    /**
+     * Creates a rate limiter.
+     *
+     * @param permitsPerSecond the rate at which permits are added, must be
+     *        positive
+     * @param burst the maximum number of permits that can accumulate while
+     *        no connections are created. Values less than one are treated as
+     *        one.
+     */
+    public ConnectionCreationRateLimiter(final int permitsPerSecond, final int burst) {
+        if (permitsPerSecond < 1) {
+            throw new IllegalArgumentException("permitsPerSecond must be positive");
+        }
+        this.permitsPerSecond = permitsPerSecond;
+        this.burst = Math.max(1, burst);
+        this.nanosPerPermit = TimeUnit.SECONDS.toNanos(1) / permitsPerSecond;
+        this.permits = this.burst;
+        this.lastRefillNanos = System.nanoTime();
+    }
+
+    /**
+     * Takes a permit, waiting for one to become available if necessary.
+     *
+     * @param maxWaitMillis the maximum time to wait, or a negative value to
+     *        wait as long as necessary
+     * @return true if a permit was taken, false if none would have become
+     *         available within <code>maxWaitMillis</code>. The method returns
+     *         false immediately in that case rather than waiting in vain.
+     * @throws InterruptedException if interrupted while waiting
+     */
+    public boolean acquire(final long maxWaitMillis) throws InterruptedException {
+        final long waitNanos;
+        permitsLock.lock();
+        try {
+            refill(System.nanoTime());
+            if (permits >= 1) {
+                permits -= 1;
+                return true;
+            }
+            waitNanos = (long) ((1 - permits) * nanosPerPermit);
+            if (maxWaitMillis >= 0 && waitNanos > TimeUnit.MILLISECONDS.toNanos(maxWaitMillis)) {
+                return false;
+            }
+            // Reserve the permit so later callers queue up behind this one
+            permits -= 1;
+        } finally {
+            permitsLock.unlock();
+        }
+        try {
+            TimeUnit.NANOSECONDS.sleep(waitNanos);
+        } catch (final InterruptedException e) {
+            permitsLock.lock();
+            try {
+                permits += 1;
+            } finally {
+                permitsLock.unlock();
+            }
+            throw e;
+        }
+        return true;
+    }
+
+    private void refill(final long now) {
+        final long elapsed = now - lastRefillNanos;
+        if (elapsed > 0) {
+            permits = Math.min(burst, permits + (double) elapsed / nanosPerPermit);
+            lastRefillNanos = now;
+        }
+    }
+
+    /**
+     * Returns the number of permits that could be taken right now without
+     * waiting.
+     *
+     * @return the number of available permits
+     */
+    public int getAvailablePermits() {
+        permitsLock.lock();
+        try {
+            refill(System.nanoTime());
+            return Math.max(0, (int) permits);
+        } finally {
+            permitsLock.unlock();
+        }
+    }
+
+    public int getPermitsPerSecond() {
+        return permitsPerSecond;
+    }
+
+    public int getBurst() {
+        return burst;
+    }
+
+    @Override
+    public String toString() {
+        return this.getClass().getName() + " [permitsPerSecond=" + permitsPerSecond +
+                ";burst=" + burst + "]";
+    }
+}
@@ -0,0 +1,122 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.commons.dbcp2;
+
+import java.sql.Connection;
+import java.sql.SQLException;
+
+import javax.sql.DataSource;
+
+/**
+ * The auto-commit, read-only, transaction isolation and catalog settings of
+ * the connections a data source hands out, so that a {@link LazyConnection}
+ * can report them without borrowing a connection.
+ * <p>
+ * Settings a {@link BasicDataSource} is configured with are known from the
+ * start. The others are taken from the first connection borrowed, and are
+ * assumed to be the same for later connections.
+ *
+ * @since 2.2
+ */
+class ConnectionDefaults {
+
+    private volatile Boolean autoCommit;
+    private volatile Boolean readOnly;
+    private volatile Integer transactionIsolation;
+    private volatile String catalog;
+    private volatile boolean catalogKnown;
+    private volatile boolean learned;
+
+    /**
+     * @param dataSource the data source whose connections are described
+     */
+    ConnectionDefaults(final DataSource dataSource) {
+        if (dataSource instanceof BasicDataSource) {
+            final BasicDataSource bds = (BasicDataSource) dataSource;
+            autoCommit = bds.getDefaultAutoCommit();
+            readOnly = bds.getDefaultReadOnly();
+            final int isolation = bds.getDefaultTransactionIsolation();
+            if (isolation != PoolableConnectionFactory.UNKNOWN_TRANSACTIONISOLATION) {
+                transactionIsolation = Integer.valueOf(isolation);
+            }
+            catalog = bds.getDefaultCatalog();
+            catalogKnown = catalog != null;
+        }
+    }
+
+    /**
+     * Takes the settings not known yet from a newly borrowed connection,
+     * unless that has been done before.
+     *
+     * @param conn a connection as the data source handed it out
+     * @throws SQLException if a setting cannot be read
+     */
+    void learn(final Connection conn) throws SQLException {
+        if (learned) {
+            return;
+        }
+        if (autoCommit == null) {
+            autoCommit = Boolean.valueOf(conn.getAutoCommit());
+        }
+        if (readOnly == null) {
+            readOnly = Boolean.valueOf(conn.isReadOnly());
+        }
+        if (transactionIsolation == null) {
+            transactionIsolation = Integer.valueOf(conn.getTransactionIsolation());
+        }
+        if (!catalogKnown) {
+            catalog = conn.getCatalog();
+            catalogKnown = true;
+        }
+        learned = true;
+    }
+
+    /**
+     * @return the auto-commit setting, or null if not known yet
+     */
+    Boolean getAutoCommit() {
+        return autoCommit;
+    }
+
+    /**
+     * @return the read-only setting, or null if not known yet
+     */
+    Boolean getReadOnly() {
+        return readOnly;
+    }
+
+    /**
+     * @return the transaction isolation, or null if not known yet
+     */
+    Integer getTransactionIsolation() {
+        return transactionIsolation;
+    }
+
+    /**
+     * @return true if {@link #getCatalog()} is known
+     */
+    boolean isCatalogKnown() {
+        return catalogKnown;
+    }
+
+    /**
+     * @return the catalog, which may be null
+     */
+    String getCatalog() {
+        return catalog;
+    }
+}
@@ -0,0 +1,277 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.commons.dbcp2;
+
+import java.sql.SQLException;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.locks.Lock;
+import java.util.concurrent.locks.ReentrantLock;
+
+import org.apache.commons.logging.Log;
+import org.apache.commons.logging.LogFactory;
+import org.apache.commons.pool2.ObjectPool;
+import org.apache.commons.pool2.PooledObject;
+import org.apache.commons.pool2.PooledObjectState;
+import org.apache.commons.pool2.impl.BaseGenericObjectPool;
+
+/**
+ * Pings the idle connections of a pool before network equipment drops them
+ * for inactivity.
+ * <p>
+ * {@link PoolableConnectionFactory} reports connections as they become idle
+ * and active. A connection that has been idle for <code>keepAliveMillis</code>
+ * is checked with the validation query, or <code>isValid</code> if there is
+ * none, on its underlying connection. The check runs every tenth of
+ * <code>keepAliveMillis</code> and pings at most a tenth of the idle
+ * connections each time, so connections that became idle together are
+ * pinged at different times. Only connections the pool holds as idle are
+ * pinged, not those the evictor is testing. A connection that is borrowed
+ * or tested by the evictor while it is being pinged fails activation, so
+ * that the pool destroys it and hands out another one instead of waiting
+ * for the ping. A connection destroyed while it is being pinged is closed
+ * by the thread that pings it, once the ping is over.
+ * <p>
+ * Pinging does not remove connections from the pool, unlike eviction. A
+ * connection that fails its ping is marked so that it is destroyed, and
+ * replaced, the next time the pool hands it out or tests it.
+ *
+ * @since 2.2
+ */
+class ConnectionKeepAlive implements Runnable {
+
+    private static final Log log = LogFactory.getLog(ConnectionKeepAlive.class);
+
+    /** Number of runs per keep-alive interval */
+    private static final int RUNS_PER_INTERVAL = 10;
+
+    /** Shortest time between runs */
+    private static final long MIN_PERIOD_MILLIS = 10;
+
+    private static class IdleEntry {
+        /** Held while the connection is pinged */
+        final Lock lock = new ReentrantLock();
+        final PooledObject<PoolableConnection> pooled;
+        /** Set when the connection was destroyed during a ping, which closes it */
+        final AtomicBoolean closeAfterPing = new AtomicBoolean(false);
+        volatile long idleSince;
+
+        IdleEntry(final PooledObject<PoolableConnection> pooled, final long idleSince) {
+            this.pooled = pooled;
+            this.idleSince = idleSince;
+        }
+    }
+
+    private final PoolableConnectionFactory factory;
+    private final long keepAliveMillis;
+    private final ConcurrentMap<PoolableConnection, IdleEntry> idle = new ConcurrentHashMap<>();
+    private final Lock scheduleLock = new ReentrantLock();
+    private ScheduledFuture<?> task = null;
+    private volatile boolean stopped = false;
+
+    /**
+     * @param factory the factory that validates the connections
+     * @param keepAliveMillis the idle time after which a connection is
+     *        pinged, must be positive
+     */
+    ConnectionKeepAlive(final PoolableConnectionFactory factory, final long keepAliveMillis) {
+        this.factory = factory;
+        this.keepAliveMillis = keepAliveMillis;
+    }
+
+    long getKeepAliveMillis() {
+        return keepAliveMillis;
+    }
+
+    /**
+     * @return the number of idle connections being kept alive
+     */
+    int getIdleCount() {
+        return idle.size();
+    }
+
+    /**
+     * Starts keeping a connection alive that has just been returned to the
+     * pool.
+     */
+    void connectionIdle(final PooledObject<PoolableConnection> p) {
+        if (stopped) {
+            return;
+        }
+        idle.put(p.getObject(), new IdleEntry(p, System.currentTimeMillis()));
+        ensureScheduled();
+    }
+
+    /**
+     * Stops keeping a connection alive because it is being activated, unless
+     * it is being pinged.
+     *
+     * @return false if the connection is being pinged, in which case it is
+     *         still kept alive
+     */
+    boolean connectionActive(final PoolableConnection conn) {
+        final IdleEntry entry = idle.get(conn);
+        if (entry == null) {
+            return true;
+        }
+        if (!entry.lock.tryLock()) {
+            return false;
+        }
+        try {
+            idle.remove(conn, entry);
+        } finally {
+            entry.lock.unlock();
+        }
+        closeIfDestroyed(conn, entry);
+        return true;
+    }
+
+    /**
+     * Stops keeping a connection alive because it is being destroyed.
+     *
+     * @return true if the caller must close the connection, false if it is
+     *         being pinged and will be closed when the ping is over
+     */
+    boolean connectionDestroyed(final PoolableConnection conn) {
+        final IdleEntry entry = idle.remove(conn);
+        if (entry == null) {
+            return true;
+        }
+        entry.closeAfterPing.set(true);
+        // Whoever holds the lock now checks closeAfterPing once it has let go
+        if (!entry.lock.tryLock()) {
+            return false;
+        }
+        entry.lock.unlock();
+        return entry.closeAfterPing.compareAndSet(true, false);
+    }
+
+    /**
+     * Closes the connection if it was destroyed while the lock of its entry
+     * was held. Called after letting go of the lock.
+     */
+    private static void closeIfDestroyed(final PoolableConnection conn, final IdleEntry entry) {
+        if (entry.closeAfterPing.compareAndSet(true, false)) {
+            try {
+                conn.reallyClose();
+            } catch (final SQLException e) {
+                if (log.isDebugEnabled()) {
+                    log.debug(Utils.getMessage("connectionKeepAlive.closeFailed"), e);
+                }
+            }
+        }
+    }
+
+    /**
+     * Cancels the pings. Called when the pool has been closed.
+     */
+    void stop() {
+        stopped = true;
+        scheduleLock.lock();
+        try {
+            if (task != null) {
+                task.cancel(false);
+                task = null;
+            }
+        } finally {
+            scheduleLock.unlock();
+        }
+        idle.clear();
+    }
+
+    private void ensureScheduled() {
+        scheduleLock.lock();
+        try {
+            if (task == null && !stopped) {
+                final long period = Math.max(keepAliveMillis / RUNS_PER_INTERVAL, MIN_PERIOD_MILLIS);
+                task = SharedScheduler.scheduleWithFixedDelay(this, period, period,
+                        TimeUnit.MILLISECONDS);
+            }
+        } finally {
+            scheduleLock.unlock();
+        }
+    }
+
+    @Override
+    public void run() {
+        try {
+            final ObjectPool<PoolableConnection> pool = factory.getPool();
+            if (pool instanceof BaseGenericObjectPool && ((BaseGenericObjectPool<?>) pool).isClosed() ||
+                    pool instanceof PartitionedObjectPool && ((PartitionedObjectPool<?>) pool).isClosed()) {
+                stop();
+                return;
+            }
+            pingIdleConnections();
+        } catch (final RuntimeException e) {
+            // Keep the task scheduled
+            log.warn(Utils.getMessage("connectionKeepAlive.runFailed"), e);
+        }
+    }
+
+    /**
+     * Pings some of the connections that have been idle for at least
+     * <code>keepAliveMillis</code>.
+     *
+     * @return the number of connections pinged
+     */
+    int pingIdleConnections() {
+        final long now = System.currentTimeMillis();
+        final int limit = (idle.size() + RUNS_PER_INTERVAL - 1) / RUNS_PER_INTERVAL;
+        int pinged = 0;
+        for (final Map.Entry<PoolableConnection, IdleEntry> e : idle.entrySet()) {
+            if (pinged >= limit || stopped) {
+                break;
+            }
+            final IdleEntry entry = e.getValue();
+            if (now - entry.idleSince < keepAliveMillis || !entry.lock.tryLock()) {
+                continue;
+            }
+            final PoolableConnection conn = e.getKey();
+            try {
+                // Borrowed or destroyed since the iteration started, or held
+                // by the evictor, which may be testing it
+                if (idle.get(conn) != entry || entry.pooled.getState() != PooledObjectState.IDLE) {
+                    continue;
+                }
+                pinged++;
+                try {
+                    factory.keepAlive(conn);
+                    entry.idleSince = System.currentTimeMillis();
+                } catch (final SQLException ex) {
+                    idle.remove(conn, entry);
+                    if (log.isDebugEnabled()) {
+                        log.debug(Utils.getMessage("connectionKeepAlive.pingFailed"), ex);
+                    }
+                }
+            } finally {
+                entry.lock.unlock();
+                closeIfDestroyed(conn, entry);
+            }
+        }
+        return pinged;
+    }
+
+    @Override
+    public String toString() {
+        return this.getClass().getName() + " [keepAliveMillis=" + keepAliveMillis +
+                ";idle=" + idle.size() + "]";
+    }
+}
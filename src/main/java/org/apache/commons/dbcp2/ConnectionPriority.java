@@ -0,0 +1,77 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.commons.dbcp2;
+
+/**
+ * The priority with which a borrower waits for a connection when the pool is
+ * exhausted. Waiting borrowers of a higher priority are served first, see
+ * {@link PoolingDataSource#setPrioritizedBorrowing(boolean)}.
+ * <p>
+ * A priority can be passed to each call, or bound to the current thread with
+ * {@link #setCurrent(ConnectionPriority)} so that code which only calls
+ * {@link javax.sql.DataSource#getConnection()}, such as a persistence
+ * framework, borrows with the priority of the request it serves:
+ * <pre>
+ * final ConnectionPriority previous = ConnectionPriority.setCurrent(ConnectionPriority.LOW);
+ * try {
+ *     runBatchJob();
+ * } finally {
+ *     ConnectionPriority.setCurrent(previous);
+ * }
+ * </pre>
+ *
+ * @since 2.2
+ */
+public enum ConnectionPriority {
+
+    /** For latency sensitive work, such as interactive requests. */
+    HIGH,
+
+    /** The priority of borrowers that do not set one. */
+    NORMAL,
+
+    /** For work that can wait, such as batch jobs and reports. */
+    LOW;
+
+    private static final ThreadLocal<ConnectionPriority> CURRENT = new ThreadLocal<>();
+
+    /**
+     * Returns the priority bound to the current thread.
+     *
+     * @return the bound priority, {@link #NORMAL} if there is none
+     */
+    public static ConnectionPriority current() {
+        final ConnectionPriority priority = CURRENT.get();
+        return priority == null ? NORMAL : priority;
+    }
+
+    /**
+     * Binds a priority to the current thread.
+     *
+     * @param priority the priority, or null to remove the bound priority
+     * @return the previously bound priority, null if there was none
+     */
+    public static ConnectionPriority setCurrent(final ConnectionPriority priority) {
+        final ConnectionPriority previous = CURRENT.get();
+        if (priority == null) {
+            CURRENT.remove();
+        } else {
+            CURRENT.set(priority);
+        }
+        return previous;
+    }
+}
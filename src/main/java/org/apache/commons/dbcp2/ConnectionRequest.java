@@ -0,0 +1,206 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.commons.dbcp2;
+
+import java.sql.Connection;
+import java.sql.SQLException;
+import java.util.Collection;
+import java.util.Comparator;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Future;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.apache.commons.logging.Log;
+import org.apache.commons.logging.LogFactory;
+
+/**
+ * A pending asynchronous connection request. The request is completed at
+ * most once, by a connection, a failure or cancellation, and notifies its
+ * {@link ConnectionCallback}, if any, when it is completed by a connection or
+ * a failure.
+ * <p>
+ * Waiting requests are served in the order of their rank, see
+ * {@link #ORDER}, and requests of equal rank in the order they were made.
+ *
+ * @since 2.2
+ */
+class ConnectionRequest implements Future<Connection> {
+
+    private static final Log log = LogFactory.getLog(ConnectionRequest.class);
+
+    private static final int PENDING = 0;
+    private static final int COMPLETED = 1;
+    private static final int FAILED = 2;
+    private static final int CANCELLED = 3;
+
+    /** Orders requests by rank, then by the order they were made. */
+    static final Comparator<ConnectionRequest> ORDER = new Comparator<ConnectionRequest>() {
+        @Override
+        public int compare(final ConnectionRequest a, final ConnectionRequest b) {
+            // Ranks are based on System.nanoTime(), so compare the difference
+            final long diff = a.rank - b.rank;
+            if (diff != 0) {
+                return diff < 0 ? -1 : 1;
+            }
+            return a.sequence < b.sequence ? -1 : (a.sequence == b.sequence ? 0 : 1);
+        }
+    };
+
+    private static final AtomicLong SEQUENCE = new AtomicLong();
+
+    private final AtomicInteger state = new AtomicInteger(PENDING);
+    private final CountDownLatch done = new CountDownLatch(1);
+    private final ConnectionCallback callback;
+    private final Collection<ConnectionRequest> queue;
+    private final long rank;
+    private final long sequence = SEQUENCE.getAndIncrement();
+    private volatile Connection connection;
+    private volatile SQLException failure;
+    private volatile ScheduledFuture<?> timeout;
+
+    /**
+     * @param callback the callback to notify, may be null
+     * @param queue the queue the request waits in, from which it is removed
+     *        when it fails or is cancelled
+     * @param rank the rank of the request, lower ranks are served first
+     */
+    ConnectionRequest(final ConnectionCallback callback, final Collection<ConnectionRequest> queue,
+            final long rank) {
+        this.callback = callback;
+        this.queue = queue;
+        this.rank = rank;
+    }
+
+    /**
+     * Runs <code>task</code> after <code>timeoutMillis</code> unless the
+     * request has been completed by then.
+     */
+    void scheduleTimeout(final long timeoutMillis, final Runnable task) {
+        timeout = SharedScheduler.schedule(task, timeoutMillis, TimeUnit.MILLISECONDS);
+        if (isDone()) {
+            timeout.cancel(false);
+        }
+    }
+
+    /**
+     * Completes the request with a connection.
+     *
+     * @return false if the request had already been completed, in which case
+     *         the caller still owns the connection
+     */
+    boolean complete(final Connection conn) {
+        if (!state.compareAndSet(PENDING, COMPLETED)) {
+            return false;
+        }
+        connection = conn;
+        finish();
+        if (callback != null) {
+            try {
+                callback.connectionAvailable(conn);
+            } catch (final RuntimeException e) {
+                log.warn(Utils.getMessage("poolingDataSource.callbackFailed"), e);
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Completes the request with a failure.
+     *
+     * @return false if the request had already been completed
+     */
+    boolean fail(final SQLException cause) {
+        if (!state.compareAndSet(PENDING, FAILED)) {
+            return false;
+        }
+        failure = cause;
+        queue.remove(this);
+        finish();
+        if (callback != null) {
+            try {
+                callback.connectionFailed(cause);
+            } catch (final RuntimeException e) {
+                log.warn(Utils.getMessage("poolingDataSource.callbackFailed"), e);
+            }
+        }
+        return true;
+    }
+
+    private void finish() {
+        done.countDown();
+        final ScheduledFuture<?> t = timeout;
+        if (t != null) {
+            t.cancel(false);
+        }
+    }
+
+    /**
+     * Cancels the request if it is still waiting for a connection. The
+     * callback is not notified.
+     */
+    @Override
+    public boolean cancel(final boolean mayInterruptIfRunning) {
+        if (!state.compareAndSet(PENDING, CANCELLED)) {
+            return false;
+        }
+        queue.remove(this);
+        finish();
+        return true;
+    }
+
+    @Override
+    public boolean isCancelled() {
+        return state.get() == CANCELLED;
+    }
+
+    @Override
+    public boolean isDone() {
+        return state.get() != PENDING;
+    }
+
+    @Override
+    public Connection get() throws InterruptedException, ExecutionException {
+        done.await();
+        return getResult();
+    }
+
+    @Override
+    public Connection get(final long time, final TimeUnit unit)
+            throws InterruptedException, ExecutionException, TimeoutException {
+        if (!done.await(time, unit)) {
+            throw new TimeoutException();
+        }
+        return getResult();
+    }
+
+    private Connection getResult() throws ExecutionException {
+        final int s = state.get();
+        if (s == COMPLETED) {
+            return connection;
+        }
+        if (s == FAILED) {
+            throw new ExecutionException(failure);
+        }
+        throw new CancellationException();
+    }
+}
@@ -0,0 +1,239 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.commons.dbcp2;
+
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.locks.Lock;
+import java.util.concurrent.locks.ReentrantLock;
+
+import javax.sql.rowset.CachedRowSet;
+import javax.sql.rowset.RowSetFactory;
+import javax.sql.rowset.RowSetProvider;
+
+/**
+ * Caches {@link java.sql.DatabaseMetaData} answers for all connections of a
+ * pool, see {@link CachingDatabaseMetaData}.
+ * <p>
+ * Scalar answers, such as <code>supportsBatchUpdates()</code>, are cached
+ * until {@link #invalidate()} is called. Catalog result sets, such as those
+ * returned by <code>getTables(...)</code>, are cached as disconnected
+ * {@link CachedRowSet}s for <code>ttlMillis</code>; each caller receives its
+ * own copy. At most <code>maxCatalogs</code> result sets are kept, the least
+ * recently used one is discarded to make room for a new one.
+ *
+ * @since 2.2
+ */
+public class DatabaseMetaDataCache {
+
+    /** Stands in for cached null answers */
+    static final Object NULL_VALUE = new Object();
+
+    /** The default maximum number of cached catalog result sets */
+    public static final int DEFAULT_MAX_CATALOGS = 1000;
+
+    private static class CatalogEntry {
+        final CachedRowSet rowSet;
+        final long expiresAt;
+        /** Copying reads the row set's state, keeps concurrent copies apart */
+        final Lock copyLock = new ReentrantLock();
+
+        CatalogEntry(final CachedRowSet rowSet, final long expiresAt) {
+            this.rowSet = rowSet;
+            this.expiresAt = expiresAt;
+        }
+    }
+
+    private final long ttlMillis;
+    private final int maxCatalogs;
+    private final ConcurrentMap<String, Object> scalars = new ConcurrentHashMap<>();
+    /** Access ordered, guarded by {@link #catalogsLock} */
+    private final Map<List<Object>, CatalogEntry> catalogs;
+    /**
+     * A Lock is used rather than a monitor since it is taken by threads
+     * using connections, which may be virtual threads.
+     */
+    private final Lock catalogsLock = new ReentrantLock();
+    private volatile RowSetFactory rowSetFactory;
+
+    /**
+     * Creates a cache holding at most {@link #DEFAULT_MAX_CATALOGS} catalog
+     * result sets.
+     *
+     * @param ttlMillis the time for which catalog result sets are cached. A
+     *        value of zero or less disables caching of catalog result sets.
+     */
+    public DatabaseMetaDataCache(final long ttlMillis) {
+        this(ttlMillis, DEFAULT_MAX_CATALOGS);
+    }
+
+    /**
+     * Creates a cache.
+     *
+     * @param ttlMillis the time for which catalog result sets are cached. A
+     *        value of zero or less disables caching of catalog result sets.
+     * @param maxCatalogs the maximum number of cached catalog result sets.
+     *        A value of zero or less disables caching of catalog result sets.
+     */
+    public DatabaseMetaDataCache(final long ttlMillis, final int maxCatalogs) {
+        this.ttlMillis = ttlMillis;
+        this.maxCatalogs = maxCatalogs;
+        this.catalogs = new LinkedHashMap<List<Object>, CatalogEntry>(16, 0.75f, true) {
+            private static final long serialVersionUID = 1L;
+
+            @Override
+            protected boolean removeEldestEntry(final Map.Entry<List<Object>, CatalogEntry> eldest) {
+                return size() > DatabaseMetaDataCache.this.maxCatalogs;
+            }
+        };
+    }
+
+    public long getTtlMillis() {
+        return ttlMillis;
+    }
+
+    public int getMaxCatalogs() {
+        return maxCatalogs;
+    }
+
+    /**
+     * Discards all cached answers, for example after a schema change or a
+     * database upgrade.
+     */
+    public void invalidate() {
+        scalars.clear();
+        invalidateCatalogs();
+    }
+
+    /**
+     * Discards the cached catalog result sets, keeping the scalar answers.
+     */
+    public void invalidateCatalogs() {
+        catalogsLock.lock();
+        try {
+            catalogs.clear();
+        } finally {
+            catalogsLock.unlock();
+        }
+    }
+
+    /**
+     * @return the cached scalar answer for <code>key</code>,
+     *         {@link #NULL_VALUE} for a cached null, or null if there is none
+     */
+    Object getScalar(final String key) {
+        return scalars.get(key);
+    }
+
+    /**
+     * Caches a scalar answer.
+     */
+    void putScalar(final String key, final Object value) {
+        scalars.put(key, value == null ? NULL_VALUE : value);
+    }
+
+    /**
+     * @return a copy of the cached result set for <code>key</code>, or null
+     *         if there is none or it has expired
+     */
+    ResultSet getCatalog(final List<Object> key) throws SQLException {
+        final CatalogEntry entry;
+        catalogsLock.lock();
+        try {
+            entry = catalogs.get(key);
+            if (entry == null) {
+                return null;
+            }
+            if (System.currentTimeMillis() >= entry.expiresAt) {
+                catalogs.remove(key);
+                return null;
+            }
+        } finally {
+            catalogsLock.unlock();
+        }
+        return copy(entry);
+    }
+
+    /**
+     * Caches the contents of <code>rs</code>, which is closed, if catalog
+     * caching is enabled.
+     *
+     * @return a disconnected copy of <code>rs</code>, or <code>rs</code>
+     *         itself if catalog result sets are not cached
+     */
+    ResultSet putCatalog(final List<Object> key, final ResultSet rs) throws SQLException {
+        if (ttlMillis <= 0 || maxCatalogs <= 0 || rs == null) {
+            return rs;
+        }
+        final CachedRowSet rowSet = getRowSetFactory().createCachedRowSet();
+        try {
+            rowSet.populate(rs);
+        } finally {
+            rs.close();
+        }
+        final CatalogEntry entry = new CatalogEntry(rowSet, System.currentTimeMillis() + ttlMillis);
+        catalogsLock.lock();
+        try {
+            catalogs.put(key, entry);
+        } finally {
+            catalogsLock.unlock();
+        }
+        return copy(entry);
+    }
+
+    /**
+     * @return the number of cached catalog result sets
+     */
+    public int getCatalogCount() {
+        catalogsLock.lock();
+        try {
+            return catalogs.size();
+        } finally {
+            catalogsLock.unlock();
+        }
+    }
+
+    private static ResultSet copy(final CatalogEntry entry) throws SQLException {
+        entry.copyLock.lock();
+        try {
+            return entry.rowSet.createCopy();
+        } finally {
+            entry.copyLock.unlock();
+        }
+    }
+
+    private RowSetFactory getRowSetFactory() throws SQLException {
+        RowSetFactory factory = rowSetFactory;
+        if (factory == null) {
+            factory = RowSetProvider.newFactory();
+            rowSetFactory = factory;
+        }
+        return factory;
+    }
+
+    @Override
+    public String toString() {
+        return this.getClass().getName() + " [ttlMillis=" + ttlMillis +
+                ";maxCatalogs=" + maxCatalogs + ";scalars=" + scalars.size() +
+                ";catalogs=" + getCatalogCount() + "]";
+    }
+}
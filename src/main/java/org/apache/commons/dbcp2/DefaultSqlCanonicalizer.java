@@ -0,0 +1,240 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.commons.dbcp2;
+
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+
+/**
+ * A {@link SqlCanonicalizer} that collapses each run of whitespace outside
+ * quoted text to a single space and trims the result. Optionally, comments
+ * are removed as well, except optimizer hints (<code>/*+ ... *&#47;</code>)
+ * and MySQL executable comments (<code>/*! ... *&#47;</code>).
+ * <p>
+ * MySQL only treats <code>--</code> as the start of a comment when a
+ * whitespace or control character follows it, so that <code>5--1</code> is
+ * an expression, while other databases always do. A <code>--</code> that
+ * MySQL would not treat as a comment is never removed; like a comment, the
+ * rest of its line is copied unchanged, so that it means the same to every
+ * database.
+ * <p>
+ * Text in single quotes, double quotes, back quotes, square brackets and
+ * PostgreSQL dollar quotes is copied unchanged. SQL that cannot be parsed
+ * safely, because a quote or comment is not terminated or a backslash
+ * appears in a quoted string, where its meaning depends on the database, is
+ * only trimmed.
+ * <p>
+ * Results are memoized for up to <code>maxCachedStatements</code> distinct
+ * SQL strings, so that repeated calls with the same SQL are a map lookup.
+ *
+ * @since 2.2
+ */
+public class DefaultSqlCanonicalizer implements SqlCanonicalizer {
+
+    /** The default maximum number of memoized results, 1000 */
+    public static final int DEFAULT_MAX_CACHED_STATEMENTS = 1000;
+
+    /** Characters that may start a comment or quoted text */
+    private static final String SPECIAL_CHARS = "-/'\"`[$";
+
+    private final boolean stripComments;
+    private final int maxCachedStatements;
+    private final ConcurrentMap<String, String> cache = new ConcurrentHashMap<>();
+
+    /**
+     * Creates a canonicalizer that collapses whitespace and keeps comments.
+     */
+    public DefaultSqlCanonicalizer() {
+        this(false, DEFAULT_MAX_CACHED_STATEMENTS);
+    }
+
+    /**
+     * Creates a canonicalizer.
+     *
+     * @param stripComments whether to remove comments other than optimizer
+     *        hints and MySQL executable comments
+     * @param maxCachedStatements the maximum number of distinct SQL strings
+     *        whose canonical form is memoized
+     */
+    public DefaultSqlCanonicalizer(final boolean stripComments, final int maxCachedStatements) {
+        this.stripComments = stripComments;
+        this.maxCachedStatements = maxCachedStatements;
+    }
+
+    public boolean isStripComments() {
+        return stripComments;
+    }
+
+    public int getMaxCachedStatements() {
+        return maxCachedStatements;
+    }
+
+    /**
+     * @return the number of memoized results
+     */
+    public int getCachedStatementCount() {
+        return cache.size();
+    }
+
+    @Override
+    public String canonicalize(final String sql) {
+        String result = cache.get(sql);
+        if (result == null) {
+            result = doCanonicalize(sql);
+            if (cache.size() < maxCachedStatements) {
+                cache.putIfAbsent(sql, result);
+            }
+        }
+        return result;
+    }
+
+    private String doCanonicalize(final String sql) {
+        final int length = sql.length();
+        final StringBuilder sb = new StringBuilder(length);
+        // A separator is written lazily, when the next token starts
+        char pending = 0;
+        int i = 0;
+        while (i < length) {
+            final char c = sql.charAt(i);
+            if (Character.isWhitespace(c)) {
+                if (pending == 0) {
+                    pending = ' ';
+                }
+                i++;
+                continue;
+            }
+            final int end;
+            if (c == '-' && i + 1 < length && sql.charAt(i + 1) == '-') {
+                end = sql.indexOf('\n', i);
+                if (stripComments && (i + 2 == length || sql.charAt(i + 2) <= ' ')) {
+                    pending = ' ';
+                    if (end < 0) {
+                        break;
+                    }
+                    i = end;
+                    continue;
+                }
+                // The comment must stay the last thing on its line
+                appendPending(sb, pending);
+                if (end < 0) {
+                    sb.append(sql, i, length);
+                    break;
+                }
+                sb.append(sql, i, end);
+                pending = '\n';
+                i = end + 1;
+                continue;
+            } else if (c == '/' && i + 1 < length && sql.charAt(i + 1) == '*') {
+                final int close = sql.indexOf("*/", i + 2);
+                if (close < 0) {
+                    return sql.trim();
+                }
+                end = close + 2;
+                final char marker = i + 2 < length ? sql.charAt(i + 2) : 0;
+                if (stripComments && marker != '+' && marker != '!') {
+                    if (pending == 0) {
+                        pending = ' ';
+                    }
+                    i = end;
+                    continue;
+                }
+            } else if (c == '\'' || c == '"' || c == '`') {
+                end = endOfQuoted(sql, i, c);
+                if (end < 0) {
+                    return sql.trim();
+                }
+            } else if (c == '[') {
+                final int close = sql.indexOf(']', i + 1);
+                end = close < 0 ? i + 1 : close + 1;
+            } else if (c == '$' && (i == 0 || !Character.isLetterOrDigit(sql.charAt(i - 1)) &&
+                    sql.charAt(i - 1) != '_')) {
+                end = endOfDollarQuoted(sql, i);
+                if (end < 0) {
+                    return sql.trim();
+                }
+            } else {
+                int j = i + 1;
+                while (j < length && isPlain(sql.charAt(j))) {
+                    j++;
+                }
+                end = j;
+            }
+            appendPending(sb, pending);
+            pending = 0;
+            sb.append(sql, i, end);
+            i = end;
+        }
+        return sb.toString();
+    }
+
+    /**
+     * @return true if <code>c</code> cannot start whitespace, a comment or
+     *         quoted text
+     */
+    private static boolean isPlain(final char c) {
+        return !Character.isWhitespace(c) && SPECIAL_CHARS.indexOf(c) < 0;
+    }
+
+    private static void appendPending(final StringBuilder sb, final char pending) {
+        if (pending != 0 && sb.length() > 0) {
+            sb.append(pending);
+        }
+    }
+
+    /**
+     * @return the index after the closing quote, or -1 if there is none or
+     *         the quoted text contains a backslash
+     */
+    private static int endOfQuoted(final String sql, final int start, final char quote) {
+        for (int i = start + 1; i < sql.length(); i++) {
+            final char c = sql.charAt(i);
+            if (c == quote) {
+                return i + 1;
+            }
+            if (c == '\\') {
+                return -1;
+            }
+        }
+        return -1;
+    }
+
+    /**
+     * @return the index after a dollar quoted string starting at
+     *         <code>start</code>, <code>start + 1</code> if there is no
+     *         opening tag, for example for a <code>$1</code> parameter, or -1
+     *         if the string is not terminated
+     */
+    private static int endOfDollarQuoted(final String sql, final int start) {
+        int i = start + 1;
+        while (i < sql.length() && (Character.isLetter(sql.charAt(i)) || sql.charAt(i) == '_' ||
+                (i > start + 1 && Character.isDigit(sql.charAt(i))))) {
+            i++;
+        }
+        if (i >= sql.length() || sql.charAt(i) != '$') {
+            return start + 1;
+        }
+        final String tag = sql.substring(start, i + 1);
+        final int close = sql.indexOf(tag, i + 1);
+        return close < 0 ? -1 : close + tag.length();
+    }
+
+    @Override
+    public String toString() {
+        return this.getClass().getName() + " [stripComments=" + stripComments +
+                ";cached=" + cache.size() + "]";
+    }
+}
@@ -80,6 +80,10 @@ public class DelegatingConnection<C extends Connection> extends AbandonedTrace
     private Boolean _autoCommitCached = null;
     private Boolean _readOnlyCached = null;
     private Integer defaultQueryTimeout = null;
+    private Integer defaultFetchSize = null;
+    private FetchSizeAdvisor fetchSizeAdvisor = null;
+    private DatabaseMetaDataCache databaseMetaDataCache = null;
+    private PoolEventSupport poolEventSupport = null;
 
     /**
      * Create a wrapper for the Connection which traces this
@@ -248,10 +252,21 @@ public class DelegatingConnection<C extends Connection> extends AbandonedTrace
     }
 
     private void initializeStatement(final DelegatingStatement ds) throws SQLException {
+        initializeStatement(ds, null);
+    }
+
+    private void initializeStatement(final DelegatingStatement ds, final String sql) throws SQLException {
         if (defaultQueryTimeout != null &&
                 defaultQueryTimeout.intValue() != ds.getQueryTimeout()) {
             ds.setQueryTimeout(defaultQueryTimeout.intValue());
         }
+        if (defaultFetchSize != null &&
+                defaultFetchSize.intValue() != ds.getFetchSize()) {
+            ds.setFetchSize(defaultFetchSize.intValue());
+        }
+        if (fetchSizeAdvisor != null) {
+            ds.setFetchSizeAdvisor(fetchSizeAdvisor, sql);
+        }
     }
 
     @Override
@@ -291,7 +306,7 @@ public class DelegatingConnection<C extends Connection> extends AbandonedTrace
         try {
             final DelegatingPreparedStatement dps = new DelegatingPreparedStatement(
                     this, _conn.prepareStatement(sql));
-            initializeStatement(dps);
+            initializeStatement(dps, sql);
             return dps;
         }
         catch (final SQLException e) {
@@ -308,7 +323,7 @@ public class DelegatingConnection<C extends Connection> extends AbandonedTrace
         try {
             final DelegatingPreparedStatement dps = new DelegatingPreparedStatement(
                     this, _conn.prepareStatement(sql,resultSetType,resultSetConcurrency));
-            initializeStatement(dps);
+            initializeStatement(dps, sql);
             return dps;
         }
         catch (final SQLException e) {
@@ -323,7 +338,7 @@ public class DelegatingConnection<C extends Connection> extends AbandonedTrace
         try {
             final DelegatingCallableStatement dcs =
                     new DelegatingCallableStatement(this, _conn.prepareCall(sql));
-            initializeStatement(dcs);
+            initializeStatement(dcs, sql);
             return dcs;
         }
         catch (final SQLException e) {
@@ -340,7 +355,7 @@ public class DelegatingConnection<C extends Connection> extends AbandonedTrace
         try {
             final DelegatingCallableStatement dcs = new DelegatingCallableStatement(
                     this, _conn.prepareCall(sql, resultSetType,resultSetConcurrency));
-            initializeStatement(dcs);
+            initializeStatement(dcs, sql);
             return dcs;
         }
         catch (final SQLException e) {
@@ -413,6 +428,9 @@ public class DelegatingConnection<C extends Connection> extends AbandonedTrace
     public DatabaseMetaData getMetaData() throws SQLException {
         checkOpen();
         try {
+            if (databaseMetaDataCache != null) {
+                return new CachingDatabaseMetaData(this, _conn.getMetaData(), databaseMetaDataCache);
+            }
             return new DelegatingDatabaseMetaData(this, _conn.getMetaData());
         } catch (final SQLException e) {
             handleException(e);
@@ -516,6 +534,91 @@ public class DelegatingConnection<C extends Connection> extends AbandonedTrace
     }
 
 
+    /**
+     * Obtain the default fetch size that will be used for {@link Statement}s
+     * created from this connection. <code>null</code> means that the driver
+     * default will be used.
+     * @since 2.2
+     */
+    public Integer getDefaultFetchSize() {
+        return defaultFetchSize;
+    }
+
+
+    /**
+     * Set the default fetch size that will be used for {@link Statement}s
+     * created from this connection. <code>null</code> means that the driver
+     * default will be used.
+     * @since 2.2
+     */
+    public void setDefaultFetchSize(final Integer defaultFetchSize) {
+        this.defaultFetchSize = defaultFetchSize;
+    }
+
+
+    /**
+     * Obtain the advisor used to adapt the fetch size of {@link Statement}s
+     * created from this connection to the typical size of their results.
+     * <code>null</code> means that adaptive fetch sizing is disabled.
+     * @since 2.2
+     */
+    public FetchSizeAdvisor getFetchSizeAdvisor() {
+        return fetchSizeAdvisor;
+    }
+
+
+    /**
+     * Set the advisor used to adapt the fetch size of {@link Statement}s
+     * created from this connection to the typical size of their results.
+     * <code>null</code> disables adaptive fetch sizing.
+     * @since 2.2
+     */
+    public void setFetchSizeAdvisor(final FetchSizeAdvisor fetchSizeAdvisor) {
+        this.fetchSizeAdvisor = fetchSizeAdvisor;
+    }
+
+
+    /**
+     * Obtain the cache that answers {@link DatabaseMetaData} calls made
+     * through this connection. <code>null</code> means that every call goes
+     * to the driver.
+     * @since 2.2
+     */
+    public DatabaseMetaDataCache getDatabaseMetaDataCache() {
+        return databaseMetaDataCache;
+    }
+
+
+    /**
+     * Set the cache that answers {@link DatabaseMetaData} calls made
+     * through this connection. <code>null</code> means that every call goes
+     * to the driver.
+     * @since 2.2
+     */
+    public void setDatabaseMetaDataCache(final DatabaseMetaDataCache databaseMetaDataCache) {
+        this.databaseMetaDataCache = databaseMetaDataCache;
+    }
+
+
+    /**
+     * Returns the listeners told about the execution of statements created
+     * from this connection, or <code>null</code> if there are none.
+     */
+    PoolEventSupport getPoolEventSupport() {
+        return poolEventSupport;
+    }
+
+
+    /**
+     * Sets the listeners told about the execution of statements created from
+     * this connection. Only the innermost connection of a pool has them, so
+     * that each execution is reported once.
+     */
+    void setPoolEventSupport(final PoolEventSupport poolEventSupport) {
+        this.poolEventSupport = poolEventSupport;
+    }
+
+
     /**
      * Sets the state caching flag.
      *
@@ -742,7 +845,7 @@ public class DelegatingConnection<C extends Connection> extends AbandonedTrace
             final DelegatingPreparedStatement dps = new DelegatingPreparedStatement(
                     this, _conn.prepareStatement(sql, resultSetType,
                             resultSetConcurrency, resultSetHoldability));
-            initializeStatement(dps);
+            initializeStatement(dps, sql);
             return dps;
         }
         catch (final SQLException e) {
@@ -760,7 +863,7 @@ public class DelegatingConnection<C extends Connection> extends AbandonedTrace
             final DelegatingCallableStatement dcs = new DelegatingCallableStatement(
                     this, _conn.prepareCall(sql, resultSetType,
                             resultSetConcurrency, resultSetHoldability));
-            initializeStatement(dcs);
+            initializeStatement(dcs, sql);
             return dcs;
         }
         catch (final SQLException e) {
@@ -775,7 +878,7 @@ public class DelegatingConnection<C extends Connection> extends AbandonedTrace
         try {
             final DelegatingPreparedStatement dps = new DelegatingPreparedStatement(
                     this, _conn.prepareStatement(sql, autoGeneratedKeys));
-            initializeStatement(dps);
+            initializeStatement(dps, sql);
             return dps;
         }
         catch (final SQLException e) {
@@ -790,7 +893,7 @@ public class DelegatingConnection<C extends Connection> extends AbandonedTrace
         try {
             final DelegatingPreparedStatement dps = new DelegatingPreparedStatement(
                     this, _conn.prepareStatement(sql, columnIndexes));
-            initializeStatement(dps);
+            initializeStatement(dps, sql);
             return dps;
         }
         catch (final SQLException e) {
@@ -805,7 +908,7 @@ public class DelegatingConnection<C extends Connection> extends AbandonedTrace
         try {
             final DelegatingPreparedStatement dps =  new DelegatingPreparedStatement(
                     this, _conn.prepareStatement(sql, columnNames));
-            initializeStatement(dps);
+            initializeStatement(dps, sql);
             return dps;
         }
         catch (final SQLException e) {
@@ -73,18 +73,32 @@ public class DelegatingPreparedStatement extends DelegatingStatement
         super(c, s);
     }
 
+    /**
+     * Returns the SQL this statement was prepared with, if known, for the
+     * events reported when it is executed.
+     *
+     * @return <code>null</code>
+     */
+    String getPreparedSql() {
+        return null;
+    }
+
     @Override
     public ResultSet executeQuery() throws SQLException {
         checkOpen();
         if (getConnectionInternal() != null) {
             getConnectionInternal().setLastUsed();
         }
+        final Object execution = startExecution(getPreparedSql());
         try {
+            adaptFetchSize();
             return DelegatingResultSet.wrapResultSet(this,((PreparedStatement)getDelegate()).executeQuery());
         }
         catch (final SQLException e) {
             handleException(e);
             throw new AssertionError();
+        } finally {
+            endExecution(execution, getPreparedSql());
         }
     }
 
@@ -94,11 +108,14 @@ public class DelegatingPreparedStatement extends DelegatingStatement
         if (getConnectionInternal() != null) {
             getConnectionInternal().setLastUsed();
         }
+        final Object execution = startExecution(getPreparedSql());
         try {
             return ((PreparedStatement) getDelegate()).executeUpdate();
         } catch (final SQLException e) {
             handleException(e);
             return 0;
+        } finally {
+            endExecution(execution, getPreparedSql());
         }
     }
 
@@ -194,11 +211,15 @@ public class DelegatingPreparedStatement extends DelegatingStatement
         if (getConnectionInternal() != null) {
             getConnectionInternal().setLastUsed();
         }
+        final Object execution = startExecution(getPreparedSql());
         try {
+            adaptFetchSize();
             return ((PreparedStatement) getDelegate()).execute();
         } catch (final SQLException e) {
             handleException(e);
             return false;
+        } finally {
+            endExecution(execution, getPreparedSql());
         }
     }
 
@@ -68,6 +68,9 @@ public final class DelegatingResultSet extends AbandonedTrace implements ResultS
     /** The Connection that created me, if any. **/
     private Connection _conn;
 
+    /** The number of rows traversed with {@link #next()} */
+    private int _rowCount = 0;
+
     /**
      * Create a wrapper for the ResultSet which traces this
      * ResultSet to the Statement which created it and the
@@ -161,6 +164,9 @@ public final class DelegatingResultSet extends AbandonedTrace implements ResultS
         try {
             if(_stmt != null) {
                 ((AbandonedTrace)_stmt).removeTrace(this);
+                if (_stmt instanceof DelegatingStatement) {
+                    ((DelegatingStatement)_stmt).resultSetClosed(_rowCount);
+                }
                 _stmt = null;
             }
             if(_conn != null) {
@@ -187,8 +193,18 @@ public final class DelegatingResultSet extends AbandonedTrace implements ResultS
     }
 
     @Override
-    public boolean next() throws SQLException
-    { try { return _res.next(); } catch (final SQLException e) { handleException(e); return false; } }
+    public boolean next() throws SQLException {
+        try {
+            final boolean hasNext = _res.next();
+            if (hasNext) {
+                _rowCount++;
+            }
+            return hasNext;
+        } catch (final SQLException e) {
+            handleException(e);
+            return false;
+        }
+    }
 
     @Override
     public boolean wasNull() throws SQLException
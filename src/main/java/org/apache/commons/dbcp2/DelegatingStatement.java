@@ -49,6 +49,23 @@ public class DelegatingStatement extends AbandonedTrace implements Statement {
     /** The connection that created me. **/
     private DelegatingConnection<?> _conn = null;
 
+    /** Recommends fetch sizes, null unless adaptive fetch sizing is enabled */
+    private FetchSizeAdvisor _fetchSizeAdvisor = null;
+    /** The SQL whose results are currently being read */
+    private String _fetchSizeSql = null;
+    /** The fetch size to use when the advisor has no recommendation */
+    private int _baseFetchSize = 0;
+    private int _appliedFetchSize = 0;
+    /** Whether the fetch size has been set by the application */
+    private boolean _fetchSizeExplicit = false;
+
+    /**
+     * When the current execution started, for the pool event listeners.
+     * Kept here rather than in an object per execution, since a statement
+     * runs one execution at a time.
+     */
+    private long executionStartNanos = 0;
+
     /**
      * Create a wrapper for the Statement which traces this
      * Statement to the Connection which created it and the
@@ -197,18 +214,120 @@ public class DelegatingStatement extends AbandonedTrace implements Statement {
         return _conn;
     }
 
+    /**
+     * Enables adaptive fetch sizing for this statement. Called by the
+     * connection right after the statement has been created.
+     *
+     * @param advisor the advisor to consult and report row counts to
+     * @param sql the SQL of a prepared statement, or null for a plain
+     *        statement whose SQL is only known when it is executed
+     */
+    void setFetchSizeAdvisor(final FetchSizeAdvisor advisor, final String sql) throws SQLException {
+        _fetchSizeAdvisor = advisor;
+        _fetchSizeExplicit = false;
+        _baseFetchSize = getFetchSize();
+        _appliedFetchSize = _baseFetchSize;
+        if (sql != null) {
+            adaptFetchSize(sql);
+        }
+    }
+
+    /**
+     * Reports the start of an execution of this statement to the pool event
+     * listeners of its connection, if any. Statements of connections without
+     * listeners, such as those of the cpdsadapter package, report only to
+     * Java Flight Recorder, and only if they wrap the driver's statement, so
+     * that each execution is reported once.
+     *
+     * @return the value to pass to {@link #endExecution(Object, String)}
+     */
+    Object startExecution(final String sql) {
+        final PoolEventSupport events = getPoolEventSupport();
+        if (events != null) {
+            executionStartNanos = System.nanoTime();
+            return events.statementExecutionStarted(this, sql);
+        }
+        return _stmt instanceof DelegatingStatement ? null :
+                FlightRecorderEvents.INSTANCE.beginStatementExecute();
+    }
+
+    /**
+     * Reports the end of an execution of this statement.
+     *
+     * @param execution the value returned by {@link #startExecution(String)}
+     */
+    void endExecution(final Object execution, final String sql) {
+        final PoolEventSupport events = getPoolEventSupport();
+        if (events != null) {
+            events.statementExecutionEnded(execution, this, sql, executionStartNanos);
+        } else if (execution != null) {
+            FlightRecorderEvents.INSTANCE.statementExecuted(execution, sql);
+        }
+    }
+
+    private PoolEventSupport getPoolEventSupport() {
+        final DelegatingConnection<?> conn = _conn;
+        return conn != null ? conn.getPoolEventSupport() : null;
+    }
+
+    /**
+     * Applies the fetch size recommended for <code>sql</code>, unless the
+     * application has set one.
+     */
+    void adaptFetchSize(final String sql) throws SQLException {
+        if (_fetchSizeAdvisor == null) {
+            return;
+        }
+        _fetchSizeSql = sql;
+        if (_fetchSizeExplicit) {
+            return;
+        }
+        final Integer advice = _fetchSizeAdvisor.getFetchSize(sql);
+        final int fetchSize = advice != null ? advice.intValue() : _baseFetchSize;
+        if (fetchSize != _appliedFetchSize) {
+            _stmt.setFetchSize(fetchSize);
+            _appliedFetchSize = fetchSize;
+        }
+    }
+
+    /**
+     * Applies the fetch size recommended for the SQL of this prepared
+     * statement, which may have changed since it was prepared.
+     */
+    void adaptFetchSize() throws SQLException {
+        if (_fetchSizeSql != null) {
+            adaptFetchSize(_fetchSizeSql);
+        }
+    }
+
+    /**
+     * Called by a {@link DelegatingResultSet} created by this statement when
+     * it is closed.
+     *
+     * @param rows the number of rows that were read from the result set
+     */
+    void resultSetClosed(final int rows) {
+        if (_fetchSizeAdvisor != null && _fetchSizeSql != null) {
+            _fetchSizeAdvisor.recordRowCount(_fetchSizeSql, rows);
+        }
+    }
+
     @Override
     public ResultSet executeQuery(final String sql) throws SQLException {
         checkOpen();
         if (_conn != null) {
             _conn.setLastUsed();
         }
+        final Object execution = startExecution(sql);
         try {
+            adaptFetchSize(sql);
             return DelegatingResultSet.wrapResultSet(this,_stmt.executeQuery(sql));
         }
         catch (final SQLException e) {
             handleException(e);
             throw new AssertionError();
+        } finally {
+            endExecution(execution, sql);
         }
     }
 
@@ -230,10 +349,13 @@ public class DelegatingStatement extends AbandonedTrace implements Statement {
         if (_conn != null) {
             _conn.setLastUsed();
         }
+        final Object execution = startExecution(sql);
         try {
             return _stmt.executeUpdate(sql);
         } catch (final SQLException e) {
             handleException(e); return 0;
+        } finally {
+            endExecution(execution, sql);
         }
     }
 
@@ -287,11 +409,15 @@ public class DelegatingStatement extends AbandonedTrace implements Statement {
         if (_conn != null) {
             _conn.setLastUsed();
         }
+        final Object execution = startExecution(sql);
         try {
+            adaptFetchSize(sql);
             return _stmt.execute(sql);
         } catch (final SQLException e) {
             handleException(e);
             return false;
+        } finally {
+            endExecution(execution, sql);
         }
     }
 
@@ -313,7 +439,7 @@ public class DelegatingStatement extends AbandonedTrace implements Statement {
 
     @Override
     public void setFetchSize(final int rows) throws SQLException
-    { checkOpen(); try { _stmt.setFetchSize(rows); } catch (final SQLException e) { handleException(e); } }
+    { checkOpen(); try { _stmt.setFetchSize(rows); _fetchSizeExplicit = true; } catch (final SQLException e) { handleException(e); } }
 
     @Override
     public int getFetchSize() throws SQLException
@@ -341,11 +467,14 @@ public class DelegatingStatement extends AbandonedTrace implements Statement {
         if (_conn != null) {
             _conn.setLastUsed();
         }
+        final Object execution = startExecution(null);
         try {
             return _stmt.executeBatch();
         } catch (final SQLException e) {
             handleException(e);
             throw new AssertionError();
+        } finally {
+            endExecution(execution, null);
         }
     }
 
@@ -380,11 +509,14 @@ public class DelegatingStatement extends AbandonedTrace implements Statement {
         if (_conn != null) {
             _conn.setLastUsed();
         }
+        final Object execution = startExecution(sql);
         try {
             return _stmt.executeUpdate(sql, autoGeneratedKeys);
         } catch (final SQLException e) {
             handleException(e);
             return 0;
+        } finally {
+            endExecution(execution, sql);
         }
     }
 
@@ -394,11 +526,14 @@ public class DelegatingStatement extends AbandonedTrace implements Statement {
         if (_conn != null) {
             _conn.setLastUsed();
         }
+        final Object execution = startExecution(sql);
         try {
             return _stmt.executeUpdate(sql, columnIndexes);
         } catch (final SQLException e) {
             handleException(e);
             return 0;
+        } finally {
+            endExecution(execution, sql);
         }
     }
 
@@ -408,11 +543,14 @@ public class DelegatingStatement extends AbandonedTrace implements Statement {
         if (_conn != null) {
             _conn.setLastUsed();
         }
+        final Object execution = startExecution(sql);
         try {
             return _stmt.executeUpdate(sql, columnNames);
         } catch (final SQLException e) {
             handleException(e);
             return 0;
+        } finally {
+            endExecution(execution, sql);
         }
     }
 
@@ -422,11 +560,14 @@ public class DelegatingStatement extends AbandonedTrace implements Statement {
         if (_conn != null) {
             _conn.setLastUsed();
         }
+        final Object execution = startExecution(sql);
         try {
             return _stmt.execute(sql, autoGeneratedKeys);
         } catch (final SQLException e) {
             handleException(e);
             return false;
+        } finally {
+            endExecution(execution, sql);
         }
     }
 
@@ -436,11 +577,14 @@ public class DelegatingStatement extends AbandonedTrace implements Statement {
         if (_conn != null) {
             _conn.setLastUsed();
         }
+        final Object execution = startExecution(sql);
         try {
             return _stmt.execute(sql, columnIndexes);
         } catch (final SQLException e) {
             handleException(e);
             return false;
+        } finally {
+            endExecution(execution, sql);
         }
     }
 
@@ -450,11 +594,14 @@ public class DelegatingStatement extends AbandonedTrace implements Statement {
         if (_conn != null) {
             _conn.setLastUsed();
         }
+        final Object execution = startExecution(sql);
         try {
             return _stmt.execute(sql, columnNames);
         } catch (final SQLException e) {
             handleException(e);
             return false;
+        } finally {
+            endExecution(execution, sql);
         }
     }
 
@@ -0,0 +1,143 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.commons.dbcp2;
+
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+
+/**
+ * Learns how many rows are typically read from the results of each SQL
+ * statement and recommends a fetch size for the next execution.
+ * <p>
+ * {@link DelegatingResultSet}s report the number of rows traversed when they
+ * are closed. The recommended fetch size is one more than the moving average
+ * of those counts, so that a typical result is read in a single round trip
+ * including the end of results, and is capped at a maximum so that large
+ * results are not buffered in full.
+ * <p>
+ * One advisor is shared by all connections of a pool. Statistics are kept for
+ * at most <code>maxStatements</code> distinct SQL strings; statements seen
+ * once that limit has been reached are not tracked.
+ *
+ * @since 2.2
+ */
+public class FetchSizeAdvisor {
+
+    /** The default maximum fetch size recommended, 1000 */
+    public static final int DEFAULT_MAX_FETCH_SIZE = 1000;
+
+    /** The default maximum number of SQL strings tracked, 1000 */
+    public static final int DEFAULT_MAX_STATEMENTS = 1000;
+
+    /** Weight of a new sample in the moving average */
+    private static final double SAMPLE_WEIGHT = 0.25;
+
+    private static class RowCount {
+        // Updated without locking, a lost sample does not matter
+        volatile double average;
+
+        RowCount(final int rows) {
+            average = rows;
+        }
+    }
+
+    private final int maxFetchSize;
+    private final int maxStatements;
+    private final ConcurrentMap<String, RowCount> rowCounts = new ConcurrentHashMap<>();
+
+    /**
+     * Creates an advisor with the default limits.
+     */
+    public FetchSizeAdvisor() {
+        this(DEFAULT_MAX_FETCH_SIZE, DEFAULT_MAX_STATEMENTS);
+    }
+
+    /**
+     * Creates an advisor.
+     *
+     * @param maxFetchSize the largest fetch size to recommend, must be
+     *        positive
+     * @param maxStatements the maximum number of distinct SQL strings to
+     *        track
+     */
+    public FetchSizeAdvisor(final int maxFetchSize, final int maxStatements) {
+        if (maxFetchSize < 1) {
+            throw new IllegalArgumentException("maxFetchSize must be positive");
+        }
+        this.maxFetchSize = maxFetchSize;
+        this.maxStatements = maxStatements;
+    }
+
+    /**
+     * Records the number of rows read from a result of <code>sql</code>.
+     *
+     * @param sql the SQL that produced the result
+     * @param rows the number of rows read
+     */
+    public void recordRowCount(final String sql, final int rows) {
+        final RowCount count = rowCounts.get(sql);
+        if (count != null) {
+            count.average += (rows - count.average) * SAMPLE_WEIGHT;
+        } else if (rowCounts.size() < maxStatements) {
+            rowCounts.putIfAbsent(sql, new RowCount(rows));
+        }
+    }
+
+    /**
+     * Returns the recommended fetch size for <code>sql</code>.
+     *
+     * @param sql the SQL about to be executed
+     * @return the recommended fetch size, or null if no results of
+     *         <code>sql</code> have been recorded
+     */
+    public Integer getFetchSize(final String sql) {
+        final RowCount count = rowCounts.get(sql);
+        if (count == null) {
+            return null;
+        }
+        final double fetchSize = Math.ceil(count.average) + 1;
+        return Integer.valueOf(fetchSize >= maxFetchSize ? maxFetchSize : (int) fetchSize);
+    }
+
+    /**
+     * Forgets all recorded row counts.
+     */
+    public void clear() {
+        rowCounts.clear();
+    }
+
+    public int getMaxFetchSize() {
+        return maxFetchSize;
+    }
+
+    public int getMaxStatements() {
+        return maxStatements;
+    }
+
+    /**
+     * @return the number of SQL strings currently tracked
+     */
+    public int getStatementCount() {
+        return rowCounts.size();
+    }
+
+    @Override
+    public String toString() {
+        return this.getClass().getName() + " [maxFetchSize=" + maxFetchSize +
+                ";statements=" + rowCounts.size() + "]";
+    }
+}
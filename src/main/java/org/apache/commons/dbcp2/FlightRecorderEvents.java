@@ -0,0 +1,198 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.commons.dbcp2;
+
+import org.apache.commons.pool2.PooledObject;
+
+/**
+ * Reports pool and statement lifecycle events to Java Flight Recorder.
+ * <p>
+ * This class does nothing. When the running JVM provides the
+ * <code>jdk.jfr</code> module, {@link #INSTANCE} is the subclass
+ * <code>JfrFlightRecorderEvents</code>, which is compiled separately for
+ * Java 11 and is absent from builds made with an older JDK. Because
+ * {@link #INSTANCE} is final and its methods are empty unless that subclass
+ * is loaded, the calls made from the pool cost nothing on older JVMs.
+ * <p>
+ * Events that take time are begun by a <code>begin...()</code> method, whose
+ * result the caller passes to the method that ends and reports the event. It
+ * is <code>null</code> while no recording is running, in which case nothing
+ * is reported.
+ *
+ * @since 2.2
+ */
+class FlightRecorderEvents {
+
+    private static final String JFR_EVENTS_CLASS_NAME =
+            "org.apache.commons.dbcp2.JfrFlightRecorderEvents";
+
+    /** The events reporter of this JVM. */
+    static final FlightRecorderEvents INSTANCE = load();
+
+    private static FlightRecorderEvents load() {
+        try {
+            // Fails fast, before the subclass is loaded, on JVMs without JFR
+            Class.forName("jdk.jfr.Event");
+            return (FlightRecorderEvents) Class.forName(JFR_EVENTS_CLASS_NAME)
+                    .getDeclaredConstructor().newInstance();
+        } catch (final ReflectiveOperationException | LinkageError | RuntimeException e) {
+            // Not available in this JVM or not compiled into this build
+            return new FlightRecorderEvents();
+        }
+    }
+
+    /**
+     * Returns whether events are reported to Java Flight Recorder in this JVM.
+     *
+     * @return <code>false</code>
+     */
+    boolean isAvailable() {
+        return false;
+    }
+
+    /**
+     * Begins the event reported by {@link #connectionBorrowed(Object)}.
+     *
+     * @return the event, or <code>null</code> if none is to be reported
+     */
+    Object beginConnectionBorrow() {
+        return null;
+    }
+
+    /**
+     * A connection has been borrowed from a {@link BasicDataSource}.
+     *
+     * @param event the value returned by {@link #beginConnectionBorrow()}
+     */
+    void connectionBorrowed(final Object event) {
+        // NOOP
+    }
+
+    /**
+     * A connection is being returned to its pool.
+     *
+     * @param p the connection, still allocated to its borrower
+     */
+    void connectionReturned(final PooledObject<PoolableConnection> p) {
+        // NOOP
+    }
+
+    /**
+     * Begins the event reported by {@link #connectionCreated(Object)}.
+     *
+     * @return the event, or <code>null</code> if none is to be reported
+     */
+    Object beginConnectionCreate() {
+        return null;
+    }
+
+    /**
+     * A physical connection has been created.
+     *
+     * @param event the value returned by {@link #beginConnectionCreate()}
+     */
+    void connectionCreated(final Object event) {
+        // NOOP
+    }
+
+    /**
+     * Begins the event reported by
+     * {@link #connectionDestroyed(Object, PooledObject)}.
+     *
+     * @return the event, or <code>null</code> if none is to be reported
+     */
+    Object beginConnectionDestroy() {
+        return null;
+    }
+
+    /**
+     * A physical connection has been destroyed.
+     *
+     * @param event the value returned by {@link #beginConnectionDestroy()}
+     * @param p the connection
+     */
+    void connectionDestroyed(final Object event, final PooledObject<PoolableConnection> p) {
+        // NOOP
+    }
+
+    /**
+     * Begins the event reported by {@link #connectionValidated(Object, boolean)}.
+     *
+     * @return the event, or <code>null</code> if none is to be reported
+     */
+    Object beginConnectionValidate() {
+        return null;
+    }
+
+    /**
+     * A connection has been validated.
+     *
+     * @param event the value returned by {@link #beginConnectionValidate()}
+     * @param valid whether the connection passed validation
+     */
+    void connectionValidated(final Object event, final boolean valid) {
+        // NOOP
+    }
+
+    /**
+     * Begins the event reported by {@link #evictionRun(Object, long)}.
+     *
+     * @return the event, or <code>null</code> if none is to be reported
+     */
+    Object beginEvictionRun() {
+        return null;
+    }
+
+    /**
+     * The evictor has finished a run.
+     *
+     * @param event the value returned by {@link #beginEvictionRun()}
+     * @param destroyed the number of connections the run destroyed
+     */
+    void evictionRun(final Object event, final long destroyed) {
+        // NOOP
+    }
+
+    /**
+     * A statement has been obtained from a statement pool.
+     *
+     * @param sql the SQL of the statement
+     * @param cacheHit <code>false</code> if it had to be prepared
+     */
+    void statementPrepared(final String sql, final boolean cacheHit) {
+        // NOOP
+    }
+
+    /**
+     * Begins the event reported by {@link #statementExecuted(Object, String)}.
+     *
+     * @return the event, or <code>null</code> if none is to be reported
+     */
+    Object beginStatementExecute() {
+        return null;
+    }
+
+    /**
+     * A statement has been executed.
+     *
+     * @param event the value returned by {@link #beginStatementExecute()}
+     * @param sql the SQL executed, or <code>null</code> if unknown
+     */
+    void statementExecuted(final Object event, final String sql) {
+        // NOOP
+    }
+}
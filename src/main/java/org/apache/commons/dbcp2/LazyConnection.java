@@ -0,0 +1,298 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.commons.dbcp2;
+
+import java.sql.Connection;
+import java.sql.SQLException;
+import java.sql.SQLWarning;
+
+import javax.sql.DataSource;
+
+/**
+ * A {@link DelegatingConnection} that does not hold a physical connection
+ * until the first statement, prepare, metadata or other database call is
+ * made. At that point a connection is borrowed from a {@link DataSource} and
+ * the auto-commit, read-only, transaction isolation and catalog settings made
+ * before that point are applied to it.
+ * <p>
+ * Until then, the getters for these settings return the recorded values or,
+ * if none were recorded, the settings of the data source's connections: the
+ * defaults a {@link BasicDataSource} is configured with, or those of the
+ * first connection borrowed through the same {@link LazyConnectionDataSource}.
+ * Only when neither is known does a getter borrow the connection.
+ * <p>
+ * Once borrowed, the underlying connection is retained until
+ * {@link #close()} is called. Closing a connection that never borrowed one
+ * does not touch the data source.
+ * <p>
+ * {@link #checkOpen()} is the point at which the delegate is borrowed, since
+ * every delegating method calls it before touching the delegate. Subclasses
+ * may override {@link #borrowConnection()} to choose where the connection is
+ * borrowed from.
+ *
+ * @since 2.2
+ */
+public class LazyConnection extends DelegatingConnection<Connection> {
+
+    private final DataSource dataSource;
+    private final ConnectionDefaults defaults;
+
+    private Boolean readOnly = null;
+    private Boolean autoCommit = null;
+    private Integer transactionIsolation = null;
+    private String catalog = null;
+
+    /**
+     * Creates a connection that borrows from <code>dataSource</code> when it
+     * is first used.
+     *
+     * @param dataSource the data source to borrow the connection from
+     */
+    public LazyConnection(final DataSource dataSource) {
+        this(dataSource, new ConnectionDefaults(dataSource));
+    }
+
+    /**
+     * @param dataSource the data source to borrow the connection from
+     * @param defaults the settings of the connections of the data source,
+     *        shared by the lazy connections of one data source
+     */
+    LazyConnection(final DataSource dataSource, final ConnectionDefaults defaults) {
+        super(null);
+        this.dataSource = dataSource;
+        this.defaults = defaults;
+    }
+
+    /**
+     * Returns the data source the connection is borrowed from.
+     *
+     * @return the data source
+     */
+    public DataSource getDataSource() {
+        return dataSource;
+    }
+
+    /**
+     * Returns whether the underlying connection has been borrowed.
+     *
+     * @return <code>true</code> once a database call has been made
+     */
+    public boolean isAcquired() {
+        return getDelegateInternal() != null;
+    }
+
+    /**
+     * Borrows the underlying connection. Settings recorded so far have not
+     * been applied yet, but {@link #isReadOnly()} and the other getters
+     * already return them.
+     *
+     * @return a new connection
+     * @throws SQLException if the connection cannot be obtained
+     */
+    protected Connection borrowConnection() throws SQLException {
+        return dataSource.getConnection();
+    }
+
+    /**
+     * Borrows the underlying connection, if that has not been done yet,
+     * and applies the settings recorded so far.
+     */
+    private void acquire() throws SQLException {
+        if (isAcquired()) {
+            return;
+        }
+        final Connection conn = borrowConnection();
+        try {
+            defaults.learn(conn);
+            if (autoCommit != null && conn.getAutoCommit() != autoCommit.booleanValue()) {
+                conn.setAutoCommit(autoCommit.booleanValue());
+            }
+            if (readOnly != null && conn.isReadOnly() != readOnly.booleanValue()) {
+                conn.setReadOnly(readOnly.booleanValue());
+            }
+            if (transactionIsolation != null &&
+                    conn.getTransactionIsolation() != transactionIsolation.intValue()) {
+                conn.setTransactionIsolation(transactionIsolation.intValue());
+            }
+            if (catalog != null) {
+                conn.setCatalog(catalog);
+            }
+        } catch (final SQLException e) {
+            Utils.closeQuietly(conn);
+            throw e;
+        }
+        setDelegate(conn);
+    }
+
+    @Override
+    protected void checkOpen() throws SQLException {
+        super.checkOpen();
+        acquire();
+    }
+
+    @Override
+    public void setReadOnly(final boolean readOnly) throws SQLException {
+        if (isAcquired()) {
+            super.setReadOnly(readOnly);
+        } else {
+            super.checkOpen();
+            this.readOnly = Boolean.valueOf(readOnly);
+        }
+    }
+
+    @Override
+    public boolean isReadOnly() throws SQLException {
+        final Boolean value = readOnly != null ? readOnly : defaults.getReadOnly();
+        if (!isAcquired() && value != null) {
+            super.checkOpen();
+            return value.booleanValue();
+        }
+        return super.isReadOnly();
+    }
+
+    @Override
+    public void setAutoCommit(final boolean autoCommit) throws SQLException {
+        if (isAcquired()) {
+            super.setAutoCommit(autoCommit);
+        } else {
+            super.checkOpen();
+            this.autoCommit = Boolean.valueOf(autoCommit);
+        }
+    }
+
+    @Override
+    public boolean getAutoCommit() throws SQLException {
+        final Boolean value = autoCommit != null ? autoCommit : defaults.getAutoCommit();
+        if (!isAcquired() && value != null) {
+            super.checkOpen();
+            return value.booleanValue();
+        }
+        return super.getAutoCommit();
+    }
+
+    @Override
+    public void setTransactionIsolation(final int level) throws SQLException {
+        if (isAcquired()) {
+            super.setTransactionIsolation(level);
+        } else {
+            super.checkOpen();
+            this.transactionIsolation = Integer.valueOf(level);
+        }
+    }
+
+    @Override
+    public int getTransactionIsolation() throws SQLException {
+        final Integer value = transactionIsolation != null ? transactionIsolation :
+                defaults.getTransactionIsolation();
+        if (!isAcquired() && value != null) {
+            super.checkOpen();
+            return value.intValue();
+        }
+        return super.getTransactionIsolation();
+    }
+
+    @Override
+    public void setCatalog(final String catalog) throws SQLException {
+        if (isAcquired()) {
+            super.setCatalog(catalog);
+        } else {
+            super.checkOpen();
+            this.catalog = catalog;
+        }
+    }
+
+    @Override
+    public String getCatalog() throws SQLException {
+        if (!isAcquired() && (catalog != null || defaults.isCatalogKnown())) {
+            super.checkOpen();
+            return catalog != null ? catalog : defaults.getCatalog();
+        }
+        return super.getCatalog();
+    }
+
+    @Override
+    public void commit() throws SQLException {
+        if (isAcquired()) {
+            super.commit();
+        } else {
+            // Nothing has been done so there is nothing to commit
+            super.checkOpen();
+        }
+    }
+
+    @Override
+    public void rollback() throws SQLException {
+        if (isAcquired()) {
+            super.rollback();
+        } else {
+            // Nothing has been done so there is nothing to roll back
+            super.checkOpen();
+        }
+    }
+
+    @Override
+    public SQLWarning getWarnings() throws SQLException {
+        if (isAcquired()) {
+            return super.getWarnings();
+        }
+        super.checkOpen();
+        return null;
+    }
+
+    @Override
+    public void clearWarnings() throws SQLException {
+        if (isAcquired()) {
+            super.clearWarnings();
+        } else {
+            super.checkOpen();
+        }
+    }
+
+    @Override
+    public boolean isClosed() throws SQLException {
+        if (isClosedInternal()) {
+            return true;
+        }
+        return isAcquired() && getDelegateInternal().isClosed();
+    }
+
+    @Override
+    public boolean isValid(final int timeout) throws SQLException {
+        if (isAcquired()) {
+            return super.isValid(timeout);
+        }
+        return !isClosed();
+    }
+
+    @Override
+    public boolean isWrapperFor(final Class<?> iface) throws SQLException {
+        if (iface.isAssignableFrom(getClass())) {
+            return true;
+        }
+        checkOpen();
+        return super.isWrapperFor(iface);
+    }
+
+    @Override
+    public <T> T unwrap(final Class<T> iface) throws SQLException {
+        if (iface.isAssignableFrom(getClass())) {
+            return iface.cast(this);
+        }
+        checkOpen();
+        return super.unwrap(iface);
+    }
+}
@@ -0,0 +1,141 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.commons.dbcp2;
+
+import java.io.PrintWriter;
+import java.sql.Connection;
+import java.sql.SQLException;
+import java.sql.SQLFeatureNotSupportedException;
+import java.util.logging.Logger;
+
+import javax.sql.DataSource;
+
+/**
+ * A {@link DataSource} whose {@link Connection}s borrow from another
+ * {@link DataSource} only when they are first used.
+ * <p>
+ * Code that obtains a connection at the start of a unit of work but does not
+ * always run a query holds no pooled connection until the first statement,
+ * prepare, metadata or other database call. Auto-commit, read-only,
+ * transaction isolation and catalog settings made before that point are
+ * recorded and applied to the borrowed connection. Reading them before that
+ * point does not borrow either, see {@link LazyConnection}.
+ * <p>
+ * The target data source is typically a {@link BasicDataSource} or a
+ * {@link PoolingDataSource}. This class does not manage its lifecycle.
+ *
+ * @since 2.2
+ */
+public class LazyConnectionDataSource implements DataSource {
+
+    /** Data source connections are borrowed from. */
+    private final DataSource dataSource;
+
+    /** Settings of the connections of the target data source. */
+    private final ConnectionDefaults defaults;
+
+    /**
+     * Creates a data source that defers borrowing from <code>dataSource</code>.
+     *
+     * @param dataSource the data source to borrow connections from
+     */
+    public LazyConnectionDataSource(final DataSource dataSource) {
+        if (null == dataSource) {
+            throw new NullPointerException("Data source must not be null.");
+        }
+        this.dataSource = dataSource;
+        this.defaults = new ConnectionDefaults(dataSource);
+    }
+
+    /**
+     * Returns the data source connections are borrowed from.
+     *
+     * @return the target data source
+     */
+    public DataSource getDataSource() {
+        return dataSource;
+    }
+
+    /**
+     * Returns a {@link LazyConnection} that defers borrowing from the target
+     * data source until it is first used.
+     */
+    @Override
+    public Connection getConnection() throws SQLException {
+        return new LazyConnection(dataSource, defaults);
+    }
+
+    /**
+     * Throws {@link UnsupportedOperationException}
+     * @throws UnsupportedOperationException
+     */
+    @Override
+    public Connection getConnection(final String username, final String password) throws SQLException {
+        throw new UnsupportedOperationException();
+    }
+
+    /**
+     * Returns the log writer of the target data source.
+     * @see DataSource#getLogWriter
+     */
+    @Override
+    public PrintWriter getLogWriter() throws SQLException {
+        return dataSource.getLogWriter();
+    }
+
+    /**
+     * Sets the log writer of the target data source.
+     * @see DataSource#setLogWriter
+     */
+    @Override
+    public void setLogWriter(final PrintWriter out) throws SQLException {
+        dataSource.setLogWriter(out);
+    }
+
+    /**
+     * Sets the login timeout of the target data source.
+     * @see DataSource#setLoginTimeout
+     */
+    @Override
+    public void setLoginTimeout(final int seconds) throws SQLException {
+        dataSource.setLoginTimeout(seconds);
+    }
+
+    /**
+     * Returns the login timeout of the target data source.
+     * @see DataSource#getLoginTimeout
+     */
+    @Override
+    public int getLoginTimeout() throws SQLException {
+        return dataSource.getLoginTimeout();
+    }
+
+    @Override
+    public boolean isWrapperFor(final Class<?> iface) throws SQLException {
+        return false;
+    }
+
+    @Override
+    public <T> T unwrap(final Class<T> iface) throws SQLException {
+        throw new SQLException("LazyConnectionDataSource is not a wrapper.");
+    }
+
+    @Override
+    public Logger getParentLogger() throws SQLFeatureNotSupportedException {
+        throw new SQLFeatureNotSupportedException();
+    }
+}
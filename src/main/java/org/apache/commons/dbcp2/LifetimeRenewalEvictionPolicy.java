@@ -0,0 +1,86 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.commons.dbcp2;
+
+import org.apache.commons.logging.Log;
+import org.apache.commons.logging.LogFactory;
+import org.apache.commons.pool2.ObjectPool;
+import org.apache.commons.pool2.PooledObject;
+import org.apache.commons.pool2.impl.DefaultEvictionPolicy;
+import org.apache.commons.pool2.impl.EvictionConfig;
+import org.apache.commons.pool2.impl.GenericObjectPool;
+
+/**
+ * An eviction policy that, in addition to the rules of
+ * {@link DefaultEvictionPolicy}, replaces idle connections that are about to
+ * reach their maximum lifetime.
+ * <p>
+ * When the evictor finds an idle {@link PoolableConnection} whose
+ * {@link PoolableConnection#getRenewalTimeMillis() renewal time} has passed,
+ * it first adds a newly created connection to the pool and then evicts the
+ * old one. The new connection is created on the evictor thread, so borrowers
+ * do not have to wait while an expired connection is closed and replaced.
+ * If the replacement cannot be created, or the pool is full, the old connection
+ * is kept until the next eviction run or until it expires.
+ * <p>
+ * Renewal only happens while the evictor is running, i.e. when
+ * <code>timeBetweenEvictionRunsMillis</code> is positive, and only for the
+ * connections examined in each run.
+ *
+ * @since 2.2
+ */
+public class LifetimeRenewalEvictionPolicy extends DefaultEvictionPolicy<PoolableConnection> {
+
+    private static final Log log = LogFactory.getLog(LifetimeRenewalEvictionPolicy.class);
+
+    @Override
+    public boolean evict(final EvictionConfig config,
+            final PooledObject<PoolableConnection> underTest, final int idleCount) {
+        if (super.evict(config, underTest, idleCount)) {
+            return true;
+        }
+        final PoolableConnection conn = underTest.getObject();
+        if (System.currentTimeMillis() < conn.getRenewalTimeMillis()) {
+            return false;
+        }
+        final ObjectPool<PoolableConnection> pool = conn.getPool();
+        if (pool == null) {
+            return true;
+        }
+        final long created = getCreatedCount(pool);
+        try {
+            pool.addObject();
+        } catch (final Exception e) {
+            if (log.isDebugEnabled()) {
+                log.debug(Utils.getMessage("lifetimeRenewalEvictionPolicy.renewalFailed"), e);
+            }
+            return false;
+        }
+        // addObject does nothing if the pool is full
+        return getCreatedCount(pool) != created;
+    }
+
+    private static long getCreatedCount(final ObjectPool<PoolableConnection> pool) {
+        if (pool instanceof GenericObjectPool<?>) {
+            return ((GenericObjectPool<?>) pool).getCreatedCount();
+        }
+        if (pool instanceof PartitionedObjectPool<?>) {
+            return ((PartitionedObjectPool<?>) pool).getCreatedCount();
+        }
+        return -1;
+    }
+}
@@ -0,0 +1,380 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.commons.dbcp2;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.NoSuchElementException;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.locks.Condition;
+import java.util.concurrent.locks.ReentrantLock;
+
+import org.apache.commons.pool2.ObjectPool;
+import org.apache.commons.pool2.impl.GenericObjectPool;
+
+/**
+ * An object pool made of several independent partitions, so that threads
+ * borrowing at the same time mostly contend on different pools.
+ * <p>
+ * Each thread has a home partition, chosen by its id. A borrow takes an idle
+ * object from the home partition, or creates one there if it has capacity,
+ * and otherwise steals from the other partitions in turn. If every partition
+ * is exhausted the borrower waits until any partition has an object returned
+ * or destroyed, and then looks at all partitions again. Waiting borrowers are
+ * woken one at a time, longest waiting first.
+ * <p>
+ * Borrowed objects are returned to the partition they were borrowed from.
+ * Objects that a partition hands out by itself, for example to its evictor,
+ * never pass through this pool.
+ *
+ * @param <T> the type of the pooled objects
+ * @since 2.2
+ */
+class PartitionedObjectPool<T> implements ObjectPool<T> {
+
+    private final List<GenericObjectPool<T>> partitions;
+
+    /** The partitions that borrowed objects are to be returned to */
+    private final ConcurrentMap<T, GenericObjectPool<T>> owners = new ConcurrentHashMap<>();
+
+    /**
+     * Borrowers wait for any partition to release an object here, rather than
+     * in the queue of one partition, and are woken in the order they came.
+     */
+    private final ReentrantLock lock = new ReentrantLock(true);
+    private final Condition released = lock.newCondition();
+    private final AtomicInteger waiters = new AtomicInteger();
+    /** Counts releases, so that a borrower notices one it did not wait for */
+    private volatile long releases;
+
+    /**
+     * @param partitions the partitions, which must use a factory whose
+     *        objects compare by identity
+     */
+    PartitionedObjectPool(final List<GenericObjectPool<T>> partitions) {
+        if (partitions.isEmpty()) {
+            throw new IllegalArgumentException("No partitions");
+        }
+        this.partitions = Collections.unmodifiableList(new ArrayList<>(partitions));
+    }
+
+    /**
+     * Returns the share of one partition of a limit that applies to all
+     * partitions together. The remainder of the division goes to the first
+     * partitions.
+     *
+     * @param limit the limit of all partitions, negative for no limit
+     * @param index the index of the partition
+     * @param count the number of partitions
+     * @return the limit of the partition, negative for no limit
+     */
+    static int share(final int limit, final int index, final int count) {
+        if (limit < 0) {
+            return limit;
+        }
+        return limit / count + (index < limit % count ? 1 : 0);
+    }
+
+    /**
+     * @return the partitions, in order
+     */
+    List<GenericObjectPool<T>> getPartitions() {
+        return partitions;
+    }
+
+    /**
+     * Returns the index of the home partition of the current thread.
+     */
+    private int homeIndex() {
+        return (int) (Thread.currentThread().getId() % partitions.size());
+    }
+
+    /**
+     * Borrows an object, waiting for the maximum wait configured on the
+     * partitions.
+     */
+    @Override
+    public T borrowObject() throws Exception {
+        return borrowObject(getMaxWaitMillis());
+    }
+
+    /**
+     * Borrows an object, waiting at most <code>maxWaitMillis</code> while
+     * every partition is exhausted.
+     *
+     * @param maxWaitMillis the maximum wait, or a negative value to wait
+     *        indefinitely
+     * @return the borrowed object
+     * @throws NoSuchElementException if every partition stayed exhausted
+     * @throws Exception if an object could not be created or validated
+     */
+    T borrowObject(final long maxWaitMillis) throws Exception {
+        final long deadline = System.currentTimeMillis() + maxWaitMillis;
+        final int home = homeIndex();
+        T obj = borrowAvailable(home);
+        if (obj != null) {
+            return obj;
+        }
+        if (!partitions.get(home).getBlockWhenExhausted()) {
+            throw new NoSuchElementException("Pool exhausted");
+        }
+        // Registered before looking again, so that no release goes unnoticed
+        waiters.incrementAndGet();
+        boolean served = false;
+        try {
+            while (true) {
+                final long seen = releases;
+                obj = borrowAvailable(home);
+                if (obj != null) {
+                    served = true;
+                    return obj;
+                }
+                lock.lock();
+                try {
+                    if (isClosed()) {
+                        throw new IllegalStateException("Pool not open");
+                    }
+                    if (releases == seen) {
+                        if (maxWaitMillis < 0) {
+                            released.await();
+                        } else {
+                            final long remaining = deadline - System.currentTimeMillis();
+                            if (remaining <= 0) {
+                                throw new NoSuchElementException("Timeout waiting for idle object");
+                            }
+                            released.await(remaining, TimeUnit.MILLISECONDS);
+                        }
+                    }
+                } finally {
+                    lock.unlock();
+                }
+            }
+        } finally {
+            waiters.decrementAndGet();
+            if (!served) {
+                // Pass on a release this waiter may have been woken for
+                signalWaiter();
+            }
+        }
+    }
+
+    /**
+     * Borrows from the first partition, starting at the home partition,
+     * that has an idle object or room for a new one.
+     *
+     * @return the object, or null if every partition is exhausted
+     */
+    private T borrowAvailable(final int home) throws Exception {
+        final int n = partitions.size();
+        for (int i = 0; i < n; i++) {
+            final GenericObjectPool<T> partition = partitions.get((home + i) % n);
+            if (partition.getNumIdle() == 0 && !hasCapacity(partition)) {
+                continue;
+            }
+            try {
+                return borrowed(partition, partition.borrowObject(0));
+            } catch (final NoSuchElementException e) {
+                if (e.getCause() != null) {
+                    throw e;
+                }
+                // Taken by another thread meanwhile
+            }
+        }
+        return null;
+    }
+
+    private static boolean hasCapacity(final GenericObjectPool<?> partition) {
+        final int maxTotal = partition.getMaxTotal();
+        return maxTotal < 0 || partition.getNumActive() + partition.getNumIdle() < maxTotal;
+    }
+
+    private T borrowed(final GenericObjectPool<T> partition, final T obj) {
+        owners.put(obj, partition);
+        return obj;
+    }
+
+    /**
+     * Wakes the longest waiting borrower, if any, after an object has been
+     * returned or destroyed.
+     */
+    private void signalWaiter() {
+        if (waiters.get() == 0) {
+            return;
+        }
+        lock.lock();
+        try {
+            releases++;
+            released.signal();
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    @Override
+    public void returnObject(final T obj) throws Exception {
+        final GenericObjectPool<T> owner = owners.remove(obj);
+        if (owner == null) {
+            throw new IllegalStateException("Returned object not currently part of this pool");
+        }
+        try {
+            owner.returnObject(obj);
+        } finally {
+            signalWaiter();
+        }
+    }
+
+    @Override
+    public void invalidateObject(final T obj) throws Exception {
+        final GenericObjectPool<T> owner = owners.remove(obj);
+        if (owner == null) {
+            throw new IllegalStateException("Invalidated object not currently part of this pool");
+        }
+        try {
+            owner.invalidateObject(obj);
+        } finally {
+            signalWaiter();
+        }
+    }
+
+    /**
+     * Forgets a borrowed object that its partition has invalidated by
+     * itself, for example because it was abandoned, so that the object can
+     * be garbage collected and waiting borrowers can use the freed capacity.
+     *
+     * @param obj the invalidated object
+     */
+    void invalidated(final T obj) {
+        if (owners.remove(obj) != null) {
+            signalWaiter();
+        }
+    }
+
+    /**
+     * @return the number of borrowed objects whose partition is known
+     */
+    int getNumBorrowed() {
+        return owners.size();
+    }
+
+    /**
+     * Adds an idle object to the partition with the fewest objects.
+     */
+    @Override
+    public void addObject() throws Exception {
+        GenericObjectPool<T> smallest = null;
+        int smallestSize = Integer.MAX_VALUE;
+        for (final GenericObjectPool<T> partition : partitions) {
+            final int size = partition.getNumActive() + partition.getNumIdle();
+            if (size < smallestSize) {
+                smallest = partition;
+                smallestSize = size;
+            }
+        }
+        smallest.addObject();
+    }
+
+    /**
+     * @return the maximum wait of the partitions when they are exhausted,
+     *         negative to wait indefinitely
+     */
+    long getMaxWaitMillis() {
+        final GenericObjectPool<T> partition = partitions.get(0);
+        return partition.getBlockWhenExhausted() ? partition.getMaxWaitMillis() : 0;
+    }
+
+    /**
+     * @return the number of objects the partitions have created
+     */
+    long getCreatedCount() {
+        long created = 0;
+        for (final GenericObjectPool<T> partition : partitions) {
+            created += partition.getCreatedCount();
+        }
+        return created;
+    }
+
+    @Override
+    public int getNumIdle() {
+        int idle = 0;
+        for (final GenericObjectPool<T> partition : partitions) {
+            idle += partition.getNumIdle();
+        }
+        return idle;
+    }
+
+    /**
+     * @return the number of objects the partitions have destroyed because
+     *         they failed validation on borrow
+     */
+    long getDestroyedByBorrowValidationCount() {
+        long destroyed = 0;
+        for (final GenericObjectPool<T> partition : partitions) {
+            destroyed += partition.getDestroyedByBorrowValidationCount();
+        }
+        return destroyed;
+    }
+
+    @Override
+    public int getNumActive() {
+        int active = 0;
+        for (final GenericObjectPool<T> partition : partitions) {
+            active += partition.getNumActive();
+        }
+        return active;
+    }
+
+    @Override
+    public void clear() throws Exception {
+        for (final GenericObjectPool<T> partition : partitions) {
+            partition.clear();
+        }
+    }
+
+    /**
+     * Closes every partition.
+     */
+    @Override
+    public void close() {
+        for (final GenericObjectPool<T> partition : partitions) {
+            partition.close();
+        }
+        lock.lock();
+        try {
+            releases++;
+            released.signalAll();
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * @return true if the partitions have been closed
+     */
+    boolean isClosed() {
+        return partitions.get(0).isClosed();
+    }
+
+    @Override
+    public String toString() {
+        return this.getClass().getName() + " [partitions=" + partitions.size() +
+                ";active=" + getNumActive() + ";idle=" + getNumIdle() + "]";
+    }
+}
@@ -0,0 +1,79 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.commons.dbcp2;
+
+import java.sql.Statement;
+
+/**
+ * A {@link PoolEventListener} whose methods do nothing. Extend it and
+ * override the methods for the events of interest.
+ *
+ * @since 2.2
+ */
+public abstract class PoolEventAdapter implements PoolEventListener {
+
+    @Override
+    public void connectionCreated(final PoolableConnection conn) {
+        // NOOP
+    }
+
+    @Override
+    public void connectionDestroyed(final PoolableConnection conn) {
+        // NOOP
+    }
+
+    @Override
+    public void connectionBorrowed(final PoolableConnection conn) {
+        // NOOP
+    }
+
+    @Override
+    public void connectionReturned(final PoolableConnection conn) {
+        // NOOP
+    }
+
+    @Override
+    public void connectionValidationFailed(final PoolableConnection conn, final Exception cause) {
+        // NOOP
+    }
+
+    @Override
+    public void connectionAbandoned(final PoolableConnection conn) {
+        // NOOP
+    }
+
+    @Override
+    public void statementExecutionStarted(final Statement statement, final String sql) {
+        // NOOP
+    }
+
+    @Override
+    public void statementExecutionEnded(final Statement statement, final String sql,
+            final long elapsedNanos) {
+        // NOOP
+    }
+
+    @Override
+    public void statementCacheHit(final PStmtKey key) {
+        // NOOP
+    }
+
+    @Override
+    public void statementCacheMiss(final PStmtKey key) {
+        // NOOP
+    }
+}
@@ -0,0 +1,120 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.commons.dbcp2;
+
+import java.sql.Statement;
+
+/**
+ * Receives events from a {@link PoolableConnectionFactory} and the
+ * connections and statements it creates, for example to feed metrics or
+ * tracing systems.
+ * <p>
+ * Listeners are registered with
+ * {@link PoolableConnectionFactory#addPoolEventListener(PoolEventListener)}
+ * or {@link BasicDataSource#addPoolEventListener(PoolEventListener)}. They
+ * are called synchronously on the thread that causes the event, often while
+ * a connection is being borrowed or a statement executed, so they must be
+ * fast and thread safe. A {@link RuntimeException} thrown by a listener is
+ * logged and otherwise ignored.
+ * <p>
+ * {@link PoolEventAdapter} implements every method as a no-op, for listeners
+ * interested in only some of the events.
+ *
+ * @since 2.2
+ */
+public interface PoolEventListener {
+
+    /**
+     * A physical connection has been created.
+     *
+     * @param conn the new connection
+     */
+    void connectionCreated(PoolableConnection conn);
+
+    /**
+     * A physical connection is about to be closed and removed from the pool.
+     *
+     * @param conn the connection
+     */
+    void connectionDestroyed(PoolableConnection conn);
+
+    /**
+     * A connection has been borrowed from the pool. The pools of
+     * {@link BasicDataSource} report this once the connection has passed
+     * any validation on borrow, other pools when the connection is
+     * activated for the borrower.
+     *
+     * @param conn the connection
+     */
+    void connectionBorrowed(PoolableConnection conn);
+
+    /**
+     * A connection is being returned to the pool.
+     *
+     * @param conn the connection
+     */
+    void connectionReturned(PoolableConnection conn);
+
+    /**
+     * A connection has failed validation and will be destroyed.
+     *
+     * @param conn the connection
+     * @param cause the reason the connection is invalid
+     */
+    void connectionValidationFailed(PoolableConnection conn, Exception cause);
+
+    /**
+     * A connection has been found abandoned and is being removed from the
+     * pool. Only reported for pools created by a {@link BasicDataSource}.
+     *
+     * @param conn the connection
+     */
+    void connectionAbandoned(PoolableConnection conn);
+
+    /**
+     * A statement is about to be executed.
+     *
+     * @param statement the statement
+     * @param sql the SQL about to be executed, or <code>null</code> if unknown
+     */
+    void statementExecutionStarted(Statement statement, String sql);
+
+    /**
+     * A statement execution has completed, successfully or not.
+     *
+     * @param statement the statement
+     * @param sql the SQL executed, or <code>null</code> if unknown
+     * @param elapsedNanos the duration of the execution in nanoseconds
+     */
+    void statementExecutionEnded(Statement statement, String sql, long elapsedNanos);
+
+    /**
+     * A statement has been taken from the statement pool of a connection
+     * without having to be prepared.
+     *
+     * @param key the key of the statement
+     */
+    void statementCacheHit(PStmtKey key);
+
+    /**
+     * A statement was not found in the statement pool of a connection and
+     * has been prepared.
+     *
+     * @param key the key of the statement
+     */
+    void statementCacheMiss(PStmtKey key);
+}
@@ -0,0 +1,212 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.commons.dbcp2;
+
+import java.sql.Statement;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.locks.Lock;
+import java.util.concurrent.locks.ReentrantLock;
+
+import org.apache.commons.logging.Log;
+import org.apache.commons.logging.LogFactory;
+
+/**
+ * The {@link PoolEventListener}s of a {@link PoolableConnectionFactory}, and
+ * the methods that call them.
+ * <p>
+ * Listeners are kept in an array that is replaced when a listener is added
+ * or removed, so firing an event neither locks nor allocates, and costs a
+ * volatile read when there are no listeners. Statement executions and
+ * statement pool lookups are also reported to {@link FlightRecorderEvents}
+ * from here.
+ *
+ * @since 2.2
+ */
+final class PoolEventSupport {
+
+    private static final Log log = LogFactory.getLog(PoolEventSupport.class);
+
+    private static final PoolEventListener[] NO_LISTENERS = new PoolEventListener[0];
+
+    private volatile PoolEventListener[] listeners = NO_LISTENERS;
+
+    /** Serializes changes to {@link #listeners} */
+    private final Lock updateLock = new ReentrantLock();
+
+    void addListener(final PoolEventListener listener) {
+        if (listener == null) {
+            throw new NullPointerException("listener");
+        }
+        updateLock.lock();
+        try {
+            final PoolEventListener[] current = listeners;
+            final PoolEventListener[] updated = Arrays.copyOf(current, current.length + 1);
+            updated[current.length] = listener;
+            listeners = updated;
+        } finally {
+            updateLock.unlock();
+        }
+    }
+
+    boolean removeListener(final PoolEventListener listener) {
+        updateLock.lock();
+        try {
+            final PoolEventListener[] current = listeners;
+            for (int i = 0; i < current.length; i++) {
+                if (current[i].equals(listener)) {
+                    final PoolEventListener[] updated = new PoolEventListener[current.length - 1];
+                    System.arraycopy(current, 0, updated, 0, i);
+                    System.arraycopy(current, i + 1, updated, i, current.length - i - 1);
+                    listeners = updated;
+                    return true;
+                }
+            }
+            return false;
+        } finally {
+            updateLock.unlock();
+        }
+    }
+
+    List<PoolEventListener> getListeners() {
+        return Collections.unmodifiableList(Arrays.asList(listeners));
+    }
+
+    private static void listenerFailed(final RuntimeException e) {
+        log.warn(Utils.getMessage("poolEventSupport.listenerFailed"), e);
+    }
+
+    void connectionCreated(final PoolableConnection conn) {
+        for (final PoolEventListener listener : listeners) {
+            try {
+                listener.connectionCreated(conn);
+            } catch (final RuntimeException e) {
+                listenerFailed(e);
+            }
+        }
+    }
+
+    void connectionDestroyed(final PoolableConnection conn) {
+        for (final PoolEventListener listener : listeners) {
+            try {
+                listener.connectionDestroyed(conn);
+            } catch (final RuntimeException e) {
+                listenerFailed(e);
+            }
+        }
+    }
+
+    void connectionBorrowed(final PoolableConnection conn) {
+        for (final PoolEventListener listener : listeners) {
+            try {
+                listener.connectionBorrowed(conn);
+            } catch (final RuntimeException e) {
+                listenerFailed(e);
+            }
+        }
+    }
+
+    void connectionReturned(final PoolableConnection conn) {
+        for (final PoolEventListener listener : listeners) {
+            try {
+                listener.connectionReturned(conn);
+            } catch (final RuntimeException e) {
+                listenerFailed(e);
+            }
+        }
+    }
+
+    void connectionValidationFailed(final PoolableConnection conn, final Exception cause) {
+        for (final PoolEventListener listener : listeners) {
+            try {
+                listener.connectionValidationFailed(conn, cause);
+            } catch (final RuntimeException e) {
+                listenerFailed(e);
+            }
+        }
+    }
+
+    void connectionAbandoned(final PoolableConnection conn) {
+        for (final PoolEventListener listener : listeners) {
+            try {
+                listener.connectionAbandoned(conn);
+            } catch (final RuntimeException e) {
+                listenerFailed(e);
+            }
+        }
+    }
+
+    /**
+     * Reports the start of a statement execution. The caller records the
+     * start time, so that nothing is allocated per execution.
+     *
+     * @return the value to pass to
+     *         {@link #statementExecutionEnded(Object, Statement, String, long)}
+     */
+    Object statementExecutionStarted(final Statement statement, final String sql) {
+        final Object event = FlightRecorderEvents.INSTANCE.beginStatementExecute();
+        for (final PoolEventListener listener : listeners) {
+            try {
+                listener.statementExecutionStarted(statement, sql);
+            } catch (final RuntimeException e) {
+                listenerFailed(e);
+            }
+        }
+        return event;
+    }
+
+    /**
+     * Reports the end of a statement execution.
+     *
+     * @param event the value returned by
+     *        {@link #statementExecutionStarted(Statement, String)}
+     * @param startNanos the value of {@link System#nanoTime()} when the
+     *        execution started
+     */
+    void statementExecutionEnded(final Object event, final Statement statement,
+            final String sql, final long startNanos) {
+        FlightRecorderEvents.INSTANCE.statementExecuted(event, sql);
+        final PoolEventListener[] current = listeners;
+        if (current.length == 0) {
+            return;
+        }
+        final long elapsed = System.nanoTime() - startNanos;
+        for (final PoolEventListener listener : current) {
+            try {
+                listener.statementExecutionEnded(statement, sql, elapsed);
+            } catch (final RuntimeException e) {
+                listenerFailed(e);
+            }
+        }
+    }
+
+    void statementPrepared(final PStmtKey key, final boolean cacheHit) {
+        FlightRecorderEvents.INSTANCE.statementPrepared(key.getSql(), cacheHit);
+        for (final PoolEventListener listener : listeners) {
+            try {
+                if (cacheHit) {
+                    listener.statementCacheHit(key);
+                } else {
+                    listener.statementCacheMiss(key);
+                }
+            } catch (final RuntimeException e) {
+                listenerFailed(e);
+            }
+        }
+    }
+}
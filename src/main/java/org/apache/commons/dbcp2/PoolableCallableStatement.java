@@ -69,6 +69,11 @@ public class PoolableCallableStatement extends DelegatingCallableStatement {
         }
     }
 
+    @Override
+    String getPreparedSql() {
+        return _key.getSql();
+    }
+
     /**
      * Returns the CallableStatement to the pool.  If {{@link #isClosed()}, this is a No-op.
      */
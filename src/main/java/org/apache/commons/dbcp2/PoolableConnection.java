@@ -21,7 +21,10 @@ import java.sql.Connection;
 import java.sql.PreparedStatement;
 import java.sql.ResultSet;
 import java.sql.SQLException;
+import java.sql.Statement;
 import java.util.Collection;
+import java.util.concurrent.locks.Lock;
+import java.util.concurrent.locks.ReentrantLock;
 
 import javax.management.InstanceAlreadyExistsException;
 import javax.management.InstanceNotFoundException;
@@ -82,6 +85,25 @@ public class PoolableConnection extends DelegatingConnection<Connection>
     /** Whether or not to fast fail validation after fatal connection errors */
     private final boolean _fastFailValidation;
 
+    /**
+     * Serializes concurrent calls to {@link #close()}. A Lock is used rather
+     * than a monitor since closing may block on I/O while returning the
+     * connection to the pool.
+     */
+    private final Lock closeLock = new ReentrantLock();
+
+    /** The pool generation in which this connection was created */
+    private long _generation = 0;
+
+    /** The amount by which the maximum lifetime of this connection is shortened */
+    private long _lifetimeJitterMillis = 0;
+
+    /** The time after which this connection should be replaced while idle */
+    private long _renewalTimeMillis = Long.MAX_VALUE;
+
+    /** Set when a keep-alive ping of this connection, while idle, has failed */
+    private volatile boolean _keepAliveFailed = false;
+
     /**
      *
      * @param conn my underlying connection
@@ -158,63 +180,68 @@ public class PoolableConnection extends DelegatingConnection<Connection>
     /**
      * Returns me to my pool.
      */
-     @Override
-    public synchronized void close() throws SQLException {
-        if (isClosedInternal()) {
-            // already closed
-            return;
-        }
-
-        boolean isUnderlyingConectionClosed;
+    @Override
+    public void close() throws SQLException {
+        closeLock.lock();
         try {
-            isUnderlyingConectionClosed = getDelegateInternal().isClosed();
-        } catch (final SQLException e) {
-            try {
-                _pool.invalidateObject(this);
-            } catch(final IllegalStateException ise) {
-                // pool is closed, so close the connection
-                passivate();
-                getInnermostDelegate().close();
-            } catch (final Exception ie) {
-                // DO NOTHING the original exception will be rethrown
+            if (isClosedInternal()) {
+                // already closed
+                return;
             }
-            throw new SQLException("Cannot close connection (isClosed check failed)", e);
-        }
 
-        /* Can't set close before this code block since the connection needs to
-         * be open when validation runs. Can't set close after this code block
-         * since by then the connection will have been returned to the pool and
-         * may have been borrowed by another thread. Therefore, the close flag
-         * is set in passivate().
-         */
-        if (isUnderlyingConectionClosed) {
-            // Abnormal close: underlying connection closed unexpectedly, so we
-            // must destroy this proxy
+            boolean isUnderlyingConectionClosed;
             try {
-                _pool.invalidateObject(this);
-            } catch(final IllegalStateException e) {
-                // pool is closed, so close the connection
-                passivate();
-                getInnermostDelegate().close();
-            } catch (final Exception e) {
-                throw new SQLException("Cannot close connection (invalidating pooled object failed)", e);
+                isUnderlyingConectionClosed = getDelegateInternal().isClosed();
+            } catch (final SQLException e) {
+                try {
+                    _pool.invalidateObject(this);
+                } catch(final IllegalStateException ise) {
+                    // pool is closed, so close the connection
+                    passivate();
+                    getInnermostDelegate().close();
+                } catch (final Exception ie) {
+                    // DO NOTHING the original exception will be rethrown
+                }
+                throw new SQLException("Cannot close connection (isClosed check failed)", e);
             }
-        } else {
-            // Normal close: underlying connection is still open, so we
-            // simply need to return this proxy to the pool
-            try {
-                _pool.returnObject(this);
-            } catch(final IllegalStateException e) {
-                // pool is closed, so close the connection
-                passivate();
-                getInnermostDelegate().close();
-            } catch(final SQLException e) {
-                throw e;
-            } catch(final RuntimeException e) {
-                throw e;
-            } catch(final Exception e) {
-                throw new SQLException("Cannot close connection (return to pool failed)", e);
+
+            /* Can't set close before this code block since the connection needs to
+             * be open when validation runs. Can't set close after this code block
+             * since by then the connection will have been returned to the pool and
+             * may have been borrowed by another thread. Therefore, the close flag
+             * is set in passivate().
+             */
+            if (isUnderlyingConectionClosed) {
+                // Abnormal close: underlying connection closed unexpectedly, so we
+                // must destroy this proxy
+                try {
+                    _pool.invalidateObject(this);
+                } catch(final IllegalStateException e) {
+                    // pool is closed, so close the connection
+                    passivate();
+                    getInnermostDelegate().close();
+                } catch (final Exception e) {
+                    throw new SQLException("Cannot close connection (invalidating pooled object failed)", e);
+                }
+            } else {
+                // Normal close: underlying connection is still open, so we
+                // simply need to return this proxy to the pool
+                try {
+                    _pool.returnObject(this);
+                } catch(final IllegalStateException e) {
+                    // pool is closed, so close the connection
+                    passivate();
+                    getInnermostDelegate().close();
+                } catch(final SQLException e) {
+                    throw e;
+                } catch(final RuntimeException e) {
+                    throw e;
+                } catch(final Exception e) {
+                    throw new SQLException("Cannot close connection (return to pool failed)", e);
+                }
             }
+        } finally {
+            closeLock.unlock();
         }
     }
 
@@ -253,6 +280,87 @@ public class PoolableConnection extends DelegatingConnection<Connection>
         return toString();
     }
 
+    /**
+     * Returns the generation of the pool at the time this connection was
+     * created. Connections from a generation older than the current one of
+     * their connection factory are destroyed rather than reused.
+     *
+     * @return the pool generation this connection belongs to
+     * @see PoolableConnectionFactory#incrementGeneration()
+     * @since 2.2
+     */
+    public long getGeneration() {
+        return _generation;
+    }
+
+    /**
+     * Sets the pool generation this connection belongs to. Called by the
+     * connection factory before the connection is added to the pool.
+     *
+     * @param generation the pool generation
+     * @since 2.2
+     */
+    public void setGeneration(final long generation) {
+        _generation = generation;
+    }
+
+    /**
+     * Returns the random amount by which the maximum lifetime of this
+     * connection has been shortened so that connections created together do
+     * not all expire together.
+     *
+     * @return the lifetime reduction in milliseconds
+     * @since 2.2
+     */
+    public long getLifetimeJitterMillis() {
+        return _lifetimeJitterMillis;
+    }
+
+    /**
+     * Sets the amount by which the maximum lifetime of this connection is
+     * shortened. Called by the connection factory before the connection is
+     * added to the pool.
+     *
+     * @param lifetimeJitterMillis the lifetime reduction in milliseconds
+     * @since 2.2
+     */
+    public void setLifetimeJitterMillis(final long lifetimeJitterMillis) {
+        _lifetimeJitterMillis = lifetimeJitterMillis;
+    }
+
+    /**
+     * Returns the time after which this connection, while idle, should be
+     * replaced by a new one ahead of reaching its maximum lifetime.
+     *
+     * @return the renewal time in milliseconds since the epoch, or
+     *         {@link Long#MAX_VALUE} if the connection is never renewed
+     * @see LifetimeRenewalEvictionPolicy
+     * @since 2.2
+     */
+    public long getRenewalTimeMillis() {
+        return _renewalTimeMillis;
+    }
+
+    /**
+     * Sets the time after which this connection, while idle, should be
+     * replaced by a new one. Called by the connection factory before the
+     * connection is added to the pool.
+     *
+     * @param renewalTimeMillis the renewal time in milliseconds since the
+     *        epoch
+     * @since 2.2
+     */
+    public void setRenewalTimeMillis(final long renewalTimeMillis) {
+        _renewalTimeMillis = renewalTimeMillis;
+    }
+
+    /**
+     * Returns the pool this connection is returned to when closed.
+     */
+    ObjectPool<PoolableConnection> getPool() {
+        return _pool;
+    }
+
     /**
      * Validates the connection, using the following algorithm:
      * <ol>
@@ -275,6 +383,9 @@ public class PoolableConnection extends DelegatingConnection<Connection>
         if (_fastFailValidation && _fatalSqlExceptionThrown) {
             throw new SQLException(Utils.getMessage("poolableConnection.validate.fastFail"));
         }
+        if (_keepAliveFailed) {
+            throw new SQLException(Utils.getMessage("poolableConnection.keepAliveFailed"));
+        }
 
         if (sql == null || sql.length() == 0) {
             if (timeout < 0) {
@@ -307,6 +418,52 @@ public class PoolableConnection extends DelegatingConnection<Connection>
         }
     }
 
+    /**
+     * Pings the underlying connection while this connection is idle in the
+     * pool, with <code>sql</code> if it is not null, or else with
+     * <code>isValid</code>. The validation prepared statement is not used so
+     * that pings never share a statement with {@link #validate(String, int)}.
+     * If the ping fails the connection is marked as broken, and fails
+     * validation from then on.
+     *
+     * @param sql validation query
+     * @param timeout validation timeout
+     * @throws SQLException if the ping fails
+     * @since 2.2
+     */
+    void keepAlive(final String sql, final int timeout) throws SQLException {
+        final Connection conn = getInnermostDelegateInternal();
+        try {
+            if (sql == null || sql.length() == 0) {
+                if (!conn.isValid(timeout < 0 ? 0 : timeout)) {
+                    throw new SQLException("isValid() returned false");
+                }
+                return;
+            }
+            try (Statement stmt = conn.createStatement()) {
+                if (timeout > 0) {
+                    stmt.setQueryTimeout(timeout);
+                }
+                try (ResultSet rs = stmt.executeQuery(sql)) {
+                    if (!rs.next()) {
+                        throw new SQLException("validationQuery didn't return a row");
+                    }
+                }
+            }
+        } catch (final SQLException e) {
+            _keepAliveFailed = true;
+            throw e;
+        }
+    }
+
+    /**
+     * @return true if a keep-alive ping of this connection has failed
+     * @since 2.2
+     */
+    boolean isKeepAliveFailed() {
+        return _keepAliveFailed;
+    }
+
     /**
      * Checks the SQLState of the input exception and any nested SQLExceptions it wraps.
      * <p>
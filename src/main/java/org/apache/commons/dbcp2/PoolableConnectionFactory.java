@@ -21,7 +21,11 @@ import java.sql.Connection;
 import java.sql.SQLException;
 import java.sql.Statement;
 import java.util.Collection;
+import java.util.List;
+import java.util.concurrent.ThreadLocalRandom;
 import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.Lock;
+import java.util.concurrent.locks.ReentrantLock;
 
 import javax.management.ObjectName;
 
@@ -31,6 +35,7 @@ import org.apache.commons.pool2.KeyedObjectPool;
 import org.apache.commons.pool2.ObjectPool;
 import org.apache.commons.pool2.PooledObject;
 import org.apache.commons.pool2.PooledObjectFactory;
+import org.apache.commons.pool2.PooledObjectState;
 import org.apache.commons.pool2.impl.GenericKeyedObjectPool;
 import org.apache.commons.pool2.impl.GenericKeyedObjectPoolConfig;
 import org.apache.commons.pool2.impl.DefaultPooledObject;
@@ -99,22 +104,27 @@ public class PoolableConnectionFactory
      * Sets the {@link ObjectPool} in which to pool {@link Connection}s.
      * @param pool the {@link ObjectPool} in which to pool those {@link Connection}s
      */
-    public synchronized void setPool(final ObjectPool<PoolableConnection> pool) {
-        if(null != _pool && pool != _pool) {
-            try {
-                _pool.close();
-            } catch(final Exception e) {
-                // ignored !?!
+    public void setPool(final ObjectPool<PoolableConnection> pool) {
+        poolLock.lock();
+        try {
+            if(null != _pool && pool != _pool) {
+                try {
+                    _pool.close();
+                } catch(final Exception e) {
+                    // ignored !?!
+                }
             }
+            _pool = pool;
+        } finally {
+            poolLock.unlock();
         }
-        _pool = pool;
     }
 
     /**
      * Returns the {@link ObjectPool} in which {@link Connection}s are pooled.
      * @return the connection pool
      */
-    public synchronized ObjectPool<PoolableConnection> getPool() {
+    public ObjectPool<PoolableConnection> getPool() {
         return _pool;
     }
 
@@ -172,6 +182,33 @@ public class PoolableConnectionFactory
         this.maxConnLifetimeMillis = maxConnLifetimeMillis;
     }
 
+    /**
+     * Sets the upper bound of a random amount, chosen separately for each
+     * connection, by which its maximum lifetime is shortened. This spreads
+     * out the expiry of connections that were created at the same time, for
+     * example when the pool was warmed up. The default value is 0.
+     *
+     * @param maxConnLifetimeJitterMillis the maximum lifetime reduction in
+     *        milliseconds
+     * @since 2.2
+     */
+    public void setMaxConnLifetimeJitterMillis(final long maxConnLifetimeJitterMillis) {
+        this.maxConnLifetimeJitterMillis = maxConnLifetimeJitterMillis;
+    }
+
+    /**
+     * Sets how long before the end of its lifetime an idle connection becomes
+     * due for renewal by {@link LifetimeRenewalEvictionPolicy}. A value of
+     * zero or less disables renewal. The default value is 0.
+     *
+     * @param maxConnLifetimeRenewalMillis the renewal lead time in
+     *        milliseconds
+     * @since 2.2
+     */
+    public void setMaxConnLifetimeRenewalMillis(final long maxConnLifetimeRenewalMillis) {
+        this.maxConnLifetimeRenewalMillis = maxConnLifetimeRenewalMillis;
+    }
+
 
     public boolean isEnableAutoCommitOnReturn() {
         return enableAutoCommitOnReturn;
@@ -198,6 +235,214 @@ public class PoolableConnectionFactory
         this.defaultQueryTimeout = defaultQueryTimeout;
     }
 
+    /**
+     * @return the default fetch size for statements, or null for the
+     *         driver default
+     * @since 2.2
+     */
+    public Integer getDefaultFetchSize() {
+        return defaultFetchSize;
+    }
+
+    /**
+     * @param defaultFetchSize the default fetch size for statements, or null
+     *        for the driver default
+     * @since 2.2
+     */
+    public void setDefaultFetchSize(final Integer defaultFetchSize) {
+        this.defaultFetchSize = defaultFetchSize;
+    }
+
+    /**
+     * @return the advisor shared by all connections to adapt statement fetch
+     *         sizes, or null if adaptive fetch sizing is disabled
+     * @since 2.2
+     */
+    public FetchSizeAdvisor getFetchSizeAdvisor() {
+        return fetchSizeAdvisor;
+    }
+
+    /**
+     * @param fetchSizeAdvisor the advisor shared by all connections to adapt
+     *        statement fetch sizes, or null to disable adaptive fetch sizing
+     * @since 2.2
+     */
+    public void setFetchSizeAdvisor(final FetchSizeAdvisor fetchSizeAdvisor) {
+        this.fetchSizeAdvisor = fetchSizeAdvisor;
+    }
+
+    /**
+     * @return the cache shared by all connections to answer
+     *         {@link java.sql.DatabaseMetaData} calls, or null if metadata is
+     *         not cached
+     * @since 2.2
+     */
+    public DatabaseMetaDataCache getDatabaseMetaDataCache() {
+        return databaseMetaDataCache;
+    }
+
+    /**
+     * @param databaseMetaDataCache the cache shared by all connections to
+     *        answer {@link java.sql.DatabaseMetaData} calls, or null to
+     *        disable caching
+     * @since 2.2
+     */
+    public void setDatabaseMetaDataCache(final DatabaseMetaDataCache databaseMetaDataCache) {
+        this.databaseMetaDataCache = databaseMetaDataCache;
+    }
+
+    /**
+     * Registers a listener for the events of the connections this factory
+     * creates and of their statements. Listeners may be added and removed
+     * while the pool is in use.
+     *
+     * @param listener the listener
+     * @since 2.2
+     */
+    public void addPoolEventListener(final PoolEventListener listener) {
+        poolEventSupport.addListener(listener);
+    }
+
+    /**
+     * Unregisters a listener added with
+     * {@link #addPoolEventListener(PoolEventListener)}.
+     *
+     * @param listener the listener
+     * @return <code>true</code> if the listener was registered
+     * @since 2.2
+     */
+    public boolean removePoolEventListener(final PoolEventListener listener) {
+        return poolEventSupport.removeListener(listener);
+    }
+
+    /**
+     * @return the registered pool event listeners, in registration order
+     * @since 2.2
+     */
+    public List<PoolEventListener> getPoolEventListeners() {
+        return poolEventSupport.getListeners();
+    }
+
+    /**
+     * Returns the listeners of this factory, for the pool that uses it.
+     */
+    PoolEventSupport getPoolEventSupport() {
+        return poolEventSupport;
+    }
+
+    /**
+     * Called by a pool that reports borrowed connections to the listeners
+     * of this factory itself, after a borrow has succeeded, so that they
+     * are not also reported on activation.
+     */
+    void setBorrowsReportedByPool() {
+        borrowsReportedByPool = true;
+    }
+
+    /**
+     * @return the canonicalizer applied to SQL before it is used as a
+     *         statement pool key, or null if SQL is only trimmed
+     * @since 2.2
+     */
+    public SqlCanonicalizer getSqlCanonicalizer() {
+        return sqlCanonicalizer;
+    }
+
+    /**
+     * @param sqlCanonicalizer the canonicalizer applied to SQL before it is
+     *        used as a statement pool key, shared by all connections, or
+     *        null to only trim SQL
+     * @since 2.2
+     */
+    public void setSqlCanonicalizer(final SqlCanonicalizer sqlCanonicalizer) {
+        this.sqlCanonicalizer = sqlCanonicalizer;
+    }
+
+    /**
+     * @return the tracker of statement use across the pool, or null if
+     *         statement use is not tracked
+     * @since 2.2
+     */
+    public StatementUsageTracker getStatementUsageTracker() {
+        return statementUsageTracker;
+    }
+
+    /**
+     * @param statementUsageTracker the tracker of statement use shared by
+     *        the statement pools of all connections, or null
+     * @since 2.2
+     */
+    public void setStatementUsageTracker(final StatementUsageTracker statementUsageTracker) {
+        this.statementUsageTracker = statementUsageTracker;
+    }
+
+    /**
+     * @return the number of most used statements prepared on each new
+     *         connection
+     * @since 2.2
+     */
+    public int getPrewarmStatementCount() {
+        return prewarmStatementCount;
+    }
+
+    /**
+     * Sets the number of most used statements, according to the
+     * {@link #setStatementUsageTracker(StatementUsageTracker) statement usage
+     * tracker}, that are prepared on each new connection before it is added
+     * to the pool. Has no effect unless statements are pooled. The
+     * statements are prepared inside {@link #makeObject()}, so they add to
+     * the time taken by a borrow that has to create a connection.
+     *
+     * @param prewarmStatementCount the number of statements, zero to disable
+     *        pre-warming
+     * @since 2.2
+     */
+    public void setPrewarmStatementCount(final int prewarmStatementCount) {
+        this.prewarmStatementCount = prewarmStatementCount;
+    }
+
+    /**
+     * @return the idle time in milliseconds after which idle connections are
+     *         pinged, zero or less if they are not
+     * @since 2.2
+     */
+    public long getKeepAliveMillis() {
+        final ConnectionKeepAlive ka = keepAlive;
+        return ka == null ? 0 : ka.getKeepAliveMillis();
+    }
+
+    /**
+     * Sets the idle time after which idle connections are pinged so that
+     * firewalls and NAT devices do not drop them. Should be set before the
+     * pool is used.
+     *
+     * @param keepAliveMillis the idle time in milliseconds, zero or less to
+     *        disable pings
+     * @see ConnectionKeepAlive
+     * @since 2.2
+     */
+    public void setKeepAliveMillis(final long keepAliveMillis) {
+        final ConnectionKeepAlive old = keepAlive;
+        keepAlive = keepAliveMillis > 0 ? new ConnectionKeepAlive(this, keepAliveMillis) : null;
+        if (old != null) {
+            old.stop();
+        }
+    }
+
+    /**
+     * Returns the keep-alive of the idle connections, if any.
+     */
+    ConnectionKeepAlive getKeepAlive() {
+        return keepAlive;
+    }
+
+    /**
+     * Pings an idle connection with the validation query.
+     */
+    void keepAlive(final PoolableConnection conn) throws SQLException {
+        conn.keepAlive(_validationQuery, _validationQueryTimeout);
+    }
+
     /**
      * SQL_STATE codes considered to signal fatal conditions.
      * <p>
@@ -253,6 +498,10 @@ public class PoolableConnectionFactory
 
     @Override
     public PooledObject<PoolableConnection> makeObject() throws Exception {
+        // Read before connecting so that a connection whose creation overlaps
+        // a call to incrementGeneration() is treated as belonging to the old one
+        final long gen = generation.get();
+        final Object create = FlightRecorderEvents.INSTANCE.beginConnectionCreate();
         Connection conn = _connFactory.createConnection();
         if (conn == null) {
             throw new IllegalStateException("Connection factory returned null from createConnection");
@@ -293,6 +542,7 @@ public class PoolableConnectionFactory
                     new GenericKeyedObjectPool<>((PoolingConnection)conn, config);
             ((PoolingConnection)conn).setStatementPool(stmtPool);
             ((PoolingConnection) conn).setCacheState(_cacheState);
+            initializeStatementPool((PoolingConnection) conn);
         }
 
         // Register this connection with JMX
@@ -306,10 +556,69 @@ public class PoolableConnectionFactory
 
         final PoolableConnection pc = new PoolableConnection(conn,_pool, connJmxName,
                                       _disconnectionSqlCodes, _fastFailValidation);
+        initializePoolableConnection(pc, gen);
 
+        FlightRecorderEvents.INSTANCE.connectionCreated(create);
         return new DefaultPooledObject<>(pc);
     }
 
+    /**
+     * Records the pool generation, lifetime jitter and renewal time on a
+     * newly created connection before it is handed to the pool, and tells
+     * the pool event listeners about it.
+     *
+     * @param pc the new connection
+     * @param gen the generation that was current when creation started
+     * @since 2.2
+     */
+    protected void initializePoolableConnection(final PoolableConnection pc, final long gen) {
+        pc.setGeneration(gen);
+        // Statements are reported by the innermost connection only
+        final Connection delegate = pc.getDelegateInternal();
+        if (delegate instanceof PoolingConnection) {
+            ((PoolingConnection) delegate).setPoolEventSupport(poolEventSupport);
+        } else {
+            pc.setPoolEventSupport(poolEventSupport);
+        }
+        if (maxConnLifetimeMillis > 0) {
+            long jitter = 0;
+            if (maxConnLifetimeJitterMillis > 0) {
+                jitter = ThreadLocalRandom.current().nextLong(
+                        Math.min(maxConnLifetimeJitterMillis, maxConnLifetimeMillis - 1) + 1);
+            }
+            pc.setLifetimeJitterMillis(jitter);
+            if (maxConnLifetimeRenewalMillis > 0) {
+                pc.setRenewalTimeMillis(System.currentTimeMillis() +
+                        maxConnLifetimeMillis - jitter - maxConnLifetimeRenewalMillis);
+            }
+        }
+        poolEventSupport.connectionCreated(pc);
+    }
+
+    /**
+     * Configures the statement pool of a newly created connection and, if
+     * statement pre-warming is enabled, prepares the statements most used
+     * across the pool so far.
+     *
+     * @param conn the new connection
+     * @throws SQLException if the default catalog cannot be set
+     * @since 2.2
+     */
+    protected void initializeStatementPool(final PoolingConnection conn) throws SQLException {
+        conn.setSqlCanonicalizer(sqlCanonicalizer);
+        final StatementUsageTracker tracker = statementUsageTracker;
+        if (tracker != null) {
+            conn.setStatementUsageTracker(tracker);
+            if (prewarmStatementCount > 0) {
+                // Keys record the catalog current when they were used
+                if (_defaultCatalog != null) {
+                    conn.setCatalog(_defaultCatalog);
+                }
+                conn.prepareStatements(tracker.getHottestKeys(prewarmStatementCount));
+            }
+        }
+    }
+
     protected void initializeConnection(final Connection conn) throws SQLException {
         final Collection<String> sqls = _connectionInitSqls;
         if(conn.isClosed()) {
@@ -331,21 +640,36 @@ public class PoolableConnectionFactory
     @Override
     public void destroyObject(final PooledObject<PoolableConnection> p)
             throws Exception {
-        p.getObject().reallyClose();
+        final ConnectionKeepAlive ka = keepAlive;
+        final Object destroy = FlightRecorderEvents.INSTANCE.beginConnectionDestroy();
+        poolEventSupport.connectionDestroyed(p.getObject());
+        try {
+            // A connection being pinged is closed once the ping is over
+            if (ka == null || ka.connectionDestroyed(p.getObject())) {
+                p.getObject().reallyClose();
+            }
+        } finally {
+            FlightRecorderEvents.INSTANCE.connectionDestroyed(destroy, p);
+        }
     }
 
     @Override
     public boolean validateObject(final PooledObject<PoolableConnection> p) {
+        final Object validate = FlightRecorderEvents.INSTANCE.beginConnectionValidate();
         try {
             validateLifetime(p);
+            validateGeneration(p);
 
             validateConnection(p.getObject());
+            FlightRecorderEvents.INSTANCE.connectionValidated(validate, true);
             return true;
         } catch (final Exception e) {
             if (log.isDebugEnabled()) {
                 log.debug(Utils.getMessage(
                         "poolableConnectionFactory.validateObject.fail"), e);
             }
+            FlightRecorderEvents.INSTANCE.connectionValidated(validate, false);
+            poolEventSupport.connectionValidationFailed(p.getObject(), e);
             return false;
         }
     }
@@ -361,9 +685,17 @@ public class PoolableConnectionFactory
     public void passivateObject(final PooledObject<PoolableConnection> p)
             throws Exception {
 
+        final PoolableConnection conn = p.getObject();
+        // Connections are also passivated when added to the pool and after
+        // the evictor tests them, only report those being returned
+        if (p.getState() == PooledObjectState.RETURNING) {
+            FlightRecorderEvents.INSTANCE.connectionReturned(p);
+            poolEventSupport.connectionReturned(conn);
+        }
+
         validateLifetime(p);
+        validateGeneration(p);
 
-        final PoolableConnection conn = p.getObject();
         Boolean connAutoCommit = null;
         if (rollbackOnReturn) {
             connAutoCommit = Boolean.valueOf(conn.getAutoCommit());
@@ -386,15 +718,31 @@ public class PoolableConnectionFactory
         }
 
         conn.passivate();
+
+        final ConnectionKeepAlive ka = keepAlive;
+        if (ka != null) {
+            ka.connectionIdle(p);
+        }
     }
 
     @Override
     public void activateObject(final PooledObject<PoolableConnection> p)
             throws Exception {
 
+        final PoolableConnection conn = p.getObject();
+        final ConnectionKeepAlive ka = keepAlive;
+        if (ka != null && !ka.connectionActive(conn)) {
+            // Rather than wait for the ping, have the pool hand out another
+            // connection; this one is destroyed once the ping is over
+            throw new SQLException(Utils.getMessage("poolableConnection.keepAliveInProgress"));
+        }
+        if (conn.isKeepAliveFailed()) {
+            throw new SQLException(Utils.getMessage("poolableConnection.keepAliveFailed"));
+        }
+
         validateLifetime(p);
+        validateGeneration(p);
 
-        final PoolableConnection conn = p.getObject();
         conn.activate();
 
         if (_defaultAutoCommit != null &&
@@ -414,21 +762,75 @@ public class PoolableConnectionFactory
             conn.setCatalog(_defaultCatalog);
         }
         conn.setDefaultQueryTimeout(defaultQueryTimeout);
+        conn.setDefaultFetchSize(defaultFetchSize);
+        conn.setFetchSizeAdvisor(fetchSizeAdvisor);
+        conn.setDatabaseMetaDataCache(databaseMetaDataCache);
+        // The evictor also activates connections to test them, only report
+        // those being borrowed. Pools that validate on borrow report borrows
+        // themselves, once validation has passed.
+        if (!borrowsReportedByPool && p.getState() == PooledObjectState.ALLOCATED) {
+            poolEventSupport.connectionBorrowed(conn);
+        }
     }
 
     private void validateLifetime(final PooledObject<PoolableConnection> p)
             throws Exception {
         if (maxConnLifetimeMillis > 0) {
             final long lifetime = System.currentTimeMillis() - p.getCreateTime();
-            if (lifetime > maxConnLifetimeMillis) {
+            final long maxLifetime = maxConnLifetimeMillis - p.getObject().getLifetimeJitterMillis();
+            if (lifetime > maxLifetime) {
                 throw new LifetimeExceededException(Utils.getMessage(
                         "connectionFactory.lifetimeExceeded",
                         Long.valueOf(lifetime),
-                        Long.valueOf(maxConnLifetimeMillis)));
+                        Long.valueOf(maxLifetime)));
             }
         }
     }
 
+    /**
+     * Throws {@link LifetimeExceededException} if the connection was created
+     * in a generation that has since been retired by
+     * {@link #incrementGeneration()}.
+     */
+    private void validateGeneration(final PooledObject<PoolableConnection> p)
+            throws Exception {
+        final long connGeneration = p.getObject().getGeneration();
+        final long current = generation.get();
+        if (connGeneration < current) {
+            throw new LifetimeExceededException(Utils.getMessage(
+                    "connectionFactory.generationRetired",
+                    Long.valueOf(connGeneration),
+                    Long.valueOf(current)));
+        }
+    }
+
+    /**
+     * Returns the current generation. Connections created from now on belong
+     * to this generation.
+     *
+     * @return the current generation
+     * @since 2.2
+     */
+    public long getGeneration() {
+        return generation.get();
+    }
+
+    /**
+     * Retires all connections created so far. Connections from an older
+     * generation fail activation, passivation and validation, so they are
+     * destroyed the next time they are borrowed, returned or tested by the
+     * evictor. Connections in use are not affected until they are returned.
+     * <p>
+     * This method only advances the generation counter. Callers that want
+     * idle connections closed straight away should also clear the pool.</p>
+     *
+     * @return the new generation
+     * @since 2.2
+     */
+    public long incrementGeneration() {
+        return generation.incrementAndGet();
+    }
+
     protected ConnectionFactory getConnectionFactory() {
         return _connFactory;
     }
@@ -461,6 +863,7 @@ public class PoolableConnectionFactory
     private Collection<String> _disconnectionSqlCodes = null;
     private boolean _fastFailValidation = false;
     private volatile ObjectPool<PoolableConnection> _pool = null;
+    private final Lock poolLock = new ReentrantLock();
     private Boolean _defaultReadOnly = null;
     private Boolean _defaultAutoCommit = null;
     private boolean enableAutoCommitOnReturn = true;
@@ -472,8 +875,20 @@ public class PoolableConnectionFactory
     private int maxOpenPreparedStatements =
         GenericKeyedObjectPoolConfig.DEFAULT_MAX_TOTAL_PER_KEY;
     private long maxConnLifetimeMillis = -1;
+    private long maxConnLifetimeJitterMillis = 0;
+    private long maxConnLifetimeRenewalMillis = 0;
     private final AtomicLong connectionIndex = new AtomicLong(0);
+    private final AtomicLong generation = new AtomicLong(0);
     private Integer defaultQueryTimeout = null;
+    private Integer defaultFetchSize = null;
+    private FetchSizeAdvisor fetchSizeAdvisor = null;
+    private DatabaseMetaDataCache databaseMetaDataCache = null;
+    private volatile ConnectionKeepAlive keepAlive = null;
+    private SqlCanonicalizer sqlCanonicalizer = null;
+    private StatementUsageTracker statementUsageTracker = null;
+    private int prewarmStatementCount = 0;
+    private final PoolEventSupport poolEventSupport = new PoolEventSupport();
+    private volatile boolean borrowsReportedByPool = false;
 
     /**
      * Internal constant to indicate the level is not set.
@@ -74,6 +74,11 @@ public class PoolablePreparedStatement<K> extends DelegatingPreparedStatement {
         }
     }
 
+    @Override
+    String getPreparedSql() {
+        return _key instanceof PStmtKey ? ((PStmtKey) _key).getSql() : null;
+    }
+
     /**
      * Add batch.
      */
@@ -21,7 +21,10 @@ import java.sql.CallableStatement;
 import java.sql.Connection;
 import java.sql.PreparedStatement;
 import java.sql.SQLException;
+import java.util.Collection;
 import java.util.NoSuchElementException;
+import java.util.concurrent.locks.Lock;
+import java.util.concurrent.locks.ReentrantLock;
 
 import org.apache.commons.pool2.KeyedObjectPool;
 import org.apache.commons.pool2.KeyedPooledObjectFactory;
@@ -51,6 +54,18 @@ public class PoolingConnection extends DelegatingConnection<Connection>
     /** Pool of {@link PreparedStatement}s. and {@link CallableStatement}s */
     private KeyedObjectPool<PStmtKey,DelegatingPreparedStatement> _pstmtPool = null;
 
+    /** Serializes concurrent calls to {@link #close()}. */
+    private final Lock closeLock = new ReentrantLock();
+
+    /** Rewrites SQL into the form used for statement keys, may be null */
+    private SqlCanonicalizer sqlCanonicalizer = null;
+
+    /** Counts statement uses across the connections of a pool, may be null */
+    private StatementUsageTracker statementUsageTracker = null;
+
+    /** Set while {@link #prepareStatements(Collection)} runs */
+    private boolean preparing = false;
+
     /**
      * Constructor.
      * @param c the underlying {@link Connection}.
@@ -65,6 +80,36 @@ public class PoolingConnection extends DelegatingConnection<Connection>
         _pstmtPool = pool;
     }
 
+    /**
+     * @return the pool of prepared statements, or null once this connection
+     *         has been closed
+     * @since 2.2
+     */
+    public KeyedObjectPool<PStmtKey,DelegatingPreparedStatement> getStatementPool() {
+        return _pstmtPool;
+    }
+
+    /**
+     * @return the canonicalizer applied to SQL before it is used as a
+     *         statement key, or null if SQL is only trimmed
+     * @since 2.2
+     */
+    public SqlCanonicalizer getSqlCanonicalizer() {
+        return sqlCanonicalizer;
+    }
+
+    /**
+     * Sets the canonicalizer applied to SQL before it is used as a statement
+     * key, so that statements whose SQL differs only in formatting share a
+     * pooled statement.
+     *
+     * @param sqlCanonicalizer the canonicalizer, or null to only trim SQL
+     * @since 2.2
+     */
+    public void setSqlCanonicalizer(final SqlCanonicalizer sqlCanonicalizer) {
+        this.sqlCanonicalizer = sqlCanonicalizer;
+    }
+
 
     /**
      * Close and free all {@link PreparedStatement}s or
@@ -72,25 +117,30 @@ public class PoolingConnection extends DelegatingConnection<Connection>
      * connection.
      */
     @Override
-    public synchronized void close() throws SQLException {
+    public void close() throws SQLException {
+        closeLock.lock();
         try {
-            if (null != _pstmtPool) {
-                final KeyedObjectPool<PStmtKey,DelegatingPreparedStatement> oldpool = _pstmtPool;
-                _pstmtPool = null;
+            try {
+                if (null != _pstmtPool) {
+                    final KeyedObjectPool<PStmtKey,DelegatingPreparedStatement> oldpool = _pstmtPool;
+                    _pstmtPool = null;
+                    try {
+                        oldpool.close();
+                    } catch(final RuntimeException e) {
+                        throw e;
+                    } catch(final Exception e) {
+                        throw new SQLException("Cannot close connection", e);
+                    }
+                }
+            } finally {
                 try {
-                    oldpool.close();
-                } catch(final RuntimeException e) {
-                    throw e;
-                } catch(final Exception e) {
-                    throw new SQLException("Cannot close connection", e);
+                    getDelegateInternal().close();
+                } finally {
+                    setClosedInternal(true);
                 }
             }
         } finally {
-            try {
-                getDelegateInternal().close();
-            } finally {
-                setClosedInternal(true);
-            }
+            closeLock.unlock();
         }
     }
 
@@ -294,12 +344,76 @@ public class PoolingConnection extends DelegatingConnection<Connection>
         return new PStmtKey(normalizeSQL(sql), catalog, stmtType, null);
     }
 
+    /**
+     * @return the tracker that statement uses are recorded with, or null
+     * @since 2.2
+     */
+    public StatementUsageTracker getStatementUsageTracker() {
+        return statementUsageTracker;
+    }
+
+    /**
+     * Sets the tracker that each use of a pooled statement is recorded with.
+     *
+     * @param statementUsageTracker the tracker, usually shared by all
+     *        connections of a pool, or null
+     * @since 2.2
+     */
+    public void setStatementUsageTracker(final StatementUsageTracker statementUsageTracker) {
+        this.statementUsageTracker = statementUsageTracker;
+    }
+
+    /**
+     * Prepares statements and returns them to the statement pool, so that
+     * later requests for them are served without a round trip to the
+     * database. Statements for a catalog other than the current one, and
+     * statements that cannot be prepared, are skipped. These preparations are
+     * not recorded with the statement usage tracker.
+     *
+     * @param keys the keys of the statements to prepare
+     * @return the number of statements prepared
+     * @since 2.2
+     */
+    public int prepareStatements(final Collection<PStmtKey> keys) {
+        final KeyedObjectPool<PStmtKey,DelegatingPreparedStatement> pool = _pstmtPool;
+        if (pool == null) {
+            return 0;
+        }
+        String catalog = null;
+        try {
+            catalog = getCatalog();
+        } catch (final SQLException e) {
+            // Ignored
+        }
+        int prepared = 0;
+        preparing = true;
+        try {
+            for (final PStmtKey key : keys) {
+                if (key.getCatalog() == null ? catalog != null : !key.getCatalog().equals(catalog)) {
+                    continue;
+                }
+                try {
+                    pool.returnObject(key, pool.borrowObject(key));
+                    prepared++;
+                } catch (final Exception e) {
+                    // The statement may not be valid on this connection
+                }
+            }
+        } finally {
+            preparing = false;
+        }
+        return prepared;
+    }
+
     /**
      * Normalize the given SQL statement, producing a
      * canonical form that is semantically equivalent to the original.
+     * Uses the {@link #setSqlCanonicalizer(SqlCanonicalizer) canonicalizer}
+     * if one has been set, otherwise trims the SQL.
      */
     protected String normalizeSQL(final String sql) {
-        return sql.trim();
+        final SqlCanonicalizer canonicalizer = sqlCanonicalizer;
+        return canonicalizer == null ? sql.trim() : canonicalizer.canonicalize(sql);
     }
 
     /**
@@ -378,15 +492,33 @@ public class PoolingConnection extends DelegatingConnection<Connection>
 
     /**
      * {@link KeyedPooledObjectFactory} method for activating
-     * pooled statements.
+     * pooled statements. Records the use with the statement usage tracker,
+     * if any, and reports it to the pool event listeners, or only to Java
+     * Flight Recorder if the connection has none.
      *
-     * @param key ignored
+     * @param key the key of the statement
      * @param p wrapped pooled statement to be activated
      */
     @Override
     public void activateObject(final PStmtKey key,
             final PooledObject<DelegatingPreparedStatement> p) throws Exception {
         p.getObject().activate();
+        if (preparing) {
+            return;
+        }
+        final StatementUsageTracker tracker = statementUsageTracker;
+        if (tracker != null) {
+            tracker.recordUse(key);
+        }
+        // A statement borrowed for the first time has just been prepared
+        final boolean cacheHit = p instanceof DefaultPooledObject &&
+                ((DefaultPooledObject<?>) p).getBorrowedCount() > 1;
+        final PoolEventSupport events = getPoolEventSupport();
+        if (events != null) {
+            events.statementPrepared(key, cacheHit);
+        } else {
+            FlightRecorderEvents.INSTANCE.statementPrepared(key.getSql(), cacheHit);
+        }
     }
 
     /**
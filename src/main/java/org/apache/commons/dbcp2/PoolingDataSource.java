@@ -21,6 +21,13 @@ import java.sql.Connection;
 import java.sql.SQLException;
 import java.sql.SQLFeatureNotSupportedException;
 import java.util.NoSuchElementException;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Future;
+import java.util.concurrent.PriorityBlockingQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
 import java.util.logging.Logger;
 
 import javax.sql.DataSource;
@@ -47,6 +54,19 @@ public class PoolingDataSource<C extends Connection> implements DataSource, Auto
 
     private static final Log log = LogFactory.getLog(PoolingDataSource.class);
 
+    /**
+     * How often threads waiting in {@link #getConnection(ConnectionPriority)}
+     * look for capacity that was freed other than by closing a connection.
+     */
+    private static final long REDISPATCH_INTERVAL_MILLIS = 100L;
+
+    /**
+     * The default time a borrower waits before it is served as if it had the
+     * next higher priority, 1000 milliseconds.
+     * @since 2.2
+     */
+    public static final long DEFAULT_PRIORITY_AGING_MILLIS = 1000L;
+
     /** Controls access to the underlying connection */
     private boolean accessToUnderlyingConnectionAllowed = false;
 
@@ -83,6 +103,8 @@ public class PoolingDataSource<C extends Connection> implements DataSource, Auto
             throw new RuntimeException(Utils.getMessage("pool.close.fail"), rte);
         } catch(final Exception e) {
             throw new SQLException(Utils.getMessage("pool.close.fail"), e);
+        } finally {
+            failPendingRequests();
         }
     }
 
@@ -106,6 +128,57 @@ public class PoolingDataSource<C extends Connection> implements DataSource, Auto
         this.accessToUnderlyingConnectionAllowed = allow;
     }
 
+    /**
+     * Returns whether {@link #getConnection()} waits for an exhausted pool
+     * with the priority bound to the current thread.
+     *
+     * @return true if borrowers are served by priority
+     * @see #getConnection(ConnectionPriority)
+     * @since 2.2
+     */
+    public boolean isPrioritizedBorrowing() {
+        return prioritizedBorrowing;
+    }
+
+    /**
+     * Sets whether {@link #getConnection()} and
+     * {@link #getConnection(long, TimeUnit)} wait for an exhausted pool with
+     * the priority bound to the current thread, see
+     * {@link ConnectionPriority#setCurrent(ConnectionPriority)}, rather than
+     * in the order they arrive. (Default: false)
+     *
+     * @param prioritizedBorrowing true to serve borrowers by priority
+     * @since 2.2
+     */
+    public void setPrioritizedBorrowing(final boolean prioritizedBorrowing) {
+        this.prioritizedBorrowing = prioritizedBorrowing;
+    }
+
+    /**
+     * Returns how long a borrower waits before it is served as if it had the
+     * next higher priority.
+     *
+     * @return the aging interval in milliseconds
+     * @since 2.2
+     */
+    public long getPriorityAgingMillis() {
+        return priorityAgingMillis;
+    }
+
+    /**
+     * Sets how long a borrower waits before it is served as if it had the
+     * next higher priority. A <code>LOW</code> priority borrower that has
+     * waited for twice this time is served before <code>HIGH</code> priority
+     * borrowers that have just arrived. Applies to borrowers that arrive
+     * after the call. (Default: {@value #DEFAULT_PRIORITY_AGING_MILLIS})
+     *
+     * @param priorityAgingMillis the aging interval in milliseconds
+     * @since 2.2
+     */
+    public void setPriorityAgingMillis(final long priorityAgingMillis) {
+        this.priorityAgingMillis = priorityAgingMillis;
+    }
+
     /* JDBC_4_ANT_KEY_BEGIN */
     @Override
     public boolean isWrapperFor(final Class<?> iface) throws SQLException {
@@ -128,11 +201,157 @@ public class PoolingDataSource<C extends Connection> implements DataSource, Auto
     /**
      * Return a {@link java.sql.Connection} from my pool,
      * according to the contract specified by {@link ObjectPool#borrowObject}.
+     * If {@link #isPrioritizedBorrowing() prioritized borrowing} is enabled,
+     * or other borrowers are already waiting by priority, waits with the
+     * priority bound to the current thread instead, see
+     * {@link #getConnection(ConnectionPriority)}.
      */
     @Override
     public Connection getConnection() throws SQLException {
+        if (prioritizedBorrowing || !_requests.isEmpty()) {
+            return getConnection(ConnectionPriority.current(), getPoolMaxWaitMillis());
+        }
+        return getConnection(false, 0);
+    }
+
+    /**
+     * Returns a {@link java.sql.Connection} from my pool, waiting at most
+     * <code>timeout</code> for one to be returned while the pool is
+     * exhausted. The timeout replaces the pool's own maximum wait for this
+     * call only, so callers working to a deadline can pass the time they
+     * have left. A timeout of zero or less fails straight away if no
+     * connection is available.
+     * <p>
+     * The timeout bounds the wait for an idle connection and, with a
+     * {@link RateLimitedConnectionFactory}, the wait for permission to
+     * create one; creating, activating and validating a connection are not
+     * interrupted. Pools
+     * other than {@link GenericObjectPool} and the partitioned pools of
+     * {@link BasicDataSource} do not support a per-call wait and use their
+     * own configuration.
+     * <p>
+     * If {@link #isPrioritizedBorrowing() prioritized borrowing} is enabled,
+     * or other borrowers are already waiting by priority, waits with the
+     * priority bound to the current thread.
+     *
+     * @param timeout the maximum time to wait
+     * @param unit the unit of <code>timeout</code>
+     * @return a pooled connection
+     * @throws SQLException if no connection could be borrowed in time
+     * @since 2.2
+     */
+    public Connection getConnection(final long timeout, final TimeUnit unit) throws SQLException {
+        final long maxWaitMillis = Math.max(0, unit.toMillis(timeout));
+        // Also bounds the creation of a connection for this borrow
+        final Long previous = BorrowDeadline.set(maxWaitMillis);
+        try {
+            if (prioritizedBorrowing || !_requests.isEmpty()) {
+                return getConnection(ConnectionPriority.current(), maxWaitMillis);
+            }
+            return getConnection(true, maxWaitMillis);
+        } finally {
+            BorrowDeadline.restore(previous);
+        }
+    }
+
+    /**
+     * Returns a {@link java.sql.Connection} from my pool, waiting with the
+     * given priority while the pool is exhausted. Waiting borrowers are served
+     * in the order of their priority, and borrowers of equal priority in the
+     * order they arrived. A borrower that has waited for
+     * {@link #getPriorityAgingMillis()} is served as if it had the next
+     * higher priority, so low priority borrowers are not starved.
+     * <p>
+     * Waiting borrowers are served by the threads that close connections
+     * borrowed from this data source, as with
+     * {@link #getConnectionAsync(long, ConnectionCallback)}. Capacity freed in
+     * other ways, for example by the removal of abandoned connections or by
+     * eviction, is noticed by the waiting threads themselves, which look for
+     * it every 100 milliseconds. While borrowers wait here, later calls to
+     * {@link #getConnection()} wait here too, so that they do not overtake
+     * them; borrowers that were already waiting in the pool itself are served
+     * by the pool. The wait is bounded by the maximum wait of the pool.
+     *
+     * @param priority the priority of the borrower
+     * @return a pooled connection
+     * @throws SQLException if no connection could be borrowed in time
+     * @since 2.2
+     */
+    public Connection getConnection(final ConnectionPriority priority) throws SQLException {
+        return getConnection(priority, getPoolMaxWaitMillis());
+    }
+
+    /**
+     * @param maxWaitMillis the maximum wait, or a negative value to wait
+     *        indefinitely
+     */
+    private Connection getConnection(final ConnectionPriority priority, final long maxWaitMillis)
+            throws SQLException {
+        final ConnectionRequest request = requestConnection(maxWaitMillis, priority, null);
+        try {
+            while (true) {
+                try {
+                    return request.get(REDISPATCH_INTERVAL_MILLIS, TimeUnit.MILLISECONDS);
+                } catch (final TimeoutException e) {
+                    redispatchRequests();
+                }
+            }
+        } catch (final InterruptedException e) {
+            if (!request.cancel(false)) {
+                // Completed meanwhile; get() no longer waits
+                try {
+                    request.get().close();
+                } catch (final Exception ignored) {
+                    // Failed, nothing to give back
+                }
+            }
+            Thread.currentThread().interrupt();
+            throw new SQLException(Utils.getMessage("poolingDataSource.interrupted"), e);
+        } catch (final ExecutionException e) {
+            final Throwable cause = e.getCause();
+            if (cause instanceof SQLException) {
+                throw (SQLException) cause;
+            }
+            throw new SQLException("Cannot get a connection, general error", cause);
+        }
+    }
+
+    /**
+     * Returns the maximum time a borrow waits for the pool, as configured on
+     * the pool.
+     *
+     * @return the maximum wait, or a negative value to wait indefinitely
+     */
+    private long getPoolMaxWaitMillis() {
+        if (_pool instanceof GenericObjectPool<?>) {
+            final GenericObjectPool<?> gop = (GenericObjectPool<?>) _pool;
+            return gop.getBlockWhenExhausted() ? gop.getMaxWaitMillis() : 0;
+        }
+        if (_pool instanceof PartitionedObjectPool<?>) {
+            return ((PartitionedObjectPool<?>) _pool).getMaxWaitMillis();
+        }
+        return -1;
+    }
+
+    /**
+     * Borrows from the pool, waiting at most <code>maxWaitMillis</code> if
+     * the pool supports a per-call wait.
+     */
+    @SuppressWarnings("unchecked") // the pool holds connections of type C
+    private C borrowObject(final long maxWaitMillis) throws Exception {
+        if (_pool instanceof GenericObjectPool<?>) {
+            return ((GenericObjectPool<C>) _pool).borrowObject(maxWaitMillis);
+        }
+        if (_pool instanceof PartitionedObjectPool<?>) {
+            return ((PartitionedObjectPool<C>) _pool).borrowObject(maxWaitMillis);
+        }
+        return _pool.borrowObject();
+    }
+
+    private Connection getConnection(final boolean timed, final long maxWaitMillis)
+            throws SQLException {
         try {
-            final C conn = _pool.borrowObject();
+            final C conn = timed ? borrowObject(maxWaitMillis) : _pool.borrowObject();
             if (conn == null) {
                 return null;
             }
@@ -148,6 +367,240 @@ public class PoolingDataSource<C extends Connection> implements DataSource, Auto
         }
     }
 
+    /**
+     * Requests a {@link java.sql.Connection} from my pool without blocking
+     * while the pool is exhausted.
+     *
+     * @param timeoutMillis the maximum time to wait for a connection to be
+     *        returned to the pool, or a negative value to wait indefinitely
+     * @return a future that completes with the connection
+     * @see #getConnectionAsync(long, ConnectionCallback)
+     * @since 2.2
+     */
+    public Future<Connection> getConnectionAsync(final long timeoutMillis) {
+        return getConnectionAsync(timeoutMillis, null);
+    }
+
+    /**
+     * Requests a {@link java.sql.Connection} from my pool without blocking
+     * while the pool is exhausted.
+     * <p>
+     * If a connection can be borrowed straight away the returned future is
+     * already complete. Otherwise the request is queued and is completed,
+     * in the order of the priority bound to the requesting thread and then
+     * in the order requests were made, by the thread that closes a
+     * connection borrowed from this data source. No thread waits on behalf
+     * of a queued request, so a few threads can serve a large number of
+     * them. Requests that are still queued after <code>timeoutMillis</code>
+     * fail with an {@link SQLException}, as do all queued requests when this
+     * data source is closed.
+     * <p>
+     * Only connections returned through this data source, and later requests
+     * for connections, complete queued requests. Capacity freed in other ways,
+     * for example by the removal of abandoned connections, is picked up by the
+     * next such call, or by threads waiting in
+     * {@link #getConnection(ConnectionPriority)}.
+     * <p>
+     * Completing a queued request borrows a connection, which may mean
+     * creating and validating one, on the thread that closes a connection.
+     * Closing therefore takes as long as borrowing while requests are queued.
+     * Creating a new connection and validating an idle one still happen on
+     * the calling thread. The call only avoids blocking for an exhausted
+     * pool if the pool is a {@link GenericObjectPool} or a partitioned pool
+     * of {@link BasicDataSource}.
+     *
+     * @param timeoutMillis the maximum time to wait for a connection to be
+     *        returned to the pool, or a negative value to wait indefinitely
+     * @param callback notified when the request completes, may be null
+     * @return a future that completes with the connection. Cancelling the
+     *         future withdraws the request.
+     * @since 2.2
+     */
+    public Future<Connection> getConnectionAsync(final long timeoutMillis,
+            final ConnectionCallback callback) {
+        return getConnectionAsync(timeoutMillis, ConnectionPriority.current(), callback);
+    }
+
+    /**
+     * Requests a {@link java.sql.Connection} from my pool without blocking
+     * while the pool is exhausted, as
+     * {@link #getConnectionAsync(long, ConnectionCallback)} does. Queued
+     * requests are completed in the order of their priority, as described for
+     * {@link #getConnection(ConnectionPriority)}.
+     *
+     * @param timeoutMillis the maximum time to wait for a connection to be
+     *        returned to the pool, or a negative value to wait indefinitely
+     * @param priority the priority of the request
+     * @param callback notified when the request completes, may be null
+     * @return a future that completes with the connection. Cancelling the
+     *         future withdraws the request.
+     * @since 2.2
+     */
+    public Future<Connection> getConnectionAsync(final long timeoutMillis,
+            final ConnectionPriority priority, final ConnectionCallback callback) {
+        return requestConnection(timeoutMillis, priority, callback);
+    }
+
+    private ConnectionRequest requestConnection(final long timeoutMillis,
+            final ConnectionPriority priority, final ConnectionCallback callback) {
+        // Each priority class a request is below the highest delays it by the aging interval
+        final long rank = System.nanoTime() +
+                priority.ordinal() * TimeUnit.MILLISECONDS.toNanos(priorityAgingMillis);
+        final ConnectionRequest request = new ConnectionRequest(callback, _requests, rank);
+        // Do not overtake queued requests
+        if (_requests.isEmpty()) {
+            final C conn;
+            try {
+                conn = borrowNow();
+            } catch (final SQLException e) {
+                request.fail(e);
+                return request;
+            }
+            if (conn != null) {
+                request.complete(new PoolGuardConnectionWrapper<>(conn));
+                return request;
+            }
+        }
+        if (timeoutMillis == 0) {
+            request.fail(new SQLException(Utils.getMessage("poolingDataSource.requestTimeout",
+                    Long.valueOf(timeoutMillis))));
+            return request;
+        }
+        _requests.offer(request);
+        if (timeoutMillis > 0) {
+            request.scheduleTimeout(timeoutMillis, new Runnable() {
+                @Override
+                public void run() {
+                    // Runs on the timer thread shared by all pools, so only fails the request
+                    request.fail(new SQLException(Utils.getMessage(
+                            "poolingDataSource.requestTimeout", Long.valueOf(timeoutMillis))));
+                }
+            });
+        }
+        // A connection may have been returned before the request was queued
+        dispatchRequests();
+        return request;
+    }
+
+    /**
+     * Borrows a connection without waiting for one to be returned.
+     *
+     * @return the connection, or null if the pool is exhausted
+     * @throws SQLException if a connection could not be created, activated
+     *         or validated, twice in a row in the case of validation
+     */
+    private C borrowNow() throws SQLException {
+        for (int attempt = 1; ; attempt++) {
+            final long failedValidations = getDestroyedByBorrowValidationCount();
+            try {
+                return borrowObject(0);
+            } catch(final SQLException e) {
+                throw e;
+            } catch(final NoSuchElementException e) {
+                if (e.getCause() == null) {
+                    // The pool also fails without a cause when a new
+                    // connection fails validation, which it counts
+                    if (getDestroyedByBorrowValidationCount() == failedValidations) {
+                        return null;
+                    }
+                    if (attempt < 2) {
+                        continue;
+                    }
+                }
+                throw new SQLException("Cannot get a connection, pool error " + e.getMessage(), e);
+            } catch(final IllegalStateException e) {
+                throw new SQLException(Utils.getMessage("poolingDataSource.closed"), e);
+            } catch(final Exception e) {
+                throw new SQLException("Cannot get a connection, general error", e);
+            }
+        }
+    }
+
+    /**
+     * @return the number of connections destroyed because they failed
+     *         validation on borrow, or zero if the pool does not say
+     */
+    private long getDestroyedByBorrowValidationCount() {
+        if (_pool instanceof GenericObjectPool<?>) {
+            return ((GenericObjectPool<?>) _pool).getDestroyedByBorrowValidationCount();
+        }
+        if (_pool instanceof PartitionedObjectPool<?>) {
+            return ((PartitionedObjectPool<?>) _pool).getDestroyedByBorrowValidationCount();
+        }
+        return 0;
+    }
+
+    /**
+     * Hands available connections to queued requests, oldest first. Only one
+     * thread dispatches at a time; a call made while another thread is
+     * dispatching makes that thread go round again instead.
+     */
+    private void dispatchRequests() {
+        if (_dispatching.getAndIncrement() != 0) {
+            return;
+        }
+        int missed = 1;
+        do {
+            dispatchAvailable();
+            missed = _dispatching.addAndGet(-missed);
+        } while (missed != 0);
+    }
+
+    /**
+     * Dispatches requests unless another waiting thread has done so within
+     * the last {@link #REDISPATCH_INTERVAL_MILLIS}, so that the work does not
+     * grow with the number of waiting threads.
+     */
+    private void redispatchRequests() {
+        final long now = System.currentTimeMillis();
+        final long last = _lastRedispatch.get();
+        if (now - last >= REDISPATCH_INTERVAL_MILLIS && _lastRedispatch.compareAndSet(last, now)) {
+            dispatchRequests();
+        }
+    }
+
+    private void dispatchAvailable() {
+        while (!_requests.isEmpty()) {
+            final C conn;
+            try {
+                conn = borrowNow();
+            } catch (final SQLException e) {
+                final ConnectionRequest request = _requests.poll();
+                if (request != null) {
+                    request.fail(e);
+                }
+                continue;
+            }
+            if (conn == null) {
+                return;
+            }
+            final Connection wrapper = new PoolGuardConnectionWrapper<>(conn);
+            ConnectionRequest request;
+            do {
+                request = _requests.poll();
+            } while (request != null && !request.complete(wrapper));
+            if (request == null) {
+                // Every queued request was cancelled or timed out meanwhile
+                try {
+                    _pool.returnObject(conn);
+                } catch (final Exception e) {
+                    log.warn("Failed to return an unclaimed connection to the pool", e);
+                }
+                return;
+            }
+        }
+    }
+
+    /**
+     * Fails all queued connection requests because the pool has been closed.
+     */
+    void failPendingRequests() {
+        ConnectionRequest request;
+        while ((request = _requests.poll()) != null) {
+            request.fail(new SQLException(Utils.getMessage("poolingDataSource.closed")));
+        }
+    }
+
     /**
      * Throws {@link UnsupportedOperationException}
      * @throws UnsupportedOperationException
@@ -201,6 +654,20 @@ public class PoolingDataSource<C extends Connection> implements DataSource, Auto
 
     private final ObjectPool<C> _pool;
 
+    /** Connection requests waiting for a connection, in the order they are served */
+    private final PriorityBlockingQueue<ConnectionRequest> _requests =
+            new PriorityBlockingQueue<>(11, ConnectionRequest.ORDER);
+
+    private volatile boolean prioritizedBorrowing = false;
+
+    private volatile long priorityAgingMillis = DEFAULT_PRIORITY_AGING_MILLIS;
+
+    /** Number of outstanding calls to {@link #dispatchRequests()} */
+    private final AtomicInteger _dispatching = new AtomicInteger();
+
+    /** When a waiting thread last dispatched requests */
+    private final AtomicLong _lastRedispatch = new AtomicLong();
+
     protected ObjectPool<C> getPool() {
         return _pool;
     }
@@ -239,11 +706,22 @@ public class PoolingDataSource<C extends Connection> implements DataSource, Auto
             return null;
         }
 
+        /**
+         * Returns the connection to the pool and, if connection requests are
+         * queued, borrows connections for them, which may create and validate
+         * connections on this thread.
+         */
         @Override
         public void close() throws SQLException {
             if (getDelegateInternal() != null) {
-                super.close();
-                super.setDelegate(null);
+                try {
+                    super.close();
+                    super.setDelegate(null);
+                } finally {
+                    if (!_requests.isEmpty()) {
+                        dispatchRequests();
+                    }
+                }
             }
         }
 
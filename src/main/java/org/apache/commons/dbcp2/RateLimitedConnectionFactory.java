@@ -0,0 +1,104 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.commons.dbcp2;
+
+import java.sql.Connection;
+import java.sql.SQLException;
+
+/**
+ * A {@link ConnectionFactory} that takes a permit from a
+ * {@link ConnectionCreationRateLimiter} before each call to the wrapped
+ * factory, so that a burst of demand, for example after a failover or after
+ * the pool has been cleared, does not open a large number of physical
+ * connections at once.
+ * <p>
+ * Callers wait for a permit for at most <code>maxWaitMillis</code>, or for
+ * what is left of the timeout of a borrow made with
+ * {@link PoolingDataSource#getConnection(long, java.util.concurrent.TimeUnit)},
+ * and get an {@link SQLException} if none becomes available in time.
+ *
+ * @since 2.2
+ */
+public class RateLimitedConnectionFactory implements ConnectionFactory {
+
+    private final ConnectionFactory connectionFactory;
+    private final ConnectionCreationRateLimiter rateLimiter;
+    private final long maxWaitMillis;
+
+    /**
+     * Creates a rate limited connection factory.
+     *
+     * @param connectionFactory the factory that creates physical connections
+     * @param rateLimiter the rate limiter to take permits from
+     * @param maxWaitMillis the maximum time to wait for a permit, or a
+     *        negative value to wait as long as necessary
+     */
+    public RateLimitedConnectionFactory(final ConnectionFactory connectionFactory,
+            final ConnectionCreationRateLimiter rateLimiter, final long maxWaitMillis) {
+        if (connectionFactory == null) {
+            throw new NullPointerException("connectionFactory is null");
+        }
+        if (rateLimiter == null) {
+            throw new NullPointerException("rateLimiter is null");
+        }
+        this.connectionFactory = connectionFactory;
+        this.rateLimiter = rateLimiter;
+        this.maxWaitMillis = maxWaitMillis;
+    }
+
+    @Override
+    public Connection createConnection() throws SQLException {
+        // A borrow with a timeout of its own waits no longer than it has left
+        final long waitMillis = BorrowDeadline.remainingMillis(maxWaitMillis);
+        final boolean acquired;
+        try {
+            acquired = rateLimiter.acquire(waitMillis);
+        } catch (final InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new SQLException(Utils.getMessage("rateLimitedConnectionFactory.interrupted"), e);
+        }
+        if (!acquired) {
+            throw new SQLException(Utils.getMessage("rateLimitedConnectionFactory.timeout",
+                    Long.valueOf(waitMillis),
+                    Integer.valueOf(rateLimiter.getPermitsPerSecond())));
+        }
+        return connectionFactory.createConnection();
+    }
+
+    /**
+     * Returns the wrapped connection factory.
+     *
+     * @return the factory that creates physical connections
+     */
+    public ConnectionFactory getConnectionFactory() {
+        return connectionFactory;
+    }
+
+    public ConnectionCreationRateLimiter getRateLimiter() {
+        return rateLimiter;
+    }
+
+    public long getMaxWaitMillis() {
+        return maxWaitMillis;
+    }
+
+    @Override
+    public String toString() {
+        return this.getClass().getName() + " [" + String.valueOf(connectionFactory) +
+                ";" + String.valueOf(rateLimiter) + "]";
+    }
+}
@@ -0,0 +1,194 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.commons.dbcp2;
+
+import java.io.PrintWriter;
+import java.sql.Connection;
+import java.sql.SQLException;
+import java.sql.SQLFeatureNotSupportedException;
+import java.util.logging.Logger;
+
+import javax.sql.DataSource;
+
+/**
+ * A {@link DataSource} that routes each {@link Connection} to either a
+ * primary or a replica {@link DataSource} based on the
+ * {@link Connection#setReadOnly(boolean) read-only} flag.
+ * <p>
+ * Connections returned by {@link #getConnection()} are {@link LazyConnection}s
+ * that do not hold a physical connection until the first statement, prepare
+ * or other database call is made. At that point a connection is borrowed from
+ * the replica data source if the connection has been marked read-only,
+ * otherwise from the primary data source. Auto-commit, read-only, transaction
+ * isolation and catalog settings made before that point are recorded and
+ * applied to the borrowed connection, and reading them does not borrow, so
+ * a transaction manager that checks auto-commit first does not fix the
+ * route before the read-only flag is set.
+ * <p>
+ * Once borrowed, the underlying connection is retained until
+ * {@link Connection#close()} is called so that transactions, statements and
+ * result sets keep working against the same physical connection. Changing the
+ * read-only flag after that point does not re-route the connection.
+ * <p>
+ * The primary and replica data sources are typically {@link BasicDataSource}
+ * or {@link PoolingDataSource} instances. This class does not manage their
+ * lifecycle.
+ *
+ * @since 2.2
+ */
+public class ReadWriteSplittingDataSource implements DataSource {
+
+    /** Data source used for read-write connections. */
+    private final DataSource primary;
+
+    /** Data source used for read-only connections. */
+    private final DataSource replica;
+
+    /** Settings of the connections of the primary data source. */
+    private final ConnectionDefaults defaults;
+
+    /** My log writer. */
+    private PrintWriter logWriter = null;
+
+    /**
+     * Creates a data source that routes read-write work to
+     * <code>primary</code> and read-only work to <code>replica</code>.
+     *
+     * @param primary the data source for connections that are not read-only
+     * @param replica the data source for read-only connections
+     */
+    public ReadWriteSplittingDataSource(final DataSource primary, final DataSource replica) {
+        if (null == primary) {
+            throw new NullPointerException("Primary data source must not be null.");
+        }
+        if (null == replica) {
+            throw new NullPointerException("Replica data source must not be null.");
+        }
+        this.primary = primary;
+        this.replica = replica;
+        this.defaults = new ConnectionDefaults(primary);
+    }
+
+    /**
+     * Returns the data source used for connections that are not read-only.
+     *
+     * @return the primary data source
+     */
+    public DataSource getPrimary() {
+        return primary;
+    }
+
+    /**
+     * Returns the data source used for read-only connections.
+     *
+     * @return the replica data source
+     */
+    public DataSource getReplica() {
+        return replica;
+    }
+
+    /**
+     * Returns a {@link Connection} that defers borrowing from the primary or
+     * replica data source until it is first used.
+     */
+    @Override
+    public Connection getConnection() throws SQLException {
+        return new ReadWriteSplittingConnection();
+    }
+
+    /**
+     * Throws {@link UnsupportedOperationException}
+     * @throws UnsupportedOperationException
+     */
+    @Override
+    public Connection getConnection(final String username, final String password) throws SQLException {
+        throw new UnsupportedOperationException();
+    }
+
+    /**
+     * Returns my log writer.
+     * @return my log writer
+     * @see DataSource#getLogWriter
+     */
+    @Override
+    public PrintWriter getLogWriter() {
+        return logWriter;
+    }
+
+    /**
+     * Sets my log writer.
+     * @see DataSource#setLogWriter
+     */
+    @Override
+    public void setLogWriter(final PrintWriter out) {
+        logWriter = out;
+    }
+
+    /**
+     * Throws {@link UnsupportedOperationException}.
+     * @throws UnsupportedOperationException As this
+     *   implementation does not support this feature.
+     */
+    @Override
+    public void setLoginTimeout(final int seconds) {
+        throw new UnsupportedOperationException("Login timeout is not supported.");
+    }
+
+    /**
+     * Throws {@link UnsupportedOperationException}.
+     * @throws UnsupportedOperationException As this
+     *   implementation does not support this feature.
+     */
+    @Override
+    public int getLoginTimeout() {
+        throw new UnsupportedOperationException("Login timeout is not supported.");
+    }
+
+    @Override
+    public boolean isWrapperFor(final Class<?> iface) throws SQLException {
+        return false;
+    }
+
+    @Override
+    public <T> T unwrap(final Class<T> iface) throws SQLException {
+        throw new SQLException("ReadWriteSplittingDataSource is not a wrapper.");
+    }
+
+    @Override
+    public Logger getParentLogger() throws SQLFeatureNotSupportedException {
+        throw new SQLFeatureNotSupportedException();
+    }
+
+    /**
+     * A {@link LazyConnection} that borrows from the replica data source if
+     * it has been marked read-only before its first use, otherwise from the
+     * primary data source.
+     */
+    private class ReadWriteSplittingConnection extends LazyConnection {
+
+        ReadWriteSplittingConnection() throws SQLException {
+            super(primary, defaults);
+            // Until told otherwise, connections are read-write
+            setReadOnly(false);
+        }
+
+        @Override
+        protected Connection borrowConnection() throws SQLException {
+            return isReadOnly() ? replica.getConnection() : super.borrowConnection();
+        }
+    }
+}
@@ -0,0 +1,108 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.commons.dbcp2;
+
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.ScheduledThreadPoolExecutor;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Runs the background tasks of all pools: connection keep-alive checks,
+ * statement pool reaping, warm-up snapshots and connection request
+ * timeouts.
+ * <p>
+ * Periodic maintenance tasks, which may block on the network or the disk,
+ * share a small pool of threads. One-off tasks, such as request timeouts,
+ * must not block and run on a timer thread of their own, so that slow
+ * keep-alive pings do not delay them. The daemon threads exit after a
+ * second without tasks, so that they do not pin the class loader. Cancelled
+ * tasks are removed straight away.
+ * <p>
+ * This class is public only so that the <code>cpdsadapter</code> package can
+ * use it; it is not intended for applications.
+ *
+ * @since 2.2
+ */
+public final class SharedScheduler {
+
+    private static final int MAINTENANCE_THREADS = 4;
+
+    private static class MaintenanceHolder {
+        static final ScheduledThreadPoolExecutor INSTANCE =
+                newExecutor(MAINTENANCE_THREADS, "commons-dbcp2-scheduler-");
+    }
+
+    private static class TimerHolder {
+        static final ScheduledThreadPoolExecutor INSTANCE =
+                newExecutor(1, "commons-dbcp2-timer-");
+    }
+
+    private static ScheduledThreadPoolExecutor newExecutor(final int threads,
+            final String namePrefix) {
+        final AtomicInteger count = new AtomicInteger();
+        final ScheduledThreadPoolExecutor executor = new ScheduledThreadPoolExecutor(threads,
+                new ThreadFactory() {
+                    @Override
+                    public Thread newThread(final Runnable r) {
+                        final Thread thread = new Thread(r, namePrefix + count.incrementAndGet());
+                        thread.setDaemon(true);
+                        return thread;
+                    }
+                });
+        executor.setKeepAliveTime(1, TimeUnit.SECONDS);
+        executor.allowCoreThreadTimeOut(true);
+        executor.setRemoveOnCancelPolicy(true);
+        return executor;
+    }
+
+    private SharedScheduler() {
+        // Utility class
+    }
+
+    /**
+     * Runs <code>task</code> once after <code>delay</code>, on the timer
+     * thread. The task must not block, since it would hold up the timeouts
+     * of all pools.
+     *
+     * @param task the task
+     * @param delay the delay
+     * @param unit the unit of <code>delay</code>
+     * @return the future with which to cancel the task
+     */
+    public static ScheduledFuture<?> schedule(final Runnable task, final long delay,
+            final TimeUnit unit) {
+        return TimerHolder.INSTANCE.schedule(task, delay, unit);
+    }
+
+    /**
+     * Runs <code>task</code> repeatedly, waiting <code>delay</code> between
+     * the end of a run and the start of the next, until it is cancelled.
+     * The task may block, for example on the network.
+     *
+     * @param task the task
+     * @param initialDelay the delay before the first run
+     * @param delay the delay between runs
+     * @param unit the unit of the delays
+     * @return the future with which to cancel the task
+     */
+    public static ScheduledFuture<?> scheduleWithFixedDelay(final Runnable task,
+            final long initialDelay, final long delay, final TimeUnit unit) {
+        return MaintenanceHolder.INSTANCE.scheduleWithFixedDelay(task, initialDelay, delay, unit);
+    }
+}
@@ -0,0 +1,42 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.commons.dbcp2;
+
+/**
+ * Rewrites SQL into a canonical form before it is used as a statement pool
+ * key, so that textually different but equivalent SQL shares pooled
+ * statements.
+ * <p>
+ * The canonical form is also the SQL that is prepared, so it must be
+ * semantically equivalent to the original. Implementations are shared by all
+ * connections of a pool and must be thread safe.
+ *
+ * @see DefaultSqlCanonicalizer
+ * @see PoolingConnection#setSqlCanonicalizer(SqlCanonicalizer)
+ * @since 2.2
+ */
+public interface SqlCanonicalizer {
+
+    /**
+     * Returns the canonical form of <code>sql</code>.
+     *
+     * @param sql the SQL passed to <code>prepareStatement</code> or
+     *        <code>prepareCall</code>, not null
+     * @return the canonical SQL
+     */
+    String canonicalize(String sql);
+}
@@ -0,0 +1,156 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.commons.dbcp2;
+
+import java.util.AbstractMap;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Counts how often each pooled statement is used across all connections of a
+ * pool, so that new connections can prepare the most used statements before
+ * they are handed out.
+ * <p>
+ * {@link PoolingConnection}s record a use each time a statement is borrowed
+ * from their statement pool. Counts are kept for at most
+ * <code>maxKeys</code> distinct statements; statements first seen once that
+ * limit has been reached are not tracked.
+ *
+ * @since 2.2
+ */
+public class StatementUsageTracker {
+
+    /** The default maximum number of statements tracked, 1000 */
+    public static final int DEFAULT_MAX_KEYS = 1000;
+
+    private final int maxKeys;
+    private final ConcurrentMap<PStmtKey, AtomicLong> counts = new ConcurrentHashMap<>();
+
+    /**
+     * Creates a tracker with the default limit.
+     */
+    public StatementUsageTracker() {
+        this(DEFAULT_MAX_KEYS);
+    }
+
+    /**
+     * Creates a tracker.
+     *
+     * @param maxKeys the maximum number of distinct statements to track
+     */
+    public StatementUsageTracker(final int maxKeys) {
+        this.maxKeys = maxKeys;
+    }
+
+    /**
+     * Records a use of a statement.
+     *
+     * @param key the key of the statement
+     */
+    public void recordUse(final PStmtKey key) {
+        recordUses(key, 1);
+    }
+
+    /**
+     * Records several uses of a statement, for example when restoring
+     * counts saved earlier.
+     *
+     * @param key the key of the statement
+     * @param uses the number of uses
+     */
+    public void recordUses(final PStmtKey key, final long uses) {
+        AtomicLong count = counts.get(key);
+        if (count == null) {
+            if (counts.size() >= maxKeys) {
+                return;
+            }
+            final AtomicLong newCount = new AtomicLong();
+            count = counts.putIfAbsent(key, newCount);
+            if (count == null) {
+                count = newCount;
+            }
+        }
+        count.addAndGet(uses);
+    }
+
+    /**
+     * Returns the number of recorded uses of a statement.
+     *
+     * @param key the key of the statement
+     * @return the number of uses, zero if the statement is not tracked
+     */
+    public long getUses(final PStmtKey key) {
+        final AtomicLong count = counts.get(key);
+        return count == null ? 0 : count.get();
+    }
+
+    /**
+     * Returns the most used statements, most used first.
+     *
+     * @param n the maximum number of statements to return
+     * @return the keys of at most <code>n</code> statements
+     */
+    public List<PStmtKey> getHottestKeys(final int n) {
+        final List<Map.Entry<PStmtKey, Long>> entries = new ArrayList<>(counts.size());
+        for (final Map.Entry<PStmtKey, AtomicLong> e : counts.entrySet()) {
+            entries.add(new AbstractMap.SimpleImmutableEntry<>(
+                    e.getKey(), Long.valueOf(e.getValue().get())));
+        }
+        Collections.sort(entries, new Comparator<Map.Entry<PStmtKey, Long>>() {
+            @Override
+            public int compare(final Map.Entry<PStmtKey, Long> a, final Map.Entry<PStmtKey, Long> b) {
+                return b.getValue().compareTo(a.getValue());
+            }
+        });
+        final int size = Math.min(n, entries.size());
+        final List<PStmtKey> keys = new ArrayList<>(size);
+        for (int i = 0; i < size; i++) {
+            keys.add(entries.get(i).getKey());
+        }
+        return keys;
+    }
+
+    /**
+     * Forgets all recorded uses.
+     */
+    public void clear() {
+        counts.clear();
+    }
+
+    public int getMaxKeys() {
+        return maxKeys;
+    }
+
+    /**
+     * @return the number of statements currently tracked
+     */
+    public int getKeyCount() {
+        return counts.size();
+    }
+
+    @Override
+    public String toString() {
+        return this.getClass().getName() + " [maxKeys=" + maxKeys +
+                ";keys=" + counts.size() + "]";
+    }
+}
@@ -0,0 +1,347 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.commons.dbcp2;
+
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.AtomicMoveNotSupportedException;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Properties;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.locks.Lock;
+import java.util.concurrent.locks.ReentrantLock;
+
+import org.apache.commons.dbcp2.PoolingConnection.StatementType;
+import org.apache.commons.logging.Log;
+import org.apache.commons.logging.LogFactory;
+
+/**
+ * Saves the demand seen by a pool to a local file, so that the next start of
+ * the application can warm up the pool before the first request arrives.
+ * <p>
+ * The file records the peak number of active connections observed while the
+ * pool was running and the most used pooled statements with their use
+ * counts. It is a properties file carrying a format version and a hash of
+ * the connection URL and user name; a file written in another format, for
+ * another database or user, or more than {@link #MAX_AGE_MILLIS} ago is
+ * ignored. The file is replaced atomically where the file system supports
+ * it, so a crash while writing leaves the previous snapshot intact.
+ *
+ * @since 2.2
+ */
+class WarmupSnapshot implements Runnable {
+
+    private static final Log log = LogFactory.getLog(WarmupSnapshot.class);
+
+    /** Version of the file format, incremented on incompatible changes */
+    static final int FORMAT_VERSION = 1;
+
+    /** Snapshots older than this, seven days, are ignored */
+    static final long MAX_AGE_MILLIS = TimeUnit.DAYS.toMillis(7);
+
+    private static final String VERSION = "version";
+    private static final String IDENTITY = "identity";
+    private static final String WRITTEN = "written";
+    private static final String PEAK_ACTIVE = "peakActive";
+    private static final String STATEMENT_COUNT = "statements";
+    private static final String STATEMENT = "statement.";
+
+    /**
+     * The demand read from a snapshot file.
+     */
+    static class Contents {
+        private final int peakActive;
+        private final Map<PStmtKey, Long> statements;
+
+        Contents(final int peakActive, final Map<PStmtKey, Long> statements) {
+            this.peakActive = peakActive;
+            this.statements = statements;
+        }
+
+        int getPeakActive() {
+            return peakActive;
+        }
+
+        /**
+         * @return the saved statements and their use counts, most used first
+         */
+        Map<PStmtKey, Long> getStatements() {
+            return statements;
+        }
+    }
+
+    private final File file;
+    private final String identity;
+    private final int previousPeakActive;
+    private final StatementUsageTracker tracker;
+    private final int maxStatements;
+    private final AtomicInteger peakActive = new AtomicInteger();
+    /** Guarded by {@link #taskLock} */
+    private ScheduledFuture<?> task;
+    private final Lock taskLock = new ReentrantLock();
+
+    /**
+     * @param file the snapshot file
+     * @param identity the identity of the pool, see {@link #identity(String, String)}
+     * @param previousPeakActive the peak read at startup, saved again if no
+     *        connection is borrowed before the next write
+     * @param tracker the statement usage of the pool, may be null
+     * @param maxStatements the maximum number of statements to save
+     */
+    WarmupSnapshot(final File file, final String identity, final int previousPeakActive,
+            final StatementUsageTracker tracker, final int maxStatements) {
+        this.file = file;
+        this.identity = identity;
+        this.previousPeakActive = previousPeakActive;
+        this.tracker = tracker;
+        this.maxStatements = maxStatements;
+    }
+
+    /**
+     * Returns a stable hash of the database and user a pool connects as, so
+     * that a snapshot is only used by the pool that wrote it.
+     *
+     * @param url the connection URL, may be null
+     * @param userName the user name, may be null
+     * @return a hex encoded SHA-256 hash
+     */
+    static String identity(final String url, final String userName) {
+        try {
+            final MessageDigest digest = MessageDigest.getInstance("SHA-256");
+            final byte[] hash = digest.digest((url + '\0' + userName).getBytes(StandardCharsets.UTF_8));
+            final StringBuilder sb = new StringBuilder(hash.length * 2);
+            for (final byte b : hash) {
+                sb.append(Character.forDigit((b >> 4) & 0xF, 16));
+                sb.append(Character.forDigit(b & 0xF, 16));
+            }
+            return sb.toString();
+        } catch (final NoSuchAlgorithmException e) {
+            // Every Java platform supports SHA-256
+            throw new IllegalStateException(e);
+        }
+    }
+
+    /**
+     * Reads a snapshot file.
+     *
+     * @param file the snapshot file
+     * @param identity the identity of the reading pool
+     * @return the saved demand, or null if the file does not exist or is
+     *         unreadable, incompatible, stale or written by another pool
+     */
+    static Contents read(final File file, final String identity) {
+        if (!file.isFile()) {
+            return null;
+        }
+        final Properties props = new Properties();
+        try (InputStream in = new FileInputStream(file)) {
+            props.load(in);
+        } catch (final IOException e) {
+            log.warn(Utils.getMessage("warmupSnapshot.readFailed", file), e);
+            return null;
+        }
+        try {
+            final String reason;
+            final String version = props.getProperty(VERSION);
+            final String written = props.getProperty(WRITTEN);
+            if (!String.valueOf(FORMAT_VERSION).equals(version)) {
+                reason = "version " + version;
+            } else if (!identity.equals(props.getProperty(IDENTITY))) {
+                reason = "written for another URL or user";
+            } else if (written == null ||
+                    System.currentTimeMillis() - Long.parseLong(written) > MAX_AGE_MILLIS) {
+                reason = "stale";
+            } else {
+                reason = null;
+            }
+            if (reason != null) {
+                log.info(Utils.getMessage("warmupSnapshot.ignored", file, reason));
+                return null;
+            }
+            final int peak = Integer.parseInt(props.getProperty(PEAK_ACTIVE, "0"));
+            final int count = Integer.parseInt(props.getProperty(STATEMENT_COUNT, "0"));
+            final Map<PStmtKey, Long> statements = new LinkedHashMap<>();
+            for (int i = 0; i < count; i++) {
+                final String prefix = STATEMENT + i + '.';
+                final String sql = props.getProperty(prefix + "sql");
+                if (sql == null) {
+                    continue;
+                }
+                statements.put(toKey(props, prefix, sql),
+                        Long.valueOf(props.getProperty(prefix + "uses", "1")));
+            }
+            return new Contents(Math.max(peak, 0), statements);
+        } catch (final IllegalArgumentException e) {
+            log.warn(Utils.getMessage("warmupSnapshot.readFailed", file), e);
+            return null;
+        }
+    }
+
+    private static PStmtKey toKey(final Properties props, final String prefix, final String sql) {
+        final String catalog = props.getProperty(prefix + "catalog");
+        final StatementType stmtType = StatementType.valueOf(
+                props.getProperty(prefix + "type", StatementType.PREPARED_STATEMENT.name()));
+        final String resultSetType = props.getProperty(prefix + "resultSetType");
+        if (resultSetType != null) {
+            return new PStmtKey(sql, catalog, Integer.parseInt(resultSetType),
+                    Integer.parseInt(props.getProperty(prefix + "resultSetConcurrency")), stmtType);
+        }
+        final String autoGeneratedKeys = props.getProperty(prefix + "autoGeneratedKeys");
+        return new PStmtKey(sql, catalog, stmtType,
+                autoGeneratedKeys == null ? null : Integer.valueOf(autoGeneratedKeys));
+    }
+
+    /**
+     * Records the number of active connections, keeping the highest value
+     * seen.
+     *
+     * @param active the current number of active connections
+     */
+    void recordActive(final int active) {
+        int peak = peakActive.get();
+        while (active > peak && !peakActive.compareAndSet(peak, active)) {
+            peak = peakActive.get();
+        }
+    }
+
+    /**
+     * @return the peak number of active connections to save
+     */
+    int getPeakActive() {
+        final int peak = peakActive.get();
+        return peak > 0 ? peak : previousPeakActive;
+    }
+
+    File getFile() {
+        return file;
+    }
+
+    /**
+     * Writes the snapshot now, replacing the previous one.
+     *
+     * @throws IOException if the file cannot be written
+     */
+    void write() throws IOException {
+        final Properties props = new Properties();
+        props.setProperty(VERSION, String.valueOf(FORMAT_VERSION));
+        props.setProperty(IDENTITY, identity);
+        props.setProperty(WRITTEN, String.valueOf(System.currentTimeMillis()));
+        props.setProperty(PEAK_ACTIVE, String.valueOf(getPeakActive()));
+        int count = 0;
+        if (tracker != null && maxStatements > 0) {
+            final List<PStmtKey> keys = tracker.getHottestKeys(maxStatements);
+            for (final PStmtKey key : keys) {
+                final String prefix = STATEMENT + count + '.';
+                props.setProperty(prefix + "sql", key.getSql());
+                if (key.getCatalog() != null) {
+                    props.setProperty(prefix + "catalog", key.getCatalog());
+                }
+                props.setProperty(prefix + "type", key.getStmtType().name());
+                if (key.getResultSetType() != null) {
+                    props.setProperty(prefix + "resultSetType", key.getResultSetType().toString());
+                    props.setProperty(prefix + "resultSetConcurrency",
+                            key.getResultSetConcurrency().toString());
+                }
+                if (key.getAutoGeneratedKeys() != null) {
+                    props.setProperty(prefix + "autoGeneratedKeys", key.getAutoGeneratedKeys().toString());
+                }
+                props.setProperty(prefix + "uses", String.valueOf(tracker.getUses(key)));
+                count++;
+            }
+        }
+        props.setProperty(STATEMENT_COUNT, String.valueOf(count));
+
+        final File dir = file.getAbsoluteFile().getParentFile();
+        if (dir != null && !dir.isDirectory() && !dir.mkdirs()) {
+            throw new IOException("Cannot create directory " + dir);
+        }
+        final File tmp = File.createTempFile(file.getName(), ".tmp", dir);
+        try {
+            try (OutputStream out = new FileOutputStream(tmp)) {
+                props.store(out, "Commons DBCP warm-up snapshot");
+            }
+            try {
+                Files.move(tmp.toPath(), file.toPath(), StandardCopyOption.ATOMIC_MOVE);
+            } catch (final AtomicMoveNotSupportedException e) {
+                Files.move(tmp.toPath(), file.toPath(), StandardCopyOption.REPLACE_EXISTING);
+            }
+        } finally {
+            Files.deleteIfExists(tmp.toPath());
+        }
+    }
+
+    /**
+     * Writes the snapshot every <code>intervalMillis</code> milliseconds.
+     *
+     * @param intervalMillis the time between writes, nothing is scheduled
+     *        if not positive
+     */
+    void start(final long intervalMillis) {
+        taskLock.lock();
+        try {
+            if (task == null && intervalMillis > 0) {
+                task = SharedScheduler.scheduleWithFixedDelay(this, intervalMillis, intervalMillis,
+                        TimeUnit.MILLISECONDS);
+            }
+        } finally {
+            taskLock.unlock();
+        }
+    }
+
+    /**
+     * Stops the periodic writes and writes the snapshot a last time.
+     */
+    void stop() {
+        taskLock.lock();
+        try {
+            if (task != null) {
+                task.cancel(false);
+                task = null;
+            }
+        } finally {
+            taskLock.unlock();
+        }
+        run();
+    }
+
+    @Override
+    public void run() {
+        try {
+            write();
+        } catch (final IOException | RuntimeException e) {
+            log.warn(Utils.getMessage("warmupSnapshot.writeFailed", file), e);
+        }
+    }
+
+    @Override
+    public String toString() {
+        return this.getClass().getName() + " [file=" + file + ";peakActive=" + getPeakActive() + "]";
+    }
+}
@@ -19,6 +19,8 @@ package org.apache.commons.dbcp2.cpdsadapter;
 
 import java.io.PrintWriter;
 import java.io.Serializable;
+import java.sql.Connection;
+import java.sql.Driver;
 import java.sql.DriverManager;
 import java.sql.SQLException;
 import java.sql.SQLFeatureNotSupportedException;
@@ -37,7 +39,9 @@ import javax.naming.spi.ObjectFactory;
 import javax.sql.ConnectionPoolDataSource;
 import javax.sql.PooledConnection;
 
+import org.apache.commons.dbcp2.DefaultSqlCanonicalizer;
 import org.apache.commons.dbcp2.PoolablePreparedStatement;
+import org.apache.commons.dbcp2.SqlCanonicalizer;
 import org.apache.commons.pool2.KeyedObjectPool;
 import org.apache.commons.pool2.impl.BaseObjectPoolConfig;
 import org.apache.commons.pool2.impl.GenericKeyedObjectPool;
@@ -126,6 +130,11 @@ public class DriverAdapterCPDS
     private int _numTestsPerEvictionRun = -1;
     private int _minEvictableIdleTimeMillis = -1;
     private int _maxPreparedStatements = -1;
+    private boolean canonicalizeSql = false;
+    private boolean stripSqlComments = false;
+    /** Shared by all connections, not serialized */
+    private transient SqlCanonicalizer sqlCanonicalizer = null;
+    private transient SqlCanonicalizer defaultSqlCanonicalizer = null;
 
     /** Whether or not getConnection has been called */
     private volatile boolean getConnectionCalled = false;
@@ -133,6 +142,12 @@ public class DriverAdapterCPDS
     /** Connection properties passed to JDBC Driver */
     private Properties connectionProperties = null;
 
+    /**
+     * The driver accepting the url, looked up once so that connecting does
+     * not scan the drivers registered with the DriverManager every time
+     */
+    private transient volatile Driver urlDriver = null;
+
     static {
         // Attempt to prevent deadlocks - see DBCP - 272
         DriverManager.getDrivers();
@@ -171,26 +186,12 @@ public class DriverAdapterCPDS
         // Workaround for buggy WebLogic 5.1 classloader - ignore the
         // exception upon first invocation.
         try {
-            if (connectionProperties != null) {
-                connectionProperties.put("user", username);
-                connectionProperties.put("password", pass);
-                pci = new PooledConnectionImpl(DriverManager.getConnection(
-                        getUrl(), connectionProperties));
-            } else {
-                pci = new PooledConnectionImpl(DriverManager.getConnection(
-                        getUrl(), username, pass));
-            }
+            pci = new PooledConnectionImpl(connect(username, pass));
             pci.setAccessToUnderlyingConnectionAllowed(isAccessToUnderlyingConnectionAllowed());
         }
         catch (final ClassCircularityError e)
         {
-            if (connectionProperties != null) {
-                pci = new PooledConnectionImpl(DriverManager.getConnection(
-                        getUrl(), connectionProperties));
-            } else {
-                pci = new PooledConnectionImpl(DriverManager.getConnection(
-                        getUrl(), username, pass));
-            }
+            pci = new PooledConnectionImpl(connect(username, pass));
             pci.setAccessToUnderlyingConnectionAllowed(isAccessToUnderlyingConnectionAllowed());
         }
         KeyedObjectPool<PStmtKeyCPDS, PoolablePreparedStatement<PStmtKeyCPDS>> stmtPool = null;
@@ -200,11 +201,15 @@ public class DriverAdapterCPDS
             config.setBlockWhenExhausted(false);
             config.setMaxWaitMillis(0);
             config.setMaxIdlePerKey(getMaxIdle());
+            // Statement pools are internal to a connection, registering
+            // hundreds of them with JMX is only overhead
+            config.setJmxEnabled(false);
             if (getMaxPreparedStatements() <= 0)
             {
-                // since there is no limit, create a prepared statement pool with an eviction thread
-                //  evictor settings are the same as the connection pool settings.
-                config.setTimeBetweenEvictionRunsMillis(getTimeBetweenEvictionRunsMillis());
+                // since there is no limit, evict idle statements. Evictor settings are the same
+                //  as the connection pool settings, but the evictions of all connections run on
+                //  the shared reaper rather than on one evictor per connection.
+                config.setTimeBetweenEvictionRunsMillis(-1);
                 config.setNumTestsPerEvictionRun(getNumTestsPerEvictionRun());
                 config.setMinEvictableIdleTimeMillis(getMinEvictableIdleTimeMillis());
             }
@@ -218,12 +223,59 @@ public class DriverAdapterCPDS
                 config.setNumTestsPerEvictionRun(0);
                 config.setMinEvictableIdleTimeMillis(0);
             }
-            stmtPool = new GenericKeyedObjectPool<>(pci, config);
+            final GenericKeyedObjectPool<PStmtKeyCPDS, PoolablePreparedStatement<PStmtKeyCPDS>> genericPool =
+                    new GenericKeyedObjectPool<>(pci, config);
+            if (getMaxPreparedStatements() <= 0 && getTimeBetweenEvictionRunsMillis() > 0) {
+                StatementPoolReaper.getSharedInstance().register(genericPool,
+                        getTimeBetweenEvictionRunsMillis());
+            }
+            stmtPool = genericPool;
             pci.setStatementPool(stmtPool);
+            pci.setSqlCanonicalizer(getEffectiveSqlCanonicalizer());
         }
         return pci;
     }
 
+    /**
+     * Opens a physical connection. The connection properties are copied for
+     * each call, so concurrent calls for different users do not see each
+     * other's credentials and the properties set by the application are
+     * left unchanged.
+     */
+    private Connection connect(final String username, final String pass) throws SQLException {
+        final Properties props = new Properties();
+        if (connectionProperties != null) {
+            props.putAll(connectionProperties);
+        }
+        if (username != null) {
+            props.setProperty("user", username);
+        }
+        if (pass != null) {
+            props.setProperty("password", pass);
+        }
+        final String url = getUrl();
+        final Connection conn = getUrlDriver(url).connect(url, props);
+        if (conn == null) {
+            throw new SQLException("No suitable driver found for " + url, "08001");
+        }
+        return conn;
+    }
+
+    /**
+     * Returns the driver accepting <code>url</code>, looking it up with the
+     * DriverManager on first use. The url cannot change once a connection
+     * has been requested.
+     */
+    private Driver getUrlDriver(final String url) throws SQLException {
+        Driver d = urlDriver;
+        if (d == null) {
+            // A race only causes a redundant lookup
+            d = DriverManager.getDriver(url);
+            urlDriver = d;
+        }
+        return d;
+    }
+
     @Override
     public Logger getParentLogger() throws SQLFeatureNotSupportedException {
         throw new SQLFeatureNotSupportedException();
@@ -262,6 +314,10 @@ public class DriverAdapterCPDS
             String.valueOf(getMinEvictableIdleTimeMillis())));
         ref.add(new StringRefAddr("maxPreparedStatements",
             String.valueOf(getMaxPreparedStatements())));
+        ref.add(new StringRefAddr("canonicalizeSql",
+            String.valueOf(isCanonicalizeSql())));
+        ref.add(new StringRefAddr("stripSqlComments",
+            String.valueOf(isStripSqlComments())));
 
         return ref;
     }
@@ -338,6 +394,17 @@ public class DriverAdapterCPDS
                         Integer.parseInt(ra.getContent().toString()));
                 }
 
+                ra = ref.get("canonicalizeSql");
+                if (ra != null && ra.getContent() != null) {
+                    setCanonicalizeSql(
+                        Boolean.valueOf(ra.getContent().toString()).booleanValue());
+                }
+                ra = ref.get("stripSqlComments");
+                if (ra != null && ra.getContent() != null) {
+                    setStripSqlComments(
+                        Boolean.valueOf(ra.getContent().toString()).booleanValue());
+                }
+
                 ra = ref.get("accessToUnderlyingConnectionAllowed");
                 if (ra != null && ra.getContent() != null) {
                     setAccessToUnderlyingConnectionAllowed(
@@ -380,7 +447,9 @@ public class DriverAdapterCPDS
      * properties are not present, they are filled in using
      * {@link #getUser()}, {@link #getPassword()} when {@link #getPooledConnection()}
      * is called, or using the actual parameters to the method call when
-     * {@link #getPooledConnection(String, String)} is called. Calls to
+     * {@link #getPooledConnection(String, String)} is called. Those values
+     * are set on a copy of <code>props</code> made for each connection, so
+     * <code>props</code> itself is not modified when connecting. Calls to
      * {@link #setUser(String)} or {@link #setPassword(String)} overwrite the values
      * of these properties if <code>connectionProperties</code> is not null.</p>
      *
@@ -596,7 +665,9 @@ public class DriverAdapterCPDS
      * Sets the number of milliseconds to sleep between runs of the
      * idle object evictor thread.
      * When non-positive, no idle object evictor thread will be
-     * run.
+     * run. The statement pools of all connections are evicted by a single
+     * shared thread, which checks for due evictions once a second, so the
+     * interval is rounded up to whole seconds.
      * @param timeBetweenEvictionRunsMillis
      * @see #getTimeBetweenEvictionRunsMillis()
      * @throws IllegalStateException if {@link #getPooledConnection()} has been called
@@ -703,4 +774,88 @@ public class DriverAdapterCPDS
     {
         _maxPreparedStatements = maxPreparedStatements;
     }
+
+    /**
+     * Whether SQL is canonicalized before it is used as a statement pool key.
+     * @return true if whitespace in SQL is collapsed for statement pooling
+     * @since 2.2
+     */
+    public boolean isCanonicalizeSql() {
+        return canonicalizeSql;
+    }
+
+    /**
+     * Sets whether SQL is canonicalized with a {@link DefaultSqlCanonicalizer}
+     * before it is used as a statement pool key, so that statements that
+     * differ only in whitespace share pooled statements. Has no effect unless
+     * {@link #isPoolPreparedStatements()} is true or a
+     * {@link #setSqlCanonicalizer(SqlCanonicalizer) canonicalizer} is set.
+     * @param canonicalizeSql true to canonicalize SQL
+     * @throws IllegalStateException if {@link #getPooledConnection()} has been called
+     * @since 2.2
+     */
+    public void setCanonicalizeSql(final boolean canonicalizeSql) {
+        assertInitializationAllowed();
+        this.canonicalizeSql = canonicalizeSql;
+    }
+
+    /**
+     * Whether comments are removed from SQL when it is canonicalized.
+     * @return true if comments other than optimizer hints are removed
+     * @since 2.2
+     */
+    public boolean isStripSqlComments() {
+        return stripSqlComments;
+    }
+
+    /**
+     * Sets whether comments other than optimizer hints are removed from SQL
+     * when {@link #isCanonicalizeSql()} is true.
+     * @param stripSqlComments true to remove comments
+     * @throws IllegalStateException if {@link #getPooledConnection()} has been called
+     * @since 2.2
+     */
+    public void setStripSqlComments(final boolean stripSqlComments) {
+        assertInitializationAllowed();
+        this.stripSqlComments = stripSqlComments;
+    }
+
+    /**
+     * Gets the canonicalizer set with
+     * {@link #setSqlCanonicalizer(SqlCanonicalizer)}.
+     * @return the custom SQL canonicalizer, or null
+     * @since 2.2
+     */
+    public SqlCanonicalizer getSqlCanonicalizer() {
+        return sqlCanonicalizer;
+    }
+
+    /**
+     * Sets a custom canonicalizer applied to SQL before it is used as a
+     * statement pool key, used in place of the one configured by
+     * {@link #setCanonicalizeSql(boolean)}. It is not serialized or stored
+     * in a JNDI reference.
+     * @param sqlCanonicalizer the canonicalizer, or null
+     * @throws IllegalStateException if {@link #getPooledConnection()} has been called
+     * @since 2.2
+     */
+    public void setSqlCanonicalizer(final SqlCanonicalizer sqlCanonicalizer) {
+        assertInitializationAllowed();
+        this.sqlCanonicalizer = sqlCanonicalizer;
+    }
+
+    /**
+     * Returns the canonicalizer shared by the statement pools of all
+     * connections, creating the default one if canonicalization is enabled.
+     */
+    private synchronized SqlCanonicalizer getEffectiveSqlCanonicalizer() {
+        if (sqlCanonicalizer != null || !canonicalizeSql) {
+            return sqlCanonicalizer;
+        }
+        if (defaultSqlCanonicalizer == null) {
+            defaultSqlCanonicalizer = new DefaultSqlCanonicalizer(stripSqlComments,
+                    DefaultSqlCanonicalizer.DEFAULT_MAX_CACHED_STATEMENTS);
+        }
+        return defaultSqlCanonicalizer;
+    }
 }
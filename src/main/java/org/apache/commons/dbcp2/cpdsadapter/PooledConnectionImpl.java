@@ -29,6 +29,7 @@ import javax.sql.StatementEventListener;
 
 import org.apache.commons.dbcp2.DelegatingConnection;
 import org.apache.commons.dbcp2.PoolablePreparedStatement;
+import org.apache.commons.dbcp2.SqlCanonicalizer;
 import org.apache.commons.pool2.KeyedObjectPool;
 import org.apache.commons.pool2.KeyedPooledObjectFactory;
 import org.apache.commons.pool2.PooledObject;
@@ -87,6 +88,11 @@ class PooledConnectionImpl
      */
     private boolean accessToUnderlyingConnectionAllowed = false;
 
+    /**
+     * Rewrites SQL into the form used for statement keys, may be null
+     */
+    private SqlCanonicalizer sqlCanonicalizer = null;
+
     /**
      * Wrap the real connection.
      * @param connection the connection to be wrapped
@@ -107,6 +113,15 @@ class PooledConnectionImpl
         pstmtPool = statementPool;
     }
 
+    /**
+     * Sets the canonicalizer applied to SQL before it is used as a statement
+     * key.
+     * @param sqlCanonicalizer the canonicalizer, or null to only trim SQL
+     */
+    void setSqlCanonicalizer(final SqlCanonicalizer sqlCanonicalizer) {
+        this.sqlCanonicalizer = sqlCanonicalizer;
+    }
+
     /**
      * {@inheritDoc}
      */
@@ -409,9 +424,11 @@ class PooledConnectionImpl
     /**
      * Normalize the given SQL statement, producing a
      * canonical form that is semantically equivalent to the original.
+     * Uses the canonicalizer if one has been set, otherwise trims the SQL.
      */
     protected String normalizeSQL(final String sql) {
-        return sql.trim();
+        final SqlCanonicalizer canonicalizer = sqlCanonicalizer;
+        return canonicalizer == null ? sql.trim() : canonicalizer.canonicalize(sql);
     }
 
     /**
@@ -0,0 +1,196 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.commons.dbcp2.cpdsadapter;
+
+import java.lang.ref.WeakReference;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
+
+import org.apache.commons.dbcp2.SharedScheduler;
+import org.apache.commons.logging.Log;
+import org.apache.commons.logging.LogFactory;
+import org.apache.commons.pool2.impl.GenericKeyedObjectPool;
+
+/**
+ * Evicts idle statements from the statement pools of all
+ * {@link PooledConnectionImpl}s on a single scheduled task, instead of one
+ * eviction timer per pooled connection.
+ * <p>
+ * Registered pools are kept on a hashed timing wheel of {@link #SLOTS}
+ * slots. Every tick the reaper advances to the next slot and runs
+ * {@link GenericKeyedObjectPool#evict()} on the pools in it that are due,
+ * using each pool's own eviction settings, then puts them back on the wheel
+ * one eviction interval later. A pass stops after its time budget; pools it
+ * did not reach are moved to the next slot, so a slow pass delays eviction
+ * rather than the {@link SharedScheduler} tasks of other pools.
+ * <p>
+ * The reaper only holds weak references, so a pooled connection that is
+ * discarded without being closed does not stay reachable. Closed and
+ * collected pools are dropped when their slot comes up. The task is only
+ * scheduled while pools are registered.
+ *
+ * @since 2.2
+ */
+class StatementPoolReaper implements Runnable {
+
+    private static final Log log = LogFactory.getLog(StatementPoolReaper.class);
+
+    /** Number of slots of the wheel */
+    static final int SLOTS = 64;
+
+    /** Time between ticks of the shared reaper, one second */
+    static final long DEFAULT_TICK_MILLIS = 1000;
+
+    /** Time budget of a pass of the shared reaper, 50 milliseconds */
+    static final long DEFAULT_PASS_BUDGET_MILLIS = 50;
+
+    private static class SharedInstance {
+        static final StatementPoolReaper INSTANCE =
+                new StatementPoolReaper(DEFAULT_TICK_MILLIS, DEFAULT_PASS_BUDGET_MILLIS);
+    }
+
+    private static class Entry {
+        final WeakReference<GenericKeyedObjectPool<?, ?>> pool;
+        final long intervalTicks;
+        /** Full turns of the wheel left before the entry is due */
+        long rounds;
+
+        Entry(final GenericKeyedObjectPool<?, ?> pool, final long intervalTicks) {
+            this.pool = new WeakReference<GenericKeyedObjectPool<?, ?>>(pool);
+            this.intervalTicks = intervalTicks;
+        }
+    }
+
+    private final long tickMillis;
+    private final long passBudgetNanos;
+    private final List<List<Entry>> wheel = new ArrayList<>(SLOTS);
+    /** Guarded by this */
+    private int cursor = 0;
+    /** Guarded by this */
+    private int size = 0;
+    /** Guarded by this */
+    private ScheduledFuture<?> task;
+
+    /**
+     * @param tickMillis the time between passes
+     * @param passBudgetMillis the time after which a pass stops evicting
+     */
+    StatementPoolReaper(final long tickMillis, final long passBudgetMillis) {
+        this.tickMillis = tickMillis;
+        this.passBudgetNanos = TimeUnit.MILLISECONDS.toNanos(passBudgetMillis);
+        for (int i = 0; i < SLOTS; i++) {
+            wheel.add(new ArrayList<Entry>());
+        }
+    }
+
+    /**
+     * @return the reaper shared by all statement pools of this package
+     */
+    static StatementPoolReaper getSharedInstance() {
+        return SharedInstance.INSTANCE;
+    }
+
+    /**
+     * Evicts idle statements from <code>pool</code> every
+     * <code>intervalMillis</code> milliseconds, rounded up to a whole number
+     * of ticks, until the pool is closed.
+     *
+     * @param pool a statement pool whose own evictor is disabled
+     * @param intervalMillis the time between evictions
+     */
+    synchronized void register(final GenericKeyedObjectPool<?, ?> pool, final long intervalMillis) {
+        final long ticks = Math.max(1, (intervalMillis + tickMillis - 1) / tickMillis);
+        schedule(new Entry(pool, ticks), ticks);
+        size++;
+        if (task == null) {
+            task = SharedScheduler.scheduleWithFixedDelay(this, tickMillis, tickMillis,
+                    TimeUnit.MILLISECONDS);
+        }
+    }
+
+    /**
+     * @return the number of registered pools, including ones that have been
+     *         closed since their last eviction
+     */
+    synchronized int getPoolCount() {
+        return size;
+    }
+
+    /** Puts an entry on the wheel <code>ticks</code> ticks after the current slot. */
+    private void schedule(final Entry entry, final long ticks) {
+        entry.rounds = (ticks - 1) / SLOTS;
+        wheel.get((int) ((cursor + ticks) % SLOTS)).add(entry);
+    }
+
+    @Override
+    public void run() {
+        final List<Entry> due = new ArrayList<>();
+        synchronized (this) {
+            cursor = (cursor + 1) % SLOTS;
+            final Iterator<Entry> it = wheel.get(cursor).iterator();
+            while (it.hasNext()) {
+                final Entry entry = it.next();
+                if (entry.rounds > 0) {
+                    entry.rounds--;
+                } else {
+                    it.remove();
+                    due.add(entry);
+                }
+            }
+        }
+        final long deadline = System.nanoTime() + passBudgetNanos;
+        final List<Entry> evicted = new ArrayList<>(due.size());
+        int dropped = 0;
+        int next = 0;
+        for (; next < due.size() && System.nanoTime() - deadline < 0; next++) {
+            final Entry entry = due.get(next);
+            final GenericKeyedObjectPool<?, ?> pool = entry.pool.get();
+            if (pool == null || pool.isClosed()) {
+                dropped++;
+                continue;
+            }
+            try {
+                pool.evict();
+            } catch (final Exception e) {
+                log.warn("Failed to evict idle statements", e);
+            }
+            evicted.add(entry);
+        }
+        synchronized (this) {
+            for (final Entry entry : evicted) {
+                schedule(entry, entry.intervalTicks);
+            }
+            size -= dropped;
+            // Out of time: retry the rest on the next tick
+            for (int i = next; i < due.size(); i++) {
+                schedule(due.get(i), 1);
+            }
+            if (size == 0 && task != null) {
+                task.cancel(false);
+                task = null;
+            }
+        }
+    }
+
+    @Override
+    public synchronized String toString() {
+        return this.getClass().getName() + " [tickMillis=" + tickMillis + ";pools=" + size + "]";
+    }
+}
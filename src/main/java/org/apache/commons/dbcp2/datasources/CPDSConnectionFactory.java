@@ -24,6 +24,8 @@ import java.util.Collections;
 import java.util.Map;
 import java.util.Set;
 import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.atomic.AtomicLong;
 
 import javax.sql.ConnectionEvent;
 import javax.sql.ConnectionEventListener;
@@ -58,8 +60,13 @@ class CPDSConnectionFactory
     private final boolean _rollbackAfterValidation;
     private ObjectPool<PooledConnectionAndInfo> _pool;
     private final String _username;
-    private String _password = null;
+    private volatile String _password = null;
     private long maxConnLifetimeMillis = -1;
+    private final AtomicLong generation = new AtomicLong(0);
+
+    /** Limits the number of connections being opened at once, null if unlimited */
+    private volatile Semaphore creationPermits = null;
+    private volatile int connectionCreationParallelism = 0;
 
 
     /**
@@ -122,15 +129,29 @@ class CPDSConnectionFactory
         this._pool = pool;
     }
 
+    /**
+     * Opens a new pooled connection. Several connections may be opened at
+     * the same time, up to {@link #getConnectionCreationParallelism()}.
+     */
     @Override
-    public synchronized PooledObject<PooledConnectionAndInfo> makeObject() {
+    public PooledObject<PooledConnectionAndInfo> makeObject() {
+        final long gen = generation.get();
+        // Use the same password for the connection and its info
+        final String password = _password;
         PooledConnectionAndInfo pci;
         try {
             PooledConnection pc = null;
-            if (_username == null) {
-                pc = _cpds.getPooledConnection();
-            } else {
-                pc = _cpds.getPooledConnection(_username, _password);
+            final Semaphore permit = acquireCreationPermit();
+            try {
+                if (_username == null) {
+                    pc = _cpds.getPooledConnection();
+                } else {
+                    pc = _cpds.getPooledConnection(_username, password);
+                }
+            } finally {
+                if (permit != null) {
+                    permit.release();
+                }
             }
 
             if (pc == null) {
@@ -140,7 +161,7 @@ class CPDSConnectionFactory
             // should we add this object as a listener or the pool.
             // consider the validateObject method in decision
             pc.addConnectionEventListener(this);
-            pci = new PooledConnectionAndInfo(pc, _username, _password);
+            pci = new PooledConnectionAndInfo(pc, _username, password, gen);
             pcMap.put(pc, pci);
         } catch (final SQLException e) {
             throw new RuntimeException(e.getMessage());
@@ -167,6 +188,7 @@ class CPDSConnectionFactory
     public boolean validateObject(final PooledObject<PooledConnectionAndInfo> p) {
         try {
             validateLifetime(p);
+            validateGeneration(p);
         } catch (final Exception e) {
             return false;
         }
@@ -224,12 +246,14 @@ class CPDSConnectionFactory
     public void passivateObject(final PooledObject<PooledConnectionAndInfo> p)
             throws Exception {
         validateLifetime(p);
+        validateGeneration(p);
     }
 
     @Override
     public void activateObject(final PooledObject<PooledConnectionAndInfo> p)
             throws Exception {
         validateLifetime(p);
+        validateGeneration(p);
     }
 
     // ***********************************************************************
@@ -341,6 +365,83 @@ class CPDSConnectionFactory
         this.maxConnLifetimeMillis = maxConnLifetimeMillis;
     }
 
+    /**
+     * Returns the maximum number of connections this factory opens at the
+     * same time.
+     *
+     * @return the limit, zero or less if unlimited
+     * @since 2.2
+     */
+    public int getConnectionCreationParallelism() {
+        return connectionCreationParallelism;
+    }
+
+    /**
+     * Sets the maximum number of connections this factory opens at the same
+     * time. Further pool threads that need a new connection wait until one
+     * of those completes. Set this when the database or the network cannot
+     * cope with many simultaneous logins, for example while a pool refills
+     * after a failover. Should be set before the pool is used.
+     *
+     * @param connectionCreationParallelism the limit, zero or less for no
+     *        limit
+     * @since 2.2
+     */
+    public void setConnectionCreationParallelism(final int connectionCreationParallelism) {
+        this.connectionCreationParallelism = connectionCreationParallelism;
+        creationPermits = connectionCreationParallelism > 0 ?
+                new Semaphore(connectionCreationParallelism) : null;
+    }
+
+    /**
+     * Waits until a new connection may be opened.
+     *
+     * @return the permit to release once the connection is open, null if
+     *         creation is not limited
+     */
+    private Semaphore acquireCreationPermit() throws SQLException {
+        final Semaphore permits = creationPermits;
+        if (permits != null) {
+            try {
+                permits.acquire();
+            } catch (final InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw new SQLException("Interrupted while waiting to open a connection", e);
+            }
+        }
+        return permits;
+    }
+
+    /**
+     * Returns the current pool generation. Connections created from now on
+     * belong to this generation.
+     *
+     * @return the current generation
+     * @since 2.2
+     */
+    public long getGeneration() {
+        return generation.get();
+    }
+
+    /**
+     * Retires all connections created so far. Idle connections are closed
+     * immediately and connections in use are destroyed, rather than returned
+     * to the pool, when they are closed.
+     *
+     * @return the new generation
+     * @throws SQLException if an error occurs closing idle connections
+     * @since 2.2
+     */
+    public long incrementGeneration() throws SQLException {
+        final long gen = generation.incrementAndGet();
+        try {
+            _pool.clear();
+        } catch (final Exception ex) {
+            throw new SQLException("Error clearing connection pool", ex);
+        }
+        return gen;
+    }
+
     /**
      * Verifies that the username matches the user whose connections are being managed by this
      * factory and closes the pool if this is the case; otherwise does nothing.
@@ -371,4 +472,16 @@ class CPDSConnectionFactory
             }
         }
     }
+
+    private void validateGeneration(final PooledObject<PooledConnectionAndInfo> p)
+            throws Exception {
+        final long connGeneration = p.getObject().getGeneration();
+        final long current = generation.get();
+        if (connGeneration < current) {
+            throw new Exception(Utils.getMessage(
+                    "connectionFactory.generationRetired",
+                    Long.valueOf(connGeneration),
+                    Long.valueOf(current)));
+        }
+    }
 }
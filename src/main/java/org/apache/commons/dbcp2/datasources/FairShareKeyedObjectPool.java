@@ -0,0 +1,232 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.apache.commons.dbcp2.datasources;
+
+import java.util.HashMap;
+import java.util.Map;
+import java.util.NoSuchElementException;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.Condition;
+import java.util.concurrent.locks.ReentrantLock;
+
+import org.apache.commons.pool2.impl.GenericKeyedObjectPool;
+import org.apache.commons.pool2.impl.GenericKeyedObjectPoolConfig;
+
+/**
+ * Shares the connections of a {@link SharedPoolDataSource} between its users
+ * by quota, so that one busy user cannot take every connection.
+ * <p>
+ * Each user may be guaranteed a minimum number of connections in use and
+ * limited to a maximum, which never applies below the minimum. A user below
+ * its minimum always gets a connection as soon as the pool can create one. A
+ * user at or above its minimum only gets one if the connections the other
+ * users are guaranteed but not using still fit under <code>maxTotal</code>;
+ * otherwise it waits until a connection is returned.
+ * <p>
+ * Connections are counted against their user while borrowed. Idle
+ * connections stay under the key of their user and are only lent to that
+ * user again. When a user is allowed a connection and the pool is full,
+ * {@link GenericKeyedObjectPool} makes room by destroying the oldest idle
+ * connections of any key, so the idle connections of other users are only
+ * freed that way.
+ *
+ * @since 2.2
+ */
+class FairShareKeyedObjectPool extends GenericKeyedObjectPool<UserPassKey, PooledConnectionAndInfo> {
+
+    private final Map<String, Integer> minTotal;
+    private final Map<String, Integer> maxTotal;
+    private final int defaultMaxTotal;
+
+    /** Guards the counts below and signals returns to waiting borrowers */
+    private final ReentrantLock lock = new ReentrantLock();
+    private final Condition released = lock.newCondition();
+    private final Map<String, int[]> borrowed = new HashMap<>();
+    private int totalBorrowed;
+
+    /** The keys of the users that borrowed objects are counted against */
+    private final ConcurrentMap<PooledConnectionAndInfo, UserPassKey> owners = new ConcurrentHashMap<>();
+
+    /**
+     * @param factory the factory creating the connections
+     * @param config the pool configuration, whose <code>maxTotal</code> the
+     *        quotas share out
+     * @param minTotal the number of connections guaranteed to each user
+     * @param maxTotal the maximum number of connections of each user
+     * @param defaultMaxTotal the maximum number of connections of users
+     *        without an entry in <code>maxTotal</code>, negative for no limit
+     */
+    FairShareKeyedObjectPool(final KeyedCPDSConnectionFactory factory,
+            final GenericKeyedObjectPoolConfig config,
+            final Map<String, Integer> minTotal, final Map<String, Integer> maxTotal,
+            final int defaultMaxTotal) {
+        super(factory, config);
+        this.minTotal = new HashMap<>(minTotal);
+        this.maxTotal = new HashMap<>(maxTotal);
+        this.defaultMaxTotal = defaultMaxTotal;
+    }
+
+    @Override
+    public PooledConnectionAndInfo borrowObject(final UserPassKey key) throws Exception {
+        return borrowObject(key, getMaxWaitMillis());
+    }
+
+    /**
+     * Borrows a connection once the quota of its user allows it.
+     *
+     * @param key the key of the user
+     * @param borrowMaxWaitMillis the maximum time to wait for the quota and
+     *        then for a connection, negative to wait indefinitely
+     */
+    @Override
+    public PooledConnectionAndInfo borrowObject(final UserPassKey key,
+            final long borrowMaxWaitMillis) throws Exception {
+        final String username = key.getUsername();
+        final long start = System.currentTimeMillis();
+        acquire(username, borrowMaxWaitMillis);
+        final PooledConnectionAndInfo info;
+        try {
+            final long remaining = borrowMaxWaitMillis < 0 ? borrowMaxWaitMillis :
+                    Math.max(0, borrowMaxWaitMillis - (System.currentTimeMillis() - start));
+            info = super.borrowObject(key, remaining);
+        } catch (final Exception e) {
+            release(username);
+            throw e;
+        }
+        owners.put(info, key);
+        return info;
+    }
+
+    @Override
+    public void returnObject(final UserPassKey key, final PooledConnectionAndInfo info) {
+        try {
+            super.returnObject(key, info);
+        } finally {
+            released(info);
+        }
+    }
+
+    @Override
+    public void invalidateObject(final UserPassKey key, final PooledConnectionAndInfo info)
+            throws Exception {
+        try {
+            super.invalidateObject(key, info);
+        } finally {
+            released(info);
+        }
+    }
+
+    /**
+     * Returns the number of connections a user has borrowed through this
+     * pool.
+     */
+    int getNumBorrowed(final String username) {
+        lock.lock();
+        try {
+            final int[] count = borrowed.get(username);
+            return count == null ? 0 : count[0];
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    private void released(final PooledConnectionAndInfo info) {
+        final UserPassKey key = owners.remove(info);
+        if (key != null) {
+            release(key.getUsername());
+        }
+    }
+
+    /**
+     * Waits until the quota of a user allows it another connection and
+     * counts the connection against the quota.
+     */
+    private void acquire(final String username, final long maxWaitMillis)
+            throws InterruptedException {
+        lock.lock();
+        try {
+            long nanos = TimeUnit.MILLISECONDS.toNanos(maxWaitMillis);
+            while (!allowed(username)) {
+                if (!getBlockWhenExhausted() || maxWaitMillis >= 0 && nanos <= 0) {
+                    throw new NoSuchElementException(
+                            "Connection quota of user " + username + " exhausted");
+                }
+                if (maxWaitMillis < 0) {
+                    released.await();
+                } else {
+                    nanos = released.awaitNanos(nanos);
+                }
+            }
+            int[] count = borrowed.get(username);
+            if (count == null) {
+                count = new int[1];
+                borrowed.put(username, count);
+            }
+            count[0]++;
+            totalBorrowed++;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    private void release(final String username) {
+        lock.lock();
+        try {
+            final int[] count = borrowed.get(username);
+            if (count != null) {
+                if (--count[0] == 0) {
+                    borrowed.remove(username);
+                }
+                totalBorrowed--;
+            }
+            released.signalAll();
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Returns whether a user may borrow another connection. Called holding
+     * the lock.
+     */
+    private boolean allowed(final String username) {
+        final int count = getNumBorrowed(username);
+        final Integer min = minTotal.get(username);
+        if (min != null && count < min.intValue()) {
+            return true;
+        }
+        final Integer max = maxTotal.get(username);
+        final int limit = max == null ? defaultMaxTotal : max.intValue();
+        if (limit >= 0 && count >= limit) {
+            return false;
+        }
+        final int total = getMaxTotal();
+        if (total < 0) {
+            return true;
+        }
+        // Keep the connections other users are guaranteed available to them;
+        // this user has used up its own guarantee
+        int reserved = 0;
+        for (final Map.Entry<String, Integer> entry : minTotal.entrySet()) {
+            reserved += Math.max(0, entry.getValue().intValue() - getNumBorrowed(entry.getKey()));
+        }
+        return totalBorrowed + reserved < total;
+    }
+}
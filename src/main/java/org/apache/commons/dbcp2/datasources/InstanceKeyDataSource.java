@@ -26,6 +26,7 @@ import java.sql.SQLException;
 import java.sql.SQLFeatureNotSupportedException;
 import java.util.NoSuchElementException;
 import java.util.Properties;
+import java.util.concurrent.TimeUnit;
 import java.util.logging.Logger;
 
 import javax.naming.Context;
@@ -160,6 +161,7 @@ public abstract class InstanceKeyDataSource
     private int validationQueryTimeout = -1;
     private boolean rollbackAfterValidation = false;
     private long maxConnLifetimeMillis = -1;
+    private int connectionCreationParallelism = 0;
 
     // Connection properties
     private Boolean defaultAutoCommit = null;
@@ -845,6 +847,38 @@ public abstract class InstanceKeyDataSource
         this.maxConnLifetimeMillis = maxConnLifetimeMillis;
     }
 
+    /**
+     * Returns the maximum number of physical connections opened at the same
+     * time by a pool of this datasource. A value of zero or less indicates
+     * no limit.
+     *
+     * @since 2.2
+     */
+    public int getConnectionCreationParallelism() {
+        return connectionCreationParallelism;
+    }
+
+    /**
+     * <p>Sets the maximum number of physical connections opened at the same
+     * time by a pool of this datasource, that is by the single pool of a
+     * {@link SharedPoolDataSource} or by each user's pool of a
+     * {@link PerUserPoolDataSource}. Connections are otherwise opened
+     * concurrently, so that a pool refills at the speed of the database
+     * after a restart or failover. A value of zero or less, the default,
+     * indicates no limit.</p>
+     * <p>
+     * Note: this method currently has no effect once the pool has been
+     * initialized.  The pool is initialized the first time one of the
+     * following methods is invoked: <code>getConnection, setLogwriter,
+     * setLoginTimeout, getLoginTimeout, getLogWriter.</code></p>
+     *
+     * @since 2.2
+     */
+    public void setConnectionCreationParallelism(final int connectionCreationParallelism) {
+        assertInitializationAllowed();
+        this.connectionCreationParallelism = connectionCreationParallelism;
+    }
+
     // ----------------------------------------------------------------------
     // Instrumentation Methods
 
@@ -874,15 +908,62 @@ public abstract class InstanceKeyDataSource
     @Override
     public Connection getConnection(final String username, final String password)
             throws SQLException {
+        return getConnection(username, password, -1);
+    }
+
+    /**
+     * Attempt to establish a database connection, waiting at most
+     * <code>timeout</code> for a connection to be returned while the pool is
+     * exhausted.
+     *
+     * @param timeout the maximum time to wait
+     * @param unit the unit of <code>timeout</code>
+     * @return a database connection
+     * @throws SQLException if a database access error occurs or no connection
+     *         could be borrowed in time
+     * @see #getConnection(String, String, long, TimeUnit)
+     * @since 2.2
+     */
+    public Connection getConnection(final long timeout, final TimeUnit unit) throws SQLException {
+        return getConnection(null, null, timeout, unit);
+    }
+
+    /**
+     * Attempt to retrieve a database connection as
+     * {@link #getConnection(String, String)} does, waiting at most
+     * <code>timeout</code> for a connection to be returned while the pool is
+     * exhausted. The timeout replaces the configured maximum wait for this
+     * call only; a timeout of zero or less fails straight away if no
+     * connection is available. Creating and validating a connection are not
+     * interrupted.
+     *
+     * @param username the database user on whose behalf the connection is
+     *        being made
+     * @param password the user's password
+     * @param timeout the maximum time to wait
+     * @param unit the unit of <code>timeout</code>
+     * @return a database connection
+     * @throws SQLException if a database access error occurs or no connection
+     *         could be borrowed in time
+     * @since 2.2
+     */
+    public Connection getConnection(final String username, final String password,
+            final long timeout, final TimeUnit unit) throws SQLException {
+        return getConnection(username, password, Math.max(0, unit.toMillis(timeout)));
+    }
+
+    private Connection getConnection(final String username, final String password,
+            final long maxWaitMillis) throws SQLException {
         if (instanceKey == null) {
             throw new SQLException("Must set the ConnectionPoolDataSource "
                     + "through setDataSourceName or setConnectionPoolDataSource"
                     + " before calling getConnection.");
         }
         getConnectionCalled = true;
+        final long startMillis = System.currentTimeMillis();
         PooledConnectionAndInfo info = null;
         try {
-            info = getPooledConnectionAndInfo(username, password);
+            info = getPooledConnectionAndInfo(username, password, maxWaitMillis);
         } catch (final NoSuchElementException e) {
             closeDueToException(info);
             throw new SQLException("Cannot borrow connection from pool", e);
@@ -921,7 +1002,8 @@ public abstract class InstanceKeyDataSource
             info = null;
             for (int i = 0; i < 10; i++) { // Bound the number of retries - only needed if bad instances return
                 try {
-                    info = getPooledConnectionAndInfo(username, password);
+                    info = getPooledConnectionAndInfo(username, password,
+                            remainingWaitMillis(maxWaitMillis, startMillis));
                 } catch (final NoSuchElementException e) {
                     closeDueToException(info);
                     throw new SQLException("Cannot borrow connection from pool", e);
@@ -964,10 +1046,42 @@ public abstract class InstanceKeyDataSource
         }
     }
 
+    /**
+     * Returns what is left of <code>maxWaitMillis</code> since
+     * <code>startMillis</code>, so that retries share one wait. A negative
+     * <code>maxWaitMillis</code>, the pool's configured wait, is passed on
+     * unchanged: the pool applies it to each attempt.
+     */
+    private static long remainingWaitMillis(final long maxWaitMillis, final long startMillis) {
+        if (maxWaitMillis < 0) {
+            return maxWaitMillis;
+        }
+        return Math.max(0, maxWaitMillis - (System.currentTimeMillis() - startMillis));
+    }
+
     protected abstract PooledConnectionAndInfo
         getPooledConnectionAndInfo(String username, String password)
         throws SQLException;
 
+    /**
+     * Borrows a pooled connection, waiting at most <code>maxWaitMillis</code>
+     * for one to be returned while the pool is exhausted. This implementation
+     * ignores the wait and calls
+     * {@link #getPooledConnectionAndInfo(String, String)}.
+     *
+     * @param username the database user
+     * @param password the user's password
+     * @param maxWaitMillis the maximum wait, or a negative value to use the
+     *        pool's configured maximum wait
+     * @return the pooled connection and its credentials
+     * @throws SQLException if no connection could be borrowed
+     * @since 2.2
+     */
+    protected PooledConnectionAndInfo getPooledConnectionAndInfo(final String username,
+            final String password, final long maxWaitMillis) throws SQLException {
+        return getPooledConnectionAndInfo(username, password);
+    }
+
     protected abstract void setupDefaults(Connection con, String username)
         throws SQLException;
 
@@ -274,6 +274,12 @@ abstract class InstanceKeyDataSourceFactory implements ObjectFactory {
                 Long.parseLong(ra.getContent().toString()));
         }
 
+        ra = ref.get("connectionCreationParallelism");
+        if (ra != null && ra.getContent() != null) {
+            ikds.setConnectionCreationParallelism(
+                Integer.parseInt(ra.getContent().toString()));
+        }
+
 
         // Connection properties
 
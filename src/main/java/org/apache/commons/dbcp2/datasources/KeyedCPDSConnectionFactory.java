@@ -25,6 +25,8 @@ import java.util.Collections;
 import java.util.Map;
 import java.util.Set;
 import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.atomic.AtomicLong;
 
 import javax.sql.ConnectionEvent;
 import javax.sql.ConnectionEventListener;
@@ -59,6 +61,11 @@ class KeyedCPDSConnectionFactory
     private final boolean _rollbackAfterValidation;
     private KeyedObjectPool<UserPassKey,PooledConnectionAndInfo> _pool;
     private long maxConnLifetimeMillis = -1;
+    private final AtomicLong generation = new AtomicLong(0);
+
+    /** Limits the number of connections being opened at once, null if unlimited */
+    private volatile Semaphore creationPermits = null;
+    private volatile int connectionCreationParallelism = 0;
 
     /**
      * Map of PooledConnections for which close events are ignored.
@@ -112,23 +119,33 @@ class KeyedCPDSConnectionFactory
 
     /**
      * Creates a new {@link PooledConnectionAndInfo} from the given {@link UserPassKey}.
+     * Several connections, of the same or different users, may be opened at
+     * the same time, up to {@link #getConnectionCreationParallelism()}.
      *
      * @param upkey {@link UserPassKey} containing user credentials
      * @throws SQLException if the connection could not be created.
      * @see org.apache.commons.pool2.KeyedPooledObjectFactory#makeObject(java.lang.Object)
      */
     @Override
-    public synchronized PooledObject<PooledConnectionAndInfo> makeObject(final UserPassKey upkey)
+    public PooledObject<PooledConnectionAndInfo> makeObject(final UserPassKey upkey)
             throws Exception {
+        final long gen = generation.get();
         PooledConnectionAndInfo pci = null;
 
         PooledConnection pc = null;
         final String username = upkey.getUsername();
         final String password = upkey.getPassword();
-        if (username == null) {
-            pc = _cpds.getPooledConnection();
-        } else {
-            pc = _cpds.getPooledConnection(username, password);
+        final Semaphore permit = acquireCreationPermit();
+        try {
+            if (username == null) {
+                pc = _cpds.getPooledConnection();
+            } else {
+                pc = _cpds.getPooledConnection(username, password);
+            }
+        } finally {
+            if (permit != null) {
+                permit.release();
+            }
         }
 
         if (pc == null) {
@@ -138,7 +155,7 @@ class KeyedCPDSConnectionFactory
         // should we add this object as a listener or the pool.
         // consider the validateObject method in decision
         pc.addConnectionEventListener(this);
-        pci = new PooledConnectionAndInfo(pc, username, password);
+        pci = new PooledConnectionAndInfo(pc, username, password, gen);
         pcMap.put(pc, pci);
 
         return new DefaultPooledObject<>(pci);
@@ -169,6 +186,7 @@ class KeyedCPDSConnectionFactory
             final PooledObject<PooledConnectionAndInfo> p) {
         try {
             validateLifetime(p);
+            validateGeneration(p);
         } catch (final Exception e) {
             return false;
         }
@@ -226,12 +244,14 @@ class KeyedCPDSConnectionFactory
     public void passivateObject(final UserPassKey key,
             final PooledObject<PooledConnectionAndInfo> p) throws Exception {
         validateLifetime(p);
+        validateGeneration(p);
     }
 
     @Override
     public void activateObject(final UserPassKey key,
             final PooledObject<PooledConnectionAndInfo> p) throws Exception {
         validateLifetime(p);
+        validateGeneration(p);
     }
 
     // ***********************************************************************
@@ -342,6 +362,83 @@ class KeyedCPDSConnectionFactory
         this.maxConnLifetimeMillis = maxConnLifetimeMillis;
     }
 
+    /**
+     * Returns the maximum number of connections this factory opens at the
+     * same time.
+     *
+     * @return the limit, zero or less if unlimited
+     * @since 2.2
+     */
+    public int getConnectionCreationParallelism() {
+        return connectionCreationParallelism;
+    }
+
+    /**
+     * Sets the maximum number of connections this factory opens at the same
+     * time. Further pool threads that need a new connection wait until one
+     * of those completes. Set this when the database or the network cannot
+     * cope with many simultaneous logins, for example while a pool refills
+     * after a failover. Should be set before the pool is used.
+     *
+     * @param connectionCreationParallelism the limit, zero or less for no
+     *        limit
+     * @since 2.2
+     */
+    public void setConnectionCreationParallelism(final int connectionCreationParallelism) {
+        this.connectionCreationParallelism = connectionCreationParallelism;
+        creationPermits = connectionCreationParallelism > 0 ?
+                new Semaphore(connectionCreationParallelism) : null;
+    }
+
+    /**
+     * Waits until a new connection may be opened.
+     *
+     * @return the permit to release once the connection is open, null if
+     *         creation is not limited
+     */
+    private Semaphore acquireCreationPermit() throws SQLException {
+        final Semaphore permits = creationPermits;
+        if (permits != null) {
+            try {
+                permits.acquire();
+            } catch (final InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw new SQLException("Interrupted while waiting to open a connection", e);
+            }
+        }
+        return permits;
+    }
+
+    /**
+     * Returns the current pool generation. Connections created from now on
+     * belong to this generation.
+     *
+     * @return the current generation
+     * @since 2.2
+     */
+    public long getGeneration() {
+        return generation.get();
+    }
+
+    /**
+     * Retires all connections created so far. Idle connections are closed
+     * immediately and connections in use are destroyed, rather than returned
+     * to the pool, when they are closed.
+     *
+     * @return the new generation
+     * @throws SQLException if an error occurs closing idle connections
+     * @since 2.2
+     */
+    public long incrementGeneration() throws SQLException {
+        final long gen = generation.incrementAndGet();
+        try {
+            _pool.clear();
+        } catch (final Exception ex) {
+            throw new SQLException("Error clearing connection pool", ex);
+        }
+        return gen;
+    }
+
     /**
      * This implementation does not fully close the KeyedObjectPool, as
      * this would affect all users.  Instead, it clears the pool associated
@@ -368,4 +465,16 @@ class KeyedCPDSConnectionFactory
             }
         }
     }
+
+    private void validateGeneration(final PooledObject<PooledConnectionAndInfo> p)
+            throws Exception {
+        final long connGeneration = p.getObject().getGeneration();
+        final long current = generation.get();
+        if (connGeneration < current) {
+            throw new Exception(Utils.getMessage(
+                    "connectionFactory.generationRetired",
+                    Long.valueOf(connGeneration),
+                    Long.valueOf(current)));
+        }
+    }
 }
@@ -0,0 +1,143 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.commons.dbcp2.datasources;
+
+import java.sql.Connection;
+import java.sql.SQLException;
+
+import org.apache.commons.pool2.impl.GenericObjectPool;
+
+/**
+ * The settings of one user's pool in a {@link PerUserPoolDataSource}, with
+ * the user specific values resolved against the data source defaults.
+ * <p>
+ * Instances are immutable. They are resolved once per user, after the
+ * configuration of the data source has been frozen by the first
+ * <code>getConnection</code> call, so that borrowing a connection does not
+ * read the per user maps.
+ *
+ * @since 2.2
+ */
+final class PerUserPoolConfig {
+
+    private final boolean blockWhenExhausted;
+    private final String evictionPolicyClassName;
+    private final boolean lifo;
+    private final int maxIdle;
+    private final int maxTotal;
+    private final long maxWaitMillis;
+    private final long minEvictableIdleTimeMillis;
+    private final int minIdle;
+    private final int numTestsPerEvictionRun;
+    private final long softMinEvictableIdleTimeMillis;
+    private final boolean testOnCreate;
+    private final boolean testOnBorrow;
+    private final boolean testOnReturn;
+    private final boolean testWhileIdle;
+    private final long timeBetweenEvictionRunsMillis;
+
+    private final Boolean defaultAutoCommit;
+    private final Boolean defaultReadOnly;
+    private final int defaultTransactionIsolation;
+
+    PerUserPoolConfig(final PerUserPoolDataSource ds, final String username) {
+        blockWhenExhausted = ds.getPerUserBlockWhenExhausted(username);
+        evictionPolicyClassName = ds.getPerUserEvictionPolicyClassName(username);
+        lifo = ds.getPerUserLifo(username);
+        maxIdle = ds.getPerUserMaxIdle(username);
+        maxTotal = ds.getPerUserMaxTotal(username);
+        maxWaitMillis = ds.getPerUserMaxWaitMillis(username);
+        minEvictableIdleTimeMillis = ds.getPerUserMinEvictableIdleTimeMillis(username);
+        minIdle = ds.getPerUserMinIdle(username);
+        numTestsPerEvictionRun = ds.getPerUserNumTestsPerEvictionRun(username);
+        softMinEvictableIdleTimeMillis = ds.getPerUserSoftMinEvictableIdleTimeMillis(username);
+        testOnCreate = ds.getPerUserTestOnCreate(username);
+        testOnBorrow = ds.getPerUserTestOnBorrow(username);
+        testOnReturn = ds.getPerUserTestOnReturn(username);
+        testWhileIdle = ds.getPerUserTestWhileIdle(username);
+        timeBetweenEvictionRunsMillis = ds.getPerUserTimeBetweenEvictionRunsMillis(username);
+
+        // Connection defaults are only user specific for named users
+        Boolean autoCommit = ds.isDefaultAutoCommit();
+        Boolean readOnly = ds.isDefaultReadOnly();
+        int transactionIsolation = ds.getDefaultTransactionIsolation();
+        if (username != null) {
+            final Boolean userAutoCommit = ds.getPerUserDefaultAutoCommit(username);
+            if (userAutoCommit != null) {
+                autoCommit = userAutoCommit;
+            }
+            final Boolean userReadOnly = ds.getPerUserDefaultReadOnly(username);
+            if (userReadOnly != null) {
+                readOnly = userReadOnly;
+            }
+            final Integer userTransactionIsolation =
+                    ds.getPerUserDefaultTransactionIsolation(username);
+            if (userTransactionIsolation != null) {
+                transactionIsolation = userTransactionIsolation.intValue();
+            }
+        }
+        defaultAutoCommit = autoCommit;
+        defaultReadOnly = readOnly;
+        defaultTransactionIsolation = transactionIsolation;
+    }
+
+    /**
+     * Applies the pool settings to a user's pool.
+     *
+     * @param pool the pool to configure
+     */
+    void configure(final GenericObjectPool<?> pool) {
+        pool.setBlockWhenExhausted(blockWhenExhausted);
+        pool.setEvictionPolicyClassName(evictionPolicyClassName);
+        pool.setLifo(lifo);
+        pool.setMaxIdle(maxIdle);
+        pool.setMaxTotal(maxTotal);
+        pool.setMaxWaitMillis(maxWaitMillis);
+        pool.setMinEvictableIdleTimeMillis(minEvictableIdleTimeMillis);
+        pool.setMinIdle(minIdle);
+        pool.setNumTestsPerEvictionRun(numTestsPerEvictionRun);
+        pool.setSoftMinEvictableIdleTimeMillis(softMinEvictableIdleTimeMillis);
+        pool.setTestOnCreate(testOnCreate);
+        pool.setTestOnBorrow(testOnBorrow);
+        pool.setTestOnReturn(testOnReturn);
+        pool.setTestWhileIdle(testWhileIdle);
+        pool.setTimeBetweenEvictionRunsMillis(timeBetweenEvictionRunsMillis);
+    }
+
+    /**
+     * Applies the connection defaults to a connection handed out to the
+     * user.
+     *
+     * @param con the connection
+     * @throws SQLException if a default cannot be set
+     */
+    void setupDefaults(final Connection con) throws SQLException {
+        if (defaultAutoCommit != null &&
+                con.getAutoCommit() != defaultAutoCommit.booleanValue()) {
+            con.setAutoCommit(defaultAutoCommit.booleanValue());
+        }
+
+        if (defaultTransactionIsolation != InstanceKeyDataSource.UNKNOWN_TRANSACTIONISOLATION) {
+            con.setTransactionIsolation(defaultTransactionIsolation);
+        }
+
+        if (defaultReadOnly != null &&
+                con.isReadOnly() != defaultReadOnly.booleanValue()) {
+            con.setReadOnly(defaultReadOnly.booleanValue());
+        }
+    }
+}
@@ -23,6 +23,8 @@ import java.sql.SQLException;
 import java.util.HashMap;
 import java.util.Map;
 import java.util.NoSuchElementException;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
 
 import javax.naming.NamingException;
 import javax.naming.Reference;
@@ -89,8 +91,21 @@ public class PerUserPoolDataSource extends InstanceKeyDataSource {
     /**
      * Map to keep track of Pools for a given user
      */
-    private transient Map<PoolKey, PooledConnectionManager> managers =
-            new HashMap<>();
+    private transient ConcurrentMap<PoolKey, PooledConnectionManager> managers =
+            new ConcurrentHashMap<>();
+
+    /**
+     * Locks serializing the creation of each user's pool, so that a pool is
+     * created once without blocking lookups or the creation of other pools
+     */
+    private transient ConcurrentMap<PoolKey, Object> registrationLocks =
+            new ConcurrentHashMap<>();
+
+    /**
+     * The resolved settings of each user's pool
+     */
+    private transient ConcurrentMap<PoolKey, PerUserPoolConfig> configs =
+            new ConcurrentHashMap<>();
 
     /**
      * Default no-arg constructor for Serialization
@@ -875,6 +890,38 @@ public class PerUserPoolDataSource extends InstanceKeyDataSource {
         return pool == null ? 0 : pool.getNumIdle();
     }
 
+    /**
+     * Get the connection generation of the default pool.
+     */
+    public long getGeneration() {
+        return getGeneration(null);
+    }
+
+    /**
+     * Get the connection generation of the pool for a given user.
+     */
+    public long getGeneration(final String username) {
+        final CPDSConnectionFactory mgr =
+            (CPDSConnectionFactory) managers.get(getPoolKey(username));
+        return mgr == null ? 0 : mgr.getGeneration();
+    }
+
+    /**
+     * Retires every connection created so far in the pools of all users, for
+     * example after a database failover. Idle connections are closed
+     * immediately and connections in use are closed, rather than returned to
+     * their pool, when the application closes them. The pools keep serving
+     * requests with newly created connections while this happens.
+     *
+     * @throws SQLException if an error occurs closing idle connections
+     * @since 2.2
+     */
+    public void incrementGeneration() throws SQLException {
+        for (final PooledConnectionManager manager : managers.values()) {
+            ((CPDSConnectionFactory) manager).incrementGeneration();
+        }
+    }
+
 
     // ----------------------------------------------------------------------
     // Inherited abstract methods
@@ -883,26 +930,23 @@ public class PerUserPoolDataSource extends InstanceKeyDataSource {
     protected PooledConnectionAndInfo
         getPooledConnectionAndInfo(final String username, final String password)
         throws SQLException {
+        return getPooledConnectionAndInfo(username, password, -1);
+    }
+
+    @Override
+    protected PooledConnectionAndInfo getPooledConnectionAndInfo(final String username,
+            final String password, final long maxWaitMillis) throws SQLException {
 
         final PoolKey key = getPoolKey(username);
-        ObjectPool<PooledConnectionAndInfo> pool;
-        PooledConnectionManager manager;
-        synchronized(this) {
-            manager = managers.get(key);
-            if (manager == null) {
-                try {
-                    registerPool(username, password);
-                    manager = managers.get(key);
-                } catch (final NamingException e) {
-                    throw new SQLException("RegisterPool failed", e);
-                }
-            }
-            pool = ((CPDSConnectionFactory) manager).getPool();
+        PooledConnectionManager manager = managers.get(key);
+        if (manager == null) {
+            manager = registerPool(key, username, password);
         }
+        ObjectPool<PooledConnectionAndInfo> pool = ((CPDSConnectionFactory) manager).getPool();
 
         PooledConnectionAndInfo info = null;
         try {
-            info = pool.borrowObject();
+            info = borrowObject(pool, maxWaitMillis);
         }
         catch (final NoSuchElementException ex) {
             throw new SQLException(
@@ -918,17 +962,10 @@ public class PerUserPoolDataSource extends InstanceKeyDataSource {
             }
             // New password works, so kill the old pool, create a new one, and borrow
             manager.closePool(username);
-            synchronized (this) {
-                managers.remove(key);
-            }
+            managers.remove(key, manager);
+            pool = ((CPDSConnectionFactory) registerPool(key, username, password)).getPool();
             try {
-                registerPool(username, password);
-                pool = getPool(key);
-            } catch (final NamingException ne) {
-                throw new SQLException("RegisterPool failed", ne);
-            }
-            try {
-                info = pool.borrowObject();
+                info = borrowObject(pool, maxWaitMillis);
             } catch (final Exception ex) {
                 throw new SQLException(
                         "Could not retrieve connection info from pool", ex);
@@ -937,46 +974,19 @@ public class PerUserPoolDataSource extends InstanceKeyDataSource {
         return info;
     }
 
+    private static PooledConnectionAndInfo borrowObject(
+            final ObjectPool<PooledConnectionAndInfo> pool, final long maxWaitMillis)
+            throws Exception {
+        if (maxWaitMillis >= 0 && pool instanceof GenericObjectPool<?>) {
+            return ((GenericObjectPool<PooledConnectionAndInfo>) pool).borrowObject(maxWaitMillis);
+        }
+        return pool.borrowObject();
+    }
+
     @Override
     protected void setupDefaults(final Connection con, final String username)
         throws SQLException {
-        Boolean defaultAutoCommit = isDefaultAutoCommit();
-        if (username != null) {
-            final Boolean userMax = getPerUserDefaultAutoCommit(username);
-            if (userMax != null) {
-                defaultAutoCommit = userMax;
-            }
-        }
-
-        Boolean defaultReadOnly = isDefaultReadOnly();
-        if (username != null) {
-            final Boolean userMax = getPerUserDefaultReadOnly(username);
-            if (userMax != null) {
-                defaultReadOnly = userMax;
-            }
-        }
-
-        int defaultTransactionIsolation = getDefaultTransactionIsolation();
-        if (username != null) {
-            final Integer userMax = getPerUserDefaultTransactionIsolation(username);
-            if (userMax != null) {
-                defaultTransactionIsolation = userMax.intValue();
-            }
-        }
-
-        if (defaultAutoCommit != null &&
-                con.getAutoCommit() != defaultAutoCommit.booleanValue()) {
-            con.setAutoCommit(defaultAutoCommit.booleanValue());
-        }
-
-        if (defaultTransactionIsolation != UNKNOWN_TRANSACTIONISOLATION) {
-            con.setTransactionIsolation(defaultTransactionIsolation);
-        }
-
-        if (defaultReadOnly != null &&
-                con.isReadOnly() != defaultReadOnly.booleanValue()) {
-            con.setReadOnly(defaultReadOnly.booleanValue());
-        }
+        getPerUserPoolConfig(getPoolKey(username), username).setupDefaults(con);
     }
 
     @Override
@@ -1005,8 +1015,53 @@ public class PerUserPoolDataSource extends InstanceKeyDataSource {
         return new PoolKey(getDataSourceName(), username);
     }
 
-    private synchronized void registerPool(final String username, final String password)
-            throws NamingException, SQLException {
+    /**
+     * Returns the settings of a user's pool, resolving them on first use.
+     * The per user properties cannot change once a connection has been
+     * requested, so the result is cached.
+     */
+    PerUserPoolConfig getPerUserPoolConfig(final PoolKey key, final String username) {
+        PerUserPoolConfig config = configs.get(key);
+        if (config == null) {
+            config = new PerUserPoolConfig(this, username);
+            final PerUserPoolConfig existing = configs.putIfAbsent(key, config);
+            if (existing != null) {
+                config = existing;
+            }
+        }
+        return config;
+    }
+
+    /**
+     * Returns the pool manager of a user, creating the pool if it does not
+     * exist. Concurrent calls for the same user create a single pool.
+     */
+    private PooledConnectionManager registerPool(final PoolKey key, final String username,
+            final String password) throws SQLException {
+        Object lock = registrationLocks.get(key);
+        if (lock == null) {
+            final Object newLock = new Object();
+            lock = registrationLocks.putIfAbsent(key, newLock);
+            if (lock == null) {
+                lock = newLock;
+            }
+        }
+        synchronized (lock) {
+            PooledConnectionManager manager = managers.get(key);
+            if (manager == null) {
+                try {
+                    manager = createPool(key, username, password);
+                } catch (final NamingException e) {
+                    throw new SQLException("RegisterPool failed", e);
+                }
+                managers.put(key, manager);
+            }
+            return manager;
+        }
+    }
+
+    private CPDSConnectionFactory createPool(final PoolKey key, final String username,
+            final String password) throws NamingException, SQLException {
 
         final ConnectionPoolDataSource cpds = testCPDS(username, password);
 
@@ -1017,38 +1072,16 @@ public class PerUserPoolDataSource extends InstanceKeyDataSource {
                 getValidationQuery(), getValidationQueryTimeout(),
                 isRollbackAfterValidation(), username, password);
         factory.setMaxConnLifetimeMillis(getMaxConnLifetimeMillis());
+        factory.setConnectionCreationParallelism(getConnectionCreationParallelism());
 
         // Create an object pool to contain our PooledConnections
         final GenericObjectPool<PooledConnectionAndInfo> pool =
                 new GenericObjectPool<>(factory);
         factory.setPool(pool);
-        pool.setBlockWhenExhausted(getPerUserBlockWhenExhausted(username));
-        pool.setEvictionPolicyClassName(
-                getPerUserEvictionPolicyClassName(username));
-        pool.setLifo(getPerUserLifo(username));
-        pool.setMaxIdle(getPerUserMaxIdle(username));
-        pool.setMaxTotal(getPerUserMaxTotal(username));
-        pool.setMaxWaitMillis(getPerUserMaxWaitMillis(username));
-        pool.setMinEvictableIdleTimeMillis(
-                getPerUserMinEvictableIdleTimeMillis(username));
-        pool.setMinIdle(getPerUserMinIdle(username));
-        pool.setNumTestsPerEvictionRun(
-                getPerUserNumTestsPerEvictionRun(username));
-        pool.setSoftMinEvictableIdleTimeMillis(
-                getPerUserSoftMinEvictableIdleTimeMillis(username));
-        pool.setTestOnCreate(getPerUserTestOnCreate(username));
-        pool.setTestOnBorrow(getPerUserTestOnBorrow(username));
-        pool.setTestOnReturn(getPerUserTestOnReturn(username));
-        pool.setTestWhileIdle(getPerUserTestWhileIdle(username));
-        pool.setTimeBetweenEvictionRunsMillis(
-                getPerUserTimeBetweenEvictionRunsMillis(username));
+        getPerUserPoolConfig(key, username).configure(pool);
 
         pool.setSwallowedExceptionListener(new SwallowedExceptionLogger(log));
-
-        final Object old = managers.put(getPoolKey(username), factory);
-        if (old != null) {
-            throw new IllegalStateException("Pool already contains an entry for this user/password: " + username);
-        }
+        return factory;
     }
 
     /**
@@ -1067,6 +1100,8 @@ public class PerUserPoolDataSource extends InstanceKeyDataSource {
                 new PerUserPoolDataSourceFactory()
                     .getObjectInstance(getReference(), null, null, null);
             this.managers = oldDS.managers;
+            this.registrationLocks = oldDS.registrationLocks;
+            this.configs = oldDS.configs;
         }
         catch (final NamingException e)
         {
@@ -31,11 +31,14 @@ final class PooledConnectionAndInfo {
     private final String password;
     private final String username;
     private final UserPassKey upkey;
+    private final long generation;
 
-    PooledConnectionAndInfo(final PooledConnection pc, final String username, final String password) {
+    PooledConnectionAndInfo(final PooledConnection pc, final String username, final String password,
+            final long generation) {
         this.pooledConnection = pc;
         this.username = username;
         this.password = password;
+        this.generation = generation;
         upkey = new UserPassKey(username, password);
     }
 
@@ -62,4 +65,12 @@ final class PooledConnectionAndInfo {
     String getUsername() {
         return username;
     }
+
+    /**
+     * Get the pool generation the connection was created in.
+     * @return the pool generation
+     */
+    long getGeneration() {
+        return generation;
+    }
 }
@@ -21,6 +21,8 @@ import java.io.IOException;
 import java.io.ObjectInputStream;
 import java.sql.Connection;
 import java.sql.SQLException;
+import java.util.HashMap;
+import java.util.Map;
 
 import javax.naming.NamingException;
 import javax.naming.Reference;
@@ -45,6 +47,11 @@ import org.apache.commons.pool2.impl.GenericKeyedObjectPoolConfig;
  * created using the old password are destroyed and new connections are created
  * using the new password.</p>
  *
+ * <p>Connections can be shared out between users by quota, with
+ * {@link #setPerUserMinTotal(String, Integer)} guaranteeing a user a number of
+ * connections and {@link #setPerUserMaxTotal(String, Integer)} limiting the
+ * connections it may use when others are idle.</p>
+ *
  * @author John D. McNally
  * @version $Id$
  * @since 2.0
@@ -55,10 +62,17 @@ public class SharedPoolDataSource extends InstanceKeyDataSource {
 
     // Pool properties
     private int maxTotal = GenericKeyedObjectPoolConfig.DEFAULT_MAX_TOTAL;
+    private Map<String,Integer> perUserMinTotal = null;
+    private Map<String,Integer> perUserMaxTotal = null;
 
 
-    private transient KeyedObjectPool<UserPassKey,PooledConnectionAndInfo> pool = null;
-    private transient KeyedCPDSConnectionFactory factory = null;
+    /*
+     * Created once, by the first getConnection call. Both fields are
+     * volatile and factory is assigned first, so a thread that sees the pool
+     * also sees its factory and borrows without taking a lock.
+     */
+    private transient volatile KeyedObjectPool<UserPassKey,PooledConnectionAndInfo> pool = null;
+    private transient volatile KeyedCPDSConnectionFactory factory = null;
 
     /**
      * Default no-arg constructor for Serialization
@@ -71,8 +85,9 @@ public class SharedPoolDataSource extends InstanceKeyDataSource {
      */
     @Override
     public void close() throws Exception {
-        if (pool != null) {
-            pool.close();
+        final KeyedObjectPool<UserPassKey,PooledConnectionAndInfo> p = pool;
+        if (p != null) {
+            p.close();
         }
         InstanceKeyDataSourceFactory.removeInstance(getInstanceKey());
     }
@@ -96,6 +111,114 @@ public class SharedPoolDataSource extends InstanceKeyDataSource {
         this.maxTotal = maxTotal;
     }
 
+    /**
+     * Gets the number of connections guaranteed to the specified user.
+     *
+     * @param username the user
+     * @return the number of connections, zero if none are guaranteed
+     * @since 2.2
+     */
+    public int getPerUserMinTotal(final String username) {
+        Integer value = null;
+        if (perUserMinTotal != null) {
+            value = perUserMinTotal.get(username);
+        }
+        if (value == null) {
+            return 0;
+        }
+        return value.intValue();
+    }
+
+    /**
+     * Guarantees the specified user a number of connections. While the user
+     * has fewer connections in use, the other users only get a connection if
+     * the connections guaranteed to, but not used by, every user still fit
+     * under <code>maxTotal</code>. The guarantees of all users should add up
+     * to at most <code>maxTotal</code>.
+     *
+     * @param username the user
+     * @param value the number of connections, or null to remove the guarantee
+     * @since 2.2
+     */
+    public void setPerUserMinTotal(final String username, final Integer value) {
+        assertInitializationAllowed();
+        if (perUserMinTotal == null) {
+            perUserMinTotal = new HashMap<>();
+        }
+        if (value == null) {
+            perUserMinTotal.remove(username);
+        } else {
+            perUserMinTotal.put(username, value);
+        }
+    }
+
+    void setPerUserMinTotal(final Map<String,Integer> userMinTotal) {
+        assertInitializationAllowed();
+        if (perUserMinTotal == null) {
+            perUserMinTotal = new HashMap<>();
+        } else {
+            perUserMinTotal.clear();
+        }
+        perUserMinTotal.putAll(userMinTotal);
+    }
+
+    /**
+     * Gets the maximum number of connections the specified user may have in
+     * use at once, or {@link #getDefaultMaxTotal()} if no user specific value
+     * is defined.
+     *
+     * @param username the user
+     * @return the maximum number of connections, negative for no limit
+     * @since 2.2
+     */
+    public int getPerUserMaxTotal(final String username) {
+        Integer value = null;
+        if (perUserMaxTotal != null) {
+            value = perUserMaxTotal.get(username);
+        }
+        if (value == null) {
+            return getDefaultMaxTotal();
+        }
+        return value.intValue();
+    }
+
+    /**
+     * Sets the maximum number of connections the specified user may have in
+     * use at once, which may be more than {@link #getDefaultMaxTotal()} so
+     * that a user can use the connections others are not using.
+     *
+     * @param username the user
+     * @param value the maximum number of connections, negative for no limit,
+     *        or null to use {@link #getDefaultMaxTotal()}
+     * @since 2.2
+     */
+    public void setPerUserMaxTotal(final String username, final Integer value) {
+        assertInitializationAllowed();
+        if (perUserMaxTotal == null) {
+            perUserMaxTotal = new HashMap<>();
+        }
+        if (value == null) {
+            perUserMaxTotal.remove(username);
+        } else {
+            perUserMaxTotal.put(username, value);
+        }
+    }
+
+    void setPerUserMaxTotal(final Map<String,Integer> userMaxTotal) {
+        assertInitializationAllowed();
+        if (perUserMaxTotal == null) {
+            perUserMaxTotal = new HashMap<>();
+        } else {
+            perUserMaxTotal.clear();
+        }
+        perUserMaxTotal.putAll(userMaxTotal);
+    }
+
+    private boolean hasQuotas() {
+        return perUserMinTotal != null && !perUserMinTotal.isEmpty() ||
+                perUserMaxTotal != null && !perUserMaxTotal.isEmpty();
+    }
+
 
     // ----------------------------------------------------------------------
     // Instrumentation Methods
@@ -104,14 +227,53 @@ public class SharedPoolDataSource extends InstanceKeyDataSource {
      * Get the number of active connections in the pool.
      */
     public int getNumActive() {
-        return pool == null ? 0 : pool.getNumActive();
+        final KeyedObjectPool<UserPassKey,PooledConnectionAndInfo> p = pool;
+        return p == null ? 0 : p.getNumActive();
+    }
+
+    /**
+     * Get the number of active connections of the specified user.
+     *
+     * @param username the user
+     * @return the number of connections the user has in use
+     * @since 2.2
+     */
+    public int getNumActive(final String username) {
+        final KeyedObjectPool<UserPassKey,PooledConnectionAndInfo> p = pool;
+        return p == null ? 0 : p.getNumActive(new UserPassKey(username, null));
     }
 
     /**
      * Get the number of idle connections in the pool.
      */
     public int getNumIdle() {
-        return pool == null ? 0 : pool.getNumIdle();
+        final KeyedObjectPool<UserPassKey,PooledConnectionAndInfo> p = pool;
+        return p == null ? 0 : p.getNumIdle();
+    }
+
+    /**
+     * Get the connection generation of the pool.
+     */
+    public long getGeneration() {
+        final KeyedCPDSConnectionFactory f = factory;
+        return f == null ? 0 : f.getGeneration();
+    }
+
+    /**
+     * Retires every connection created so far, for example after a database
+     * failover. Idle connections are closed immediately and connections in
+     * use are closed, rather than returned to the pool, when the application
+     * closes them. The pool keeps serving requests with newly created
+     * connections while this happens.
+     *
+     * @return the new generation, or zero if the pool has not been
+     *         initialized
+     * @throws SQLException if an error occurs closing idle connections
+     * @since 2.2
+     */
+    public long incrementGeneration() throws SQLException {
+        final KeyedCPDSConnectionFactory f = factory;
+        return f == null ? 0 : f.incrementGeneration();
     }
 
     // ----------------------------------------------------------------------
@@ -121,13 +283,24 @@ public class SharedPoolDataSource extends InstanceKeyDataSource {
     protected PooledConnectionAndInfo
         getPooledConnectionAndInfo(final String username, final String password)
         throws SQLException {
+        return getPooledConnectionAndInfo(username, password, -1);
+    }
 
-        synchronized(this) {
-            if (pool == null) {
-                try {
-                    registerPool(username, password);
-                } catch (final NamingException e) {
-                    throw new SQLException("RegisterPool failed", e);
+    @Override
+    protected PooledConnectionAndInfo getPooledConnectionAndInfo(final String username,
+            final String password, final long maxWaitMillis) throws SQLException {
+
+        KeyedObjectPool<UserPassKey,PooledConnectionAndInfo> p = pool;
+        if (p == null) {
+            // Only the first requests contend, while the pool is created
+            synchronized(this) {
+                p = pool;
+                if (p == null) {
+                    try {
+                        p = registerPool(username, password);
+                    } catch (final NamingException e) {
+                        throw new SQLException("RegisterPool failed", e);
+                    }
                 }
             }
         }
@@ -137,7 +310,12 @@ public class SharedPoolDataSource extends InstanceKeyDataSource {
         final UserPassKey key = new UserPassKey(username, password);
 
         try {
-            info = pool.borrowObject(key);
+            if (maxWaitMillis >= 0 && p instanceof GenericKeyedObjectPool<?, ?>) {
+                info = ((GenericKeyedObjectPool<UserPassKey, PooledConnectionAndInfo>) p)
+                        .borrowObject(key, maxWaitMillis);
+            } else {
+                info = p.borrowObject(key);
+            }
         }
         catch (final Exception e) {
             throw new SQLException(
@@ -162,15 +340,17 @@ public class SharedPoolDataSource extends InstanceKeyDataSource {
         return ref;
     }
 
-    private void registerPool(final String username, final String password)
+    private KeyedObjectPool<UserPassKey,PooledConnectionAndInfo> registerPool(
+            final String username, final String password)
             throws NamingException, SQLException {
 
         final ConnectionPoolDataSource cpds = testCPDS(username, password);
 
         // Create an object pool to contain our PooledConnections
-        factory = new KeyedCPDSConnectionFactory(cpds, getValidationQuery(),
-                getValidationQueryTimeout(), isRollbackAfterValidation());
-        factory.setMaxConnLifetimeMillis(getMaxConnLifetimeMillis());
+        final KeyedCPDSConnectionFactory tmpFactory = new KeyedCPDSConnectionFactory(cpds,
+                getValidationQuery(), getValidationQueryTimeout(), isRollbackAfterValidation());
+        tmpFactory.setMaxConnLifetimeMillis(getMaxConnLifetimeMillis());
+        tmpFactory.setConnectionCreationParallelism(getConnectionCreationParallelism());
 
         final GenericKeyedObjectPoolConfig config =
                 new GenericKeyedObjectPoolConfig();
@@ -180,6 +360,10 @@ public class SharedPoolDataSource extends InstanceKeyDataSource {
         config.setMaxIdlePerKey(getDefaultMaxIdle());
         config.setMaxTotal(getMaxTotal());
         config.setMaxTotalPerKey(getDefaultMaxTotal());
+        if (hasQuotas()) {
+            // The quotas limit the connections of each user
+            config.setMaxTotalPerKey(-1);
+        }
         config.setMaxWaitMillis(getDefaultMaxWaitMillis());
         config.setMinEvictableIdleTimeMillis(
                 getDefaultMinEvictableIdleTimeMillis());
@@ -194,10 +378,20 @@ public class SharedPoolDataSource extends InstanceKeyDataSource {
         config.setTimeBetweenEvictionRunsMillis(
                 getDefaultTimeBetweenEvictionRunsMillis());
 
-        final KeyedObjectPool<UserPassKey,PooledConnectionAndInfo> tmpPool =
-                new GenericKeyedObjectPool<>(factory, config);
-        factory.setPool(tmpPool);
+        final KeyedObjectPool<UserPassKey,PooledConnectionAndInfo> tmpPool;
+        if (hasQuotas()) {
+            tmpPool = new FairShareKeyedObjectPool(tmpFactory, config,
+                    perUserMinTotal == null ? new HashMap<String,Integer>() : perUserMinTotal,
+                    perUserMaxTotal == null ? new HashMap<String,Integer>() : perUserMaxTotal,
+                    getDefaultMaxTotal());
+        } else {
+            tmpPool = new GenericKeyedObjectPool<>(tmpFactory, config);
+        }
+        tmpFactory.setPool(tmpPool);
+        // Publish the fully configured pool
+        factory = tmpFactory;
         pool = tmpPool;
+        return tmpPool;
     }
 
     @Override
@@ -235,6 +429,7 @@ public class SharedPoolDataSource extends InstanceKeyDataSource {
             final SharedPoolDataSource oldDS = (SharedPoolDataSource)
                 new SharedPoolDataSourceFactory()
                     .getObjectInstance(getReference(), null, null, null);
+            this.factory = oldDS.factory;
             this.pool = oldDS.pool;
         }
         catch (final NamingException e)
@@ -17,6 +17,9 @@
 
 package org.apache.commons.dbcp2.datasources;
 
+import java.io.IOException;
+import java.util.Map;
+
 import javax.naming.RefAddr;
 import javax.naming.Reference;
 
@@ -36,14 +39,30 @@ public class SharedPoolDataSourceFactory
         return SHARED_POOL_CLASSNAME.equals(className);
     }
 
+    @SuppressWarnings("unchecked") // Avoid warnings on deserialization
     @Override
-    protected InstanceKeyDataSource getNewInstance(final Reference ref) {
+    protected InstanceKeyDataSource getNewInstance(final Reference ref)
+        throws IOException, ClassNotFoundException {
         final SharedPoolDataSource spds = new SharedPoolDataSource();
-        final RefAddr ra = ref.get("maxTotal");
+        RefAddr ra = ref.get("maxTotal");
         if (ra != null && ra.getContent() != null) {
             spds.setMaxTotal(
                 Integer.parseInt(ra.getContent().toString()));
         }
+
+        ra = ref.get("perUserMinTotal");
+        if (ra != null  && ra.getContent() != null) {
+            final byte[] serialized = (byte[]) ra.getContent();
+            spds.setPerUserMinTotal(
+                    (Map<String,Integer>) deserialize(serialized));
+        }
+
+        ra = ref.get("perUserMaxTotal");
+        if (ra != null  && ra.getContent() != null) {
+            final byte[] serialized = (byte[]) ra.getContent();
+            spds.setPerUserMaxTotal(
+                    (Map<String,Integer>) deserialize(serialized));
+        }
         return spds;
     }
 }
@@ -19,9 +19,12 @@ package org.apache.commons.dbcp2.managed;
 
 import org.apache.commons.dbcp2.BasicDataSource;
 import org.apache.commons.dbcp2.ConnectionFactory;
+import org.apache.commons.dbcp2.DatabaseMetaDataCache;
+import org.apache.commons.dbcp2.FetchSizeAdvisor;
 import org.apache.commons.dbcp2.PoolableConnection;
 import org.apache.commons.dbcp2.PoolableConnectionFactory;
 import org.apache.commons.dbcp2.PoolingDataSource;
+import org.apache.commons.dbcp2.StatementUsageTracker;
 
 import javax.sql.DataSource;
 import javax.sql.XADataSource;
@@ -55,20 +58,20 @@ import java.sql.SQLException;
  */
 public class BasicManagedDataSource extends BasicDataSource {
     /** Transaction Registry */
-    private TransactionRegistry transactionRegistry;
+    private volatile TransactionRegistry transactionRegistry;
     /** Transaction Manager */
     private transient TransactionManager transactionManager;
     /** XA datasource class name */
-    private String xaDataSource;
+    private volatile String xaDataSource;
     /** XA datasource instance */
-    private XADataSource xaDataSourceInstance;
+    private volatile XADataSource xaDataSourceInstance;
 
     /**
      * Gets the XADataSource instance used by the XAConnectionFactory.
      *
      * @return the XADataSource
      */
-    public synchronized XADataSource getXaDataSourceInstance() {
+    public XADataSource getXaDataSourceInstance() {
         return xaDataSourceInstance;
     }
 
@@ -82,7 +85,7 @@ public class BasicManagedDataSource extends BasicDataSource {
      *
      * @param xaDataSourceInstance XADataSource instance
      */
-    public synchronized void setXaDataSourceInstance(final XADataSource xaDataSourceInstance) {
+    public void setXaDataSourceInstance(final XADataSource xaDataSourceInstance) {
         this.xaDataSourceInstance = xaDataSourceInstance;
         xaDataSource = xaDataSourceInstance == null ? null : xaDataSourceInstance.getClass().getName();
     }
@@ -99,7 +102,7 @@ public class BasicManagedDataSource extends BasicDataSource {
      * Gets the transaction registry.
      * @return the transaction registry associating XAResources with managed connections
      */
-    protected synchronized TransactionRegistry getTransactionRegistry() {
+    protected TransactionRegistry getTransactionRegistry() {
         return transactionRegistry;
     }
 
@@ -115,7 +118,7 @@ public class BasicManagedDataSource extends BasicDataSource {
      * Gets the optional XADataSource class name.
      * @return the optional XADataSource class name
      */
-    public synchronized String getXADataSource() {
+    public String getXADataSource() {
         return xaDataSource;
     }
 
@@ -123,7 +126,7 @@ public class BasicManagedDataSource extends BasicDataSource {
      * Sets the optional XADataSource class name.
      * @param xaDataSource the optional XADataSource class name
      */
-    public synchronized void setXADataSource(final String xaDataSource) {
+    public void setXADataSource(final String xaDataSource) {
         this.xaDataSource = xaDataSource;
     }
 
@@ -168,7 +171,7 @@ public class BasicManagedDataSource extends BasicDataSource {
     @Override
     protected DataSource createDataSourceInstance() throws SQLException {
         final PoolingDataSource<PoolableConnection> pds =
-                new ManagedDataSource<>(getConnectionPool(), transactionRegistry);
+                new ManagedDataSource<>(getObjectPool(), transactionRegistry);
         pds.setAccessToUnderlyingConnectionAllowed(isAccessToUnderlyingConnectionAllowed());
         return pds;
     }
@@ -198,9 +201,26 @@ public class BasicManagedDataSource extends BasicDataSource {
             connectionFactory.setMaxOpenPrepatedStatements(
                     getMaxOpenPreparedStatements());
             connectionFactory.setMaxConnLifetimeMillis(getMaxConnLifetimeMillis());
+            connectionFactory.setMaxConnLifetimeJitterMillis(getMaxConnLifetimeJitterMillis());
+            connectionFactory.setMaxConnLifetimeRenewalMillis(getMaxConnLifetimeRenewalMillis());
             connectionFactory.setRollbackOnReturn(getRollbackOnReturn());
             connectionFactory.setEnableAutoCommitOnReturn(getEnableAutoCommitOnReturn());
             connectionFactory.setDefaultQueryTimeout(getDefaultQueryTimeout());
+            connectionFactory.setDefaultFetchSize(getDefaultFetchSize());
+            if (getAdaptiveFetchSize()) {
+                connectionFactory.setFetchSizeAdvisor(new FetchSizeAdvisor(
+                        getAdaptiveFetchSizeMax(), FetchSizeAdvisor.DEFAULT_MAX_STATEMENTS));
+            }
+            if (getCacheDatabaseMetaData()) {
+                connectionFactory.setDatabaseMetaDataCache(
+                        new DatabaseMetaDataCache(getDatabaseMetaDataCacheTtlMillis()));
+            }
+            connectionFactory.setKeepAliveMillis(getKeepAliveMillis());
+            connectionFactory.setSqlCanonicalizer(createSqlCanonicalizer());
+            if (isPoolPreparedStatements() && getPrewarmStatementCount() > 0) {
+                connectionFactory.setStatementUsageTracker(new StatementUsageTracker());
+                connectionFactory.setPrewarmStatementCount(getPrewarmStatementCount());
+            }
             connectionFactory.setFastFailValidation(getFastFailValidation());
             connectionFactory.setDisconnectionSqlCodes(getDisconnectionSqlCodes());
             validateConnectionFactory(connectionFactory);
@@ -18,10 +18,14 @@
 package org.apache.commons.dbcp2.managed;
 
 import org.apache.commons.pool2.ObjectPool;
+import org.apache.commons.dbcp2.ConnectionCallback;
+import org.apache.commons.dbcp2.ConnectionPriority;
 import org.apache.commons.dbcp2.PoolingDataSource;
 
 import java.sql.Connection;
 import java.sql.SQLException;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
 
 /**
  * The ManagedDataSource is a PoolingDataSource that creates ManagedConnections.
@@ -82,4 +86,48 @@ public class ManagedDataSource<C extends Connection> extends PoolingDataSource<C
         final Connection connection = new ManagedConnection<>(getPool(), transactionRegistry, isAccessToUnderlyingConnectionAllowed());
         return connection;
     }
+
+    /**
+     * Throws {@link UnsupportedOperationException}, since a managed
+     * connection borrows from the pool again each time its transaction
+     * changes, so a single wait cannot bound its borrows.
+     */
+    @Override
+    public Connection getConnection(final long timeout, final TimeUnit unit) throws SQLException {
+        throw new UnsupportedOperationException("Not supported by ManagedDataSource");
+    }
+
+    /**
+     * Throws {@link UnsupportedOperationException}, since a managed
+     * connection borrows from the pool again each time its transaction
+     * changes, without a priority.
+     */
+    @Override
+    public Connection getConnection(final ConnectionPriority priority) throws SQLException {
+        throw new UnsupportedOperationException("Not supported by ManagedDataSource");
+    }
+
+    /**
+     * Throws {@link UnsupportedOperationException}, since a connection
+     * handed over on another thread could not be enlisted in the
+     * transaction of the requesting thread.
+     * @throws UnsupportedOperationException
+     */
+    @Override
+    public Future<Connection> getConnectionAsync(final long timeoutMillis,
+            final ConnectionCallback callback) {
+        throw new UnsupportedOperationException("Not supported by ManagedDataSource");
+    }
+
+    /**
+     * Throws {@link UnsupportedOperationException}, since a connection
+     * handed over on another thread could not be enlisted in the
+     * transaction of the requesting thread.
+     * @throws UnsupportedOperationException
+     */
+    @Override
+    public Future<Connection> getConnectionAsync(final long timeoutMillis,
+            final ConnectionPriority priority, final ConnectionCallback callback) {
+        throw new UnsupportedOperationException("Not supported by ManagedDataSource");
+    }
 }
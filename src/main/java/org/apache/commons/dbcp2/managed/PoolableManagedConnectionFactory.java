@@ -63,6 +63,7 @@ public class PoolableManagedConnectionFactory extends PoolableConnectionFactory
      */
     @Override
     synchronized public PooledObject<PoolableConnection> makeObject() throws Exception {
+        final long gen = getGeneration();
         Connection conn = getConnectionFactory().createConnection();
         if (conn == null) {
             throw new IllegalStateException("Connection factory returned null from createConnection");
@@ -91,8 +92,11 @@ public class PoolableManagedConnectionFactory extends PoolableConnectionFactory
                 new GenericKeyedObjectPool<>((PoolingConnection)conn, config);
             ((PoolingConnection)conn).setStatementPool(stmtPool);
             ((PoolingConnection) conn).setCacheState(getCacheState());
+            initializeStatementPool((PoolingConnection) conn);
         }
-        return new DefaultPooledObject<PoolableConnection>(
-                new PoolableManagedConnection(transactionRegistry, conn, getPool()));
+        final PoolableManagedConnection pmc =
+                new PoolableManagedConnection(transactionRegistry, conn, getPool());
+        initializePoolableConnection(pmc, gen);
+        return new DefaultPooledObject<PoolableConnection>(pmc);
     }
 }
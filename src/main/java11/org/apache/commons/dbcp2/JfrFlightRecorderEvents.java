@@ -0,0 +1,282 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.commons.dbcp2;
+
+import jdk.jfr.Category;
+import jdk.jfr.Description;
+import jdk.jfr.Event;
+import jdk.jfr.FlightRecorder;
+import jdk.jfr.FlightRecorderListener;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+import jdk.jfr.Recording;
+import jdk.jfr.RecordingState;
+import jdk.jfr.Timespan;
+
+import org.apache.commons.pool2.PooledObject;
+
+/**
+ * Reports pool and statement lifecycle events to Java Flight Recorder.
+ * <p>
+ * Loaded by {@link FlightRecorderEvents} when the JVM provides
+ * <code>jdk.jfr</code>. This class is compiled for Java 11 by the
+ * <code>jfr</code> build profile.
+ * <p>
+ * Events that take time use the duration of the event itself: they are
+ * begun with {@link Event#begin()} when the operation starts, and ended and
+ * committed, if {@link Event#shouldCommit()}, when it finishes.
+ *
+ * @since 2.2
+ */
+class JfrFlightRecorderEvents extends FlightRecorderEvents {
+
+    private static final String CATEGORY = "Apache Commons DBCP";
+
+    @Name("org.apache.commons.dbcp2.ConnectionBorrow")
+    @Label("Connection Borrow")
+    @Category({ CATEGORY, "Connection" })
+    @Description("A connection has been borrowed from a BasicDataSource")
+    static class ConnectionBorrowEvent extends Event {
+    }
+
+    @Name("org.apache.commons.dbcp2.ConnectionReturn")
+    @Label("Connection Return")
+    @Category({ CATEGORY, "Connection" })
+    @Description("A connection has been returned to its pool")
+    static class ConnectionReturnEvent extends Event {
+        @Label("Hold Time")
+        @Timespan(Timespan.MILLISECONDS)
+        long holdTime;
+    }
+
+    @Name("org.apache.commons.dbcp2.ConnectionCreate")
+    @Label("Connection Create")
+    @Category({ CATEGORY, "Connection" })
+    @Description("A physical connection has been created")
+    static class ConnectionCreateEvent extends Event {
+    }
+
+    @Name("org.apache.commons.dbcp2.ConnectionDestroy")
+    @Label("Connection Destroy")
+    @Category({ CATEGORY, "Connection" })
+    @Description("A physical connection has been destroyed")
+    static class ConnectionDestroyEvent extends Event {
+        @Label("Age")
+        @Timespan(Timespan.MILLISECONDS)
+        long age;
+    }
+
+    @Name("org.apache.commons.dbcp2.ConnectionValidate")
+    @Label("Connection Validate")
+    @Category({ CATEGORY, "Connection" })
+    @Description("A pooled connection has been validated")
+    static class ConnectionValidateEvent extends Event {
+        @Label("Valid")
+        boolean valid;
+    }
+
+    @Name("org.apache.commons.dbcp2.EvictionRun")
+    @Label("Eviction Run")
+    @Category({ CATEGORY, "Pool" })
+    @Description("The idle connection evictor of a BasicDataSource has run")
+    static class EvictionRunEvent extends Event {
+        @Label("Destroyed")
+        long destroyed;
+    }
+
+    @Name("org.apache.commons.dbcp2.StatementPrepare")
+    @Label("Statement Prepare")
+    @Category({ CATEGORY, "Statement" })
+    @Description("A statement has been obtained from a statement pool")
+    static class StatementPrepareEvent extends Event {
+        @Label("SQL")
+        String sql;
+
+        @Label("Cache Hit")
+        boolean cacheHit;
+    }
+
+    @Name("org.apache.commons.dbcp2.StatementExecute")
+    @Label("Statement Execute")
+    @Category({ CATEGORY, "Statement" })
+    @Description("A statement has been executed")
+    static class StatementExecuteEvent extends Event {
+        @Label("SQL")
+        String sql;
+    }
+
+    /** Whether any recording is running, so that events may be wanted. */
+    private volatile boolean recording;
+
+    JfrFlightRecorderEvents() {
+        FlightRecorder.addListener(new FlightRecorderListener() {
+            @Override
+            public void recorderInitialized(final FlightRecorder recorder) {
+                updateRecording(recorder);
+            }
+
+            @Override
+            public void recordingStateChanged(final Recording changed) {
+                updateRecording(FlightRecorder.getFlightRecorder());
+            }
+        });
+    }
+
+    private void updateRecording(final FlightRecorder recorder) {
+        boolean running = false;
+        for (final Recording r : recorder.getRecordings()) {
+            if (r.getState() == RecordingState.RUNNING) {
+                running = true;
+                break;
+            }
+        }
+        recording = running;
+    }
+
+    /**
+     * Begins <code>event</code> if it is enabled.
+     *
+     * @return the event, or <code>null</code> if it is not enabled
+     */
+    private static Event begin(final Event event) {
+        if (!event.isEnabled()) {
+            return null;
+        }
+        event.begin();
+        return event;
+    }
+
+    /**
+     * Ends <code>event</code>.
+     *
+     * @return whether the event is to be committed
+     */
+    private static boolean end(final Event event) {
+        event.end();
+        return event.shouldCommit();
+    }
+
+    @Override
+    boolean isAvailable() {
+        return true;
+    }
+
+    @Override
+    Object beginConnectionBorrow() {
+        return recording ? begin(new ConnectionBorrowEvent()) : null;
+    }
+
+    @Override
+    void connectionBorrowed(final Object event) {
+        if (event != null && end((Event) event)) {
+            ((Event) event).commit();
+        }
+    }
+
+    @Override
+    void connectionReturned(final PooledObject<PoolableConnection> p) {
+        if (!recording) {
+            return;
+        }
+        final ConnectionReturnEvent event = new ConnectionReturnEvent();
+        if (event.shouldCommit()) {
+            event.holdTime = System.currentTimeMillis() - p.getLastBorrowTime();
+            event.commit();
+        }
+    }
+
+    @Override
+    Object beginConnectionCreate() {
+        return recording ? begin(new ConnectionCreateEvent()) : null;
+    }
+
+    @Override
+    void connectionCreated(final Object event) {
+        if (event != null && end((Event) event)) {
+            ((Event) event).commit();
+        }
+    }
+
+    @Override
+    Object beginConnectionDestroy() {
+        return recording ? begin(new ConnectionDestroyEvent()) : null;
+    }
+
+    @Override
+    void connectionDestroyed(final Object event, final PooledObject<PoolableConnection> p) {
+        if (event != null && end((Event) event)) {
+            final ConnectionDestroyEvent destroy = (ConnectionDestroyEvent) event;
+            destroy.age = System.currentTimeMillis() - p.getCreateTime();
+            destroy.commit();
+        }
+    }
+
+    @Override
+    Object beginConnectionValidate() {
+        return recording ? begin(new ConnectionValidateEvent()) : null;
+    }
+
+    @Override
+    void connectionValidated(final Object event, final boolean valid) {
+        if (event != null && end((Event) event)) {
+            final ConnectionValidateEvent validate = (ConnectionValidateEvent) event;
+            validate.valid = valid;
+            validate.commit();
+        }
+    }
+
+    @Override
+    Object beginEvictionRun() {
+        return recording ? begin(new EvictionRunEvent()) : null;
+    }
+
+    @Override
+    void evictionRun(final Object event, final long destroyed) {
+        if (event != null && end((Event) event)) {
+            final EvictionRunEvent run = (EvictionRunEvent) event;
+            run.destroyed = destroyed;
+            run.commit();
+        }
+    }
+
+    @Override
+    void statementPrepared(final String sql, final boolean cacheHit) {
+        if (!recording) {
+            return;
+        }
+        final StatementPrepareEvent event = new StatementPrepareEvent();
+        if (event.shouldCommit()) {
+            event.sql = sql;
+            event.cacheHit = cacheHit;
+            event.commit();
+        }
+    }
+
+    @Override
+    Object beginStatementExecute() {
+        return recording ? begin(new StatementExecuteEvent()) : null;
+    }
+
+    @Override
+    void statementExecuted(final Object event, final String sql) {
+        if (event != null && end((Event) event)) {
+            final StatementExecuteEvent execute = (StatementExecuteEvent) event;
+            execute.sql = sql;
+            execute.commit();
+        }
+    }
+}
@@ -19,15 +19,24 @@ package org.apache.commons.dbcp2;
 
 import static org.junit.Assert.*;
 
+import java.io.File;
 import java.io.IOException;
 import java.lang.management.ManagementFactory;
 import java.sql.Connection;
+import java.sql.DatabaseMetaData;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
 import java.sql.SQLException;
+import java.sql.Statement;
 import java.util.ArrayList;
 import java.util.Arrays;
+import java.util.HashSet;
 import java.util.Properties;
 import java.util.Set;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Future;
 import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.TimeUnit;
 
 import javax.management.MBeanServer;
 import javax.management.ObjectName;
@@ -693,6 +702,156 @@ public class TestBasicDataSource extends TestConnectionPool {
         }
     }
 
+    @Test
+    public void testMaxConnLifetimeJitter() throws Exception {
+        ds.setMaxConnLifetimeMillis(100000);
+        ds.setMaxConnLifetimeJitterMillis(50000);
+        final Set<Long> jitters = new HashSet<>();
+        final Connection[] conns = new Connection[5];
+        for (int i = 0; i < conns.length; i++) {
+            conns[i] = ds.getConnection();
+            final long jitter = conns[i].unwrap(PoolableConnection.class).getLifetimeJitterMillis();
+            assertTrue(jitter >= 0 && jitter <= 50000);
+            jitters.add(Long.valueOf(jitter));
+        }
+        assertTrue(jitters.size() > 1);
+        for (final Connection conn : conns) {
+            conn.close();
+        }
+    }
+
+    @Test
+    public void testMaxConnLifetimeRenewal() throws Exception {
+        ds.setMaxConnLifetimeMillis(1000);
+        ds.setMaxConnLifetimeRenewalMillis(800);
+        ds.setTimeBetweenEvictionRunsMillis(50);
+        Connection conn = ds.getConnection();
+        final PoolableConnection original = conn.unwrap(PoolableConnection.class);
+        conn.close();
+        assertEquals(1, ds.getNumIdle());
+
+        // Renewal is due 200ms after creation, well before expiry
+        Thread.sleep(500);
+        assertEquals(1, ds.getNumIdle());
+        conn = ds.getConnection();
+        assertNotSame(original, conn.unwrap(PoolableConnection.class));
+        conn.close();
+    }
+
+    @Test
+    public void testMaxConnLifetimeRenewalAtMaxTotal() throws Exception {
+        ds.setMaxTotal(1);
+        ds.setMaxConnLifetimeMillis(1000);
+        ds.setMaxConnLifetimeRenewalMillis(800);
+        ds.setTimeBetweenEvictionRunsMillis(50);
+        Connection conn = ds.getConnection();
+        final PoolableConnection original = conn.unwrap(PoolableConnection.class);
+        conn.close();
+
+        // No replacement fits, so the connection is kept until it expires
+        Thread.sleep(500);
+        assertEquals(1, ds.getNumIdle());
+        conn = ds.getConnection();
+        assertSame(original, conn.unwrap(PoolableConnection.class));
+        conn.close();
+    }
+
+    @Test
+    public void testDefaultFetchSize() throws Exception {
+        ds.setDefaultFetchSize(Integer.valueOf(50));
+        try (Connection conn = ds.getConnection();
+                Statement stmt = conn.createStatement();
+                PreparedStatement ps = conn.prepareStatement("SELECT 1")) {
+            assertEquals(50, stmt.getFetchSize());
+            assertEquals(50, ps.getFetchSize());
+        }
+    }
+
+    @Test
+    public void testAdaptiveFetchSize() throws Exception {
+        ds.setAdaptiveFetchSize(true);
+        try (Connection conn = ds.getConnection()) {
+            try (PreparedStatement ps = conn.prepareStatement("SELECT 1")) {
+                // Nothing learned yet, driver default
+                assertEquals(1, ps.getFetchSize());
+                readAll(ps.executeQuery());
+            }
+            // One row was read, so one more than that is fetched next time
+            try (PreparedStatement ps = conn.prepareStatement("SELECT 1")) {
+                assertEquals(2, ps.getFetchSize());
+            }
+            try (Statement stmt = conn.createStatement()) {
+                readAll(stmt.executeQuery("SELECT 1"));
+                assertEquals(2, stmt.getFetchSize());
+                // Unknown SQL reverts to the default
+                readAll(stmt.executeQuery("SELECT 2"));
+                assertEquals(1, stmt.getFetchSize());
+            }
+            // Explicit fetch sizes are left alone
+            try (PreparedStatement ps = conn.prepareStatement("SELECT 1")) {
+                ps.setFetchSize(7);
+                readAll(ps.executeQuery());
+                assertEquals(7, ps.getFetchSize());
+            }
+        }
+    }
+
+    @Test
+    public void testCacheDatabaseMetaData() throws Exception {
+        ds.setCacheDatabaseMetaData(true);
+        ds.setDatabaseMetaDataCacheTtlMillis(1000);
+        try (Connection conn = ds.getConnection()) {
+            final DatabaseMetaData dmd = conn.getMetaData();
+            assertTrue(((DelegatingDatabaseMetaData) dmd).getDelegate() instanceof CachingDatabaseMetaData);
+            assertFalse(dmd.supportsBatchUpdates());
+        }
+        assertTrue(ds.getCacheDatabaseMetaData());
+        assertEquals(1000, ds.getDatabaseMetaDataCacheTtlMillis());
+        ds.invalidateDatabaseMetaDataCache();
+    }
+
+    private static void readAll(final ResultSet rs) throws SQLException {
+        try {
+            while (rs.next()) {
+                // Traverse the result
+            }
+        } finally {
+            rs.close();
+        }
+    }
+
+    @Test
+    public void testGetConnectionAsync() throws Exception {
+        // Not supported by the managed subclasses, so use a plain instance
+        final BasicDataSource bds = new BasicDataSource();
+        bds.setDriverClassName("org.apache.commons.dbcp2.TesterDriver");
+        bds.setUrl("jdbc:apache:commons:testdriver");
+        bds.setUsername("username");
+        bds.setPassword("password");
+        bds.setMaxTotal(1);
+        try {
+            final Connection conn = bds.getConnectionAsync(-1).get();
+            final Future<Connection> queued = bds.getConnectionAsync(-1);
+            assertFalse(queued.isDone());
+            conn.close();
+            assertTrue(queued.isDone());
+            queued.get().close();
+            assertEquals(1, bds.getNumIdle());
+
+            bds.getConnection();
+            final Future<Connection> pending = bds.getConnectionAsync(-1);
+            bds.close();
+            try {
+                pending.get();
+                fail("Expecting ExecutionException");
+            } catch (final ExecutionException ex) {
+                assertTrue(ex.getCause() instanceof SQLException);
+            }
+        } finally {
+            bds.close();
+        }
+    }
+
     @Test
     public void testConcurrentInitBorrow() throws Exception {
         ds.setDriverClassName("org.apache.commons.dbcp2.TesterConnectionDelayDriver");
@@ -756,6 +915,30 @@ public class TestBasicDataSource extends TestConnectionPool {
         ds.close();
     }
     
+    @Test
+    public void testIncrementGeneration() throws Exception {
+        assertEquals(0, ds.getGeneration());
+        final Connection active = ds.getConnection();
+        ds.getConnection().close();
+        assertEquals(1, ds.getNumIdle());
+
+        assertEquals(1, ds.incrementGeneration());
+        assertEquals(1, ds.getGeneration());
+        // Idle connections are closed straight away
+        assertEquals(0, ds.getNumIdle());
+
+        // The pool keeps serving with new connections
+        final Connection fresh = ds.getConnection();
+        assertEquals(2, ds.getNumActive());
+
+        // Connections from the retired generation are not returned to the pool
+        active.close();
+        assertEquals(1, ds.getNumActive());
+        assertEquals(0, ds.getNumIdle());
+        fresh.close();
+        assertEquals(1, ds.getNumIdle());
+    }
+
     /**
      * Make sure setting jmxName to null suppresses JMX registration of connection and statement pools.
      * JIRA: DBCP-434
@@ -795,6 +978,63 @@ public class TestBasicDataSource extends TestConnectionPool {
         assertTrue(pcf.getDisconnectionSqlCodes().contains("XXX"));
         assertEquals(1, pcf.getDisconnectionSqlCodes().size());
     }
+
+    @Test
+    public void testWarmupSnapshot() throws Exception {
+        final File file = File.createTempFile("dbcp-warmup", ".properties");
+        try {
+            new WarmupSnapshot(file, WarmupSnapshot.identity(ds.getUrl(), ds.getUsername()), 4,
+                    null, 0).write();
+            ds.setWarmupSnapshotFile(file.getPath());
+            ds.setInitialSize(1);
+            try (Connection conn = ds.getConnection()) {
+                assertEquals(1, ds.getNumActive());
+                assertEquals(3, ds.getNumIdle());
+            }
+            ds.close();
+            assertEquals(1, WarmupSnapshot.read(file,
+                    WarmupSnapshot.identity(ds.getUrl(), ds.getUsername())).getPeakActive());
+        } finally {
+            file.delete();
+        }
+    }
+
+    @Test
+    public void testGetConnectionWithPriority() throws Exception {
+        ds.setPrioritizedBorrowing(true);
+        final Connection[] c = new Connection[getMaxTotal()];
+        for (int i = 0; i < c.length; i++) {
+            c[i] = ds.getConnection(ConnectionPriority.HIGH);
+        }
+        final Future<Connection> queued = ds.getConnectionAsync(-1);
+        c[0].close();
+        c[0] = queued.get(1, TimeUnit.SECONDS);
+        assertNotNull(c[0]);
+        for (final Connection element : c) {
+            element.close();
+        }
+        assertEquals(0, ds.getNumActive());
+    }
+
+    @Test
+    public void testGetConnectionWithTimeout() throws Exception {
+        final Connection[] c = new Connection[getMaxTotal()];
+        for (int i = 0; i < c.length; i++) {
+            c[i] = ds.getConnection(1, TimeUnit.SECONDS);
+        }
+        try {
+            ds.getConnection(0, TimeUnit.MILLISECONDS);
+            fail("Expected SQLException");
+        } catch (final SQLException expected) {
+            // The pool is exhausted and the caller would not wait
+        }
+        c[0].close();
+        c[0] = ds.getConnection(0, TimeUnit.MILLISECONDS);
+        assertNotNull(c[0]);
+        for (final Connection element : c) {
+            element.close();
+        }
+    }
 }
 
 /**
@@ -847,5 +1087,4 @@ class TesterConnectionDelayDriver extends TesterDriver {
     public boolean acceptsURL(final String url) throws SQLException {
         return url.startsWith(CONNECT_STRING);
     }
-
 }
@@ -18,6 +18,7 @@
 package org.apache.commons.dbcp2;
 
 import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
 import static org.junit.Assert.assertNotNull;
 import static org.junit.Assert.assertTrue;
 
@@ -141,6 +142,22 @@ public class TestBasicDataSourceFactory {
         properties.setProperty("lifo", "true");
         properties.setProperty("fastFailValidation", "true");
         properties.setProperty("disconnectionSqlCodes", "XXX,YYY");
+        properties.setProperty("circuitBreakerFailureThreshold", "3");
+        properties.setProperty("circuitBreakerInitialBackoffMillis", "500");
+        properties.setProperty("circuitBreakerMaxBackoffMillis", "30000");
+        properties.setProperty("connectionCreationRate", "20");
+        properties.setProperty("connectionCreationBurst", "5");
+        properties.setProperty("connectionCreationRateShared", "false");
+        properties.setProperty("maxConnLifetimeJitterMillis", "1000");
+        properties.setProperty("maxConnLifetimeRenewalMillis", "2000");
+        properties.setProperty("keepAliveMillis", "120000");
+        properties.setProperty("canonicalizeSql", "true");
+        properties.setProperty("stripSqlComments", "true");
+        properties.setProperty("prewarmStatementCount", "20");
+        properties.setProperty("warmupSnapshotIntervalMillis", "60000");
+        properties.setProperty("prioritizedBorrowing", "true");
+        properties.setProperty("priorityAgingMillis", "250");
+        properties.setProperty("poolPartitions", "2");
         properties.setProperty("jmxName", "org.apache.commons.dbcp2:name=test");
         return properties;
     }
@@ -184,6 +201,23 @@ public class TestBasicDataSourceFactory {
         assertEquals(true, ds.getFastFailValidation());
         assertTrue(ds.getDisconnectionSqlCodes().contains("XXX"));
         assertTrue(ds.getDisconnectionSqlCodes().contains("YYY"));
+        assertEquals(3, ds.getCircuitBreakerFailureThreshold());
+        assertEquals(500, ds.getCircuitBreakerInitialBackoffMillis());
+        assertEquals(30000, ds.getCircuitBreakerMaxBackoffMillis());
+        assertFalse(ds.isCircuitBreakerOpen());
+        assertEquals(20, ds.getConnectionCreationRate());
+        assertEquals(5, ds.getConnectionCreationBurst());
+        assertFalse(ds.getConnectionCreationRateShared());
+        assertEquals(1000, ds.getMaxConnLifetimeJitterMillis());
+        assertEquals(2000, ds.getMaxConnLifetimeRenewalMillis());
+        assertEquals(120000, ds.getKeepAliveMillis());
+        assertTrue(ds.getCanonicalizeSql());
+        assertTrue(ds.getStripSqlComments());
+        assertEquals(20, ds.getPrewarmStatementCount());
+        assertEquals(60000, ds.getWarmupSnapshotIntervalMillis());
+        assertTrue(ds.getPrioritizedBorrowing());
+        assertEquals(250, ds.getPriorityAgingMillis());
+        assertEquals(2, ds.getPoolPartitions());
         assertEquals("org.apache.commons.dbcp2:name=test", ds.getJmxName());
 
         // Unregister so subsequent calls to getTestProperties can re-register
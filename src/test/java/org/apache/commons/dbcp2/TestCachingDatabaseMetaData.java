@@ -0,0 +1,225 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.commons.dbcp2;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import java.sql.DatabaseMetaData;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Types;
+
+import javax.sql.rowset.CachedRowSet;
+import javax.sql.rowset.RowSetMetaDataImpl;
+import javax.sql.rowset.RowSetProvider;
+
+import org.junit.Before;
+import org.junit.Test;
+
+/**
+ * TestSuite for CachingDatabaseMetaData and DatabaseMetaDataCache
+ */
+public class TestCachingDatabaseMetaData {
+
+    private static class CountingDatabaseMetaData extends TesterDatabaseMetaData {
+        int batchUpdatesCalls;
+        int readOnlyCalls;
+        int tablesCalls;
+
+        @Override
+        public boolean supportsBatchUpdates() throws SQLException {
+            batchUpdatesCalls++;
+            return true;
+        }
+
+        @Override
+        public boolean isReadOnly() throws SQLException {
+            readOnlyCalls++;
+            return false;
+        }
+
+        @Override
+        public ResultSet getTables(final String catalog, final String schemaPattern,
+                final String tableNamePattern, final String[] types) throws SQLException {
+            tablesCalls++;
+            final RowSetMetaDataImpl metaData = new RowSetMetaDataImpl();
+            metaData.setColumnCount(1);
+            metaData.setColumnName(1, "TABLE_NAME");
+            metaData.setColumnType(1, Types.VARCHAR);
+            final CachedRowSet rs = RowSetProvider.newFactory().createCachedRowSet();
+            rs.setMetaData(metaData);
+            rs.moveToInsertRow();
+            rs.updateString(1, tableNamePattern);
+            rs.insertRow();
+            rs.moveToCurrentRow();
+            rs.beforeFirst();
+            return rs;
+        }
+    }
+
+    private static class MetaDataConnection extends TesterConnection {
+        MetaDataConnection(final DatabaseMetaData metaData) {
+            super("userName", "password");
+            _metaData = metaData;
+        }
+    }
+
+    private CountingDatabaseMetaData metaData;
+
+    @Before
+    public void setUp() {
+        metaData = new CountingDatabaseMetaData();
+    }
+
+    private DelegatingConnection<?> createConnection(final DatabaseMetaDataCache cache) {
+        final DelegatingConnection<?> conn = new DelegatingConnection<>(new MetaDataConnection(metaData));
+        conn.setDatabaseMetaDataCache(cache);
+        return conn;
+    }
+
+    @Test
+    public void testNoCache() throws Exception {
+        final DelegatingConnection<?> conn = createConnection(null);
+        assertFalse(conn.getMetaData() instanceof CachingDatabaseMetaData);
+        conn.getMetaData().supportsBatchUpdates();
+        conn.getMetaData().supportsBatchUpdates();
+        assertEquals(2, metaData.batchUpdatesCalls);
+    }
+
+    @Test
+    public void testScalarsSharedAcrossConnections() throws Exception {
+        final DatabaseMetaDataCache cache = new DatabaseMetaDataCache(60000);
+        final DatabaseMetaData first = createConnection(cache).getMetaData();
+        final DatabaseMetaData second = createConnection(cache).getMetaData();
+        assertTrue(first instanceof CachingDatabaseMetaData);
+        assertTrue(first.supportsBatchUpdates());
+        assertTrue(second.supportsBatchUpdates());
+        assertEquals(1, metaData.batchUpdatesCalls);
+        // Depends on the connection, never cached
+        first.isReadOnly();
+        second.isReadOnly();
+        assertEquals(2, metaData.readOnlyCalls);
+
+        cache.invalidate();
+        first.supportsBatchUpdates();
+        assertEquals(2, metaData.batchUpdatesCalls);
+    }
+
+    @Test
+    public void testCatalogCopies() throws Exception {
+        final DatabaseMetaDataCache cache = new DatabaseMetaDataCache(60000);
+        final DelegatingConnection<?> conn = createConnection(cache);
+        final DatabaseMetaData dmd = conn.getMetaData();
+        for (int i = 0; i < 3; i++) {
+            final ResultSet rs = dmd.getTables(null, null, "T1", null);
+            assertTrue(rs instanceof DelegatingResultSet);
+            assertTrue(rs.next());
+            assertEquals("T1", rs.getString("TABLE_NAME"));
+            assertFalse(rs.next());
+            rs.close();
+        }
+        assertEquals(1, metaData.tablesCalls);
+        assertEquals(1, cache.getCatalogCount());
+
+        // Different arguments are cached separately
+        final ResultSet rs = dmd.getTables(null, null, "T2", null);
+        assertTrue(rs.next());
+        assertEquals("T2", rs.getString(1));
+        rs.close();
+        assertEquals(2, metaData.tablesCalls);
+
+        cache.invalidateCatalogs();
+        dmd.getTables(null, null, "T1", null).close();
+        assertEquals(3, metaData.tablesCalls);
+    }
+
+    @Test
+    public void testCatalogExpiry() throws Exception {
+        final DatabaseMetaDataCache cache = new DatabaseMetaDataCache(50);
+        final DatabaseMetaData dmd = createConnection(cache).getMetaData();
+        dmd.getTables(null, null, "T1", null).close();
+        dmd.getTables(null, null, "T1", null).close();
+        assertEquals(1, metaData.tablesCalls);
+        Thread.sleep(100);
+        dmd.getTables(null, null, "T1", null).close();
+        assertEquals(2, metaData.tablesCalls);
+    }
+
+    @Test
+    public void testCatalogCachingDisabled() throws Exception {
+        final DatabaseMetaDataCache cache = new DatabaseMetaDataCache(0);
+        final DatabaseMetaData dmd = createConnection(cache).getMetaData();
+        dmd.getTables(null, null, "T1", null).close();
+        dmd.getTables(null, null, "T1", null).close();
+        assertEquals(2, metaData.tablesCalls);
+        assertEquals(0, cache.getCatalogCount());
+        dmd.supportsBatchUpdates();
+        dmd.supportsBatchUpdates();
+        assertEquals(1, metaData.batchUpdatesCalls);
+    }
+
+    @Test
+    public void testGetConnection() throws Exception {
+        final DelegatingConnection<?> conn = createConnection(new DatabaseMetaDataCache(60000));
+        assertSame(conn, conn.getMetaData().getConnection());
+    }
+
+    @Test
+    public void testCatalogLeastRecentlyUsedDiscarded() throws Exception {
+        final DatabaseMetaDataCache cache = new DatabaseMetaDataCache(60000, 2);
+        final DatabaseMetaData dmd = createConnection(cache).getMetaData();
+        dmd.getTables(null, null, "T1", null).close();
+        dmd.getTables(null, null, "T2", null).close();
+        // T1 is now the most recently used
+        dmd.getTables(null, null, "T1", null).close();
+        dmd.getTables(null, null, "T3", null).close();
+        assertEquals(2, cache.getCatalogCount());
+        assertEquals(3, metaData.tablesCalls);
+
+        dmd.getTables(null, null, "T1", null).close();
+        assertEquals(3, metaData.tablesCalls);
+        dmd.getTables(null, null, "T2", null).close();
+        assertEquals(4, metaData.tablesCalls);
+    }
+
+    @Test
+    public void testCachedAnswersCheckOpen() throws Exception {
+        final DatabaseMetaDataCache cache = new DatabaseMetaDataCache(60000);
+        final DelegatingConnection<?> conn = createConnection(cache);
+        final DatabaseMetaData dmd = conn.getMetaData();
+        dmd.supportsBatchUpdates();
+        dmd.getTables(null, null, "T1", null).close();
+        conn.close();
+        try {
+            dmd.supportsBatchUpdates();
+            fail("Expected SQLException");
+        } catch (final SQLException e) {
+            // Expected
+        }
+        try {
+            dmd.getTables(null, null, "T1", null);
+            fail("Expected SQLException");
+        } catch (final SQLException e) {
+            // Expected
+        }
+        assertEquals(1, metaData.batchUpdatesCalls);
+    }
+}
@@ -0,0 +1,169 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.commons.dbcp2;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import java.sql.Connection;
+import java.sql.SQLException;
+
+import org.junit.Before;
+import org.junit.Test;
+
+/**
+ * TestSuite for CircuitBreakerConnectionFactory
+ */
+public class TestCircuitBreakerConnectionFactory {
+
+    private FailingConnectionFactory delegate = null;
+    private CircuitBreakerConnectionFactory breaker = null;
+
+    @Before
+    public void setUp() {
+        delegate = new FailingConnectionFactory();
+        breaker = new CircuitBreakerConnectionFactory(delegate, 3, 100, 300);
+    }
+
+    private void expectFailure() {
+        try {
+            breaker.createConnection();
+            fail("Expecting SQLException");
+        } catch (final SQLException ex) {
+            // Expected
+        }
+    }
+
+    @Test
+    public void testOpensAfterThreshold() throws Exception {
+        delegate.failing = true;
+        expectFailure();
+        expectFailure();
+        assertFalse(breaker.isOpen());
+        expectFailure();
+        assertTrue(breaker.isOpen());
+        assertEquals(3, delegate.attempts);
+
+        // Further calls fail fast without reaching the driver
+        try {
+            breaker.createConnection();
+            fail("Expecting SQLException");
+        } catch (final SQLException ex) {
+            assertEquals("08001", ex.getSQLState());
+            assertSame(delegate.lastException, ex.getCause());
+        }
+        assertEquals(3, delegate.attempts);
+    }
+
+    @Test
+    public void testSuccessResetsFailures() throws Exception {
+        delegate.failing = true;
+        expectFailure();
+        expectFailure();
+        delegate.failing = false;
+        breaker.createConnection().close();
+        assertEquals(0, breaker.getConsecutiveFailures());
+        delegate.failing = true;
+        expectFailure();
+        expectFailure();
+        assertFalse(breaker.isOpen());
+    }
+
+    @Test
+    public void testProbeAfterBackoff() throws Exception {
+        delegate.failing = true;
+        for (int i = 0; i < 3; i++) {
+            expectFailure();
+        }
+        assertTrue(breaker.isOpen());
+        assertEquals(100, breaker.getBackoffMillis());
+
+        // Failed probe doubles the back-off
+        Thread.sleep(150);
+        expectFailure();
+        assertEquals(4, delegate.attempts);
+        assertEquals(200, breaker.getBackoffMillis());
+        expectFailure();
+        assertEquals(4, delegate.attempts);
+
+        // Back-off is capped
+        Thread.sleep(250);
+        expectFailure();
+        assertEquals(5, delegate.attempts);
+        assertEquals(300, breaker.getBackoffMillis());
+
+        // Successful probe closes the breaker
+        delegate.failing = false;
+        Thread.sleep(350);
+        final Connection conn = breaker.createConnection();
+        assertNotNull(conn);
+        conn.close();
+        assertFalse(breaker.isOpen());
+        assertEquals(100, breaker.getBackoffMillis());
+        breaker.createConnection().close();
+    }
+
+    @Test
+    public void testBasicDataSource() throws Exception {
+        TesterDriver.addUser("breaker", "secret");
+        final BasicDataSource ds = new BasicDataSource();
+        ds.setDriverClassName("org.apache.commons.dbcp2.TesterDriver");
+        ds.setUrl("jdbc:apache:commons:testdriver");
+        ds.setUsername("breaker");
+        ds.setPassword("secret");
+        ds.setMaxWaitMillis(100);
+        ds.setCircuitBreakerFailureThreshold(2);
+        ds.setCircuitBreakerInitialBackoffMillis(60000);
+        try (Connection held = ds.getConnection()) {
+            assertFalse(ds.isCircuitBreakerOpen());
+            // Simulate the database rejecting new connections
+            TesterDriver.addUser("breaker", "changed");
+            for (int i = 0; i < 3; i++) {
+                try {
+                    ds.getConnection();
+                    fail("Expecting SQLException");
+                } catch (final SQLException ex) {
+                    // Expected
+                }
+            }
+            assertTrue(ds.isCircuitBreakerOpen());
+        } finally {
+            TesterDriver.addUser("breaker", "secret");
+            ds.close();
+        }
+    }
+
+    private static class FailingConnectionFactory implements ConnectionFactory {
+        volatile boolean failing = false;
+        volatile int attempts = 0;
+        volatile SQLException lastException = null;
+
+        @Override
+        public Connection createConnection() throws SQLException {
+            attempts++;
+            if (failing) {
+                lastException = new SQLException("Connection refused", "08001");
+                throw lastException;
+            }
+            return new TesterConnection("userName", "password");
+        }
+    }
+}
@@ -0,0 +1,180 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.commons.dbcp2;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotSame;
+import static org.junit.Assert.assertTrue;
+
+import java.sql.Connection;
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.apache.commons.pool2.impl.GenericObjectPool;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+/**
+ * TestSuite for ConnectionKeepAlive
+ */
+public class TestConnectionKeepAlive {
+
+    private static class PingedConnection extends TesterConnection {
+        final AtomicInteger pings = new AtomicInteger();
+        volatile boolean alive = true;
+        /** If set, pings wait for it after counting down pinging */
+        volatile CountDownLatch release;
+        final CountDownLatch pinging = new CountDownLatch(1);
+
+        PingedConnection() {
+            super("userName", "password");
+        }
+
+        @Override
+        public boolean isValid(final int timeout) throws SQLException {
+            pings.incrementAndGet();
+            final CountDownLatch latch = release;
+            if (latch != null) {
+                pinging.countDown();
+                try {
+                    latch.await();
+                } catch (final InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                }
+            }
+            return alive;
+        }
+    }
+
+    private final List<PingedConnection> connections = new ArrayList<>();
+    private PoolableConnectionFactory factory;
+    private GenericObjectPool<PoolableConnection> pool;
+
+    @Before
+    public void setUp() {
+        factory = new PoolableConnectionFactory(new ConnectionFactory() {
+            @Override
+            public Connection createConnection() throws SQLException {
+                final PingedConnection conn = new PingedConnection();
+                synchronized (connections) {
+                    connections.add(conn);
+                }
+                return conn;
+            }
+        }, null);
+        factory.setKeepAliveMillis(50);
+        pool = new GenericObjectPool<>(factory);
+        factory.setPool(pool);
+    }
+
+    @After
+    public void tearDown() {
+        pool.close();
+    }
+
+    @Test
+    public void testIdleConnectionsPinged() throws Exception {
+        final List<Connection> borrowed = new ArrayList<>();
+        for (int i = 0; i < 4; i++) {
+            borrowed.add(pool.borrowObject());
+        }
+        for (final Connection conn : borrowed) {
+            conn.close();
+        }
+        Thread.sleep(500);
+        for (final PingedConnection conn : connections) {
+            assertTrue(conn.pings.get() > 0);
+        }
+        // Unlike eviction, pings never shrink the pool
+        assertEquals(4, pool.getNumIdle());
+        assertEquals(0, pool.getDestroyedCount());
+        assertEquals(4, factory.getKeepAlive().getIdleCount());
+    }
+
+    @Test
+    public void testBorrowedConnectionsNotPinged() throws Exception {
+        final Connection conn = pool.borrowObject();
+        Thread.sleep(200);
+        assertEquals(0, connections.get(0).pings.get());
+        assertEquals(0, factory.getKeepAlive().getIdleCount());
+        conn.close();
+        assertEquals(1, factory.getKeepAlive().getIdleCount());
+    }
+
+    @Test
+    public void testBorrowDoesNotWaitForPing() throws Exception {
+        final PoolableConnection first = pool.borrowObject();
+        final PingedConnection pinged = connections.get(0);
+        pinged.release = new CountDownLatch(1);
+        first.close();
+        assertTrue(pinged.pinging.await(1, TimeUnit.SECONDS));
+        try {
+            final long start = System.currentTimeMillis();
+            final PoolableConnection second = pool.borrowObject();
+            assertTrue(System.currentTimeMillis() - start < 500);
+            // The pinged connection was destroyed, but is closed after the ping
+            assertNotSame(first, second);
+            assertEquals(1, pool.getDestroyedCount());
+            assertFalse(pinged.isClosed());
+            second.close();
+        } finally {
+            pinged.release.countDown();
+        }
+        for (int i = 0; i < 100 && !pinged.isClosed(); i++) {
+            Thread.sleep(10);
+        }
+        assertTrue(pinged.isClosed());
+    }
+
+    @Test
+    public void testFailedPingReplacesConnection() throws Exception {
+        final PoolableConnection first = pool.borrowObject();
+        first.close();
+        connections.get(0).alive = false;
+        Thread.sleep(300);
+        assertTrue(first.isKeepAliveFailed());
+        // Still counted until the pool touches it again
+        assertEquals(1, pool.getNumIdle());
+        final PoolableConnection second = pool.borrowObject();
+        assertNotSame(first, second);
+        assertEquals(1, pool.getDestroyedCount());
+        second.close();
+    }
+
+    @Test
+    public void testStopsWhenPoolClosed() throws Exception {
+        pool.borrowObject().close();
+        pool.close();
+        Thread.sleep(200);
+        assertEquals(0, factory.getKeepAlive().getIdleCount());
+    }
+
+    @Test
+    public void testDisabled() throws Exception {
+        factory.setKeepAliveMillis(0);
+        assertEquals(0, factory.getKeepAliveMillis());
+        pool.borrowObject().close();
+        Thread.sleep(100);
+        assertEquals(0, connections.get(0).pings.get());
+    }
+}
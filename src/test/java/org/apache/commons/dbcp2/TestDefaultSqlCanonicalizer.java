@@ -0,0 +1,101 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.commons.dbcp2;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertSame;
+
+import org.junit.Test;
+
+/**
+ * TestSuite for DefaultSqlCanonicalizer
+ */
+public class TestDefaultSqlCanonicalizer {
+
+    private final DefaultSqlCanonicalizer keepComments = new DefaultSqlCanonicalizer();
+    private final DefaultSqlCanonicalizer stripComments = new DefaultSqlCanonicalizer(true, 10);
+
+    @Test
+    public void testWhitespace() {
+        assertEquals("SELECT a, b FROM t WHERE a = ?",
+                keepComments.canonicalize("  SELECT a,\n\tb\r\n FROM   t WHERE a = ?  "));
+        assertEquals("SELECT 1", keepComments.canonicalize("SELECT 1"));
+        assertEquals("", keepComments.canonicalize(" \n "));
+    }
+
+    @Test
+    public void testQuotedText() {
+        assertEquals("SELECT 'a  b', \"c  d\", `e  f`, [g  h] FROM t",
+                keepComments.canonicalize("SELECT  'a  b',  \"c  d\",  `e  f`,  [g  h]  FROM t"));
+        assertEquals("SELECT 'it''s  here' FROM t",
+                keepComments.canonicalize("SELECT  'it''s  here'  FROM t"));
+        assertEquals("SELECT $$a  -- b$$, $tag$ x $tag$, $1 FROM t",
+                keepComments.canonicalize("SELECT  $$a  -- b$$,  $tag$ x $tag$,  $1  FROM t"));
+        assertEquals("SELECT * FROM v$session",
+                keepComments.canonicalize("SELECT *  FROM v$session"));
+    }
+
+    @Test
+    public void testUnsafeSqlOnlyTrimmed() {
+        // Backslash escapes depend on the database
+        assertEquals("SELECT 'a\\'  b' FROM   t",
+                keepComments.canonicalize(" SELECT 'a\\'  b' FROM   t "));
+        assertEquals("SELECT 'a  FROM   t", keepComments.canonicalize("SELECT 'a  FROM   t "));
+        assertEquals("SELECT /* a  FROM   t", stripComments.canonicalize("SELECT /* a  FROM   t"));
+    }
+
+    @Test
+    public void testCommentsKept() {
+        // A line comment must still end the line
+        assertEquals("SELECT a -- first\nFROM t /* b  c */ WHERE x = 1",
+                keepComments.canonicalize("SELECT a  -- first\n   FROM t  /* b  c */  WHERE x = 1"));
+        assertEquals("SELECT a -- last", keepComments.canonicalize("SELECT a -- last"));
+    }
+
+    @Test
+    public void testCommentsStripped() {
+        assertEquals("SELECT a FROM t WHERE x = 1",
+                stripComments.canonicalize("SELECT a  -- first\n   FROM t/* b */WHERE x = 1 -- last"));
+        assertEquals("SELECT /*+ INDEX(t i) */ a FROM t",
+                stripComments.canonicalize("SELECT /*+ INDEX(t i) */ a /* x */ FROM t"));
+        assertEquals("SELECT '-- not a comment' FROM t",
+                stripComments.canonicalize("SELECT '-- not a comment' FROM t"));
+        assertEquals("SELECT /*!40001 SQL_NO_CACHE */ a FROM t",
+                stripComments.canonicalize("SELECT /*!40001 SQL_NO_CACHE */ a /* x */ FROM t"));
+    }
+
+    @Test
+    public void testDoubleDashWithoutWhitespaceKept() {
+        // An expression to MySQL, a comment to other databases
+        assertEquals("SELECT 5--1  AS x\nFROM t",
+                stripComments.canonicalize("SELECT  5--1  AS x\n  FROM t"));
+        assertEquals("SELECT a FROM t",
+                stripComments.canonicalize("SELECT a --\tb\nFROM t --"));
+    }
+
+    @Test
+    public void testMemoized() {
+        final String first = stripComments.canonicalize("SELECT  1");
+        assertSame(first, stripComments.canonicalize("SELECT  1"));
+        assertEquals(1, stripComments.getCachedStatementCount());
+        for (int i = 0; i < 20; i++) {
+            stripComments.canonicalize("SELECT  " + i);
+        }
+        assertEquals(10, stripComments.getCachedStatementCount());
+        assertEquals("SELECT 19", stripComments.canonicalize("SELECT  19"));
+    }
+}
@@ -0,0 +1,61 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.commons.dbcp2;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+
+import org.junit.Test;
+
+/**
+ * TestSuite for FetchSizeAdvisor
+ */
+public class TestFetchSizeAdvisor {
+
+    @Test
+    public void testMovingAverage() {
+        final FetchSizeAdvisor advisor = new FetchSizeAdvisor();
+        assertNull(advisor.getFetchSize("SELECT a"));
+        advisor.recordRowCount("SELECT a", 10);
+        assertEquals(Integer.valueOf(11), advisor.getFetchSize("SELECT a"));
+        // A single outlier moves the estimate only part of the way
+        advisor.recordRowCount("SELECT a", 50);
+        assertEquals(Integer.valueOf(21), advisor.getFetchSize("SELECT a"));
+        assertNull(advisor.getFetchSize("SELECT b"));
+    }
+
+    @Test
+    public void testMaxFetchSize() {
+        final FetchSizeAdvisor advisor = new FetchSizeAdvisor(100, 10);
+        advisor.recordRowCount("SELECT a", 100000);
+        assertEquals(Integer.valueOf(100), advisor.getFetchSize("SELECT a"));
+        advisor.recordRowCount("SELECT b", 0);
+        assertEquals(Integer.valueOf(1), advisor.getFetchSize("SELECT b"));
+    }
+
+    @Test
+    public void testMaxStatements() {
+        final FetchSizeAdvisor advisor = new FetchSizeAdvisor(100, 2);
+        advisor.recordRowCount("SELECT a", 1);
+        advisor.recordRowCount("SELECT b", 1);
+        advisor.recordRowCount("SELECT c", 1);
+        assertEquals(2, advisor.getStatementCount());
+        assertNull(advisor.getFetchSize("SELECT c"));
+        advisor.clear();
+        assertEquals(0, advisor.getStatementCount());
+    }
+}
@@ -0,0 +1,198 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.commons.dbcp2;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assume.assumeTrue;
+
+import java.io.File;
+import java.lang.reflect.Method;
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.Statement;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import javax.sql.PooledConnection;
+
+import org.apache.commons.dbcp2.cpdsadapter.DriverAdapterCPDS;
+import org.junit.Test;
+
+/**
+ * TestSuite for FlightRecorderEvents. The JFR API is used through
+ * reflection so that the tests compile for Java 7; they are skipped on JVMs
+ * without it.
+ */
+public class TestFlightRecorderEvents {
+
+    private static final String PREFIX = "org.apache.commons.dbcp2.";
+
+    @Test
+    public void testNoEventsWithoutRecording() throws Exception {
+        assertNull(FlightRecorderEvents.INSTANCE.beginStatementExecute());
+    }
+
+    @Test
+    public void testEventsRecorded() throws Exception {
+        assumeTrue(FlightRecorderEvents.INSTANCE.isAvailable());
+
+        final Object recording = startRecording();
+        final Map<String, Integer> counts;
+        try {
+            assertNotNull(FlightRecorderEvents.INSTANCE.beginStatementExecute());
+
+            final BasicDataSource ds = new BasicDataSource();
+            ds.setDriverClassName("org.apache.commons.dbcp2.TesterDriver");
+            ds.setUrl("jdbc:apache:commons:testdriver");
+            ds.setUsername("foo");
+            ds.setPassword("bar");
+            ds.setPoolPreparedStatements(true);
+            ds.setTestOnBorrow(true);
+            ds.setValidationQuery("SELECT DUMMY FROM DUAL");
+            try {
+                for (int i = 0; i < 2; i++) {
+                    try (Connection conn = ds.getConnection()) {
+                        try (PreparedStatement ps = conn.prepareStatement("select 1")) {
+                            ps.executeQuery().close();
+                        }
+                        try (Statement stmt = conn.createStatement()) {
+                            stmt.executeUpdate("update 1");
+                        }
+                    }
+                }
+                ds.getConnectionPool().evict();
+            } finally {
+                ds.close();
+            }
+        } finally {
+            counts = stopRecording(recording);
+        }
+
+        assertEquals(Integer.valueOf(2), counts.get("ConnectionBorrow"));
+        // The factory is checked with a connection of its own on startup
+        assertEquals(Integer.valueOf(2), counts.get("ConnectionCreate"));
+        assertEquals(Integer.valueOf(2), counts.get("ConnectionDestroy"));
+        // Not when connections are passivated on their way into the pool
+        assertEquals(Integer.valueOf(2), counts.get("ConnectionReturn"));
+        assertEquals(Integer.valueOf(2), counts.get("ConnectionValidate"));
+        assertEquals(Integer.valueOf(1), counts.get("EvictionRun"));
+        assertEquals(Integer.valueOf(1), counts.get("StatementPrepare:false"));
+        assertEquals(Integer.valueOf(1), counts.get("StatementPrepare:true"));
+        // Once each, not once per layer of delegating statement
+        assertEquals(Integer.valueOf(4), counts.get("StatementExecute"));
+        assertEquals(Integer.valueOf(2), counts.get("StatementExecute:select 1"));
+        assertEquals(Integer.valueOf(2), counts.get("StatementExecute:update 1"));
+    }
+
+    @Test
+    public void testUnpooledStatementEventsRecorded() throws Exception {
+        assumeTrue(FlightRecorderEvents.INSTANCE.isAvailable());
+
+        final DriverAdapterCPDS cpds = new DriverAdapterCPDS();
+        cpds.setDriver("org.apache.commons.dbcp2.TesterDriver");
+        cpds.setUrl("jdbc:apache:commons:testdriver");
+        final Object recording = startRecording();
+        final Map<String, Integer> counts;
+        try {
+            final PooledConnection pc = cpds.getPooledConnection("foo", "bar");
+            try (Connection conn = pc.getConnection()) {
+                try (Statement stmt = conn.createStatement()) {
+                    stmt.executeUpdate("update 1");
+                }
+            } finally {
+                pc.close();
+            }
+        } finally {
+            counts = stopRecording(recording);
+        }
+        assertEquals(Integer.valueOf(1), counts.get("StatementExecute:update 1"));
+    }
+
+    private static Object startRecording() throws Exception {
+        final Object recording = Class.forName("jdk.jfr.Recording").newInstance();
+        recording.getClass().getMethod("start").invoke(recording);
+        return recording;
+    }
+
+    /**
+     * Stops and closes a recording.
+     *
+     * @return the events of this package the current thread recorded, see
+     *         {@link #countEvents(Object, Class)}
+     */
+    private static Map<String, Integer> stopRecording(final Object recording) throws Exception {
+        final Class<?> recordingClass = recording.getClass();
+        final File file = File.createTempFile("dbcp", ".jfr");
+        try {
+            recordingClass.getMethod("stop").invoke(recording);
+            final Class<?> pathClass = Class.forName("java.nio.file.Path");
+            final Object path = File.class.getMethod("toPath").invoke(file);
+            recordingClass.getMethod("dump", pathClass).invoke(recording, path);
+            return countEvents(path, pathClass);
+        } finally {
+            recordingClass.getMethod("close").invoke(recording);
+            file.delete();
+        }
+    }
+
+    /**
+     * Counts the events of this package recorded by the current thread by
+     * name, and the statement events also by cache hit and SQL. Events of
+     * other threads, such as the evictors of pools other tests left open,
+     * are ignored.
+     */
+    private static Map<String, Integer> countEvents(final Object path, final Class<?> pathClass)
+            throws Exception {
+        final Class<?> fileClass = Class.forName("jdk.jfr.consumer.RecordingFile");
+        final Class<?> eventClass = Class.forName("jdk.jfr.consumer.RecordedEvent");
+        final Method getEventType = eventClass.getMethod("getEventType");
+        final Method getName = Class.forName("jdk.jfr.EventType").getMethod("getName");
+        final Method getValue = eventClass.getMethod("getValue", String.class);
+        final Method getThread = eventClass.getMethod("getThread");
+        final Method getJavaThreadId = Class.forName("jdk.jfr.consumer.RecordedThread")
+                .getMethod("getJavaThreadId");
+        final long threadId = Thread.currentThread().getId();
+        final Map<String, Integer> counts = new HashMap<>();
+        final List<?> events = (List<?>) fileClass.getMethod("readAllEvents", pathClass).invoke(null, path);
+        for (final Object event : events) {
+            final String name = (String) getName.invoke(getEventType.invoke(event));
+            if (!name.startsWith(PREFIX)) {
+                continue;
+            }
+            final Object thread = getThread.invoke(event);
+            if (thread == null || ((Long) getJavaThreadId.invoke(thread)).longValue() != threadId) {
+                continue;
+            }
+            final String shortName = name.substring(PREFIX.length());
+            increment(counts, shortName);
+            if (shortName.equals("StatementPrepare")) {
+                increment(counts, shortName + ":" + getValue.invoke(event, "cacheHit"));
+            } else if (shortName.equals("StatementExecute")) {
+                increment(counts, shortName + ":" + getValue.invoke(event, "sql"));
+            }
+        }
+        return counts;
+    }
+
+    private static void increment(final Map<String, Integer> counts, final String key) {
+        final Integer count = counts.get(key);
+        counts.put(key, Integer.valueOf(count == null ? 1 : count.intValue() + 1));
+    }
+}
@@ -0,0 +1,129 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.commons.dbcp2;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import java.sql.Connection;
+import java.sql.SQLException;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+/**
+ * TestSuite for LazyConnectionDataSource
+ */
+public class TestLazyConnectionDataSource {
+
+    private BasicDataSource target = null;
+    private LazyConnectionDataSource ds = null;
+
+    @Before
+    public void setUp() throws Exception {
+        target = new BasicDataSource();
+        target.setDriverClassName("org.apache.commons.dbcp2.TesterDriver");
+        target.setUrl("jdbc:apache:commons:testdriver");
+        target.setUsername("foo");
+        target.setPassword("bar");
+        target.setMaxTotal(10);
+        target.setMaxWaitMillis(100);
+        target.setDefaultAutoCommit(Boolean.TRUE);
+        target.setDefaultReadOnly(Boolean.FALSE);
+        target.setDefaultTransactionIsolation(Connection.TRANSACTION_READ_COMMITTED);
+        ds = new LazyConnectionDataSource(target);
+    }
+
+    @After
+    public void tearDown() throws Exception {
+        target.close();
+    }
+
+    @Test
+    public void testNoBorrowUntilFirstStatement() throws Exception {
+        try (Connection conn = ds.getConnection()) {
+            conn.setAutoCommit(false);
+            conn.setReadOnly(true);
+            conn.setTransactionIsolation(Connection.TRANSACTION_SERIALIZABLE);
+            conn.setCatalog("lazy");
+            conn.commit();
+            assertNull(conn.getWarnings());
+            assertFalse(((LazyConnection) conn).isAcquired());
+            assertEquals(0, target.getNumActive());
+
+            conn.createStatement().close();
+            assertTrue(((LazyConnection) conn).isAcquired());
+            assertEquals(1, target.getNumActive());
+            final Connection inner = ((LazyConnection) conn).getDelegate();
+            assertFalse(inner.getAutoCommit());
+            assertTrue(inner.isReadOnly());
+            assertEquals(Connection.TRANSACTION_SERIALIZABLE, inner.getTransactionIsolation());
+            assertEquals("lazy", inner.getCatalog());
+        }
+        assertEquals(0, target.getNumActive());
+        assertEquals(1, target.getNumIdle());
+    }
+
+    @Test
+    public void testMetaDataBorrows() throws Exception {
+        try (Connection conn = ds.getConnection()) {
+            conn.getMetaData();
+            assertEquals(1, target.getNumActive());
+        }
+        assertEquals(0, target.getNumActive());
+    }
+
+    @Test
+    public void testUnsetSettingFromDefaults() throws Exception {
+        try (Connection conn = ds.getConnection()) {
+            // Configured on the target
+            assertTrue(conn.getAutoCommit());
+            assertFalse(conn.isReadOnly());
+            assertEquals(Connection.TRANSACTION_READ_COMMITTED, conn.getTransactionIsolation());
+            assertEquals(0, target.getNumActive());
+            // Not configured, so taken from the first connection
+            conn.getCatalog();
+            assertEquals(1, target.getNumActive());
+        }
+        try (Connection conn = ds.getConnection()) {
+            conn.getCatalog();
+            assertEquals(0, target.getNumActive());
+        }
+    }
+
+    @Test
+    public void testCloseWithoutBorrow() throws Exception {
+        final Connection conn = ds.getConnection();
+        conn.setReadOnly(true);
+        assertTrue(conn.isValid(0));
+        conn.close();
+        assertTrue(conn.isClosed());
+        assertEquals(0, target.getNumActive());
+        assertEquals(0, target.getNumIdle());
+        try {
+            conn.createStatement();
+            fail("Expected SQLException");
+        } catch (final SQLException e) {
+            // expected
+        }
+        assertEquals(0, target.getNumActive());
+    }
+}
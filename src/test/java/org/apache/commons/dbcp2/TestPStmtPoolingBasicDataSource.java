@@ -84,6 +84,57 @@ public class TestPStmtPoolingBasicDataSource extends TestBasicDataSource {
         assertNotNull(stmt4);
     }
 
+    @Test
+    public void testPrewarmStatements() throws Exception {
+        ds.setPrewarmStatementCount(2);
+        ds.setMaxOpenPreparedStatements(5);
+        ds.setAccessToUnderlyingConnectionAllowed(true);
+        try (Connection conn = getConnection()) {
+            for (int i = 0; i < 3; i++) {
+                conn.prepareStatement("select 'a' from dual").close();
+                conn.prepareStatement("select 'b' from dual").close();
+            }
+            conn.prepareStatement("select 'c' from dual").close();
+            // Hold the first connection so that a new one is created
+            try (Connection conn2 = getConnection()) {
+                final PoolingConnection pc = getPoolingConnection(conn2);
+                assertEquals(2, pc.getStatementPool().getNumIdle());
+                assertEquals(1, pc.getStatementPool().getNumIdle(
+                        pc.createKey("select 'a' from dual")));
+                assertEquals(0, pc.getStatementPool().getNumIdle(
+                        pc.createKey("select 'c' from dual")));
+            }
+        }
+    }
+
+    private static PoolingConnection getPoolingConnection(final Connection conn) {
+        Connection c = conn;
+        while (c instanceof DelegatingConnection && !(c instanceof PoolingConnection)) {
+            c = ((DelegatingConnection<?>) c).getDelegateInternal();
+        }
+        return (PoolingConnection) c;
+    }
+
+    @Test
+    public void testCanonicalizeSql() throws Exception {
+        ds.setCanonicalizeSql(true);
+        ds.setStripSqlComments(true);
+        ds.setAccessToUnderlyingConnectionAllowed(true);
+        try (Connection conn = getConnection()) {
+            final PreparedStatement stmt1 = conn.prepareStatement("select 'a'  from dual");
+            final Statement inner1 = ((DelegatingPreparedStatement) stmt1).getInnermostDelegate();
+            stmt1.close();
+            final PreparedStatement stmt2 = conn.prepareStatement(
+                    "select 'a' -- same statement\n\tfrom   dual");
+            assertSame(inner1, ((DelegatingPreparedStatement) stmt2).getInnermostDelegate());
+            stmt2.close();
+            // Whitespace inside literals is significant
+            final PreparedStatement stmt3 = conn.prepareStatement("select 'a  ' from dual");
+            assertNotSame(inner1, ((DelegatingPreparedStatement) stmt3).getInnermostDelegate());
+            stmt3.close();
+        }
+    }
+
     /**
      * Verifies that the prepared statement pool behaves as an LRU cache,
      * closing least-recently-used statements idle in the pool to make room
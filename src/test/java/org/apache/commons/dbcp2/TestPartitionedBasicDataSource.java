@@ -0,0 +1,129 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.commons.dbcp2;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import java.sql.Connection;
+import java.sql.SQLException;
+import java.util.concurrent.TimeUnit;
+
+import org.junit.Test;
+
+/**
+ * TestSuite for BasicDataSource with a partitioned connection pool.
+ */
+public class TestPartitionedBasicDataSource extends TestBasicDataSource {
+
+    @Override
+    protected BasicDataSource createDataSource() throws Exception {
+        final BasicDataSource bds = new BasicDataSource();
+        bds.setPoolPartitions(3);
+        return bds;
+    }
+
+    /**
+     * The connection pool is only the first partition here.
+     */
+    @Override
+    @Test
+    public void testConcurrentInitBorrow() throws Exception {
+        ds.setDriverClassName("org.apache.commons.dbcp2.TesterConnectionDelayDriver");
+        ds.setUrl("jdbc:apache:commons:testerConnectionDelayDriver:50");
+        ds.setInitialSize(8);
+
+        // Launch a request to trigger pool initialization
+        final TestThread testThread = new TestThread(1,0);
+        final Thread t = new Thread(testThread);
+        t.start();
+
+        // Get another connection (should wait for pool init)
+        Thread.sleep(100); // Make sure t gets into init first
+        ds.getConnection();
+
+        // Pool should have at least 6 idle connections now
+        assertTrue(ds.getObjectPool().getNumIdle() > 5);
+
+        // Make sure t completes successfully
+        t.join();
+        assertFalse(testThread.failed());
+
+        ds.close();
+    }
+
+    @Test
+    public void testBorrowFromAllPartitions() throws Exception {
+        final Connection[] c = new Connection[getMaxTotal()];
+        for (int i = 0; i < c.length; i++) {
+            c[i] = ds.getConnection();
+        }
+        assertEquals(3, ds.getPoolPartitions());
+        assertEquals(getMaxTotal(), ds.getNumActive());
+        try {
+            ds.getConnection(0, TimeUnit.MILLISECONDS);
+            fail("Expected SQLException");
+        } catch (final SQLException expected) {
+            // Every partition is exhausted
+        }
+        for (final Connection element : c) {
+            element.close();
+        }
+        assertEquals(0, ds.getNumActive());
+        // maxIdle is shared by the partitions too
+        assertEquals(Math.min(getMaxTotal(), ds.getMaxIdle()), ds.getNumIdle());
+    }
+
+    @Test
+    public void testSetMaxTotalSharedByPartitions() throws Exception {
+        ds.getConnection().close();
+        ds.setMaxTotal(4);
+        final Connection[] c = new Connection[4];
+        for (int i = 0; i < c.length; i++) {
+            c[i] = ds.getConnection();
+        }
+        try {
+            ds.getConnection(0, TimeUnit.MILLISECONDS);
+            fail("Expected SQLException");
+        } catch (final SQLException expected) {
+            // The four connections are spread over the partitions
+        }
+        for (final Connection element : c) {
+            element.close();
+        }
+    }
+
+    @Test
+    public void testAbandonedConnectionsForgotten() throws Exception {
+        ds.setMaxTotal(6);
+        ds.setRemoveAbandonedOnBorrow(true);
+        ds.setRemoveAbandonedTimeout(0);
+        for (int i = 0; i < 6; i++) {
+            // Leaked
+            ds.getConnection();
+        }
+        Thread.sleep(50);
+        final Connection conn = ds.getConnection();
+        final PartitionedObjectPool<?> pool = (PartitionedObjectPool<?>) ds.getObjectPool();
+        // The partition removed abandoned connections by itself
+        assertTrue(ds.getNumActive() < 7);
+        assertEquals(ds.getNumActive(), pool.getNumBorrowed());
+        conn.close();
+    }
+}
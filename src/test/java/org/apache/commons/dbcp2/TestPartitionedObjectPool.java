@@ -0,0 +1,187 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.commons.dbcp2;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.NoSuchElementException;
+
+import org.apache.commons.pool2.BasePooledObjectFactory;
+import org.apache.commons.pool2.PooledObject;
+import org.apache.commons.pool2.impl.DefaultPooledObject;
+import org.apache.commons.pool2.impl.GenericObjectPool;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+/**
+ * TestSuite for PartitionedObjectPool
+ */
+public class TestPartitionedObjectPool {
+
+    private List<GenericObjectPool<Object>> partitions;
+    private PartitionedObjectPool<Object> pool;
+
+    @Before
+    public void setUp() {
+        final BasePooledObjectFactory<Object> factory = new BasePooledObjectFactory<Object>() {
+            @Override
+            public Object create() {
+                return new Object();
+            }
+
+            @Override
+            public PooledObject<Object> wrap(final Object obj) {
+                return new DefaultPooledObject<>(obj);
+            }
+        };
+        partitions = new ArrayList<>();
+        for (int i = 0; i < 3; i++) {
+            final GenericObjectPool<Object> partition = new GenericObjectPool<>(factory);
+            partition.setMaxTotal(2);
+            partition.setMaxWaitMillis(100);
+            partitions.add(partition);
+        }
+        pool = new PartitionedObjectPool<>(partitions);
+    }
+
+    @After
+    public void tearDown() {
+        pool.close();
+    }
+
+    @Test
+    public void testShare() {
+        assertEquals(4, PartitionedObjectPool.share(10, 0, 3));
+        assertEquals(3, PartitionedObjectPool.share(10, 1, 3));
+        assertEquals(3, PartitionedObjectPool.share(10, 2, 3));
+        assertEquals(0, PartitionedObjectPool.share(2, 2, 3));
+        assertEquals(-1, PartitionedObjectPool.share(-1, 1, 3));
+    }
+
+    @Test
+    public void testBorrowStealsFromOtherPartitions() throws Exception {
+        final Object[] objects = new Object[6];
+        for (int i = 0; i < objects.length; i++) {
+            objects[i] = pool.borrowObject();
+        }
+        assertEquals(6, pool.getNumActive());
+        for (final GenericObjectPool<Object> partition : partitions) {
+            assertEquals(2, partition.getNumActive());
+        }
+        try {
+            pool.borrowObject(0);
+            fail("Expected NoSuchElementException");
+        } catch (final NoSuchElementException expected) {
+            // Every partition is exhausted
+        }
+        // Each object goes back to the partition it came from
+        for (final Object obj : objects) {
+            pool.returnObject(obj);
+        }
+        assertEquals(0, pool.getNumActive());
+        for (final GenericObjectPool<Object> partition : partitions) {
+            assertEquals(2, partition.getNumIdle());
+        }
+    }
+
+    @Test
+    public void testWaitForReturnToOtherPartition() throws Exception {
+        final Object[] objects = new Object[6];
+        for (int i = 0; i < objects.length; i++) {
+            objects[i] = pool.borrowObject();
+        }
+        final Thread returner = new Thread() {
+            @Override
+            public void run() {
+                try {
+                    Thread.sleep(50);
+                    pool.returnObject(objects[5]);
+                } catch (final Exception e) {
+                    // The borrower times out instead
+                }
+            }
+        };
+        returner.start();
+        // Waits on the home partition, but finds the object returned to another one
+        assertSame(objects[5], pool.borrowObject(5000));
+        returner.join();
+        for (final Object obj : objects) {
+            pool.returnObject(obj);
+        }
+    }
+
+    @Test
+    public void testAddObjectAndInvalidate() throws Exception {
+        for (int i = 0; i < 3; i++) {
+            pool.addObject();
+        }
+        for (final GenericObjectPool<Object> partition : partitions) {
+            assertEquals(1, partition.getNumIdle());
+        }
+        final Object obj = pool.borrowObject();
+        assertNotNull(obj);
+        pool.invalidateObject(obj);
+        assertEquals(0, pool.getNumActive());
+        assertEquals(2, pool.getNumIdle());
+        try {
+            pool.returnObject(obj);
+            fail("Expected IllegalStateException");
+        } catch (final IllegalStateException expected) {
+            // No longer borrowed
+        }
+    }
+
+    @Test
+    public void testWaitTimesOut() throws Exception {
+        final Object[] objects = new Object[6];
+        for (int i = 0; i < objects.length; i++) {
+            objects[i] = pool.borrowObject();
+        }
+        final long start = System.currentTimeMillis();
+        try {
+            pool.borrowObject(100);
+            fail("Expected NoSuchElementException");
+        } catch (final NoSuchElementException expected) {
+            // Nothing was returned
+        }
+        assertTrue(System.currentTimeMillis() - start >= 100);
+        for (final Object obj : objects) {
+            pool.returnObject(obj);
+        }
+    }
+
+    @Test
+    public void testInvalidatedByPartition() throws Exception {
+        final Object obj = pool.borrowObject();
+        assertEquals(1, pool.getNumBorrowed());
+        for (final GenericObjectPool<Object> partition : partitions) {
+            if (partition.getNumActive() == 1) {
+                partition.invalidateObject(obj);
+            }
+        }
+        pool.invalidated(obj);
+        assertEquals(0, pool.getNumBorrowed());
+        assertEquals(0, pool.getNumActive());
+    }
+}
@@ -0,0 +1,286 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.commons.dbcp2;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.ArrayList;
+import java.util.List;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+/**
+ * TestSuite for PoolEventListener
+ */
+public class TestPoolEventListener {
+
+    /**
+     * Records the events it receives as strings.
+     */
+    private static class RecordingListener extends PoolEventAdapter {
+        final List<String> events = new ArrayList<>();
+        final List<PoolableConnection> connections = new ArrayList<>();
+
+        private synchronized void record(final String event, final PoolableConnection conn) {
+            events.add(event);
+            connections.add(conn);
+        }
+
+        synchronized int count(final String event) {
+            int count = 0;
+            for (final String e : events) {
+                if (e.equals(event)) {
+                    count++;
+                }
+            }
+            return count;
+        }
+
+        @Override
+        public void connectionCreated(final PoolableConnection conn) {
+            record("created", conn);
+        }
+
+        @Override
+        public void connectionDestroyed(final PoolableConnection conn) {
+            record("destroyed", conn);
+        }
+
+        @Override
+        public void connectionBorrowed(final PoolableConnection conn) {
+            record("borrowed", conn);
+        }
+
+        @Override
+        public void connectionReturned(final PoolableConnection conn) {
+            record("returned", conn);
+        }
+
+        @Override
+        public void connectionValidationFailed(final PoolableConnection conn, final Exception cause) {
+            record("validationFailed", conn);
+        }
+
+        @Override
+        public void connectionAbandoned(final PoolableConnection conn) {
+            record("abandoned", conn);
+        }
+
+        @Override
+        public void statementExecutionStarted(final Statement statement, final String sql) {
+            record("started:" + sql, null);
+        }
+
+        @Override
+        public void statementExecutionEnded(final Statement statement, final String sql,
+                final long elapsedNanos) {
+            record("ended:" + sql, null);
+        }
+
+        @Override
+        public void statementCacheHit(final PStmtKey key) {
+            record("hit:" + key.getSql(), null);
+        }
+
+        @Override
+        public void statementCacheMiss(final PStmtKey key) {
+            record("miss:" + key.getSql(), null);
+        }
+    }
+
+    private BasicDataSource ds = null;
+    private RecordingListener listener = null;
+
+    @Before
+    public void setUp() throws Exception {
+        ds = new BasicDataSource();
+        ds.setDriverClassName("org.apache.commons.dbcp2.TesterDriver");
+        ds.setUrl("jdbc:apache:commons:testdriver");
+        ds.setUsername("foo");
+        ds.setPassword("bar");
+        ds.setMaxTotal(10);
+        ds.setMaxWaitMillis(100);
+        listener = new RecordingListener();
+        ds.addPoolEventListener(listener);
+    }
+
+    @After
+    public void tearDown() throws Exception {
+        ds.close();
+    }
+
+    @Test
+    public void testConnectionLifecycle() throws Exception {
+        ds.setAccessToUnderlyingConnectionAllowed(true);
+        final Connection conn = ds.getConnection();
+        assertEquals(1, listener.count("created"));
+        assertEquals(1, listener.count("borrowed"));
+        final PoolableConnection pc = listener.connections.get(0);
+        assertSame(pc, ((DelegatingConnection<?>) conn).getDelegate());
+        conn.close();
+        assertEquals(1, listener.count("returned"));
+        ds.close();
+        assertEquals(1, listener.count("destroyed"));
+        assertSame(pc, listener.connections.get(listener.connections.size() - 1));
+    }
+
+    @Test
+    public void testStatementEvents() throws Exception {
+        ds.setPoolPreparedStatements(true);
+        try (Connection conn = ds.getConnection()) {
+            for (int i = 0; i < 2; i++) {
+                try (PreparedStatement ps = conn.prepareStatement("select 1")) {
+                    ps.executeQuery().close();
+                }
+            }
+            try (Statement stmt = conn.createStatement()) {
+                stmt.executeUpdate("update 1");
+            }
+        }
+        assertEquals(1, listener.count("miss:select 1"));
+        assertEquals(1, listener.count("hit:select 1"));
+        // Once per execution, whatever the number of delegating layers
+        assertEquals(2, listener.count("started:select 1"));
+        assertEquals(2, listener.count("ended:select 1"));
+        assertEquals(1, listener.count("started:update 1"));
+        assertEquals(1, listener.count("ended:update 1"));
+        final int start = listener.events.indexOf("started:update 1");
+        assertEquals("ended:update 1", listener.events.get(start + 1));
+    }
+
+    @Test
+    public void testValidationFailed() throws Exception {
+        ds.setTestWhileIdle(true);
+        ds.setValidationQuery("SELECT DUMMY FROM DUAL");
+        final Connection conn = ds.getConnection();
+        final TesterConnection inner =
+                (TesterConnection) ((DelegatingConnection<?>) conn).getInnermostDelegateInternal();
+        conn.close();
+        inner.setFailure(new SQLException("broken"));
+        try {
+            ds.getConnectionPool().evict();
+        } catch (final SQLException e) {
+            // Closing the broken connection fails too
+        }
+        assertEquals(1, listener.count("validationFailed"));
+        assertEquals(1, listener.count("destroyed"));
+    }
+
+    @Test
+    public void testEvictorTestsNotBorrowed() throws Exception {
+        ds.setTestWhileIdle(true);
+        ds.setValidationQuery("SELECT DUMMY FROM DUAL");
+        ds.setNumTestsPerEvictionRun(10);
+        final Connection conn1 = ds.getConnection();
+        final Connection conn2 = ds.getConnection();
+        conn1.close();
+        conn2.close();
+        ds.getConnectionPool().evict();
+        ds.getConnectionPool().evict();
+        ds.getConnection().close();
+        assertEquals(0, listener.count("destroyed"));
+        assertEquals(3, listener.count("borrowed"));
+        assertEquals(listener.count("borrowed"), listener.count("returned"));
+    }
+
+    @Test
+    public void testBorrowReportedAfterValidation() throws Exception {
+        ds.setTestOnBorrow(true);
+        ds.setValidationQuery("SELECT DUMMY FROM DUAL");
+        final Connection conn = ds.getConnection();
+        final TesterConnection inner =
+                (TesterConnection) ((DelegatingConnection<?>) conn).getInnermostDelegateInternal();
+        conn.close();
+        inner.setFailure(new SQLException("broken"));
+        // The broken connection fails validation and is replaced
+        ds.getConnection().close();
+        assertEquals(1, listener.count("validationFailed"));
+        assertEquals(2, listener.count("borrowed"));
+        assertEquals(2, listener.count("returned"));
+    }
+
+    @Test
+    public void testAbandoned() throws Exception {
+        ds.setRemoveAbandonedOnBorrow(true);
+        ds.setRemoveAbandonedTimeout(0);
+        ds.setMaxTotal(1);
+        final Connection abandoned = ds.getConnection();
+        Thread.sleep(10);
+        try (Connection conn = ds.getConnection()) {
+            assertEquals(1, listener.count("abandoned"));
+        }
+        assertTrue(abandoned.isClosed());
+    }
+
+    @Test
+    public void testAddedConnectionsNotReturned() throws Exception {
+        ds.setInitialSize(2);
+        ds.getConnection().close();
+        assertEquals(2, listener.count("created"));
+        assertEquals(1, listener.count("returned"));
+    }
+
+    @Test
+    public void testInvalidatedNotAbandoned() throws Exception {
+        ds.setRemoveAbandonedOnBorrow(true);
+        ds.setRemoveAbandonedTimeout(0);
+        final Connection conn = ds.getConnection();
+        Thread.sleep(10);
+        ds.invalidateConnection(conn);
+        assertEquals(0, listener.count("abandoned"));
+        assertEquals(1, listener.count("destroyed"));
+    }
+
+    @Test
+    public void testAddAndRemoveAfterInitialization() throws Exception {
+        ds.getConnection().close();
+        final RecordingListener late = new RecordingListener();
+        ds.addPoolEventListener(late);
+        assertEquals(2, ds.getPoolEventListeners().size());
+        ds.getConnection().close();
+        assertEquals(1, late.count("borrowed"));
+        assertTrue(ds.removePoolEventListener(late));
+        assertFalse(ds.removePoolEventListener(late));
+        ds.getConnection().close();
+        assertEquals(1, late.count("borrowed"));
+        assertEquals(3, listener.count("borrowed"));
+    }
+
+    @Test
+    public void testFailingListenerIsolated() throws Exception {
+        ds.addPoolEventListener(new PoolEventAdapter() {
+            @Override
+            public void connectionBorrowed(final PoolableConnection conn) {
+                throw new IllegalStateException("listener failure");
+            }
+        });
+        final RecordingListener last = new RecordingListener();
+        ds.addPoolEventListener(last);
+        ds.getConnection().close();
+        assertEquals(1, listener.count("borrowed"));
+        assertEquals(1, last.count("borrowed"));
+    }
+}
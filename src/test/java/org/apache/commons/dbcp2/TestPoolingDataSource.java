@@ -20,10 +20,22 @@ package org.apache.commons.dbcp2;
 import static org.junit.Assert.assertEquals;
 import static org.junit.Assert.assertFalse;
 import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
 import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
 
 import java.sql.Connection;
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
 import java.util.Properties;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicReference;
 
 import org.apache.commons.pool2.impl.GenericObjectPool;
 import org.junit.After;
@@ -201,4 +213,360 @@ public class TestPoolingDataSource extends TestConnectionPool {
         assertEquals(0, p.getNumIdle());
         assertEquals(0, p.getNumActive());
     }
+
+    @Test
+    public void testGetConnectionAsync() throws Exception {
+        final Future<Connection> future = ds.getConnectionAsync(0);
+        assertTrue(future.isDone());
+        final Connection conn = future.get();
+        assertNotNull(conn);
+        assertEquals(1, pool.getNumActive());
+        conn.close();
+        assertEquals(0, pool.getNumActive());
+    }
+
+    @Test
+    public void testGetConnectionAsyncQueued() throws Exception {
+        final Connection[] c = new Connection[getMaxTotal()];
+        for (int i = 0; i < c.length; i++) {
+            c[i] = ds.getConnection();
+        }
+        final AtomicReference<Connection> handedOver = new AtomicReference<>();
+        final Future<Connection> future = ds.getConnectionAsync(-1, new ConnectionCallback() {
+            @Override
+            public void connectionAvailable(final Connection connection) {
+                handedOver.set(connection);
+            }
+
+            @Override
+            public void connectionFailed(final SQLException cause) {
+                fail("Unexpected failure " + cause);
+            }
+        });
+        assertFalse(future.isDone());
+        final Connection underlying = ((DelegatingConnection<?>) c[0]).getInnermostDelegate();
+        // Closing a connection completes the request on this thread
+        c[0].close();
+        assertTrue(future.isDone());
+        final Connection conn = future.get();
+        assertSame(conn, handedOver.get());
+        assertSame(underlying, ((DelegatingConnection<?>) conn).getInnermostDelegate());
+        assertEquals(getMaxTotal(), pool.getNumActive());
+        conn.close();
+        for (int i = 1; i < c.length; i++) {
+            c[i].close();
+        }
+        assertEquals(0, pool.getNumActive());
+    }
+
+    @Test
+    public void testGetConnectionAsyncValidationFailureReported() throws Exception {
+        ((PoolableConnectionFactory) pool.getFactory()).setValidationQuery("invalid");
+        pool.setTestOnBorrow(true);
+        final Future<Connection> future = ds.getConnectionAsync(-1);
+        // Not queued as if the pool were exhausted
+        assertTrue(future.isDone());
+        try {
+            future.get();
+            fail("Expecting ExecutionException");
+        } catch (final ExecutionException ex) {
+            assertTrue(ex.getCause() instanceof SQLException);
+        }
+        assertEquals(2, pool.getDestroyedByBorrowValidationCount());
+        assertEquals(0, pool.getNumActive());
+    }
+
+    @Test
+    public void testGetConnectionAsyncTimeout() throws Exception {
+        final Connection[] c = new Connection[getMaxTotal()];
+        for (int i = 0; i < c.length; i++) {
+            c[i] = ds.getConnection();
+        }
+        final Future<Connection> future = ds.getConnectionAsync(50);
+        try {
+            future.get(5, TimeUnit.SECONDS);
+            fail("Expecting ExecutionException");
+        } catch (final ExecutionException ex) {
+            assertTrue(ex.getCause() instanceof SQLException);
+        }
+        for (final Connection element : c) {
+            element.close();
+        }
+        assertEquals(0, pool.getNumActive());
+    }
+
+    @Test
+    public void testGetConnectionAsyncCancel() throws Exception {
+        final Connection[] c = new Connection[getMaxTotal()];
+        for (int i = 0; i < c.length; i++) {
+            c[i] = ds.getConnection();
+        }
+        final Future<Connection> future = ds.getConnectionAsync(-1);
+        assertTrue(future.cancel(false));
+        assertTrue(future.isCancelled());
+        c[0].close();
+        assertEquals(1, pool.getNumIdle());
+        for (int i = 1; i < c.length; i++) {
+            c[i].close();
+        }
+    }
+
+    @Test
+    public void testGetConnectionAsyncClose() throws Exception {
+        final Connection[] c = new Connection[getMaxTotal()];
+        for (int i = 0; i < c.length; i++) {
+            c[i] = ds.getConnection();
+        }
+        final Future<Connection> future = ds.getConnectionAsync(-1);
+        ds.close();
+        try {
+            future.get(5, TimeUnit.SECONDS);
+            fail("Expecting ExecutionException");
+        } catch (final ExecutionException ex) {
+            assertTrue(ex.getCause() instanceof SQLException);
+        }
+        for (final Connection element : c) {
+            element.close();
+        }
+    }
+
+    @Test
+    public void testGetConnectionWithTimeout() throws Exception {
+        final Connection[] c = new Connection[getMaxTotal()];
+        for (int i = 0; i < c.length; i++) {
+            c[i] = ds.getConnection(1, TimeUnit.SECONDS);
+        }
+        final long start = System.currentTimeMillis();
+        try {
+            ds.getConnection(0, TimeUnit.MILLISECONDS);
+            fail("Expected SQLException");
+        } catch (final SQLException expected) {
+            // The pool is exhausted and the caller would not wait
+        }
+        assertTrue(System.currentTimeMillis() - start < getMaxWaitMillis());
+
+        // Wait longer than the pool's maximum wait for a returned connection
+        final Connection returned = c[0];
+        final Thread closer = new Thread() {
+            @Override
+            public void run() {
+                try {
+                    Thread.sleep(3 * getMaxWaitMillis());
+                    returned.close();
+                } catch (final Exception e) {
+                    // The borrower fails instead
+                }
+            }
+        };
+        closer.start();
+        c[0] = ds.getConnection(10, TimeUnit.SECONDS);
+        closer.join();
+        assertNotNull(c[0]);
+        for (final Connection element : c) {
+            element.close();
+        }
+    }
+
+    @Test
+    public void testGetConnectionAsyncByPriority() throws Exception {
+        final Connection[] c = new Connection[getMaxTotal()];
+        for (int i = 0; i < c.length; i++) {
+            c[i] = ds.getConnection();
+        }
+        ds.setPriorityAgingMillis(60000);
+        final Future<Connection> low = ds.getConnectionAsync(-1, ConnectionPriority.LOW, null);
+        final Future<Connection> normal = ds.getConnectionAsync(-1, ConnectionPriority.NORMAL, null);
+        final Future<Connection> high = ds.getConnectionAsync(-1, ConnectionPriority.HIGH, null);
+        c[0].close();
+        assertTrue(high.isDone());
+        assertFalse(normal.isDone());
+        c[1].close();
+        assertTrue(normal.isDone());
+        assertFalse(low.isDone());
+        c[2].close();
+        assertTrue(low.isDone());
+        c[0] = high.get();
+        c[1] = normal.get();
+        c[2] = low.get();
+        for (final Connection element : c) {
+            element.close();
+        }
+        assertEquals(0, pool.getNumActive());
+    }
+
+    @Test
+    public void testGetConnectionAsyncPriorityAging() throws Exception {
+        final Connection[] c = new Connection[getMaxTotal()];
+        for (int i = 0; i < c.length; i++) {
+            c[i] = ds.getConnection();
+        }
+        ds.setPriorityAgingMillis(10);
+        final Future<Connection> low = ds.getConnectionAsync(-1, ConnectionPriority.LOW, null);
+        // Long enough for the low priority request to overtake a new high priority one
+        Thread.sleep(100);
+        final Future<Connection> high = ds.getConnectionAsync(-1, ConnectionPriority.HIGH, null);
+        c[0].close();
+        assertTrue(low.isDone());
+        assertFalse(high.isDone());
+        c[1].close();
+        c[0] = low.get();
+        c[1] = high.get();
+        for (final Connection element : c) {
+            element.close();
+        }
+    }
+
+    @Test
+    public void testPrioritizedBorrowing() throws Exception {
+        pool.setMaxWaitMillis(10000);
+        ds.setPrioritizedBorrowing(true);
+        ds.setPriorityAgingMillis(60000);
+        final Connection[] c = new Connection[getMaxTotal()];
+        for (int i = 0; i < c.length; i++) {
+            c[i] = ds.getConnection();
+        }
+        final List<ConnectionPriority> served = Collections.synchronizedList(
+                new ArrayList<ConnectionPriority>());
+        final Thread low = new PriorityBorrower(ConnectionPriority.LOW, served);
+        low.start();
+        awaitWaiting(low);
+        final Thread high = new PriorityBorrower(ConnectionPriority.HIGH, served);
+        high.start();
+        awaitWaiting(high);
+        // The high priority borrower is served first, and hands over to the low priority one
+        c[0].close();
+        high.join(10000);
+        low.join(10000);
+        assertEquals(Arrays.asList(ConnectionPriority.HIGH, ConnectionPriority.LOW), served);
+        for (int i = 1; i < c.length; i++) {
+            c[i].close();
+        }
+        assertEquals(0, pool.getNumActive());
+    }
+
+    @Test
+    public void testPrioritizedBorrowerServedAfterInvalidate() throws Exception {
+        pool.setMaxWaitMillis(-1);
+        ds.setPrioritizedBorrowing(true);
+        ds.setAccessToUnderlyingConnectionAllowed(true);
+        final Connection[] c = new Connection[getMaxTotal()];
+        for (int i = 0; i < c.length; i++) {
+            c[i] = ds.getConnection();
+        }
+        final List<ConnectionPriority> served = Collections.synchronizedList(
+                new ArrayList<ConnectionPriority>());
+        final Thread borrower = new PriorityBorrower(ConnectionPriority.NORMAL, served);
+        borrower.start();
+        awaitWaiting(borrower);
+        // Frees capacity without closing a connection, as abandoned connection removal does
+        pool.invalidateObject((PoolableConnection) ((DelegatingConnection<?>) c[0]).getDelegate());
+        borrower.join(10000);
+        assertEquals(Arrays.asList(ConnectionPriority.NORMAL), served);
+        for (final Connection element : c) {
+            element.close();
+        }
+        assertEquals(0, pool.getNumActive());
+    }
+
+    @Test
+    public void testPlainBorrowerWaitsBehindPriorityRequests() throws Exception {
+        pool.setMaxWaitMillis(10000);
+        final Connection[] c = new Connection[getMaxTotal()];
+        for (int i = 0; i < c.length; i++) {
+            c[i] = ds.getConnection();
+        }
+        final List<ConnectionPriority> served = Collections.synchronizedList(
+                new ArrayList<ConnectionPriority>());
+        final Thread high = new Thread() {
+            @Override
+            public void run() {
+                try (Connection conn = ds.getConnection(ConnectionPriority.HIGH)) {
+                    served.add(ConnectionPriority.HIGH);
+                } catch (final SQLException e) {
+                    // Not served
+                }
+            }
+        };
+        high.start();
+        awaitWaiting(high);
+        // Without prioritized borrowing, but queued rather than waiting in the pool
+        final Thread plain = new PriorityBorrower(ConnectionPriority.NORMAL, served);
+        plain.start();
+        awaitWaiting(plain);
+        c[0].close();
+        high.join(10000);
+        plain.join(10000);
+        assertEquals(Arrays.asList(ConnectionPriority.HIGH, ConnectionPriority.NORMAL), served);
+        for (int i = 1; i < c.length; i++) {
+            c[i].close();
+        }
+    }
+
+    @Test
+    public void testAsyncTimeoutDoesNotBorrow() throws Exception {
+        ds.setAccessToUnderlyingConnectionAllowed(true);
+        final Connection[] c = new Connection[getMaxTotal()];
+        for (int i = 0; i < c.length; i++) {
+            c[i] = ds.getConnection();
+        }
+        final Future<Connection> future = ds.getConnectionAsync(100);
+        // Capacity freed without closing a connection is left to borrowers
+        pool.invalidateObject((PoolableConnection) ((DelegatingConnection<?>) c[0]).getDelegate());
+        try {
+            future.get();
+            fail("Expected ExecutionException");
+        } catch (final ExecutionException expected) {
+            // Timed out
+        }
+        assertEquals(getMaxTotal() - 1, pool.getNumActive());
+        for (final Connection element : c) {
+            element.close();
+        }
+    }
+
+    @Test
+    public void testConnectionPriorityBinding() {
+        assertEquals(ConnectionPriority.NORMAL, ConnectionPriority.current());
+        assertNull(ConnectionPriority.setCurrent(ConnectionPriority.HIGH));
+        assertEquals(ConnectionPriority.HIGH, ConnectionPriority.current());
+        assertEquals(ConnectionPriority.HIGH, ConnectionPriority.setCurrent(null));
+        assertEquals(ConnectionPriority.NORMAL, ConnectionPriority.current());
+    }
+
+    private static void awaitWaiting(final Thread thread) throws InterruptedException {
+        final long deadline = System.currentTimeMillis() + 10000;
+        while (!isWaiting(thread) && System.currentTimeMillis() < deadline) {
+            Thread.sleep(5);
+        }
+        assertTrue(isWaiting(thread));
+    }
+
+    private static boolean isWaiting(final Thread thread) {
+        final Thread.State state = thread.getState();
+        return state == Thread.State.WAITING || state == Thread.State.TIMED_WAITING;
+    }
+
+    /**
+     * Borrows a connection with the priority bound to its thread, records
+     * that it was served and returns the connection.
+     */
+    private class PriorityBorrower extends Thread {
+        private final ConnectionPriority priority;
+        private final List<ConnectionPriority> served;
+
+        PriorityBorrower(final ConnectionPriority priority, final List<ConnectionPriority> served) {
+            this.priority = priority;
+            this.served = served;
+        }
+
+        @Override
+        public void run() {
+            ConnectionPriority.setCurrent(priority);
+            try (Connection conn = ds.getConnection()) {
+                served.add(priority);
+            } catch (final SQLException e) {
+                e.printStackTrace();
+            }
+        }
+    }
 }
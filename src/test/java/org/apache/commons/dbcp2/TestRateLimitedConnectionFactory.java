@@ -0,0 +1,200 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.commons.dbcp2;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotSame;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import java.sql.Connection;
+import java.sql.SQLException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.junit.Test;
+
+/**
+ * TestSuite for RateLimitedConnectionFactory and ConnectionCreationRateLimiter
+ */
+public class TestRateLimitedConnectionFactory {
+
+    private static class CountingConnectionFactory implements ConnectionFactory {
+        final AtomicInteger created = new AtomicInteger();
+
+        @Override
+        public Connection createConnection() throws SQLException {
+            created.incrementAndGet();
+            return new TesterConnection("userName", "password");
+        }
+    }
+
+    @Test
+    public void testBurstThenWait() throws Exception {
+        final ConnectionCreationRateLimiter limiter = new ConnectionCreationRateLimiter(10, 3);
+        assertTrue(limiter.acquire(0));
+        assertTrue(limiter.acquire(0));
+        assertTrue(limiter.acquire(0));
+        // Bucket is empty, the next permit is 100ms away
+        assertFalse(limiter.acquire(0));
+        final long start = System.currentTimeMillis();
+        assertTrue(limiter.acquire(1000));
+        final long waited = System.currentTimeMillis() - start;
+        assertTrue("Waited " + waited + "ms", waited >= 50);
+    }
+
+    @Test
+    public void testTimeout() throws Exception {
+        final CountingConnectionFactory delegate = new CountingConnectionFactory();
+        final RateLimitedConnectionFactory factory = new RateLimitedConnectionFactory(
+                delegate, new ConnectionCreationRateLimiter(1, 1), 50);
+        factory.createConnection().close();
+        try {
+            factory.createConnection();
+            fail("Expecting SQLException");
+        } catch (final SQLException ex) {
+            // Expected
+        }
+        assertEquals(1, delegate.created.get());
+    }
+
+    @Test
+    public void testSharedInstance() {
+        final ConnectionCreationRateLimiter a =
+                ConnectionCreationRateLimiter.getSharedInstance("jdbc:test:shared", 5, 5);
+        final ConnectionCreationRateLimiter b =
+                ConnectionCreationRateLimiter.getSharedInstance("jdbc:test:shared", 5, 5);
+        final ConnectionCreationRateLimiter c =
+                ConnectionCreationRateLimiter.getSharedInstance("jdbc:test:other", 5, 5);
+        try {
+            assertSame(a, b);
+            assertNotSame(a, c);
+            try {
+                ConnectionCreationRateLimiter.getSharedInstance("jdbc:test:shared", 50, 50);
+                fail("Expecting IllegalArgumentException");
+            } catch (final IllegalArgumentException ex) {
+                // Expected
+            }
+            ConnectionCreationRateLimiter.releaseSharedInstance("jdbc:test:shared", a);
+            assertSame(a, ConnectionCreationRateLimiter.getSharedInstance("jdbc:test:shared", 5, 5));
+            ConnectionCreationRateLimiter.releaseSharedInstance("jdbc:test:shared", a);
+        } finally {
+            ConnectionCreationRateLimiter.releaseSharedInstance("jdbc:test:shared", b);
+            ConnectionCreationRateLimiter.releaseSharedInstance("jdbc:test:other", c);
+        }
+        // Forgotten once every user has released it
+        final ConnectionCreationRateLimiter d =
+                ConnectionCreationRateLimiter.getSharedInstance("jdbc:test:shared", 50, 50);
+        assertNotSame(a, d);
+        assertEquals(50, d.getPermitsPerSecond());
+        ConnectionCreationRateLimiter.releaseSharedInstance("jdbc:test:shared", d);
+    }
+
+    @Test
+    public void testPerCallTimeoutBoundsPermitWait() throws Exception {
+        final BasicDataSource ds = new BasicDataSource();
+        ds.setDriverClassName("org.apache.commons.dbcp2.TesterDriver");
+        ds.setUrl("jdbc:apache:commons:testdriver");
+        ds.setUsername("username");
+        ds.setPassword("password");
+        ds.setMaxWaitMillis(5000);
+        ds.setConnectionCreationRate(1);
+        ds.setConnectionCreationBurst(1);
+        try {
+            // Uses the only permit, the next one is a second away
+            final Connection conn = ds.getConnection();
+            final long start = System.currentTimeMillis();
+            try {
+                ds.getConnection(20, TimeUnit.MILLISECONDS).close();
+            } catch (final SQLException ex) {
+                // Expected unless a permit came up within the timeout
+            }
+            final long elapsed = System.currentTimeMillis() - start;
+            assertTrue("Waited " + elapsed + " ms", elapsed < 500);
+            conn.close();
+        } finally {
+            ds.close();
+        }
+    }
+
+    @Test
+    public void testSharedBasicDataSources() throws Exception {
+        final BasicDataSource ds1 = createSharedDataSource(5);
+        final BasicDataSource ds2 = createSharedDataSource(5);
+        final BasicDataSource ds3 = createSharedDataSource(7);
+        try {
+            ds1.getConnection().close();
+            ds2.getConnection().close();
+            try {
+                ds3.getConnection();
+                fail("Expecting SQLException");
+            } catch (final SQLException ex) {
+                // Expected, the settings conflict with the shared limit
+            }
+            ds1.close();
+            ds2.close();
+            // Closing both discarded the shared limit
+            ds3.getConnection().close();
+        } finally {
+            ds1.close();
+            ds2.close();
+            ds3.close();
+        }
+    }
+
+    private BasicDataSource createSharedDataSource(final int rate) {
+        final BasicDataSource ds = new BasicDataSource();
+        ds.setDriverClassName("org.apache.commons.dbcp2.TesterDriver");
+        ds.setUrl("jdbc:apache:commons:testdriver:shared");
+        ds.setUsername("username");
+        ds.setPassword("password");
+        ds.setConnectionCreationRate(rate);
+        ds.setConnectionCreationRateShared(true);
+        return ds;
+    }
+
+    @Test
+    public void testBasicDataSource() throws Exception {
+        final BasicDataSource ds = new BasicDataSource();
+        ds.setDriverClassName("org.apache.commons.dbcp2.TesterDriver");
+        ds.setUrl("jdbc:apache:commons:testdriver");
+        ds.setUsername("username");
+        ds.setPassword("password");
+        ds.setMaxTotal(10);
+        ds.setMaxWaitMillis(50);
+        ds.setConnectionCreationRate(1);
+        ds.setConnectionCreationBurst(2);
+        try {
+            // One permit is used validating the connection factory
+            final Connection conn1 = ds.getConnection();
+            try {
+                ds.getConnection();
+                fail("Expecting SQLException");
+            } catch (final SQLException ex) {
+                // Expected
+            }
+            conn1.close();
+            // Returned connections are reused without a permit
+            ds.getConnection().close();
+            assertEquals(1, ds.getNumIdle());
+        } finally {
+            ds.close();
+        }
+    }
+}
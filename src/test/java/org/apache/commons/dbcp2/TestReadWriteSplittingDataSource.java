@@ -0,0 +1,178 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.commons.dbcp2;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import java.sql.Connection;
+import java.sql.SQLException;
+import java.sql.Statement;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+/**
+ * TestSuite for ReadWriteSplittingDataSource
+ */
+public class TestReadWriteSplittingDataSource {
+
+    private BasicDataSource primary = null;
+    private BasicDataSource replica = null;
+    private ReadWriteSplittingDataSource ds = null;
+
+    @Before
+    public void setUp() throws Exception {
+        primary = createDataSource("u1", "p1");
+        replica = createDataSource("u2", "p2");
+        ds = new ReadWriteSplittingDataSource(primary, replica);
+    }
+
+    private BasicDataSource createDataSource(final String user, final String password) {
+        final BasicDataSource bds = new BasicDataSource();
+        bds.setDriverClassName("org.apache.commons.dbcp2.TesterDriver");
+        bds.setUrl("jdbc:apache:commons:testdriver");
+        bds.setUsername(user);
+        bds.setPassword(password);
+        bds.setMaxTotal(10);
+        bds.setMaxWaitMillis(100);
+        bds.setDefaultAutoCommit(Boolean.TRUE);
+        bds.setDefaultReadOnly(Boolean.FALSE);
+        bds.setAccessToUnderlyingConnectionAllowed(true);
+        return bds;
+    }
+
+    @After
+    public void tearDown() throws Exception {
+        primary.close();
+        replica.close();
+    }
+
+    private String getUsername(final Connection conn) {
+        final Connection inner = ((DelegatingConnection<?>) conn).getInnermostDelegate();
+        return ((TesterConnection) inner).getUsername();
+    }
+
+    @Test
+    public void testNoBorrowUntilFirstStatement() throws Exception {
+        try (Connection conn = ds.getConnection()) {
+            conn.setAutoCommit(false);
+            conn.setReadOnly(true);
+            assertEquals(0, primary.getNumActive());
+            assertEquals(0, replica.getNumActive());
+            try (Statement stmt = conn.createStatement()) {
+                assertEquals(0, primary.getNumActive());
+                assertEquals(1, replica.getNumActive());
+            }
+        }
+        assertEquals(0, replica.getNumActive());
+        assertEquals(1, replica.getNumIdle());
+    }
+
+    @Test
+    public void testAutoCommitCheckedBeforeReadOnly() throws Exception {
+        try (Connection conn = ds.getConnection()) {
+            // As a transaction manager does before it marks the transaction read-only
+            if (conn.getAutoCommit()) {
+                conn.setAutoCommit(false);
+            }
+            conn.setReadOnly(true);
+            assertEquals(0, primary.getNumActive());
+            try (Statement stmt = conn.createStatement()) {
+                assertEquals("u2", getUsername(conn));
+            }
+        }
+    }
+
+    @Test
+    public void testReadOnlyRoutedToReplica() throws Exception {
+        try (Connection conn = ds.getConnection()) {
+            conn.setReadOnly(true);
+            conn.prepareStatement("select 1").close();
+            assertEquals("u2", getUsername(conn));
+            assertTrue(conn.isReadOnly());
+        }
+    }
+
+    @Test
+    public void testReadWriteRoutedToPrimary() throws Exception {
+        try (Connection conn = ds.getConnection()) {
+            conn.prepareStatement("select 1").close();
+            assertEquals("u1", getUsername(conn));
+            assertFalse(conn.isReadOnly());
+        }
+    }
+
+    @Test
+    public void testConnectionRetainedUntilClose() throws Exception {
+        try (Connection conn = ds.getConnection()) {
+            conn.setAutoCommit(false);
+            conn.createStatement().close();
+            assertEquals("u1", getUsername(conn));
+            // Changing the flag mid-transaction must not switch connections
+            conn.setReadOnly(true);
+            conn.createStatement().close();
+            assertEquals("u1", getUsername(conn));
+            assertEquals(1, primary.getNumActive());
+            assertEquals(0, replica.getNumActive());
+            conn.setReadOnly(false);
+            conn.commit();
+        }
+        assertEquals(0, primary.getNumActive());
+    }
+
+    @Test
+    public void testRecordedSettingsApplied() throws Exception {
+        try (Connection conn = ds.getConnection()) {
+            conn.setAutoCommit(false);
+            conn.setTransactionIsolation(Connection.TRANSACTION_SERIALIZABLE);
+            conn.setCatalog("test catalog");
+            assertFalse(conn.getAutoCommit());
+            assertEquals(Connection.TRANSACTION_SERIALIZABLE, conn.getTransactionIsolation());
+            assertEquals("test catalog", conn.getCatalog());
+            assertEquals(0, primary.getNumActive());
+
+            conn.createStatement().close();
+            final Connection inner = ((DelegatingConnection<?>) conn).getInnermostDelegate();
+            assertFalse(inner.getAutoCommit());
+            assertEquals(Connection.TRANSACTION_SERIALIZABLE, inner.getTransactionIsolation());
+            assertEquals("test catalog", inner.getCatalog());
+        }
+    }
+
+    @Test
+    public void testUnusedConnection() throws Exception {
+        final Connection conn = ds.getConnection();
+        conn.setReadOnly(true);
+        conn.commit();
+        conn.rollback();
+        assertTrue(conn.isValid(0));
+        conn.close();
+        assertTrue(conn.isClosed());
+        assertEquals(0, primary.getNumActive() + primary.getNumIdle());
+        assertEquals(0, replica.getNumActive() + replica.getNumIdle());
+        try {
+            conn.createStatement();
+            fail("Expecting SQLException");
+        } catch (final SQLException ex) {
+            // Expected
+        }
+    }
+}
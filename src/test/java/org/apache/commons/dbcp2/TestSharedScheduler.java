@@ -0,0 +1,71 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.commons.dbcp2;
+
+import static org.junit.Assert.assertTrue;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
+
+import org.junit.Test;
+
+/**
+ * TestSuite for SharedScheduler
+ */
+public class TestSharedScheduler {
+
+    @Test
+    public void testTimeoutsNotHeldUpByBlockedMaintenance() throws Exception {
+        final CountDownLatch release = new CountDownLatch(1);
+        final CountDownLatch blocked = new CountDownLatch(4);
+        final List<ScheduledFuture<?>> tasks = new ArrayList<>();
+        try {
+            // More blocked tasks than maintenance threads, like slow pings
+            for (int i = 0; i < 8; i++) {
+                tasks.add(SharedScheduler.scheduleWithFixedDelay(new Runnable() {
+                    @Override
+                    public void run() {
+                        blocked.countDown();
+                        try {
+                            release.await();
+                        } catch (final InterruptedException e) {
+                            Thread.currentThread().interrupt();
+                        }
+                    }
+                }, 0, 1000, TimeUnit.MILLISECONDS));
+            }
+            // Every maintenance thread is busy
+            assertTrue(blocked.await(1, TimeUnit.SECONDS));
+            final CountDownLatch timedOut = new CountDownLatch(1);
+            SharedScheduler.schedule(new Runnable() {
+                @Override
+                public void run() {
+                    timedOut.countDown();
+                }
+            }, 10, TimeUnit.MILLISECONDS);
+            assertTrue(timedOut.await(1, TimeUnit.SECONDS));
+        } finally {
+            for (final ScheduledFuture<?> task : tasks) {
+                task.cancel(false);
+            }
+            release.countDown();
+        }
+    }
+}
@@ -0,0 +1,60 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.commons.dbcp2;
+
+import static org.junit.Assert.assertEquals;
+
+import java.util.Arrays;
+
+import org.junit.Test;
+
+/**
+ * TestSuite for StatementUsageTracker
+ */
+public class TestStatementUsageTracker {
+
+    private static final PStmtKey A = new PStmtKey("SELECT a");
+    private static final PStmtKey B = new PStmtKey("SELECT b");
+    private static final PStmtKey C = new PStmtKey("SELECT c");
+
+    @Test
+    public void testHottestKeys() {
+        final StatementUsageTracker tracker = new StatementUsageTracker();
+        tracker.recordUse(A);
+        tracker.recordUses(B, 5);
+        tracker.recordUse(C);
+        tracker.recordUse(C);
+        assertEquals(Arrays.asList(B, C), tracker.getHottestKeys(2));
+        assertEquals(Arrays.asList(B, C, A), tracker.getHottestKeys(10));
+        assertEquals(5, tracker.getUses(new PStmtKey("SELECT b")));
+        assertEquals(0, tracker.getUses(new PStmtKey("SELECT d")));
+    }
+
+    @Test
+    public void testMaxKeys() {
+        final StatementUsageTracker tracker = new StatementUsageTracker(2);
+        tracker.recordUse(A);
+        tracker.recordUse(B);
+        tracker.recordUses(C, 10);
+        assertEquals(2, tracker.getKeyCount());
+        assertEquals(0, tracker.getUses(C));
+        tracker.recordUse(A);
+        assertEquals(2, tracker.getUses(A));
+        tracker.clear();
+        assertEquals(0, tracker.getKeyCount());
+    }
+}
@@ -0,0 +1,178 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.commons.dbcp2;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assume.assumeNotNull;
+
+import java.lang.reflect.Method;
+import java.sql.Connection;
+import java.sql.SQLException;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.apache.commons.pool2.impl.GenericObjectPool;
+import org.junit.Test;
+
+/**
+ * Runs a large number of borrowers, on virtual threads where the JVM supports
+ * them, against a pool whose driver blocks for a while on every validation.
+ * <p>
+ * Validation on return happens inside {@link PoolableConnection#close()}, so
+ * while that method held a monitor each closing virtual thread pinned its
+ * carrier and throughput was bounded by the number of carriers rather than
+ * by the pool size. The test only checks that all borrowers complete; run
+ * {@link #main(String[])} on Java 21 or later with
+ * <code>-Djdk.tracePinnedThreads=short</code> to see the timings and confirm
+ * that no pinned threads are reported. On older JVMs the test is skipped and
+ * the benchmark uses platform threads.
+ */
+public class TestVirtualThreadPinning {
+
+    /**
+     * A connection that simulates network latency when it is validated.
+     */
+    private static class SlowConnection extends TesterConnection {
+        private final long latencyMillis;
+
+        SlowConnection(final long latencyMillis) {
+            super("username", "password");
+            this.latencyMillis = latencyMillis;
+        }
+
+        @Override
+        public boolean isValid(final int timeout) throws SQLException {
+            sleep(latencyMillis);
+            return super.isValid(timeout);
+        }
+    }
+
+    private static void sleep(final long millis) {
+        try {
+            Thread.sleep(millis);
+        } catch (final InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    /**
+     * @return <code>Thread.ofVirtual()</code>, or null before Java 21
+     */
+    private static Method getOfVirtual() {
+        try {
+            return Thread.class.getMethod("ofVirtual");
+        } catch (final NoSuchMethodException e) {
+            // Java 20 or earlier
+            return null;
+        }
+    }
+
+    /**
+     * Starts <code>task</code> on a new virtual thread if the JVM supports
+     * them, or on a new platform thread otherwise.
+     */
+    private static Thread start(final Runnable task) throws Exception {
+        final Method ofVirtual = getOfVirtual();
+        if (ofVirtual == null) {
+            final Thread thread = new Thread(task);
+            thread.start();
+            return thread;
+        }
+        final Object builder = ofVirtual.invoke(null);
+        final Method startMethod = Class.forName("java.lang.Thread$Builder")
+                .getMethod("start", Runnable.class);
+        return (Thread) startMethod.invoke(builder, task);
+    }
+
+    /**
+     * Borrows, uses and returns a connection from <code>threads</code>
+     * threads at once.
+     *
+     * @return the elapsed time in milliseconds
+     */
+    private static long run(final int threads, final int maxTotal,
+            final long latencyMillis, final AtomicInteger completed) throws Exception {
+        final PoolableConnectionFactory factory = new PoolableConnectionFactory(
+                new ConnectionFactory() {
+                    @Override
+                    public Connection createConnection() throws SQLException {
+                        return new SlowConnection(latencyMillis);
+                    }
+                }, null);
+        final GenericObjectPool<PoolableConnection> pool = new GenericObjectPool<>(factory);
+        factory.setPool(pool);
+        pool.setMaxTotal(maxTotal);
+        pool.setTestOnReturn(true);
+        try (final PoolingDataSource<PoolableConnection> ds = new PoolingDataSource<>(pool)) {
+            final CountDownLatch done = new CountDownLatch(threads);
+            final Runnable borrower = new Runnable() {
+                @Override
+                public void run() {
+                    try (Connection conn = ds.getConnection()) {
+                        // Simulate a query
+                        sleep(latencyMillis);
+                        completed.incrementAndGet();
+                    } catch (final SQLException e) {
+                        // Not counted as completed
+                    } finally {
+                        done.countDown();
+                    }
+                }
+            };
+            final long start = System.currentTimeMillis();
+            for (int i = 0; i < threads; i++) {
+                start(borrower);
+            }
+            done.await();
+            final long elapsed = System.currentTimeMillis() - start;
+            assertEquals(0, pool.getNumActive());
+            return elapsed;
+        }
+    }
+
+    /**
+     * Only meaningful on virtual threads, so skipped before Java 21.
+     */
+    @Test
+    public void testManyBorrowers() throws Exception {
+        assumeNotNull(getOfVirtual());
+        final AtomicInteger completed = new AtomicInteger();
+        run(200, 20, 2, completed);
+        assertEquals(200, completed.get());
+    }
+
+    /**
+     * Runs the benchmark.
+     *
+     * @param args optional number of threads (default 10000), pool size
+     *        (default 50) and simulated latency in milliseconds (default 20)
+     * @throws Exception if the benchmark fails
+     */
+    public static void main(final String[] args) throws Exception {
+        final int threads = args.length > 0 ? Integer.parseInt(args[0]) : 10000;
+        final int maxTotal = args.length > 1 ? Integer.parseInt(args[1]) : 50;
+        final long latency = args.length > 2 ? Long.parseLong(args[2]) : 20;
+        final AtomicInteger completed = new AtomicInteger();
+        final long elapsed = run(threads, maxTotal, latency, completed);
+        // Each borrow holds a connection for about two latency periods
+        final long ideal = (long) Math.ceil((double) threads / maxTotal) * 2 * latency;
+        System.out.println(completed.get() + " of " + threads + " borrowers completed in " +
+                elapsed + "ms (pool size " + maxTotal + ", latency " + latency +
+                "ms, ideal " + ideal + "ms, " + Runtime.getRuntime().availableProcessors() +
+                " processors)");
+    }
+}
@@ -0,0 +1,127 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.commons.dbcp2;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.sql.ResultSet;
+import java.sql.Statement;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Properties;
+
+import org.apache.commons.dbcp2.PoolingConnection.StatementType;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+/**
+ * TestSuite for WarmupSnapshot
+ */
+public class TestWarmupSnapshot {
+
+    private static final String IDENTITY = WarmupSnapshot.identity("jdbc:test", "user");
+
+    private File file;
+
+    @Before
+    public void setUp() throws Exception {
+        file = File.createTempFile("dbcp-warmup", ".properties");
+        assertEquals(true, file.delete());
+    }
+
+    @After
+    public void tearDown() {
+        file.delete();
+    }
+
+    @Test
+    public void testRoundTrip() throws Exception {
+        final PStmtKey plain = new PStmtKey("SELECT 1", null);
+        final PStmtKey catalog = new PStmtKey("SELECT 2", "cat");
+        final PStmtKey scrollable = new PStmtKey("SELECT 3", null, ResultSet.TYPE_SCROLL_INSENSITIVE,
+                ResultSet.CONCUR_UPDATABLE, StatementType.PREPARED_STATEMENT);
+        final PStmtKey keys = new PStmtKey("INSERT INTO t VALUES (?)", null,
+                StatementType.PREPARED_STATEMENT, Integer.valueOf(Statement.RETURN_GENERATED_KEYS));
+        final PStmtKey call = new PStmtKey("{call p()}", null, StatementType.CALLABLE_STATEMENT, null);
+        final StatementUsageTracker tracker = new StatementUsageTracker();
+        tracker.recordUses(plain, 50);
+        tracker.recordUses(catalog, 40);
+        tracker.recordUses(scrollable, 30);
+        tracker.recordUses(keys, 20);
+        tracker.recordUses(call, 10);
+
+        final WarmupSnapshot snapshot = new WarmupSnapshot(file, IDENTITY, 0, tracker, 4);
+        snapshot.recordActive(3);
+        snapshot.recordActive(7);
+        snapshot.recordActive(5);
+        snapshot.write();
+
+        final WarmupSnapshot.Contents contents = WarmupSnapshot.read(file, IDENTITY);
+        assertNotNull(contents);
+        assertEquals(7, contents.getPeakActive());
+        assertEquals(Arrays.asList(plain, catalog, scrollable, keys),
+                new ArrayList<>(contents.getStatements().keySet()));
+        assertEquals(Long.valueOf(20), contents.getStatements().get(keys));
+    }
+
+    @Test
+    public void testPreviousPeakKept() throws Exception {
+        final WarmupSnapshot snapshot = new WarmupSnapshot(file, IDENTITY, 4, null, 0);
+        assertEquals(4, snapshot.getPeakActive());
+        snapshot.stop();
+        assertEquals(4, WarmupSnapshot.read(file, IDENTITY).getPeakActive());
+        snapshot.recordActive(2);
+        assertEquals(2, snapshot.getPeakActive());
+    }
+
+    @Test
+    public void testIncompatibleIgnored() throws Exception {
+        assertNull(WarmupSnapshot.read(file, IDENTITY));
+        new WarmupSnapshot(file, IDENTITY, 4, null, 0).write();
+        assertNotNull(WarmupSnapshot.read(file, IDENTITY));
+        assertNull(WarmupSnapshot.read(file, WarmupSnapshot.identity("jdbc:test", "other")));
+
+        rewrite("version", String.valueOf(WarmupSnapshot.FORMAT_VERSION + 1));
+        assertNull(WarmupSnapshot.read(file, IDENTITY));
+        rewrite("version", String.valueOf(WarmupSnapshot.FORMAT_VERSION));
+        assertNotNull(WarmupSnapshot.read(file, IDENTITY));
+
+        rewrite("written", String.valueOf(System.currentTimeMillis() - WarmupSnapshot.MAX_AGE_MILLIS - 1000));
+        assertNull(WarmupSnapshot.read(file, IDENTITY));
+        rewrite("written", "garbage");
+        assertNull(WarmupSnapshot.read(file, IDENTITY));
+    }
+
+    private void rewrite(final String key, final String value) throws Exception {
+        final Properties props = new Properties();
+        try (InputStream in = new FileInputStream(file)) {
+            props.load(in);
+        }
+        props.setProperty(key, value);
+        try (OutputStream out = new FileOutputStream(file)) {
+            props.store(out, null);
+        }
+    }
+}
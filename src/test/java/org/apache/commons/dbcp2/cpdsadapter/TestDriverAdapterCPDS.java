@@ -19,6 +19,8 @@ package org.apache.commons.dbcp2.cpdsadapter;
 
 import static org.junit.Assert.assertEquals;
 import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
 import static org.junit.Assert.assertTrue;
 import static org.junit.Assert.fail;
 
@@ -27,9 +29,14 @@ import java.sql.Connection;
 import java.sql.PreparedStatement;
 import java.sql.ResultSet;
 import java.sql.SQLException;
+import java.sql.Statement;
 
 import javax.sql.DataSource;
+import javax.sql.PooledConnection;
 
+import org.apache.commons.dbcp2.DelegatingConnection;
+import org.apache.commons.dbcp2.DelegatingStatement;
+import org.apache.commons.dbcp2.TesterConnection;
 import org.apache.commons.dbcp2.datasources.SharedPoolDataSource;
 import org.junit.Assert;
 import org.junit.Before;
@@ -158,9 +165,49 @@ public class TestDriverAdapterCPDS {
         // This does not change local field
         assertEquals("bar", pcds.getPassword());
         // Supply correct password in getPooledConnection
-        // Call will succeed and overwrite property
+        // Call will succeed without modifying the shared properties
         pcds.getPooledConnection("foo", "bar").close();
-        assertEquals("bar", pcds.getConnectionProperties().getProperty("password"));
+        assertEquals("bad", pcds.getConnectionProperties().getProperty("password"));
+    }
+
+    @Test
+    public void testConcurrentConnectWithProperties() throws Exception {
+        final Properties properties = new Properties();
+        properties.put("user", "foo");
+        properties.put("password", "bar");
+        pcds.setConnectionProperties(properties);
+        pcds.setAccessToUnderlyingConnectionAllowed(true);
+        final String[][] users = { { "foo", "bar" }, { "u1", "p1" }, { "u2", "p2" } };
+        final Thread[] threads = new Thread[6];
+        final Throwable[] errors = new Throwable[threads.length];
+        for (int i = 0; i < threads.length; i++) {
+            final int index = i;
+            threads[i] = new Thread() {
+                @Override
+                public void run() {
+                    final String[] user = users[index % users.length];
+                    try {
+                        for (int j = 0; j < 200; j++) {
+                            final PooledConnection pc = pcds.getPooledConnection(user[0], user[1]);
+                            final Connection conn = pc.getConnection();
+                            final Connection inner = ((DelegatingConnection<?>) conn).getInnermostDelegate();
+                            assertEquals(user[0], ((TesterConnection) inner).getUsername());
+                            conn.close();
+                            pc.close();
+                        }
+                    } catch (final Throwable t) {
+                        errors[index] = t;
+                    }
+                }
+            };
+            threads[i].start();
+        }
+        for (int i = 0; i < threads.length; i++) {
+            threads[i].join();
+            assertNull(errors[i]);
+        }
+        assertEquals(2, properties.size());
+        assertEquals("bar", properties.getProperty("password"));
     }
     
     /**
@@ -177,6 +224,26 @@ public class TestDriverAdapterCPDS {
     }
 
     // https://issues.apache.org/jira/browse/DBCP-376
+    @Test
+    public void testCanonicalizeSql() throws Exception {
+        pcds.setPoolPreparedStatements(true);
+        pcds.setCanonicalizeSql(true);
+        final PooledConnection pc = pcds.getPooledConnection();
+        final Connection conn = pc.getConnection();
+        final PreparedStatement stmt1 = conn.prepareStatement("select *\n  from dual");
+        final Statement inner1 = ((DelegatingStatement) stmt1).getInnermostDelegate();
+        stmt1.close();
+        final PreparedStatement stmt2 = conn.prepareStatement("select * from dual");
+        assertSame(inner1, ((DelegatingStatement) stmt2).getInnermostDelegate());
+        stmt2.close();
+        conn.close();
+        pc.close();
+
+        final DriverAdapterCPDS copy = (DriverAdapterCPDS) new DriverAdapterCPDS().getObjectInstance(
+                pcds.getReference(), null, null, null);
+        assertTrue(copy.isCanonicalizeSql());
+    }
+
     @Test
     public void testDbcp367() throws Exception {
         final ThreadDbcp367[] threads = new ThreadDbcp367[200];
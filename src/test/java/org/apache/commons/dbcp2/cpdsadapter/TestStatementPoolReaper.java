@@ -0,0 +1,99 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.commons.dbcp2.cpdsadapter;
+
+import static org.junit.Assert.assertEquals;
+
+import org.apache.commons.pool2.BaseKeyedPooledObjectFactory;
+import org.apache.commons.pool2.PooledObject;
+import org.apache.commons.pool2.impl.DefaultPooledObject;
+import org.apache.commons.pool2.impl.GenericKeyedObjectPool;
+import org.apache.commons.pool2.impl.GenericKeyedObjectPoolConfig;
+import org.junit.Test;
+
+/**
+ * TestSuite for StatementPoolReaper
+ */
+public class TestStatementPoolReaper {
+
+    private static class ObjectFactory extends BaseKeyedPooledObjectFactory<String, Object> {
+        @Override
+        public Object create(final String key) {
+            return new Object();
+        }
+
+        @Override
+        public PooledObject<Object> wrap(final Object value) {
+            return new DefaultPooledObject<>(value);
+        }
+    }
+
+    private static GenericKeyedObjectPool<String, Object> createPool() throws Exception {
+        final GenericKeyedObjectPoolConfig config = new GenericKeyedObjectPoolConfig();
+        config.setJmxEnabled(false);
+        config.setTimeBetweenEvictionRunsMillis(-1);
+        config.setMinEvictableIdleTimeMillis(1);
+        config.setNumTestsPerEvictionRun(-1);
+        final GenericKeyedObjectPool<String, Object> pool =
+                new GenericKeyedObjectPool<>(new ObjectFactory(), config);
+        pool.addObject("a");
+        pool.addObject("b");
+        return pool;
+    }
+
+    private static void waitFor(final GenericKeyedObjectPool<?, ?> pool, final int numIdle)
+            throws InterruptedException {
+        for (int i = 0; i < 300 && pool.getNumIdle() != numIdle; i++) {
+            Thread.sleep(10);
+        }
+    }
+
+    @Test
+    public void testEvictsAllRegisteredPools() throws Exception {
+        final StatementPoolReaper reaper = new StatementPoolReaper(5, 50);
+        final GenericKeyedObjectPool<String, Object> pool1 = createPool();
+        final GenericKeyedObjectPool<String, Object> pool2 = createPool();
+        // More than a turn of the wheel
+        final GenericKeyedObjectPool<String, Object> slowPool = createPool();
+        reaper.register(pool1, 10);
+        reaper.register(pool2, 25);
+        reaper.register(slowPool, 15 * StatementPoolReaper.SLOTS);
+        assertEquals(3, reaper.getPoolCount());
+        waitFor(pool1, 0);
+        waitFor(pool2, 0);
+        assertEquals(0, pool1.getNumIdle());
+        assertEquals(0, pool2.getNumIdle());
+        assertEquals(2, slowPool.getNumIdle());
+        waitFor(slowPool, 0);
+        assertEquals(0, slowPool.getNumIdle());
+        pool1.close();
+        pool2.close();
+        slowPool.close();
+    }
+
+    @Test
+    public void testClosedPoolsDropped() throws Exception {
+        final StatementPoolReaper reaper = new StatementPoolReaper(5, 50);
+        final GenericKeyedObjectPool<String, Object> pool = createPool();
+        reaper.register(pool, 5);
+        pool.close();
+        for (int i = 0; i < 200 && reaper.getPoolCount() > 0; i++) {
+            Thread.sleep(10);
+        }
+        assertEquals(0, reaper.getPoolCount());
+    }
+}
@@ -0,0 +1,78 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.commons.dbcp2.datasources;
+
+import java.sql.SQLException;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import javax.sql.ConnectionPoolDataSource;
+import javax.sql.PooledConnection;
+
+/**
+ * ConnectionPoolDataSourceProxy that holds each request for a pooled
+ * connection until a given number of requests are in progress at once, or a
+ * timeout expires, and records the largest number of concurrent requests.
+ */
+public class BlockingConnectionPoolDataSource extends ConnectionPoolDataSourceProxy {
+
+    private final CountDownLatch arrived;
+    private final long waitMillis;
+    private final AtomicInteger active = new AtomicInteger();
+    private final AtomicInteger maxActive = new AtomicInteger();
+
+    /**
+     * @param cpds the data source that opens the connections
+     * @param expected the number of concurrent requests to wait for
+     * @param waitMillis the longest time a request waits for the others
+     */
+    public BlockingConnectionPoolDataSource(final ConnectionPoolDataSource cpds,
+            final int expected, final long waitMillis) {
+        super(cpds);
+        this.arrived = new CountDownLatch(expected);
+        this.waitMillis = waitMillis;
+    }
+
+    @Override
+    public PooledConnection getPooledConnection(final String user, final String password)
+            throws SQLException {
+        final int now = active.incrementAndGet();
+        try {
+            int max = maxActive.get();
+            while (now > max && !maxActive.compareAndSet(max, now)) {
+                max = maxActive.get();
+            }
+            arrived.countDown();
+            try {
+                arrived.await(waitMillis, TimeUnit.MILLISECONDS);
+            } catch (final InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+            return super.getPooledConnection(user, password);
+        } finally {
+            active.decrementAndGet();
+        }
+    }
+
+    /**
+     * @return the largest number of requests in progress at once
+     */
+    public int getMaxActive() {
+        return maxActive.get();
+    }
+}
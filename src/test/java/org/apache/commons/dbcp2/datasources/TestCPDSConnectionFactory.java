@@ -159,4 +159,44 @@ public class TestCPDSConnectionFactory {
         con.close();
     }
 
+    @Test
+    public void testConcurrentCreation() throws Exception {
+        assertEquals(4, maxConcurrentCreations(0, 4));
+        assertEquals(2, maxConcurrentCreations(2, 4));
+    }
+
+    /**
+     * Creates <code>threads</code> connections at once.
+     *
+     * @return the largest number of connections opened at the same time
+     */
+    private int maxConcurrentCreations(final int parallelism, final int threads) throws Exception {
+        final BlockingConnectionPoolDataSource blocking =
+                new BlockingConnectionPoolDataSource(cpds.getDelegate(), threads, 200);
+        final CPDSConnectionFactory factory =
+                new CPDSConnectionFactory(blocking, null, -1, false, "username", "password");
+        factory.setConnectionCreationParallelism(parallelism);
+        final GenericObjectPool<PooledConnectionAndInfo> pool = new GenericObjectPool<>(factory);
+        factory.setPool(pool);
+        final Thread[] creators = new Thread[threads];
+        for (int i = 0; i < threads; i++) {
+            creators[i] = new Thread() {
+                @Override
+                public void run() {
+                    try {
+                        pool.addObject();
+                    } catch (final Exception e) {
+                        e.printStackTrace();
+                    }
+                }
+            };
+            creators[i].start();
+        }
+        for (final Thread creator : creators) {
+            creator.join();
+        }
+        assertEquals(threads, pool.getNumIdle());
+        pool.close();
+        return blocking.getMaxActive();
+    }
 }
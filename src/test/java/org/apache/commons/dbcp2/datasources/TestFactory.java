@@ -17,10 +17,17 @@
 
 package org.apache.commons.dbcp2.datasources;
 
+import static org.junit.Assert.assertEquals;
 import static org.junit.Assert.assertNotNull;
 
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.ObjectOutputStream;
+import java.util.HashMap;
 import java.util.Hashtable;
+import java.util.Map;
 
+import javax.naming.BinaryRefAddr;
 import javax.naming.CompositeName;
 import javax.naming.Context;
 import javax.naming.InitialContext;
@@ -58,4 +65,31 @@ public class TestFactory {
         final Object obj2 = factory.getObjectInstance(refObj, name2, context, env);
         assertNotNull(obj2);
     }
+
+    @Test
+    public void testSharedPoolQuotas() throws Exception {
+        final Reference refObj = new Reference(SharedPoolDataSource.class.getName());
+        refObj.add(new StringRefAddr("dataSourceName","java:comp/env/jdbc/bookstoreCPDS"));
+        final Map<String,Integer> minTotal = new HashMap<>();
+        minTotal.put("batch", Integer.valueOf(2));
+        refObj.add(new BinaryRefAddr("perUserMinTotal", serialize(minTotal)));
+        final Map<String,Integer> maxTotal = new HashMap<>();
+        maxTotal.put("batch", Integer.valueOf(4));
+        refObj.add(new BinaryRefAddr("perUserMaxTotal", serialize(maxTotal)));
+
+        final ObjectFactory factory = new SharedPoolDataSourceFactory();
+        final SharedPoolDataSource spds = (SharedPoolDataSource) factory.getObjectInstance(
+                refObj, new CompositeName("myDB3"), new InitialContext(), new Hashtable<>());
+        assertEquals(2, spds.getPerUserMinTotal("batch"));
+        assertEquals(4, spds.getPerUserMaxTotal("batch"));
+        assertEquals(0, spds.getPerUserMinTotal("other"));
+    }
+
+    private static byte[] serialize(final Object obj) throws IOException {
+        final ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        try (ObjectOutputStream out = new ObjectOutputStream(bytes)) {
+            out.writeObject(obj);
+        }
+        return bytes.toByteArray();
+    }
 }
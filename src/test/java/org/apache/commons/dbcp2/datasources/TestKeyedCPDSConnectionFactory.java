@@ -167,4 +167,47 @@ public class TestKeyedCPDSConnectionFactory {
         final Connection con = pcon.getConnection();
         con.close();
     }
+
+    @Test
+    public void testConcurrentCreation() throws Exception {
+        assertEquals(4, maxConcurrentCreations(0, 4));
+        assertEquals(2, maxConcurrentCreations(2, 4));
+    }
+
+    /**
+     * Creates <code>threads</code> connections of one user at once.
+     *
+     * @return the largest number of connections opened at the same time
+     */
+    private int maxConcurrentCreations(final int parallelism, final int threads) throws Exception {
+        final BlockingConnectionPoolDataSource blocking =
+                new BlockingConnectionPoolDataSource(cpds.getDelegate(), threads, 200);
+        final KeyedCPDSConnectionFactory factory =
+                new KeyedCPDSConnectionFactory(blocking, null, -1, false);
+        factory.setConnectionCreationParallelism(parallelism);
+        final GenericKeyedObjectPool<UserPassKey, PooledConnectionAndInfo> pool =
+                new GenericKeyedObjectPool<>(factory);
+        factory.setPool(pool);
+        final UserPassKey key = new UserPassKey("username", "password");
+        final Thread[] creators = new Thread[threads];
+        for (int i = 0; i < threads; i++) {
+            creators[i] = new Thread() {
+                @Override
+                public void run() {
+                    try {
+                        pool.addObject(key);
+                    } catch (final Exception e) {
+                        e.printStackTrace();
+                    }
+                }
+            };
+            creators[i].start();
+        }
+        for (final Thread creator : creators) {
+            creator.join();
+        }
+        assertEquals(threads, pool.getNumIdle());
+        pool.close();
+        return blocking.getMaxActive();
+    }
 }
@@ -19,6 +19,8 @@ package org.apache.commons.dbcp2.datasources;
 
 import static org.junit.Assert.assertEquals;
 import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
 import static org.junit.Assert.assertTrue;
 import static org.junit.Assert.fail;
 
@@ -31,6 +33,8 @@ import java.sql.PreparedStatement;
 import java.sql.ResultSet;
 import java.sql.SQLException;
 import java.sql.Statement;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
 
 import javax.sql.DataSource;
 
@@ -318,6 +322,29 @@ public class TestPerUserPoolDataSource extends TestConnectionPool {
         conn.close();
     }
 
+    @Test
+    public void testIncrementGeneration() throws Exception {
+        final PerUserPoolDataSource tds = (PerUserPoolDataSource) ds;
+        tds.setPerUserMaxTotal("u1", Integer.valueOf(5));
+        final Connection active = ds.getConnection("foo", "bar");
+        ds.getConnection("u1", "p1").close();
+        assertEquals(0, tds.getGeneration("foo"));
+        assertEquals(1, tds.getNumIdle("u1"));
+
+        tds.incrementGeneration();
+        assertEquals(1, tds.getGeneration("foo"));
+        assertEquals(1, tds.getGeneration("u1"));
+        assertEquals(0, tds.getNumIdle("u1"));
+
+        final Connection fresh = ds.getConnection("foo", "bar");
+        assertEquals(2, tds.getNumActive("foo"));
+        active.close();
+        assertEquals(1, tds.getNumActive("foo"));
+        assertEquals(0, tds.getNumIdle("foo"));
+        fresh.close();
+        assertEquals(1, tds.getNumIdle("foo"));
+    }
+
     @Test
     public void testPerUserMethods() throws Exception {
         final PerUserPoolDataSource tds = (PerUserPoolDataSource) ds;
@@ -537,4 +564,73 @@ public class TestPerUserPoolDataSource extends TestConnectionPool {
             TesterDriver.addUser("foo","bar");
         }
     }
+
+    @Test
+    public void testConcurrentPoolCreation() throws Exception {
+        final PerUserPoolDataSource tds = (PerUserPoolDataSource) ds;
+        final int threadCount = 5;
+        final CountDownLatch start = new CountDownLatch(1);
+        final Connection[] connections = new Connection[threadCount];
+        final Throwable[] errors = new Throwable[threadCount];
+        final Thread[] threads = new Thread[threadCount];
+        for (int i = 0; i < threadCount; i++) {
+            final int index = i;
+            threads[i] = new Thread() {
+                @Override
+                public void run() {
+                    try {
+                        start.await();
+                        connections[index] = ds.getConnection("u1", "p1");
+                    } catch (final Throwable t) {
+                        errors[index] = t;
+                    }
+                }
+            };
+            threads[i].start();
+        }
+        start.countDown();
+        for (int i = 0; i < threadCount; i++) {
+            threads[i].join();
+            assertNull(errors[i]);
+        }
+        // All threads borrowed from the same pool
+        assertEquals(threadCount, tds.getNumActive("u1"));
+        for (final Connection conn : connections) {
+            conn.close();
+        }
+        assertEquals(threadCount, tds.getNumIdle("u1"));
+    }
+
+    @Test
+    public void testPerUserPoolConfigResolvedOnce() throws Exception {
+        final PerUserPoolDataSource tds = (PerUserPoolDataSource) ds;
+        tds.setPerUserDefaultReadOnly("foo", Boolean.TRUE);
+        try (Connection conn = ds.getConnection("foo", "bar")) {
+            assertTrue(conn.isReadOnly());
+            assertEquals(Connection.TRANSACTION_READ_COMMITTED, conn.getTransactionIsolation());
+        }
+        final PoolKey key = new PoolKey(tds.getDataSourceName(), "foo");
+        assertSame(tds.getPerUserPoolConfig(key, "foo"), tds.getPerUserPoolConfig(key, "foo"));
+    }
+
+    @Test
+    public void testGetConnectionWithTimeout() throws Exception {
+        final PerUserPoolDataSource tds = (PerUserPoolDataSource) ds;
+        final Connection[] c = new Connection[getMaxTotal()];
+        for (int i = 0; i < c.length; i++) {
+            c[i] = tds.getConnection("foo", "bar", 1, TimeUnit.SECONDS);
+        }
+        try {
+            tds.getConnection("foo", "bar", 0, TimeUnit.MILLISECONDS);
+            fail("Expected SQLException");
+        } catch (final SQLException expected) {
+            // The pool is exhausted and the caller would not wait
+        }
+        c[0].close();
+        c[0] = tds.getConnection("foo", "bar", 0, TimeUnit.MILLISECONDS);
+        assertNotNull(c[0]);
+        for (final Connection element : c) {
+            element.close();
+        }
+    }
 }
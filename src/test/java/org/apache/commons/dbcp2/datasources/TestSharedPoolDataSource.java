@@ -28,6 +28,8 @@ import java.sql.ResultSet;
 import java.sql.SQLException;
 import java.sql.Statement;
 import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
 
 import javax.sql.DataSource;
 
@@ -280,6 +282,26 @@ public class TestSharedPoolDataSource extends TestConnectionPool {
         }
     }
 
+    @Test
+    public void testIncrementGeneration() throws Exception {
+        final SharedPoolDataSource tds = (SharedPoolDataSource) ds;
+        final Connection active = ds.getConnection("foo", "bar");
+        ds.getConnection("u1", "p1").close();
+        assertEquals(0, tds.getGeneration());
+        assertEquals(1, tds.getNumIdle());
+
+        assertEquals(1, tds.incrementGeneration());
+        assertEquals(0, tds.getNumIdle());
+
+        final Connection fresh = ds.getConnection("foo", "bar");
+        assertEquals(2, tds.getNumActive());
+        active.close();
+        assertEquals(1, tds.getNumActive());
+        assertEquals(0, tds.getNumIdle());
+        fresh.close();
+        assertEquals(1, tds.getNumIdle());
+    }
+
     /**
      * Test pool close.  Illustrates BZ 37359.
      *
@@ -623,4 +645,146 @@ public class TestSharedPoolDataSource extends TestConnectionPool {
             // Ignore
         }
     }
+
+    @Test
+    public void testGetConnectionWithTimeout() throws Exception {
+        final SharedPoolDataSource tds = (SharedPoolDataSource) ds;
+        final Connection[] c = new Connection[getMaxTotal()];
+        for (int i = 0; i < c.length; i++) {
+            c[i] = tds.getConnection("foo", "bar", 1, TimeUnit.SECONDS);
+        }
+        try {
+            tds.getConnection("foo", "bar", 0, TimeUnit.MILLISECONDS);
+            fail("Expected SQLException");
+        } catch (final SQLException expected) {
+            // The pool is exhausted and the caller would not wait
+        }
+        c[0].close();
+        c[0] = tds.getConnection("foo", "bar", 0, TimeUnit.MILLISECONDS);
+        assertNotNull(c[0]);
+        for (final Connection element : c) {
+            element.close();
+        }
+    }
+
+    @Test
+    public void testPasswordChangeRetriesShareTimeout() throws Exception {
+        final List<Long> waits = new ArrayList<>();
+        final SharedPoolDataSource tds = new SharedPoolDataSource() {
+            private static final long serialVersionUID = 1L;
+
+            @Override
+            protected PooledConnectionAndInfo getPooledConnectionAndInfo(final String username,
+                    final String password, final long maxWaitMillis) throws SQLException {
+                waits.add(Long.valueOf(maxWaitMillis));
+                try {
+                    Thread.sleep(50);
+                } catch (final InterruptedException e) {
+                    throw new SQLException(e);
+                }
+                return super.getPooledConnectionAndInfo(username, password, maxWaitMillis);
+            }
+        };
+        tds.setConnectionPoolDataSource(pcds);
+        try {
+            // Leaves an idle connection with the old password
+            tds.getConnection("foo", "bar").close();
+            TesterDriver.addUser("foo", "bay");
+            tds.getConnection("foo", "bay", 1, TimeUnit.SECONDS).close();
+        } finally {
+            TesterDriver.addUser("foo", "bar");
+            tds.close();
+        }
+        assertEquals(3, waits.size());
+        assertEquals(Long.valueOf(1000), waits.get(1));
+        // The retry only gets what the first borrow left
+        assertTrue(waits.get(2).longValue() <= 950);
+    }
+
+    private SharedPoolDataSource createQuotaDataSource() {
+        final SharedPoolDataSource qds = new SharedPoolDataSource();
+        qds.setConnectionPoolDataSource(pcds);
+        qds.setMaxTotal(4);
+        qds.setDefaultMaxTotal(1);
+        qds.setDefaultMaxWaitMillis(5000);
+        qds.setPerUserMinTotal("u1", Integer.valueOf(2));
+        qds.setPerUserMaxTotal("foo", Integer.valueOf(3));
+        return qds;
+    }
+
+    private static void assertQuotaExhausted(final SharedPoolDataSource qds, final String username,
+            final String password) {
+        try {
+            qds.getConnection(username, password, 0, TimeUnit.MILLISECONDS).close();
+            fail("Expected SQLException");
+        } catch (final SQLException expected) {
+            // Over quota
+        }
+    }
+
+    @Test
+    public void testPerUserQuotas() throws Exception {
+        final SharedPoolDataSource qds = createQuotaDataSource();
+        try {
+            assertEquals(2, qds.getPerUserMinTotal("u1"));
+            assertEquals(0, qds.getPerUserMinTotal("foo"));
+            assertEquals(3, qds.getPerUserMaxTotal("foo"));
+            assertEquals(1, qds.getPerUserMaxTotal("u2"));
+
+            // foo may go beyond the default maximum, but not into u1's guarantee
+            final Connection foo1 = qds.getConnection("foo", "bar");
+            final Connection foo2 = qds.getConnection("foo", "bar");
+            assertQuotaExhausted(qds, "foo", "bar");
+            final Connection u1a = qds.getConnection("u1", "p1");
+            final Connection u1b = qds.getConnection("u1", "p1");
+            assertEquals(2, qds.getNumActive("foo"));
+            assertEquals(2, qds.getNumActive("u1"));
+            assertQuotaExhausted(qds, "u2", "p2");
+
+            // Idle connections of other users make room for u2
+            foo1.close();
+            foo2.close();
+            u1a.close();
+            u1b.close();
+            assertEquals(4, qds.getNumIdle());
+            final Connection u2 = qds.getConnection("u2", "p2");
+            assertEquals(1, qds.getNumActive("u2"));
+            assertEquals(3, qds.getNumIdle());
+            assertQuotaExhausted(qds, "u2", "p2");
+            u2.close();
+        } finally {
+            qds.close();
+        }
+    }
+
+    @Test
+    public void testPerUserQuotaWaitsForReturn() throws Exception {
+        final SharedPoolDataSource qds = createQuotaDataSource();
+        try {
+            final Connection foo1 = qds.getConnection("foo", "bar");
+            final Connection foo2 = qds.getConnection("foo", "bar");
+            final Connection[] borrowed = new Connection[1];
+            final Thread waiter = new Thread() {
+                @Override
+                public void run() {
+                    try {
+                        borrowed[0] = qds.getConnection("foo", "bar");
+                    } catch (final SQLException e) {
+                        // Left null
+                    }
+                }
+            };
+            waiter.start();
+            Thread.sleep(100);
+            assertTrue(waiter.isAlive());
+            foo1.close();
+            waiter.join(5000);
+            assertNotNull(borrowed[0]);
+            assertEquals(2, qds.getNumActive("foo"));
+            borrowed[0].close();
+            foo2.close();
+        } finally {
+            qds.close();
+        }
+    }
 }
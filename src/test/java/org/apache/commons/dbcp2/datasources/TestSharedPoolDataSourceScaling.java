@@ -0,0 +1,133 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.commons.dbcp2.datasources;
+
+import static org.junit.Assert.assertEquals;
+
+import java.sql.Connection;
+import java.sql.SQLException;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.apache.commons.dbcp2.cpdsadapter.DriverAdapterCPDS;
+import org.junit.Test;
+
+/**
+ * Borrows and returns connections of several users from a
+ * {@link SharedPoolDataSource} on an increasing number of threads.
+ * <p>
+ * Borrowing used to synchronize on the data source, so every
+ * <code>getConnection</code> call of every user serialized on one monitor.
+ * The test only checks that all borrows complete; run {@link #main(String[])}
+ * to see how the throughput scales with the number of threads.
+ */
+public class TestSharedPoolDataSourceScaling {
+
+    private static final String[][] USERS = {
+        { "foo", "bar" }, { "u1", "p1" }, { "u2", "p2" }, { "username", "password" } };
+
+    private static SharedPoolDataSource createDataSource(final int threads) throws Exception {
+        final DriverAdapterCPDS pcds = new DriverAdapterCPDS();
+        pcds.setDriver("org.apache.commons.dbcp2.TesterDriver");
+        pcds.setUrl("jdbc:apache:commons:testdriver");
+        pcds.setUser("foo");
+        pcds.setPassword("bar");
+
+        final SharedPoolDataSource ds = new SharedPoolDataSource();
+        ds.setConnectionPoolDataSource(pcds);
+        // Enough connections that no thread waits for another to return one
+        ds.setMaxTotal(threads * USERS.length);
+        ds.setDefaultMaxTotal(threads);
+        ds.setDefaultMaxIdle(threads);
+        return ds;
+    }
+
+    /**
+     * Borrows and returns <code>iterations</code> connections on each of
+     * <code>threads</code> threads, cycling through the users.
+     *
+     * @return the elapsed time in milliseconds
+     */
+    private static long run(final int threads, final int iterations,
+            final AtomicInteger completed) throws Exception {
+        final SharedPoolDataSource ds = createDataSource(threads);
+        try {
+            final CountDownLatch start = new CountDownLatch(1);
+            final CountDownLatch done = new CountDownLatch(threads);
+            for (int t = 0; t < threads; t++) {
+                final int offset = t;
+                new Thread() {
+                    @Override
+                    public void run() {
+                        try {
+                            start.await();
+                            for (int i = 0; i < iterations; i++) {
+                                final String[] user = USERS[(offset + i) % USERS.length];
+                                try (Connection conn = ds.getConnection(user[0], user[1])) {
+                                    completed.incrementAndGet();
+                                }
+                            }
+                        } catch (final InterruptedException e) {
+                            Thread.currentThread().interrupt();
+                        } catch (final SQLException e) {
+                            e.printStackTrace();
+                        } finally {
+                            done.countDown();
+                        }
+                    }
+                }.start();
+            }
+            final long begin = System.currentTimeMillis();
+            start.countDown();
+            done.await();
+            final long elapsed = System.currentTimeMillis() - begin;
+            assertEquals(0, ds.getNumActive());
+            return elapsed;
+        } finally {
+            ds.close();
+        }
+    }
+
+    @Test
+    public void testConcurrentBorrowers() throws Exception {
+        final AtomicInteger completed = new AtomicInteger();
+        run(8, 500, completed);
+        assertEquals(8 * 500, completed.get());
+    }
+
+    /**
+     * Runs the benchmark.
+     *
+     * @param args optional maximum number of threads (default twice the
+     *        number of processors) and borrows per thread (default 100000)
+     * @throws Exception if the benchmark fails
+     */
+    public static void main(final String[] args) throws Exception {
+        final int processors = Runtime.getRuntime().availableProcessors();
+        final int maxThreads = args.length > 0 ? Integer.parseInt(args[0]) : 2 * processors;
+        final int iterations = args.length > 1 ? Integer.parseInt(args[1]) : 100000;
+        // Warm up
+        run(maxThreads, iterations / 10, new AtomicInteger());
+        for (int threads = 1; threads <= maxThreads; threads *= 2) {
+            final AtomicInteger completed = new AtomicInteger();
+            final long elapsed = run(threads, iterations, completed);
+            System.out.println(threads + " threads: " + completed.get() + " borrows in " +
+                    elapsed + "ms, " + (completed.get() * 1000L / Math.max(elapsed, 1)) +
+                    " borrows/s (" + processors + " processors)");
+        }
+    }
+}
@@ -21,8 +21,10 @@ import static org.junit.Assert.assertNotNull;
 import static org.junit.Assert.fail;
 
 import java.sql.SQLException;
+import java.util.concurrent.TimeUnit;
 
 import org.apache.commons.dbcp2.BasicDataSource;
+import org.apache.commons.dbcp2.ConnectionPriority;
 import org.apache.commons.dbcp2.TestBasicDataSource;
 import org.apache.geronimo.transaction.manager.TransactionManagerImpl;
 import org.junit.Test;
@@ -39,6 +41,28 @@ public class TestBasicManagedDataSource extends TestBasicDataSource {
         return basicManagedDataSource;
     }
 
+    @Override
+    @Test
+    public void testGetConnectionWithPriority() throws Exception {
+        try {
+            ds.getConnection(ConnectionPriority.HIGH);
+            fail("Expected UnsupportedOperationException");
+        } catch (final UnsupportedOperationException expected) {
+            // Managed connections borrow again when their transaction changes
+        }
+    }
+
+    @Override
+    @Test
+    public void testGetConnectionWithTimeout() throws Exception {
+        try {
+            ds.getConnection(0, TimeUnit.MILLISECONDS);
+            fail("Expected UnsupportedOperationException");
+        } catch (final UnsupportedOperationException expected) {
+            // Managed connections borrow again when their transaction changes
+        }
+    }
+
     /**
      * JIRA: DBCP-294
      * Verify that PoolableConnections created by BasicManagedDataSource unregister themselves